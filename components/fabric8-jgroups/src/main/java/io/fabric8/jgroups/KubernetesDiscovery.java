@@ -16,12 +16,14 @@
 package io.fabric8.jgroups;
 
 
+import io.fabric8.kubernetes.api.KubernetesClients;
 import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.informers.SharedInformer;
+import io.fabric8.kubernetes.api.informers.SharedInformers;
 import io.fabric8.kubernetes.api.model.Container;
 import io.fabric8.kubernetes.api.model.ContainerPort;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.client.ConfigBuilder;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.utils.Filter;
 import io.fabric8.utils.Strings;
@@ -53,6 +55,7 @@ public class KubernetesDiscovery extends Discovery {
     private String address;
 
     private KubernetesClient client;
+    private SharedInformer<Pod> podInformer;
     private List<PhysicalAddress> kubernetesHosts = Collections.emptyList();
     private BoundedList<PhysicalAddress> dynamic_hosts = new BoundedList<>(2000);
     
@@ -60,12 +63,22 @@ public class KubernetesDiscovery extends Discovery {
     public void init() throws Exception {
         super.init();
         if (!Strings.isNullOrBlank(address)) {
-            client = new DefaultKubernetesClient(new ConfigBuilder().withMasterUrl(address).build());
+            client = KubernetesClients.acquire(new ConfigBuilder().withMasterUrl(address).build());
         } else {
-            client = new DefaultKubernetesClient();
+            client = KubernetesClients.acquire();
         }
     }
 
+    @Override
+    public void destroy() {
+        closePodInformer();
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+        super.destroy();
+    }
+
     public Object down(Event evt) {
         Object retval = super.down(evt);
         switch (evt.getType()) {
@@ -130,9 +143,7 @@ public class KubernetesDiscovery extends Discovery {
 
     public List<PhysicalAddress> findKubernetesHosts() {
         List<PhysicalAddress> addresses = new ArrayList<>();
-        Map<String, String> labels = Collections.singletonMap(Constants.JGROUPS_CLUSTER_NAME, cluster_name);
-
-        for (Pod pod : client.pods().withLabels(labels).list().getItems()) {
+        for (Pod pod : getPodInformer().list()) {
             List<Container> containers = KubernetesHelper.getContainers(pod);
             for (Container container : containers) {
 
@@ -153,6 +164,24 @@ public class KubernetesDiscovery extends Discovery {
         return addresses;
     }
 
+    /**
+     * Lets use a shared informer rather than listing the pods on every discovery request
+     */
+    protected synchronized SharedInformer<Pod> getPodInformer() {
+        if (podInformer == null) {
+            Map<String, String> labels = Collections.singletonMap(Constants.JGROUPS_CLUSTER_NAME, cluster_name);
+            podInformer = SharedInformers.pods(client, client.getNamespace(), labels);
+        }
+        return podInformer;
+    }
+
+    protected synchronized void closePodInformer() {
+        if (podInformer != null) {
+            podInformer.close();
+            podInformer = null;
+        }
+    }
+
     @Override
     public boolean isDynamic() {
         return true;
@@ -18,6 +18,7 @@ package io.fabric8.utils;
 import java.io.IOException;
 import java.net.DatagramSocket;
 import java.net.ServerSocket;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -98,6 +99,65 @@ public final class AvailablePortFinder {
         return next;
     }
 
+    /**
+     * Reserves the next available port starting at the lowest number. The port is held by bound sockets until
+     * the {@link PortReservation} is handed off and is not returned again by this process until it is released
+     * with {@link Ports#releasePort(int)}.
+     *
+     * @throws NoSuchElementException if there are no ports available
+     * @return the reservation
+     */
+    public static PortReservation reserveNextAvailable() {
+        return reserveNextAvailable(1).get(0);
+    }
+
+    /**
+     * Reserves the given number of available ports starting at the lowest number, checking the ports
+     * concurrently. The ports are held by bound sockets until each {@link PortReservation} is handed off
+     * and are not returned again by this process until they are released with {@link Ports#releasePort(int)}.
+     *
+     * @throws NoSuchElementException if there are not enough ports available
+     * @return the reservations
+     */
+    public static synchronized List<PortReservation> reserveNextAvailable(int count) {
+        int fromPort = currentMinPort.get();
+        List<PortReservation> answer;
+        try {
+            answer = Ports.reservePorts(count, fromPort, MAX_PORT_NUMBER);
+        } catch (RuntimeException e) {
+            if (e instanceof IllegalArgumentException) {
+                throw e;
+            }
+            NoSuchElementException exception = new NoSuchElementException("Could not find " + count + " available ports above " + fromPort);
+            exception.initCause(e);
+            throw exception;
+        }
+        int last = fromPort;
+        for (PortReservation reservation : answer) {
+            last = Math.max(last, reservation.getPort());
+        }
+        currentMinPort.set(last + 1);
+        LOG.info("reserveNextAvailable({}) -> {}", count, answer);
+        return answer;
+    }
+
+    /**
+     * Gets the given number of available ports starting at the lowest number. Like {@link #getNextAvailable()}
+     * the ports are not returned again by this finder and don't rely on the caller actually opening them.
+     *
+     * @throws NoSuchElementException if there are not enough ports available
+     * @return the available ports
+     */
+    public static int[] getNextAvailablePorts(int count) {
+        List<PortReservation> reservations = reserveNextAvailable(count);
+        int[] answer = new int[reservations.size()];
+        for (int i = 0; i < answer.length; i++) {
+            answer[i] = reservations.get(i).handOff();
+            Ports.releasePort(answer[i]);
+        }
+        return answer;
+    }
+
     /**
      * Gets the next available port starting at a given from port.
      *
@@ -132,6 +192,9 @@ public final class AvailablePortFinder {
         if (port < currentMinPort.get() || port > MAX_PORT_NUMBER) {
             throw new IllegalArgumentException("Invalid start currentMinPort: " + port);
         }
+        if (Ports.isReserved(port)) {
+            return false;
+        }
 
         ServerSocket ss = null;
         DatagramSocket ds = null;
@@ -0,0 +1,248 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A cache of the checksums of the files in a directory which records the size, last modified time and
+ * file key (the inode on unix) of each file so that only the files which have changed since the cache was
+ * saved are read again.
+ * <p/>
+ * Checksums are computed with {@link ChecksumUtils#newChecksum()}; changed files are hashed in parallel on the
+ * pool of threads dedicated to blocking I/O unless another executor is set.
+ * The cache is stored in the {@link #CACHE_FILE} file of the directory which is replaced atomically.
+ */
+public class ChecksumCache {
+    public static final String CACHE_FILE = ".fabric8.checksums.index";
+
+    private static final transient Logger LOG = LoggerFactory.getLogger(ChecksumCache.class);
+
+    /**
+     * Files modified this recently when hashed could still change without their modified time changing
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private final File dir;
+    private final Path root;
+    private final String algorithm;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger hashedCount = new AtomicInteger();
+    private Executor executor = IoExecutors.getPool();
+
+    public ChecksumCache(File dir) {
+        this.dir = dir;
+        this.root = dir.toPath().toAbsolutePath().normalize();
+        this.algorithm = ChecksumUtils.getChecksumAlgorithm();
+    }
+
+    /**
+     * Loads the cache of the given directory; entries saved with a different checksum algorithm are ignored
+     */
+    public static ChecksumCache load(File dir) {
+        ChecksumCache answer = new ChecksumCache(dir);
+        File cacheFile = new File(dir, CACHE_FILE);
+        if (cacheFile.isFile()) {
+            Properties properties = ChecksumUtils.loadProperties(cacheFile);
+            for (String name : properties.stringPropertyNames()) {
+                Entry entry = Entry.parse(properties.getProperty(name));
+                if (entry == null) {
+                    LOG.warn("Failed to parse checksum entry '" + properties.getProperty(name) + "' in " + cacheFile);
+                } else if (entry.algorithm.equals(answer.algorithm)) {
+                    answer.entries.put(name, entry);
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the checksum of the file reading it only if it has changed since it was cached
+     */
+    public long checksum(File file) throws IOException {
+        String name = nameOf(file);
+        BasicFileAttributes attributes = java.nio.file.Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        Entry entry = entries.get(name);
+        if (entry != null && entry.matches(attributes)) {
+            return entry.checksum;
+        }
+        long checksum = ChecksumUtils.checksumFile(file, ChecksumUtils.newChecksum());
+        hashedCount.incrementAndGet();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (System.currentTimeMillis() - lastModified < RACY_MILLIS) {
+            // lets hash it again next time
+            lastModified = -1;
+        }
+        entries.put(name, new Entry(algorithm, checksum, attributes.size(), lastModified, Entry.fileKeyOf(attributes)));
+        return checksum;
+    }
+
+    /**
+     * Returns the checksums of the given files hashing the files which have changed in parallel
+     */
+    public Map<File, Long> checksums(Collection<File> files) throws IOException {
+        Map<File, FutureTask<Long>> tasks = new LinkedHashMap<>();
+        for (final File file : files) {
+            FutureTask<Long> task = new FutureTask<>(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return checksum(file);
+                }
+            });
+            tasks.put(file, task);
+            executor.execute(task);
+        }
+        Map<File, Long> answer = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<File, FutureTask<Long>> entry : tasks.entrySet()) {
+                answer.put(entry.getKey(), entry.getValue().get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        } finally {
+            for (FutureTask<Long> task : tasks.values()) {
+                task.cancel(false);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the files whose contents differ from their cached checksum or which were not cached,
+     * updating the cache with their new checksums
+     */
+    public List<File> findChanged(Collection<File> files) throws IOException {
+        Map<File, Long> previous = new LinkedHashMap<>();
+        for (File file : files) {
+            Entry entry = entries.get(nameOf(file));
+            previous.put(file, entry != null ? entry.checksum : null);
+        }
+        List<File> answer = new ArrayList<>();
+        for (Map.Entry<File, Long> entry : checksums(files).entrySet()) {
+            if (!entry.getValue().equals(previous.get(entry.getKey()))) {
+                answer.add(entry.getKey());
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Removes the entries of files which no longer exist and writes the cache to the {@link #CACHE_FILE}
+     * file of the directory
+     */
+    public void save() throws IOException {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (root.resolve(entry.getKey()).toFile().exists()) {
+                properties.setProperty(entry.getKey(), entry.getValue().toString());
+            }
+        }
+        ChecksumUtils.storeProperties(new File(dir, CACHE_FILE), properties, "Updated on " + new Date());
+    }
+
+    /**
+     * Returns the number of files which have been read to compute their checksums since the cache was loaded
+     */
+    public int getHashedCount() {
+        return hashedCount.get();
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    protected String nameOf(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        if (path.startsWith(root)) {
+            path = root.relativize(path);
+        }
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    private static final class Entry {
+        private final String algorithm;
+        private final long checksum;
+        private final long size;
+        private final long lastModified;
+        private final String fileKey;
+
+        Entry(String algorithm, long checksum, long size, long lastModified, String fileKey) {
+            this.algorithm = algorithm;
+            this.checksum = checksum;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+        }
+
+        static Entry parse(String text) {
+            String[] values = text.split(",", 5);
+            if (values.length != 5) {
+                return null;
+            }
+            try {
+                return new Entry(values[0], Long.parseLong(values[1]), Long.parseLong(values[2]), Long.parseLong(values[3]), values[4]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        boolean matches(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified == attributes.lastModifiedTime().toMillis()
+                    && fileKey.equals(fileKeyOf(attributes));
+        }
+
+        static String fileKeyOf(BasicFileAttributes attributes) {
+            Object key = attributes.fileKey();
+            return key != null ? key.toString() : "";
+        }
+
+        @Override
+        public String toString() {
+            return algorithm + "," + checksum + "," + size + "," + lastModified + "," + fileKey;
+        }
+    }
+}
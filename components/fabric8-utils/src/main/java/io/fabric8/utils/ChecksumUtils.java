@@ -19,23 +19,37 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 
 public class ChecksumUtils {
     public static final String FOLDER_CHECKSUM_CACHE = ".fabric8.checksums.properties";
 
     private static final transient Logger LOG = LoggerFactory.getLogger(ChecksumUtils.class);
 
+    private static final int MAP_THRESHOLD = 1024 * 1024;
+    private static final int MAP_REGION_SIZE = 64 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Class<?> CRC32C_CLASS = findCrc32c();
+    private static final Method UPDATE_BUFFER = findUpdateBuffer();
+
     private ChecksumUtils() {
     }
 
@@ -67,8 +81,55 @@ public class ChecksumUtils {
     }
 
 
+    /**
+     * Returns the CRC32 of the contents of the file
+     */
     public static long checksumFile(File file) throws IOException {
-        return checksum(new FileInputStream(file));
+        return checksumFile(file, new CRC32());
+    }
+
+    /**
+     * Updates the checksum with the contents of the file returning its value; large files are memory mapped
+     */
+    public static long checksumFile(File file, Checksum checksum) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_REGION_SIZE) {
+                    update(checksum, channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_REGION_SIZE, size - position)));
+                }
+            } else {
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(Math.max(size, 1), BUFFER_SIZE));
+                while (channel.read(buffer) > 0) {
+                    buffer.flip();
+                    update(checksum, buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Returns a new CRC32C checksum on JVMs which have it (Java 9 or later) as it is computed with
+     * hardware instructions on most CPUs, otherwise a CRC32 checksum
+     */
+    public static Checksum newChecksum() {
+        if (CRC32C_CLASS != null) {
+            try {
+                return (Checksum) CRC32C_CLASS.newInstance();
+            } catch (ReflectiveOperationException e) {
+                // lets use CRC32
+            }
+        }
+        return new CRC32();
+    }
+
+    /**
+     * Returns the name of the algorithm of the checksums created by {@link #newChecksum()}
+     */
+    public static String getChecksumAlgorithm() {
+        return CRC32C_CLASS != null ? "CRC32C" : "CRC32";
     }
 
     /**
@@ -78,12 +139,7 @@ public class ChecksumUtils {
         Map<File, Long> answer = new HashMap<File, Long>();
         File cacheFile = new File(dir, FOLDER_CHECKSUM_CACHE);
         if (cacheFile.exists() && cacheFile.isFile()) {
-            Properties properties = new Properties();
-            try {
-                properties.load(new FileReader(cacheFile));
-            } catch (IOException e) {
-                LOG.warn("Failed to load checksum cache file " + cacheFile + ". " + e, e);
-            }
+            Properties properties = loadProperties(cacheFile);
             Set<Map.Entry<Object, Object>> entries = properties.entrySet();
             for (Map.Entry<Object, Object> entry : entries) {
                 Object key = entry.getKey();
@@ -116,6 +172,75 @@ public class ChecksumUtils {
         for (Map.Entry<File, Long> entry : entries) {
             properties.put(entry.getKey().getName(), "" + entry.getValue());
         }
-        properties.store(new FileWriter(cacheFile), "Updated on " + new Date());
+        storeProperties(cacheFile, properties, "Updated on " + new Date());
+    }
+
+    static Properties loadProperties(File file) {
+        Properties properties = new Properties();
+        try (InputStream in = java.nio.file.Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        } catch (IOException e) {
+            LOG.warn("Failed to load checksum cache file " + file + ". " + e, e);
+        }
+        return properties;
+    }
+
+    /**
+     * Writes the properties to a temporary file which then replaces the file so that readers never see a
+     * partially written file
+     */
+    static void storeProperties(File file, Properties properties, String comment) throws IOException {
+        Path target = file.toPath();
+        Path tmp = java.nio.file.Files.createTempFile(target.toAbsolutePath().getParent(), file.getName(), ".tmp");
+        try {
+            try (OutputStream out = java.nio.file.Files.newOutputStream(tmp)) {
+                properties.store(out, comment);
+            }
+            try {
+                java.nio.file.Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                java.nio.file.Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            java.nio.file.Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void update(Checksum checksum, ByteBuffer buffer) throws IOException {
+        if (checksum instanceof CRC32) {
+            ((CRC32) checksum).update(buffer);
+        } else if (UPDATE_BUFFER != null) {
+            try {
+                UPDATE_BUFFER.invoke(checksum, buffer);
+            } catch (IllegalAccessException e) {
+                throw new IOException(e);
+            } catch (InvocationTargetException e) {
+                throw new IOException(e.getCause());
+            }
+        } else {
+            byte[] bytes = new byte[Math.min(buffer.remaining(), BUFFER_SIZE)];
+            while (buffer.hasRemaining()) {
+                int length = Math.min(bytes.length, buffer.remaining());
+                buffer.get(bytes, 0, length);
+                checksum.update(bytes, 0, length);
+            }
+        }
+    }
+
+    private static Class<?> findCrc32c() {
+        try {
+            return Class.forName("java.util.zip.CRC32C");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static Method findUpdateBuffer() {
+        try {
+            // a default method of Checksum since Java 9
+            return Checksum.class.getMethod("update", ByteBuffer.class);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
     }
 }
@@ -15,20 +15,39 @@
  */
 package io.fabric8.utils;
 
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
- * Maps String keys to their counter value
+ * Maps String keys to their counter value.
+ * <p/>
+ * The map can be updated by many threads at once without locking; each counter is updated atomically and the
+ * {@link #total()} is kept as a running sum so it does not iterate the counters. Keys whose counter drops to zero
+ * or less are removed, and {@link #keySet()} and {@link #snapshot()} return copies which later updates do not
+ * change.
  */
 public class CountingMap {
-    private Map<String, Integer> keyToCount = new HashMap<String, Integer>();
+    /**
+     * The count of a counter which has been removed from the map and must not be updated again
+     */
+    private static final int REMOVED = -1;
+
+    /**
+     * Maps each key to its counter which holds a version in its high 32 bits and the count in its low 32 bits;
+     * the version changes on every update so that {@link #snapshot()} can tell whether a counter changed
+     */
+    private final ConcurrentMap<String, AtomicLong> keyToCount = new ConcurrentHashMap<String, AtomicLong>();
+    private final LongAdder total = new LongAdder();
 
     @Override
     public String toString() {
-        return "CountingMap{" + keyToCount + '}';
+        return "CountingMap{" + snapshot() + '}';
     }
 
     /**
@@ -44,9 +63,24 @@ public class CountingMap {
      * Increments the given key
      */
     public int increment(String key) {
-        int count = count(key) + 1;
-        setCount(key, count);
-        return count;
+        while (true) {
+            AtomicLong counter = keyToCount.get(key);
+            if (counter == null) {
+                if (keyToCount.putIfAbsent(key, new AtomicLong(1)) == null) {
+                    total.increment();
+                    return 1;
+                }
+                continue;
+            }
+            long value = counter.get();
+            int count = count(value);
+            if (count == REMOVED) {
+                keyToCount.remove(key, counter);
+            } else if (counter.compareAndSet(value, update(value, count + 1))) {
+                total.increment();
+                return count + 1;
+            }
+        }
     }
 
     public void decrementAll(List<String> keys) {
@@ -56,16 +90,28 @@ public class CountingMap {
     }
 
     /**
-     * Decrements the given key
+     * Decrements the given key removing it when its counter reaches zero
      */
     public int decrement(String key) {
-        int count = count(key) - 1;
-        if (count <= 0) {
-            keyToCount.remove(key);
-            return 0;
-        } else {
-            setCount(key, count);
-            return count;
+        while (true) {
+            AtomicLong counter = keyToCount.get(key);
+            if (counter == null) {
+                return 0;
+            }
+            long value = counter.get();
+            int count = count(value);
+            if (count == REMOVED) {
+                keyToCount.remove(key, counter);
+            } else if (count <= 1) {
+                if (counter.compareAndSet(value, update(value, REMOVED))) {
+                    keyToCount.remove(key, counter);
+                    total.add(-count);
+                    return 0;
+                }
+            } else if (counter.compareAndSet(value, update(value, count - 1))) {
+                total.decrement();
+                return count - 1;
+            }
         }
     }
 
@@ -73,36 +119,137 @@ public class CountingMap {
      * Returns the count of the given key
      */
     public int count(String key) {
-        Integer answer = keyToCount.get(key);
-        return answer == null ? 0 : answer;
+        AtomicLong counter = keyToCount.get(key);
+        if (counter == null) {
+            return 0;
+        }
+        int answer = count(counter.get());
+        return answer == REMOVED ? 0 : answer;
     }
 
 
     /**
-     * Returns all the keys with a value of > 0
+     * Returns all the keys with a value of > 0.
+     * <p/>
+     * The set is a copy so it does not change with later updates and removing keys from it does not change the map.
      */
     public Set<String> keySet() {
-        return keyToCount.keySet();
+        return snapshot().keySet();
+    }
+
+    /**
+     * Returns a copy of the counters with a value of > 0 which is not affected by later updates.
+     * <p/>
+     * The counters are copied until two copies in a row are the same, so that the values are consistent with each
+     * other without making updates wait.
+     */
+    public Map<String, Integer> snapshot() {
+        Map<String, Sample> samples = collect();
+        while (true) {
+            Map<String, Sample> again = collect();
+            if (again.equals(samples)) {
+                break;
+            }
+            samples = again;
+        }
+        Map<String, Integer> answer = new LinkedHashMap<String, Integer>();
+        for (Map.Entry<String, Sample> entry : samples.entrySet()) {
+            int count = count(entry.getValue().value);
+            if (count > 0) {
+                answer.put(entry.getKey(), count);
+            }
+        }
+        return answer;
     }
 
     /**
      * Returns the total of all counters
      */
     public int total() {
-        int answer = 0;
-        for (Integer value : keyToCount.values()) {
-            if (value != null) {
-                answer += value;
+        return (int) total.sum();
+    }
+
+    /**
+     * Updates the counter value for the given key.
+     * <p/>
+     * A value of zero or less removes the key, like decrementing it to zero does, so it is no longer returned by
+     * {@link #keySet()}.
+     */
+    public void setCount(String key, int value) {
+        while (true) {
+            AtomicLong counter = keyToCount.get(key);
+            if (counter == null) {
+                if (value <= 0) {
+                    return;
+                }
+                if (keyToCount.putIfAbsent(key, new AtomicLong(value)) == null) {
+                    total.add(value);
+                    return;
+                }
+                continue;
+            }
+            long current = counter.get();
+            int count = count(current);
+            if (count == REMOVED) {
+                keyToCount.remove(key, counter);
+            } else if (counter.compareAndSet(current, update(current, value > 0 ? value : REMOVED))) {
+                if (value > 0) {
+                    total.add(value - count);
+                } else {
+                    keyToCount.remove(key, counter);
+                    total.add(-count);
+                }
+                return;
             }
         }
+    }
+
+    private Map<String, Sample> collect() {
+        Map<String, Sample> answer = new LinkedHashMap<String, Sample>();
+        for (Map.Entry<String, AtomicLong> entry : keyToCount.entrySet()) {
+            AtomicLong counter = entry.getValue();
+            answer.put(entry.getKey(), new Sample(counter, counter.get()));
+        }
         return answer;
     }
 
+    private static int count(long value) {
+        return (int) value;
+    }
+
     /**
-     * Updates the counter value for the given key
+     * Returns the value holding the given count and the next version
      */
-    public void setCount(String key, int value) {
-        keyToCount.put(key, value);
+    private static long update(long value, int count) {
+        return ((value >>> 32) + 1) << 32 | (count & 0xffffffffL);
+    }
+
+    /**
+     * The value of a counter when it was copied; a counter which replaces a removed one starts again at version
+     * zero so samples of different counters are never equal
+     */
+    private static final class Sample {
+        private final AtomicLong counter;
+        private final long value;
+
+        Sample(AtomicLong counter, long value) {
+            this.counter = counter;
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Sample)) {
+                return false;
+            }
+            Sample that = (Sample) o;
+            return counter == that.counter && value == that.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(counter) * 31 + (int) (value ^ (value >>> 32));
+        }
     }
 
 }
@@ -16,7 +16,6 @@
 package io.fabric8.utils;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
@@ -30,16 +29,33 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 /**
  * File utilities
@@ -49,7 +65,7 @@ public final class Files {
     private static final ThreadLocal<LinkedHashSet<URL>> ACTIVE_DOWNLOADS = new ThreadLocal<LinkedHashSet<URL>>();
     private static final AtomicLong lastTmpFileId = new AtomicLong(System.currentTimeMillis());
 
-    private static final int BUFFER_SIZE = 8192;
+    private static final EnumSet<FileVisitOption> FOLLOW_LINKS = EnumSet.of(FileVisitOption.FOLLOW_LINKS);
     private static boolean windowsOs = initWindowsOs();
 
     private Files() {
@@ -244,23 +260,14 @@ public final class Files {
      * Reads a {@link File} and returns the data as a byte array
      */
     public static byte[] readBytes(File file) throws IOException {
-        FileInputStream fis = null;
-        ByteArrayOutputStream bos = null;
         if (file == null) {
             throw new FileNotFoundException("No file specified");
         }
         try {
-            fis = new FileInputStream(file);
-            bos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int remaining;
-            while ((remaining = fis.read(buffer)) > 0) {
-                bos.write(buffer, 0, remaining);
-            }
-            return bos.toByteArray();
-        } finally {
-            Closeables.closeQuietly(fis);
-            Closeables.closeQuietly(bos);
+            // reads straight into an array of the size of the file
+            return java.nio.file.Files.readAllBytes(file.toPath());
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(file.getPath() + " (No such file or directory)");
         }
     }
 
@@ -268,21 +275,13 @@ public final class Files {
      * Reads an {@link InputStream} and returns the data as a byte array
      */
     public static byte[] readBytes(InputStream in) throws IOException {
-        ByteArrayOutputStream bos = null;
         if (in == null) {
             throw new FileNotFoundException("No InputStream specified");
         }
         try {
-            bos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int remaining;
-            while ((remaining = in.read(buffer)) > 0) {
-                bos.write(buffer, 0, remaining);
-            }
-            return bos.toByteArray();
+            return IOHelpers.readBytes(in, in.available());
         } finally {
             Closeables.closeQuietly(in);
-            Closeables.closeQuietly(bos);
         }
     }
 
@@ -338,6 +337,15 @@ public final class Files {
      * Copy the source {@link File} to the target {@link File}.
      */
     public static void copy(File source, File target) throws IOException {
+        copy(source, target, false);
+    }
+
+    /**
+     * Copy the source {@link File} or directory to the target {@link File} letting the file system
+     * copy the data. If <code>hardLinks</code> is true files are hard linked rather than copied where
+     * the file system supports it, so the target files must not be modified in place afterwards.
+     */
+    public static void copy(File source, File target, final boolean hardLinks) throws IOException {
         if (!source.exists()) {
             throw new FileNotFoundException("Source file not found:" + source.getAbsolutePath());
         }
@@ -345,19 +353,38 @@ public final class Files {
         if (!target.exists() && !target.getParentFile().exists() && !target.getParentFile().mkdirs()) {
             throw new IOException("Can't create target directory:" + target.getParentFile().getAbsolutePath());
         }
-        if (source.isDirectory()) {
-            target.mkdirs();
-            File[] files = source.listFiles();
-            if (files != null) {
-                for (File child : files) {
-                    copy(child, new File(target, child.getName()));
-                }
+        final Path sourceRoot = source.toPath();
+        final Path targetRoot = target.toPath();
+        if (!source.isDirectory()) {
+            copyFile(sourceRoot, targetRoot, hardLinks);
+            return;
+        }
+        java.nio.file.Files.walkFileTree(sourceRoot, FOLLOW_LINKS, Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                java.nio.file.Files.createDirectories(targetRoot.resolve(sourceRoot.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                copyFile(file, targetRoot.resolve(sourceRoot.relativize(file).toString()), hardLinks);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void copyFile(Path source, Path target, boolean hardLink) throws IOException {
+        if (hardLink) {
+            try {
+                java.nio.file.Files.deleteIfExists(target);
+                java.nio.file.Files.createLink(target, source);
+                return;
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                // lets copy across file stores or on file systems without hard links
             }
-        } else {
-            FileInputStream is = new FileInputStream(source);
-            FileOutputStream os = new FileOutputStream(target);
-            copy(is, os);
         }
+        java.nio.file.Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
     }
 
     /**
@@ -365,16 +392,7 @@ public final class Files {
      */
     public static void copy(InputStream is, OutputStream os) throws IOException {
         try {
-            byte[] buffer = new byte[BUFFER_SIZE];
-            int len;
-            for (; ; ) {
-                len = is.read(buffer);
-                if (len > 0) {
-                    os.write(buffer, 0, len);
-                } else {
-                    break;
-                }
-            }
+            IOHelpers.transfer(is, os);
         } finally {
             Closeables.closeQuietly(is);
             Closeables.closeQuietly(os);
@@ -422,14 +440,39 @@ public final class Files {
         }
     }
 
-    public static Set<File> recursiveList(File root, FilenameFilter filter) {
-        Set<File> result = new HashSet<>();
+    /**
+     * Returns the given file and all the files and directories below it whose name matches the filter;
+     * directories which do not match are not searched
+     */
+    public static Set<File> recursiveList(final File root, final FilenameFilter filter) {
+        final Set<File> result = new LinkedHashSet<>();
         if (root != null) {
             result.add(root);
             if (root.isDirectory()) {
-                for (File child : root.listFiles(filter)) {
-                    result.addAll(recursiveList(child, filter));
-                }
+                final Path rootPath = root.toPath();
+                walk(rootPath, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        if (dir.equals(rootPath)) {
+                            return FileVisitResult.CONTINUE;
+                        }
+                        File file = dir.toFile();
+                        if (filter != null && !filter.accept(file.getParentFile(), file.getName())) {
+                            return FileVisitResult.SKIP_SUBTREE;
+                        }
+                        result.add(file);
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                        File file = path.toFile();
+                        if (filter == null || filter.accept(file.getParentFile(), file.getName())) {
+                            result.add(file);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
             }
         }
         return result;
@@ -459,18 +502,28 @@ public final class Files {
     /**
      * Recursively finds all files matching the given filter and adds them to the collection
      */
-    public static void findRecursive(File file, Filter<File> filter, Collection<File> collection) {
-        if (filter.matches(file)) {
-            collection.add(file);
+    public static void findRecursive(File file, final Filter<File> filter, final Collection<File> collection) {
+        if (!file.isDirectory()) {
+            if (filter.matches(file)) {
+                collection.add(file);
+            }
+            return;
         }
-        if (file.isDirectory()) {
-            File[] files = file.listFiles();
-            if (files != null) {
-                for (File child : files) {
-                    findRecursive(child, filter, collection);
+        walk(file.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                return visitFile(dir, attrs);
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                File child = path.toFile();
+                if (filter.matches(child)) {
+                    collection.add(child);
                 }
+                return FileVisitResult.CONTINUE;
             }
-        }
+        });
     }
 
     /**
@@ -482,6 +535,167 @@ public final class Files {
         return files;
     }
 
+    /**
+     * Returns the files and directories below the given directory whose path relative to it matches
+     * the glob pattern such as <code>**&#47;*.json</code>
+     */
+    public static Set<File> findRecursive(File root, String glob) {
+        Set<File> files = new LinkedHashSet<>();
+        try (Stream<Path> stream = find(root, glob)) {
+            Iterator<Path> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                files.add(iterator.next().toFile());
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Lazily walks the files and directories below the given directory whose path relative to it
+     * matches the glob pattern; the stream must be closed when done
+     */
+    public static Stream<Path> find(File root, String glob) {
+        final Path rootPath = root.toPath();
+        final PathMatcher matcher = rootPath.getFileSystem().getPathMatcher("glob:" + glob);
+        try {
+            return java.nio.file.Files.walk(rootPath, Integer.MAX_VALUE, FileVisitOption.FOLLOW_LINKS).filter(new Predicate<Path>() {
+                @Override
+                public boolean test(Path path) {
+                    return !path.equals(rootPath) && matcher.matches(rootPath.relativize(path));
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to walk " + root + ". " + e, e);
+        }
+    }
+
+    /**
+     * Finds all the files below the given file matching the filter searching the directories in
+     * parallel using a pool of threads dedicated to blocking I/O; the filter must be thread safe.
+     * <p/>
+     * Symbolic links to directories are followed unless they point to a directory being searched above them.
+     */
+    public static Set<File> findRecursiveParallel(File file, Filter<File> filter) {
+        Set<File> files = ConcurrentHashMap.newKeySet();
+        if (filter.matches(file)) {
+            files.add(file);
+        }
+        if (file.isDirectory()) {
+            Path directory = file.toPath();
+            Path realPath;
+            try {
+                realPath = directory.toRealPath();
+            } catch (IOException e) {
+                realPath = directory.toAbsolutePath().normalize();
+            }
+            IoExecutors.getPool().invoke(new FindTask(directory, realPath, null, filter, files));
+        }
+        return files;
+    }
+
+    private static class FindTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path directory;
+        private final Path realPath;
+        private final FindTask parent;
+        private final Filter<File> filter;
+        private final Set<File> files;
+
+        FindTask(Path directory, Path realPath, FindTask parent, Filter<File> filter, Set<File> files) {
+            this.directory = directory;
+            this.realPath = realPath;
+            this.parent = parent;
+            this.filter = filter;
+            this.files = files;
+        }
+
+        @Override
+        protected void compute() {
+            List<FindTask> tasks = new ArrayList<>();
+            try (DirectoryStream<Path> children = java.nio.file.Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    File childFile = child.toFile();
+                    if (filter.matches(childFile)) {
+                        files.add(childFile);
+                    }
+                    if (java.nio.file.Files.isDirectory(child)) {
+                        Path childRealPath = toRealPath(child);
+                        if (childRealPath != null) {
+                            tasks.add(new FindTask(child, childRealPath, this, filter, files));
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                // lets skip directories we cannot read like File.listFiles() does
+                return;
+            }
+            invokeAll(tasks);
+        }
+
+        /**
+         * Returns the real path of the child directory or null if it is a link to this directory or one above it
+         */
+        private Path toRealPath(Path child) {
+            if (!java.nio.file.Files.isSymbolicLink(child)) {
+                // lets avoid a system call as only links can lead back up the tree
+                return realPath.resolve(child.getFileName());
+            }
+            Path answer;
+            try {
+                answer = child.toRealPath();
+            } catch (IOException e) {
+                return null;
+            }
+            for (FindTask task = this; task != null; task = task.parent) {
+                if (task.realPath.equals(answer)) {
+                    return null;
+                }
+            }
+            return answer;
+        }
+    }
+
+    private static void walk(Path root, SimpleFileVisitor<Path> visitor) {
+        try {
+            java.nio.file.Files.walkFileTree(root, FOLLOW_LINKS, Integer.MAX_VALUE, new SkipFailuresVisitor(visitor));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to walk " + root + ". " + e, e);
+        }
+    }
+
+    /**
+     * Skips files and directories which cannot be read like File.listFiles() does
+     */
+    private static class SkipFailuresVisitor extends SimpleFileVisitor<Path> {
+        private final SimpleFileVisitor<Path> delegate;
+
+        SkipFailuresVisitor(SimpleFileVisitor<Path> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            return delegate.preVisitDirectory(dir, attrs);
+        }
+
+        @Override
+        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+            return delegate.visitFile(file, attrs);
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+            // lets skip the error of a directory which could not be fully listed
+            return delegate.postVisitDirectory(dir, null);
+        }
+    }
+
 
     /**
      * Recursively deletes the file and any children files if its a directory
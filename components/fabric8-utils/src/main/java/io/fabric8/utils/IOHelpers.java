@@ -15,12 +15,9 @@
  */
 package io.fabric8.utils;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
@@ -35,16 +32,41 @@ import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.zip.ZipFile;
 
 /**
+ * Stream and file helpers.
+ * <p/>
+ * Copies between files are done by the file system using {@link FileChannel#transferTo(long, long, WritableByteChannel)};
+ * other copies reuse a buffer per thread rather than allocating a new one on each call.
  */
 public class IOHelpers {
 
     protected static final int BUFFER_SIZE = 16 * 1024;
 
+    /**
+     * The largest array which can be allocated on most JVMs
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * The largest array allocated up front for a size hint so a bogus content length cannot exhaust the heap
+     */
+    private static final int MAX_PRESIZE = 64 * 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> byteBuffers = new ThreadLocal<byte[]>();
+    private static final ThreadLocal<char[]> charBuffers = new ThreadLocal<char[]>();
+    private static final ThreadLocal<ByteBuffer> directBuffers = new ThreadLocal<ByteBuffer>();
+
     public static void writeTo(File file, InputStream in) throws IOException {
         writeTo(file, in, BUFFER_SIZE);
     }
@@ -66,37 +88,22 @@ public class IOHelpers {
     }
 
     public static void writeTo(OutputStream outputStream, InputStream in, int bufferSize, boolean close) throws IOException {
-        BufferedOutputStream out = new BufferedOutputStream(outputStream, bufferSize);
-        BufferedInputStream bufferedIn = new BufferedInputStream(in, bufferSize);
-        while (true) {
-            int b = bufferedIn.read();
-            if (b >= 0) {
-                out.write(b);
+        try {
+            transfer(in, outputStream, bufferSize);
+        } finally {
+            in.close();
+            if (close) {
+                outputStream.close();
             } else {
-                in.close();
-                if (close) {
-                    out.close();
-                } else {
-                    out.flush();
-                }
-                return;
+                outputStream.flush();
             }
         }
     }
 
     public static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
         try {
-            byte[] buffer = new byte[8192];
-            int len;
-            for (; ;) {
-                len = inputStream.read(buffer);
-                if (len > 0) {
-                    outputStream.write(buffer, 0, len);
-                } else {
-                    outputStream.flush();
-                    break;
-                }
-            }
+            transfer(inputStream, outputStream);
+            outputStream.flush();
         } finally {
             close(inputStream, outputStream);
         }
@@ -104,20 +111,183 @@ public class IOHelpers {
 
     public static void copy(Reader reader, Writer writer) throws IOException {
         try {
-            char[] buffer = new char[8192];
+            transfer(reader, writer);
+            writer.flush();
+        } finally {
+            close(reader, writer);
+        }
+    }
+
+    /**
+     * Copies the rest of the input stream to the output stream without closing or flushing either of them,
+     * returning the number of bytes copied
+     */
+    public static long transfer(InputStream in, OutputStream out) throws IOException {
+        return transfer(in, out, BUFFER_SIZE);
+    }
+
+    /**
+     * Copies the rest of the input stream to the output stream without closing or flushing either of them,
+     * returning the number of bytes copied.
+     * <p/>
+     * When both streams are files the file system copies the data directly; otherwise the data is copied
+     * through a buffer of the given size which is reused by the current thread.
+     */
+    public static long transfer(InputStream in, OutputStream out, int bufferSize) throws IOException {
+        if (in instanceof FileInputStream && out instanceof FileOutputStream) {
+            return transfer(((FileInputStream) in).getChannel(), ((FileOutputStream) out).getChannel());
+        }
+        byte[] buffer = acquireBytes(bufferSize);
+        try {
+            long answer = 0;
+            int len;
+            while ((len = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, len);
+                answer += len;
+            }
+            return answer;
+        } finally {
+            releaseBytes(buffer);
+        }
+    }
+
+    /**
+     * Copies the rest of the reader to the writer without closing or flushing either of them,
+     * returning the number of characters copied
+     */
+    public static long transfer(Reader reader, Writer writer) throws IOException {
+        char[] buffer = charBuffers.get();
+        if (buffer == null) {
+            buffer = new char[BUFFER_SIZE];
+        } else {
+            charBuffers.set(null);
+        }
+        try {
+            long answer = 0;
             int len;
-            for (; ;) {
-                len = reader.read(buffer);
-                if (len > 0) {
-                    writer.write(buffer, 0, len);
-                } else {
-                    writer.flush();
+            while ((len = reader.read(buffer)) >= 0) {
+                writer.write(buffer, 0, len);
+                answer += len;
+            }
+            return answer;
+        } finally {
+            charBuffers.set(buffer);
+        }
+    }
+
+    /**
+     * Copies the rest of the input channel to the output channel without closing either of them,
+     * returning the number of bytes copied.
+     * <p/>
+     * File channels are copied by the file system; other channels through a direct buffer which is
+     * reused by the current thread.
+     */
+    public static long transfer(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        if (in instanceof FileChannel) {
+            FileChannel source = (FileChannel) in;
+            long position = source.position();
+            long size = source.size();
+            long answer = 0;
+            while (position < size) {
+                long count = source.transferTo(position, size - position, out);
+                if (count <= 0) {
                     break;
                 }
+                position += count;
+                answer += count;
+            }
+            source.position(position);
+            if (position >= size) {
+                return answer;
+            }
+            // the file grew or the target would not accept more so lets copy the rest through a buffer
+            return answer + copyThroughBuffer(in, out);
+        } else if (out instanceof FileChannel) {
+            FileChannel target = (FileChannel) out;
+            long position = target.position();
+            long answer = 0;
+            long count;
+            // transferFrom returns 0 at the end of the input
+            while ((count = target.transferFrom(in, position, BUFFER_SIZE * 64)) > 0) {
+                position += count;
+                answer += count;
             }
+            target.position(position);
+            return answer + copyThroughBuffer(in, out);
+        }
+        return copyThroughBuffer(in, out);
+    }
+
+    private static long copyThroughBuffer(ReadableByteChannel in, WritableByteChannel out) throws IOException {
+        ByteBuffer buffer = directBuffers.get();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        } else {
+            directBuffers.set(null);
+        }
+        try {
+            long answer = 0;
+            buffer.clear();
+            while (in.read(buffer) >= 0 || buffer.position() > 0) {
+                buffer.flip();
+                answer += out.write(buffer);
+                buffer.compact();
+            }
+            return answer;
         } finally {
-            close(reader, writer);
+            directBuffers.set(buffer);
+        }
+    }
+
+    /**
+     * Returns a buffer of the given size, reusing the buffer of the current thread if it is not in use
+     */
+    private static byte[] acquireBytes(int size) {
+        if (size != BUFFER_SIZE) {
+            return new byte[size];
+        }
+        byte[] answer = byteBuffers.get();
+        if (answer == null) {
+            return new byte[BUFFER_SIZE];
+        }
+        // lets take the buffer so that a nested copy on this thread does not share it
+        byteBuffers.set(null);
+        return answer;
+    }
+
+    private static void releaseBytes(byte[] buffer) {
+        if (buffer.length == BUFFER_SIZE) {
+            byteBuffers.set(buffer);
+        }
+    }
+
+    /**
+     * Reads the rest of the input stream without closing it using the expected size to size the array
+     * so that it rarely needs to grow or be copied
+     */
+    public static byte[] readBytes(InputStream in, long sizeHint) throws IOException {
+        byte[] answer = new byte[sizeHint > 0 ? (int) Math.min(sizeHint, MAX_PRESIZE) : BUFFER_SIZE];
+        int count = 0;
+        while (true) {
+            int len = in.read(answer, count, answer.length - count);
+            if (len < 0) {
+                break;
+            }
+            count += len;
+            if (count == answer.length) {
+                // lets check for the end before growing the array when the hint was right
+                int b = in.read();
+                if (b < 0) {
+                    break;
+                }
+                if (answer.length == MAX_ARRAY_SIZE) {
+                    throw new IOException("Too much data to read into an array");
+                }
+                answer = Arrays.copyOf(answer, (int) Math.min(Math.max(answer.length * 2L, BUFFER_SIZE), MAX_ARRAY_SIZE));
+                answer[count++] = (byte) b;
+            }
         }
+        return count == answer.length ? answer : Arrays.copyOf(answer, count);
     }
 
     public static void close(ZipFile... closeables) {
@@ -146,11 +316,16 @@ public class IOHelpers {
         if (url == null) {
             return null;
         }
-        InputStream in = url.openStream();
+        URLConnection connection = url.openConnection();
+        InputStream in = connection.getInputStream();
         if (in == null) {
             return null;
         }
-        return readFully(in);
+        try {
+            return new String(readBytes(in, connection.getContentLengthLong()), Charset.defaultCharset());
+        } finally {
+            in.close();
+        }
     }
 
     public static String readFully(File file) throws IOException {
@@ -158,12 +333,19 @@ public class IOHelpers {
             return null;
         }
         InputStream in = new FileInputStream(file);
-        return readFully(in);
+        try {
+            return new String(readBytes(in, file.length()), Charset.defaultCharset());
+        } finally {
+            in.close();
+        }
     }
 
     public static String readFully(InputStream in) throws IOException {
-        Reader r = new BufferedReader(new InputStreamReader(in));
-        return readFully(r);
+        try {
+            return new String(readBytes(in, in.available()), Charset.defaultCharset());
+        } finally {
+            in.close();
+        }
     }
 
     public static String readFully(Reader r) throws IOException {
@@ -222,18 +404,7 @@ public class IOHelpers {
     }
 
     public static String loadFully(URL url) throws IOException {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        byte[] buf = new byte[4096];
-        int l;
-        InputStream is = url.openStream();
-        try {
-            while ((l = is.read(buf)) >= 0) {
-                baos.write(buf, 0, l);
-            }
-        } finally {
-            is.close();
-        }
-        return baos.toString();
+        return readFully(url);
     }
 
 }
@@ -0,0 +1,62 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The pool of daemon threads used by default by the helper classes for tasks which block on file I/O, so that
+ * they do not starve the common fork join pool used for computations.
+ */
+final class IoExecutors {
+    /**
+     * The system property to configure the number of threads of the pool
+     */
+    public static final String THREADS_PROPERTY = "io.fabric8.utils.IO_THREADS";
+
+    private IoExecutors() {
+    }
+
+    /**
+     * Returns the shared pool creating it on first use
+     */
+    static ForkJoinPool getPool() {
+        return Holder.POOL;
+    }
+
+    private static class Holder {
+        static final ForkJoinPool POOL = createPool(Integer.getInteger(THREADS_PROPERTY, Math.max(8, Runtime.getRuntime().availableProcessors() * 2)), "Fabric8 IO", false);
+    }
+
+    /**
+     * Creates a pool of daemon threads named "<i>name</i> #n"; using FIFO scheduling of tasks which are never
+     * joined if <code>asyncMode</code> is true
+     */
+    static ForkJoinPool createPool(int parallelism, final String name, boolean asyncMode) {
+        final AtomicInteger counter = new AtomicInteger();
+        return new ForkJoinPool(parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName(name + " #" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, null, asyncMode);
+    }
+}
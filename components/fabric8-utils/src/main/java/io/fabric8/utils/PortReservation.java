@@ -0,0 +1,100 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+
+/**
+ * A local port which is held by bound TCP and UDP sockets so that no other process can take it until it
+ * is handed off to its user by {@link #close()}.
+ * <p/>
+ * The port stays in the reservation table of this process after it is handed off so that it is not
+ * allocated again until {@link Ports#releasePort(int)} is called.
+ */
+public class PortReservation implements Closeable {
+    private final int port;
+    private ServerSocketChannel serverChannel;
+    private DatagramChannel datagramChannel;
+
+    private PortReservation(int port, ServerSocketChannel serverChannel, DatagramChannel datagramChannel) {
+        this.port = port;
+        this.serverChannel = serverChannel;
+        this.datagramChannel = datagramChannel;
+    }
+
+    /**
+     * Returns a reservation of the port or null if it is already reserved by this process or cannot be bound
+     */
+    static PortReservation tryReserve(int port) {
+        if (!Ports.claimPort(port)) {
+            return null;
+        }
+        ServerSocketChannel serverChannel = null;
+        DatagramChannel datagramChannel = null;
+        try {
+            serverChannel = ServerSocketChannel.open();
+            // like ServerSocket lets ignore connections of previous users of the port in TIME_WAIT
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(new InetSocketAddress(port));
+            datagramChannel = DatagramChannel.open();
+            datagramChannel.bind(new InetSocketAddress(port));
+            return new PortReservation(port, serverChannel, datagramChannel);
+        } catch (IOException e) {
+            IOHelpers.close(serverChannel, datagramChannel);
+            Ports.releasePort(port);
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PortReservation{" + port + (isHeld() ? "" : ", handed off") + '}';
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Returns true if the sockets holding the port are still open
+     */
+    public synchronized boolean isHeld() {
+        return serverChannel != null;
+    }
+
+    /**
+     * Closes the sockets holding the port so that it can be bound by its user, returning the port
+     */
+    public synchronized int handOff() {
+        IOHelpers.close(serverChannel, datagramChannel);
+        serverChannel = null;
+        datagramChannel = null;
+        return port;
+    }
+
+    /**
+     * Hands off the port
+     */
+    @Override
+    public void close() {
+        handOff();
+    }
+}
@@ -19,10 +19,16 @@ import java.io.IOException;
 import java.net.DatagramSocket;
 import java.net.ServerSocket;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -43,6 +49,20 @@ public class Ports {
     public static final int MAX_PORT_NUMBER = 65535;
     public static final String PORT_PATTERN = ":[\\d]*$";
 
+    /**
+     * The number of ports each task checks when scanning a range of ports concurrently
+     */
+    private static final int SCAN_CHUNK_SIZE = 64;
+
+    /**
+     * The ports which have been reserved by this process and must not be allocated again
+     */
+    private static final Set<Integer> reservedPorts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    /**
+     * Where the next reservation starts scanning so that ports are not scanned again after each reservation
+     */
+    private static final AtomicInteger nextScanPort = new AtomicInteger();
 
     private Ports() {
         //Utility Class
@@ -56,13 +76,173 @@ public class Ports {
      * @return
      */
     public static Set<Integer> findUsedPorts(int fromPort, int toPort) {
-        Set<Integer> usedPorts = new HashSet<Integer>();
-        for (int port = fromPort; port <= toPort; port++) {
-            if (!isPortFree(port)) {
-                usedPorts.add(port);
+        validatePort(fromPort);
+        validatePort(toPort);
+        final Set<Integer> usedPorts = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        for (int start = fromPort; start <= toPort; start += SCAN_CHUNK_SIZE) {
+            final int from = start;
+            final int to = Math.min(toPort, start + SCAN_CHUNK_SIZE - 1);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int port = from; port <= to; port++) {
+                        if (!isPortFree(port)) {
+                            usedPorts.add(port);
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+        invokeAll(tasks);
+        return new HashSet<Integer>(usedPorts);
+    }
+
+    /**
+     * Reserves the given number of free local ports within the range checking the ports concurrently.
+     * <p/>
+     * Each port is held by bound sockets until its {@link PortReservation} is handed off and is not reserved
+     * again by this process until it is released with {@link #releasePort(int)}. Scanning continues after the
+     * last reserved port so that ports are not checked again by each call.
+     *
+     * @throws RuntimeException if there are not enough ports available within the range
+     */
+    public static List<PortReservation> reservePorts(int count, int fromPort, int toPort) {
+        validatePort(fromPort);
+        validatePort(toPort);
+        if (fromPort == 0 || toPort < fromPort) {
+            // binding port 0 would pick any free port
+            throw new IllegalArgumentException("Invalid port range: " + fromPort + "-" + toPort);
+        }
+        int rangeSize = toPort - fromPort + 1;
+        int start = nextScanPort.get();
+        if (start < fromPort || start > toPort) {
+            start = fromPort;
+        }
+        List<PortReservation> answer = new ArrayList<PortReservation>(count);
+        int scanned = 0;
+        int lastPort = start;
+        try {
+            while (answer.size() < count && scanned < rangeSize) {
+                int size = Math.min(rangeSize - scanned, Math.max(count - answer.size(), SCAN_CHUNK_SIZE));
+                List<Callable<List<PortReservation>>> tasks = new ArrayList<Callable<List<PortReservation>>>();
+                for (int i = 0; i < size; i += SCAN_CHUNK_SIZE) {
+                    final int[] ports = new int[Math.min(SCAN_CHUNK_SIZE, size - i)];
+                    for (int j = 0; j < ports.length; j++) {
+                        // lets wrap around to the start of the range
+                        ports[j] = fromPort + (start - fromPort + scanned + i + j) % rangeSize;
+                    }
+                    tasks.add(new Callable<List<PortReservation>>() {
+                        @Override
+                        public List<PortReservation> call() {
+                            List<PortReservation> reservations = new ArrayList<PortReservation>();
+                            for (int port : ports) {
+                                PortReservation reservation = PortReservation.tryReserve(port);
+                                if (reservation != null) {
+                                    reservations.add(reservation);
+                                }
+                            }
+                            return reservations;
+                        }
+                    });
+                }
+                for (List<PortReservation> reservations : invokeAll(tasks)) {
+                    for (PortReservation reservation : reservations) {
+                        if (answer.size() < count) {
+                            answer.add(reservation);
+                            lastPort = reservation.getPort();
+                        } else {
+                            cancel(reservation);
+                        }
+                    }
+                }
+                scanned += size;
+            }
+        } catch (RuntimeException e) {
+            for (PortReservation reservation : answer) {
+                cancel(reservation);
+            }
+            throw e;
+        }
+        if (answer.size() < count) {
+            for (PortReservation reservation : answer) {
+                cancel(reservation);
+            }
+            throw new RuntimeException("Only " + answer.size() + " of " + count + " ports available within range " + fromPort + "-" + toPort);
+        }
+        nextScanPort.set(lastPort + 1);
+        return answer;
+    }
+
+    /**
+     * Allocates the given number of free local ports within the range which are not allocated again by this
+     * process until they are released with {@link #releasePort(int)}.
+     *
+     * @throws RuntimeException if there are not enough ports available within the range
+     */
+    public static int[] allocatePorts(int count, int fromPort, int toPort) {
+        List<PortReservation> reservations = reservePorts(count, fromPort, toPort);
+        int[] answer = new int[reservations.size()];
+        for (int i = 0; i < answer.length; i++) {
+            answer[i] = reservations.get(i).handOff();
+        }
+        return answer;
+    }
+
+    /**
+     * Returns true if the port has been reserved by this process and not released
+     */
+    public static boolean isReserved(int port) {
+        return reservedPorts.contains(port);
+    }
+
+    /**
+     * Removes the port from the reservations of this process so that it can be allocated again
+     */
+    public static void releasePort(int port) {
+        reservedPorts.remove(port);
+    }
+
+    /**
+     * Adds the port to the reservations of this process returning false if it was already reserved
+     */
+    static boolean claimPort(int port) {
+        return reservedPorts.add(port);
+    }
+
+    private static void cancel(PortReservation reservation) {
+        releasePort(reservation.handOff());
+    }
+
+    private static void validatePort(int port) {
+        if (port < MIN_PORT_NUMBER || port > MAX_PORT_NUMBER) {
+            throw new IllegalArgumentException("Invalid port: " + port);
+        }
+    }
+
+    private static <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        List<T> answer = new ArrayList<T>(tasks.size());
+        try {
+            if (tasks.size() == 1) {
+                answer.add(tasks.get(0).call());
+                return answer;
+            }
+            for (Future<T> future : IoExecutors.getPool().invokeAll(tasks)) {
+                answer.add(future.get());
             }
+            return answer;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while scanning ports", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e);
         }
-        return usedPorts;
     }
 
     /**
@@ -162,7 +342,7 @@ public class Ports {
 
 
     /**
-     * Checks if a local port is free.
+     * Checks if a local port is free and has not been reserved by this process.
      *
      * @param port
      * @return
@@ -171,6 +351,9 @@ public class Ports {
         if (port < MIN_PORT_NUMBER || port > MAX_PORT_NUMBER) {
             throw new IllegalArgumentException("Invalid start port: " + port);
         }
+        if (reservedPorts.contains(port)) {
+            return false;
+        }
 
         ServerSocket ss = null;
         DatagramSocket ds = null;
@@ -19,27 +19,61 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 import static java.lang.String.format;
 
 /**
  * Platform, Java and Docker specific process utilities.
+ * <p/>
+ * Processes are looked up with <code>java.lang.ProcessHandle</code> on Java 9 or later, through
+ * <code>/proc</code> on Linux otherwise and only fall back to running <code>ps</code> or <code>tasklist</code>
+ * when neither is available.
  */
 public class Processes {
     private static final transient Logger LOG = LoggerFactory.getLogger(Processes.class);
 
     private static boolean isWindows = System.getProperty("os.name").toLowerCase().contains("windows");
 
+    private static final ProcessHandles processHandles = ProcessHandles.create();
+    private static final File procDir = new File("/proc/self");
+
+    /**
+     * How often processes are polled to find out if they have exited when <code>ProcessHandle</code> is not available
+     */
+    static long EXIT_POLL_MILLIS = Long.getLong("io.fabric8.utils.Processes.EXIT_POLL_MILLIS", 1000);
+
     /**
      * Returns true if the given PID is still alive
      */
     public static boolean isProcessAlive(long pid) {
+        if (processHandles != null) {
+            return processHandles.isAlive(pid);
+        }
+        if (procDir.isDirectory()) {
+            return new File(procDir.getParentFile(), Long.toString(pid)).isDirectory();
+        }
         List<Long> processIds = getProcessIds();
         if (processIds.isEmpty()) {
             // we must be on a platform that the PID list doesn't work like windows
@@ -48,10 +82,75 @@ public class Processes {
         return processIds.contains(pid);
     }
 
+    /**
+     * Returns the given PIDs which are still alive, listing the processes at most once
+     */
+    public static Set<Long> findAliveProcesses(Collection<Long> pids) {
+        Set<Long> answer = new LinkedHashSet<>();
+        if (processHandles != null || procDir.isDirectory()) {
+            for (Long pid : pids) {
+                if (isProcessAlive(pid)) {
+                    answer.add(pid);
+                }
+            }
+            return answer;
+        }
+        List<Long> processIds = getProcessIds();
+        if (processIds.isEmpty()) {
+            // we must be on a platform that the PID list doesn't work like windows
+            answer.addAll(pids);
+            return answer;
+        }
+        Set<Long> alive = new HashSet<>(processIds);
+        for (Long pid : pids) {
+            if (alive.contains(pid)) {
+                answer.add(pid);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns a future which completes with the PID once the process has exited, or straight away if it
+     * is not running
+     */
+    public static CompletableFuture<Long> onExit(final long pid) {
+        if (processHandles != null) {
+            return processHandles.onExit(pid);
+        }
+        final CompletableFuture<Long> answer = new CompletableFuture<>();
+        if (!isProcessAlive(pid)) {
+            answer.complete(pid);
+            return answer;
+        }
+        final ScheduledFuture<?> poll = ExitWatcher.executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!isProcessAlive(pid)) {
+                        answer.complete(pid);
+                    }
+                } catch (Throwable e) {
+                    answer.completeExceptionally(e);
+                }
+            }
+        }, EXIT_POLL_MILLIS, EXIT_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        answer.whenComplete(new java.util.function.BiConsumer<Long, Throwable>() {
+            @Override
+            public void accept(Long value, Throwable error) {
+                poll.cancel(false);
+            }
+        });
+        return answer;
+    }
+
     /**
      * Returns the list of current active PIDs
      */
     public static List<Long> getProcessIds() {
+        if (processHandles != null) {
+            return processHandles.getProcessIds();
+        }
         if (isWindows) {
             return getProcessIdsWindows();
         } else {
@@ -219,6 +318,14 @@ public class Processes {
             return 0;
         }
 
+        if (processHandles != null) {
+            if (params == null || "-15".equals(params) || "-TERM".equals(params)) {
+                return processHandles.destroy(pid, false) ? 0 : 1;
+            }
+            if ("-9".equals(params) || "-KILL".equals(params)) {
+                return processHandles.destroy(pid, true) ? 0 : 1;
+            }
+        }
         if (isWindows) {
             if ("-9".equals(params)) {
                 params = "/F";
@@ -341,4 +448,103 @@ public class Processes {
             Closeables.closeQuietly(reader);
         }
     }
+
+    /**
+     * Polls processes for their exit when <code>ProcessHandle</code> is not available
+     */
+    private static class ExitWatcher {
+        static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Fabric8 Process Exit Watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Calls <code>java.lang.ProcessHandle</code> reflectively as this module is compiled for Java 8
+     */
+    private static class ProcessHandles {
+        private final Method of;
+        private final Method allProcesses;
+        private final Method pid;
+        private final Method isAlive;
+        private final Method onExit;
+        private final Method destroy;
+        private final Method destroyForcibly;
+
+        private ProcessHandles(Class<?> type) throws NoSuchMethodException {
+            of = type.getMethod("of", long.class);
+            allProcesses = type.getMethod("allProcesses");
+            pid = type.getMethod("pid");
+            isAlive = type.getMethod("isAlive");
+            onExit = type.getMethod("onExit");
+            destroy = type.getMethod("destroy");
+            destroyForcibly = type.getMethod("destroyForcibly");
+        }
+
+        static ProcessHandles create() {
+            try {
+                return new ProcessHandles(Class.forName("java.lang.ProcessHandle"));
+            } catch (ClassNotFoundException | NoSuchMethodException e) {
+                return null;
+            }
+        }
+
+        boolean isAlive(long pid) {
+            Object handle = handle(pid);
+            return handle != null && (Boolean) invoke(isAlive, handle);
+        }
+
+        boolean destroy(long pid, boolean forcibly) {
+            Object handle = handle(pid);
+            return handle != null && (Boolean) invoke(forcibly ? destroyForcibly : destroy, handle);
+        }
+
+        CompletableFuture<Long> onExit(final long pid) {
+            Object handle = handle(pid);
+            if (handle == null) {
+                return CompletableFuture.completedFuture(pid);
+            }
+            CompletableFuture<?> future = (CompletableFuture<?>) invoke(onExit, handle);
+            return future.thenApply(new java.util.function.Function<Object, Long>() {
+                @Override
+                public Long apply(Object exited) {
+                    return pid;
+                }
+            });
+        }
+
+        List<Long> getProcessIds() {
+            List<Long> answer = new ArrayList<>();
+            try (Stream<?> stream = (Stream<?>) invoke(allProcesses, null)) {
+                Iterator<?> iterator = stream.iterator();
+                while (iterator.hasNext()) {
+                    answer.add((Long) invoke(pid, iterator.next()));
+                }
+            }
+            return answer;
+        }
+
+        private Object handle(long pid) {
+            Optional<?> handle = (Optional<?>) invoke(of, null, pid);
+            return handle.isPresent() ? handle.get() : null;
+        }
+
+        private static Object invoke(Method method, Object target, Object... args) {
+            try {
+                return method.invoke(target, args);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Failed to call " + method + ". " + e, e);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException("Failed to call " + method + ". " + cause, cause);
+            }
+        }
+    }
 }
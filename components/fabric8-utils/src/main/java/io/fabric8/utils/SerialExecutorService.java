@@ -15,25 +15,93 @@
  */
 package io.fabric8.utils;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.lang.reflect.Method;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * An ExecutorService which ensures serial execution of the Runnable
  * objects which it is asked to execute.  By default it delegates
  * execution of those tasks to a thread pool, but can be configured
  * to use any Executor.
+ * <p/>
+ * The default thread pool is chosen with the <code>io.fabric8.utils.SerialExecutorService.backend</code> system
+ * property: <code>pool</code> (the default) is a bounded work stealing pool of
+ * <code>io.fabric8.utils.THREAD_POOL_SIZE</code> daemon threads, <code>virtual</code> uses a virtual thread per
+ * drain on JVMs which support them (falling back to the pool otherwise) and <code>spawn</code> starts a new thread
+ * whenever no idle thread is waiting, which suits tasks which block for a long time.
+ * <p/>
+ * Each drain runs at most {@link #getDrainBatchSize()} tasks before giving its thread back to the pool so that a
+ * busy instance does not starve the others, and {@link #setMaxQueueSize(int)} makes callers wait when too many
+ * tasks are queued. Statistics are exposed in JMX once {@link #registerMBean()} is called.
  */
-public class SerialExecutorService extends AbstractExecutorService {
+public class SerialExecutorService extends AbstractExecutorService implements SerialExecutorServiceMBean {
+    private static final transient Logger LOG = LoggerFactory.getLogger(SerialExecutorService.class);
+
+    public static final String BACKEND_PROPERTY = "io.fabric8.utils.SerialExecutorService.backend";
 
     static long THREAD_POOL_KEEP_ALIVE = Integer.getInteger("io.fabric8.utils.THREAD_POOL_KEEP_ALIVE", 5000);
+    static int THREAD_POOL_SIZE = Integer.getInteger("io.fabric8.utils.THREAD_POOL_SIZE", Math.max(16, Runtime.getRuntime().availableProcessors() * 2));
+    static int DRAIN_BATCH_SIZE = Integer.getInteger("io.fabric8.utils.DRAIN_BATCH_SIZE", 1000);
     static final ThreadGroup group = new ThreadGroup("Fabric Tasks");
 
-    static final Executor threadPool = new Executor() {
-        SynchronousQueue<Runnable> queue = new SynchronousQueue<Runnable>();
+    static final Executor threadPool = createExecutor(System.getProperty(BACKEND_PROPERTY, "pool"));
+
+    /**
+     * Creates the executor for the given backend name; <code>pool</code>, <code>virtual</code> or <code>spawn</code>
+     */
+    public static Executor createExecutor(String backend) {
+        if ("spawn".equals(backend)) {
+            return new SpawningExecutor();
+        }
+        if ("virtual".equals(backend)) {
+            Executor answer = createVirtualThreadExecutor();
+            if (answer != null) {
+                return answer;
+            }
+            LOG.warn("Virtual threads are not supported by this JVM so using a pool of " + THREAD_POOL_SIZE + " threads");
+        } else if (!"pool".equals(backend)) {
+            LOG.warn("Unknown " + BACKEND_PROPERTY + " value " + backend + " so using a pool of " + THREAD_POOL_SIZE + " threads");
+        }
+        return createWorkStealingPool(THREAD_POOL_SIZE);
+    }
+
+    /**
+     * Creates a work stealing pool of daemon threads named "Fabric Task #n"
+     */
+    public static ExecutorService createWorkStealingPool(int parallelism) {
+        return IoExecutors.createPool(parallelism, "Fabric Task", true);
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per task or null if the JVM does not support them
+     */
+    protected static Executor createVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (Executor) method.invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Hands each task to an idle thread or starts a new thread if there is none; idle threads exit after
+     * <code>io.fabric8.utils.THREAD_POOL_KEEP_ALIVE</code> milliseconds
+     */
+    static class SpawningExecutor implements Executor {
+        private final SynchronousQueue<Runnable> queue = new SynchronousQueue<Runnable>();
 
         @Override
         public void execute(final Runnable task) {
@@ -73,7 +141,7 @@ public class SerialExecutorService extends AbstractExecutorService {
                 }
             }
         }
-    };
+    }
 
     protected Executor target;
     protected volatile String label;
@@ -86,10 +154,27 @@ public class SerialExecutorService extends AbstractExecutorService {
     protected final ThreadLocal<Boolean> draining = new ThreadLocal<Boolean>();
     protected final Runnable drainTask = new Runnable() {
         public void run() {
-            drain();
+            drainCount.increment();
+            drain(drainBatchSize);
         }
     };
 
+    protected volatile int maxQueueSize = Integer.MAX_VALUE;
+    protected volatile int drainBatchSize = DRAIN_BATCH_SIZE;
+    protected volatile boolean statisticsEnabled;
+    protected final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicInteger peakQueueSize = new AtomicInteger();
+    private final AtomicInteger waitingSubmitters = new AtomicInteger();
+    private final Object spaceMonitor = new Object();
+    private final LongAdder submittedCount = new LongAdder();
+    private final LongAdder completedCount = new LongAdder();
+    private final LongAdder failedCount = new LongAdder();
+    private final LongAdder drainCount = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    private final LongAdder totalLatency = new LongAdder();
+    private final AtomicLong maxLatency = new AtomicLong();
+    private ObjectName objectName;
+
 
     public SerialExecutorService() {
         this("<no-label>");
@@ -109,7 +194,8 @@ public class SerialExecutorService extends AbstractExecutorService {
     }
 
     /**
-     * Queues the runnable for execution.
+     * Queues the runnable for execution. If the queue is full the calling thread waits
+     * until the queued tasks have been drained below {@link #getMaxQueueSize()}.
      * @param runnable
      */
     @Override
@@ -120,9 +206,9 @@ public class SerialExecutorService extends AbstractExecutorService {
             throw new RejectedExecutionException("shutdown");
 
         if (isDraining()) {
-            localQueue.add(runnable);
+            localQueue.add(enqueued(runnable));
         } else {
-            externalQueue.add(runnable);
+            externalQueue.add(queued(runnable, reserveSpace()));
             triggerDrain();
         }
     }
@@ -139,9 +225,10 @@ public class SerialExecutorService extends AbstractExecutorService {
             throw new RejectedExecutionException("shutdown");
 
         if (isDraining()) {
-            runnable.run();
+            submittedCount.increment();
+            run(runnable);
         } else {
-            externalQueue.add(runnable);
+            externalQueue.add(enqueued(runnable));
             drain();
         }
     }
@@ -155,54 +242,157 @@ public class SerialExecutorService extends AbstractExecutorService {
     /**
      * This method blocks until all previously queued Runnable objects are run.
      */
-    synchronized public void drain() {
+    public void drain() {
+        drain(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Runs at most the given number of queued tasks; if any are left another drain is
+     * triggered on the target executor.
+     */
+    synchronized protected void drain(int maxTasks) {
         draining.set(Boolean.TRUE);
         try {
-            boolean drained = false;
-            while (!drained) {
+            for (int count = 0; count < maxTasks; count++) {
                 Runnable runnable = localQueue.poll();
                 if (runnable == null) {
                     runnable = externalQueue.poll();
                 }
                 if (runnable == null) {
-                    drained = true;
-                } else {
-                    try {
-                        runnable.run();
-                    } catch (Throwable e) {
-                        Thread thread = Thread.currentThread();
-                        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
-                    }
+                    break;
                 }
+                dequeued();
+                run(runnable);
             }
         } finally {
             draining.remove();
             triggered.set(false);
-            if (!externalQueue.isEmpty()) {
+            if (!externalQueue.isEmpty() || !localQueue.isEmpty()) {
                 triggerDrain();
             }
         }
     }
 
+    protected void run(Runnable runnable) {
+        if (runnable instanceof TimedTask) {
+            TimedTask task = (TimedTask) runnable;
+            recordLatency(System.nanoTime() - task.queued);
+            runnable = task.task;
+        }
+        try {
+            runnable.run();
+            completedCount.increment();
+        } catch (Throwable e) {
+            failedCount.increment();
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    /**
+     * Reserves a slot in the queue waiting while it is full unless this executor is shut down or the thread is
+     * interrupted
+     *
+     * @return the size of the queue including the reserved slot
+     */
+    protected int reserveSpace() {
+        int size = tryReserveSpace();
+        if (size > 0) {
+            return size;
+        }
+        synchronized (spaceMonitor) {
+            waitingSubmitters.incrementAndGet();
+            try {
+                while ((size = tryReserveSpace()) <= 0) {
+                    if (shutdown.get()) {
+                        throw new RejectedExecutionException("shutdown");
+                    }
+                    spaceMonitor.wait();
+                }
+                return size;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RejectedExecutionException("Interrupted while waiting for space in the queue of " + label, e);
+            } finally {
+                waitingSubmitters.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Increments the size of the queue if it is not full
+     *
+     * @return the new size or -1 if the queue is full
+     */
+    private int tryReserveSpace() {
+        while (true) {
+            int size = queueSize.get();
+            if (size >= maxQueueSize) {
+                return -1;
+            }
+            if (queueSize.compareAndSet(size, size + 1)) {
+                return size + 1;
+            }
+        }
+    }
+
+    private Runnable enqueued(Runnable runnable) {
+        return queued(runnable, queueSize.incrementAndGet());
+    }
+
+    /**
+     * Records a task for which a slot was added to the queue size which is now the given size
+     */
+    private Runnable queued(Runnable runnable, int size) {
+        submittedCount.increment();
+        int peak;
+        while (size > (peak = peakQueueSize.get()) && !peakQueueSize.compareAndSet(peak, size)) {
+        }
+        return statisticsEnabled ? new TimedTask(runnable, System.nanoTime()) : runnable;
+    }
+
+    private void dequeued() {
+        queueSize.decrementAndGet();
+        if (waitingSubmitters.get() > 0) {
+            signalSubmitters();
+        }
+    }
+
+    private void signalSubmitters() {
+        synchronized (spaceMonitor) {
+            spaceMonitor.notifyAll();
+        }
+    }
+
+    private void recordLatency(long nanos) {
+        latencyCount.increment();
+        totalLatency.add(nanos);
+        long max;
+        while (nanos > (max = maxLatency.get()) && !maxLatency.compareAndSet(max, nanos)) {
+        }
+    }
+
 
     @Override
     public void shutdown() {
         if (shutdown.compareAndSet(false, true)) {
-            externalQueue.add(new Runnable() {
+            externalQueue.add(enqueued(new Runnable() {
                 @Override
                 public void run() {
                     terminated.set(true);
                     terminatedLatch.countDown();
                 }
-            });
+            }));
             triggerDrain();
+            // lets not leave any submitters waiting for space
+            signalSubmitters();
         }
     }
 
     @Override
     public List<Runnable> shutdownNow() {
         shutdown();
-        return Collections.EMPTY_LIST;
+        return Collections.emptyList();
     }
 
     public boolean isDraining() {
@@ -225,6 +415,23 @@ public class SerialExecutorService extends AbstractExecutorService {
         return terminatedLatch.await(timeout, unit);
     }
 
+    /**
+     * Registers this executor in JMX using its label as the name and enables the collection of latency statistics
+     */
+    public synchronized void registerMBean() throws MalformedObjectNameException {
+        unregisterMBean();
+        statisticsEnabled = true;
+        objectName = new ObjectName("io.fabric8:type=SerialExecutorService,name=" + ObjectName.quote(String.valueOf(label)));
+        JMXUtils.registerMBean(this, objectName);
+    }
+
+    public synchronized void unregisterMBean() {
+        if (objectName != null) {
+            JMXUtils.unregisterMBean(objectName);
+            objectName = null;
+        }
+    }
+
     @Override
     public String toString() {
         return label;
@@ -245,4 +452,120 @@ public class SerialExecutorService extends AbstractExecutorService {
     public void setLabel(String label) {
         this.label = label;
     }
+
+    @Override
+    public int getQueueSize() {
+        return queueSize.get();
+    }
+
+    @Override
+    public int getPeakQueueSize() {
+        return peakQueueSize.get();
+    }
+
+    @Override
+    public int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * Sets the number of queued tasks above which callers of {@link #execute(Runnable)} wait;
+     * tasks queued by the tasks themselves are never blocked
+     */
+    @Override
+    public void setMaxQueueSize(int maxQueueSize) {
+        if (maxQueueSize <= 0) {
+            throw new IllegalArgumentException("maxQueueSize must be positive but was " + maxQueueSize);
+        }
+        this.maxQueueSize = maxQueueSize;
+        signalSubmitters();
+    }
+
+    @Override
+    public int getDrainBatchSize() {
+        return drainBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of tasks run by a thread of the target executor before it is given back
+     */
+    @Override
+    public void setDrainBatchSize(int drainBatchSize) {
+        if (drainBatchSize <= 0) {
+            throw new IllegalArgumentException("drainBatchSize must be positive but was " + drainBatchSize);
+        }
+        this.drainBatchSize = drainBatchSize;
+    }
+
+    public boolean isStatisticsEnabled() {
+        return statisticsEnabled;
+    }
+
+    /**
+     * Enables measuring how long tasks wait in the queue, which is enabled by {@link #registerMBean()}
+     */
+    public void setStatisticsEnabled(boolean statisticsEnabled) {
+        this.statisticsEnabled = statisticsEnabled;
+    }
+
+    @Override
+    public long getSubmittedCount() {
+        return submittedCount.sum();
+    }
+
+    @Override
+    public long getCompletedCount() {
+        return completedCount.sum();
+    }
+
+    @Override
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    @Override
+    public long getDrainCount() {
+        return drainCount.sum();
+    }
+
+    @Override
+    public double getAverageLatencyMillis() {
+        long count = latencyCount.sum();
+        return count == 0 ? 0 : totalLatency.sum() / (count * 1000000.0);
+    }
+
+    @Override
+    public double getMaxLatencyMillis() {
+        return maxLatency.get() / 1000000.0;
+    }
+
+    @Override
+    public void resetStatistics() {
+        submittedCount.reset();
+        completedCount.reset();
+        failedCount.reset();
+        drainCount.reset();
+        latencyCount.reset();
+        totalLatency.reset();
+        maxLatency.set(0);
+        peakQueueSize.set(queueSize.get());
+    }
+
+    /**
+     * A task remembering when it was queued
+     */
+    protected static class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long queued;
+
+        public TimedTask(Runnable task, long queued) {
+            this.task = task;
+            this.queued = queued;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+    }
 }
@@ -0,0 +1,67 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+/**
+ * The JMX view of a {@link SerialExecutorService}
+ */
+public interface SerialExecutorServiceMBean {
+
+    String getLabel();
+
+    boolean isShutdown();
+
+    /**
+     * Returns the number of tasks waiting to be run
+     */
+    int getQueueSize();
+
+    /**
+     * Returns the highest number of tasks which have been waiting to be run at the same time
+     */
+    int getPeakQueueSize();
+
+    int getMaxQueueSize();
+
+    void setMaxQueueSize(int maxQueueSize);
+
+    int getDrainBatchSize();
+
+    void setDrainBatchSize(int drainBatchSize);
+
+    long getSubmittedCount();
+
+    long getCompletedCount();
+
+    long getFailedCount();
+
+    /**
+     * Returns the number of times the queue has been drained by a thread of the target executor
+     */
+    long getDrainCount();
+
+    /**
+     * Returns the average time in milliseconds tasks waited in the queue before running
+     */
+    double getAverageLatencyMillis();
+
+    /**
+     * Returns the longest time in milliseconds a task waited in the queue before running
+     */
+    double getMaxLatencyMillis();
+
+    void resetStatistics();
+}
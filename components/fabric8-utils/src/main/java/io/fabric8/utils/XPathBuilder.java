@@ -15,45 +15,91 @@
  */
 package io.fabric8.utils;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
+import javax.xml.xpath.XPathFunctionResolver;
+import javax.xml.xpath.XPathVariableResolver;
 
 /**
- * A helper class for creating XPath expressions
+ * A helper class for creating XPath expressions which caches the most recently compiled expressions.
+ * <p/>
+ * The cache is cleared whenever the namespace context, variable resolver or function resolver of the
+ * {@link XPath} changes as they are bound when an expression is compiled. Creating expressions is thread safe but
+ * like the {@link XPathExpression} objects they wrap the facades must only be evaluated by one thread at a time;
+ * see {@link XmlUtils#xpath(String)} for a builder per thread.
  */
 public class XPathBuilder {
+    private static final int DEFAULT_CACHE_SIZE = 256;
+
     private XPathFactory xpathFactory;
     private XPath xpath;
+    private final Map<String, XPathFacade> cache;
+    private NamespaceContext namespaceContext;
+    private XPathVariableResolver variableResolver;
+    private XPathFunctionResolver functionResolver;
+
+    public XPathBuilder() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    public XPathBuilder(final int cacheSize) {
+        this.cache = new LinkedHashMap<String, XPathFacade>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, XPathFacade> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
 
     /**
-     * Creates an XPath expression facade
+     * Creates an XPath expression facade, reusing the compiled expression if it was recently used
      */
-    public XPathFacade xpath(String xpath) throws XPathExpressionException {
-        XPathExpression expression = getXPath().compile(xpath);
-        return new XPathFacade(this, xpath, expression);
+    public synchronized XPathFacade xpath(String xpath) throws XPathExpressionException {
+        XPath compiler = getXPath();
+        if (compiler.getNamespaceContext() != namespaceContext || compiler.getXPathVariableResolver() != variableResolver
+                || compiler.getXPathFunctionResolver() != functionResolver) {
+            // lets not reuse expressions compiled with another context
+            cache.clear();
+            namespaceContext = compiler.getNamespaceContext();
+            variableResolver = compiler.getXPathVariableResolver();
+            functionResolver = compiler.getXPathFunctionResolver();
+        }
+        XPathFacade answer = cache.get(xpath);
+        if (answer == null) {
+            XPathExpression expression = compiler.compile(xpath);
+            answer = new XPathFacade(this, xpath, expression);
+            cache.put(xpath, answer);
+        }
+        return answer;
     }
 
-    public XPath getXPath() {
+    public synchronized XPath getXPath() {
         if (xpath == null) {
             xpath = getXPathFactory().newXPath();
         }
         return xpath;
     }
 
-    public void setXPath(XPath xpath) {
+    public synchronized void setXPath(XPath xpath) {
         this.xpath = xpath;
+        cache.clear();
     }
 
-    public XPathFactory getXPathFactory() {
+    public synchronized XPathFactory getXPathFactory() {
         if (xpathFactory == null) {
             xpathFactory = XPathFactory.newInstance();
         }
         return xpathFactory;
     }
 
-    public void setXPathFactory(XPathFactory xpathFactory) {
+    public synchronized void setXPathFactory(XPathFactory xpathFactory) {
         this.xpathFactory = xpathFactory;
+        cache.clear();
     }
 }
@@ -0,0 +1,263 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Extracts the text of the elements or attributes at the given paths from an XML document using a streaming
+ * StAX parser without building a DOM.
+ * <p/>
+ * Paths are relative to the root element like those of {@link XmlUtils#getElement(org.w3c.dom.Element, String)},
+ * for example <code>parent/version</code> or <code>dependencies/dependency/artifactId</code>, and may end with
+ * <code>@name</code> to select an attribute such as <code>feature/@name</code>. The text of an element includes
+ * the text of its child elements. Elements which are not on the way to any of the paths are skipped.
+ * <p/>
+ * An extractor can be shared by many threads.
+ */
+public class XmlPathExtractor {
+    private static final XMLInputFactory inputFactory = createInputFactory();
+
+    private final List<String> paths;
+    private final Map<String, List<String>> elementPaths = new HashMap<>();
+    private final Map<String, List<String[]>> attributePaths = new HashMap<>();
+    private final Set<String> prefixes = new HashSet<>();
+
+    public XmlPathExtractor(String... paths) {
+        this.paths = new ArrayList<>();
+        for (String path : paths) {
+            String normalized = normalize(path);
+            this.paths.add(path);
+            String elementPath = normalized;
+            int idx = normalized.lastIndexOf("@");
+            if (idx >= 0) {
+                elementPath = Strings.stripSuffix(normalized.substring(0, idx), "/");
+                List<String[]> list = attributePaths.get(elementPath);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    attributePaths.put(elementPath, list);
+                }
+                list.add(new String[]{normalized.substring(idx + 1), path});
+            } else {
+                List<String> list = elementPaths.get(normalized);
+                if (list == null) {
+                    list = new ArrayList<>();
+                    elementPaths.put(normalized, list);
+                }
+                list.add(path);
+            }
+            String prefix = elementPath;
+            while (true) {
+                prefixes.add(prefix);
+                int slash = prefix.lastIndexOf('/');
+                if (slash < 0) {
+                    break;
+                }
+                prefix = prefix.substring(0, slash);
+            }
+        }
+    }
+
+    /**
+     * Returns the values found for each of the paths in document order
+     */
+    public Map<String, List<String>> extract(File file) throws IOException, XMLStreamException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            return extract(in);
+        }
+    }
+
+    /**
+     * Returns the values found for each of the paths in document order
+     */
+    public Map<String, List<String>> extract(InputStream in) throws XMLStreamException {
+        return parse(in, false);
+    }
+
+    /**
+     * Returns the first value of each of the paths, or null if there is none, reading only as much of the
+     * document as is needed to find them
+     */
+    public Map<String, String> extractFirst(InputStream in) throws XMLStreamException {
+        Map<String, String> answer = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : parse(in, true).entrySet()) {
+            List<String> values = entry.getValue();
+            answer.put(entry.getKey(), values.isEmpty() ? null : values.get(0));
+        }
+        return answer;
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    protected Map<String, List<String>> parse(InputStream in, boolean firstOnly) throws XMLStreamException {
+        Map<String, List<String>> answer = new LinkedHashMap<>();
+        for (String path : paths) {
+            answer.put(path, new ArrayList<String>());
+        }
+        int remaining = paths.size();
+        XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+        try {
+            // the path of the current element relative to the root and the lengths of the paths of its ancestors
+            StringBuilder path = new StringBuilder();
+            int[] lengths = new int[32];
+            int depth = 0;
+            int skipDepth = 0;
+            List<Capture> captures = new ArrayList<>();
+            while (reader.hasNext() && (!firstOnly || remaining > 0)) {
+                int event = reader.next();
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (skipDepth > 0) {
+                            skipDepth++;
+                            break;
+                        }
+                        if (depth == lengths.length) {
+                            lengths = Arrays.copyOf(lengths, depth * 2);
+                        }
+                        lengths[depth] = path.length();
+                        if (depth > 0) {
+                            if (depth > 1) {
+                                path.append('/');
+                            }
+                            path.append(qualifiedName(reader));
+                        }
+                        depth++;
+                        if (depth == 1) {
+                            break;
+                        }
+                        String current = path.toString();
+                        if (!prefixes.contains(current) && captures.isEmpty()) {
+                            // nothing below here can match so lets skip the element
+                            depth--;
+                            path.setLength(lengths[depth]);
+                            skipDepth = 1;
+                            break;
+                        }
+                        List<String[]> attributes = attributePaths.get(current);
+                        if (attributes != null) {
+                            for (String[] attribute : attributes) {
+                                String value = attributeValue(reader, attribute[0]);
+                                if (value != null) {
+                                    remaining -= add(answer.get(attribute[1]), value, firstOnly);
+                                }
+                            }
+                        }
+                        List<String> keys = elementPaths.get(current);
+                        if (keys != null) {
+                            captures.add(new Capture(keys, depth));
+                        }
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        if (skipDepth > 0) {
+                            skipDepth--;
+                            break;
+                        }
+                        for (int i = captures.size() - 1; i >= 0 && captures.get(i).depth == depth; i--) {
+                            Capture capture = captures.remove(i);
+                            for (String key : capture.keys) {
+                                remaining -= add(answer.get(key), capture.text.toString(), firstOnly);
+                            }
+                        }
+                        depth--;
+                        path.setLength(lengths[depth]);
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (skipDepth == 0 && !captures.isEmpty()) {
+                            for (Capture capture : captures) {
+                                capture.text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                            }
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return answer;
+    }
+
+    private static int add(List<String> values, String value, boolean firstOnly) {
+        if (firstOnly && !values.isEmpty()) {
+            return 0;
+        }
+        values.add(value);
+        return values.size() == 1 ? 1 : 0;
+    }
+
+    private static String normalize(String path) {
+        return Strings.stripPrefix(Strings.stripSuffix(path, "/"), "/");
+    }
+
+    private static String qualifiedName(XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        String localName = reader.getLocalName();
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static String attributeValue(XMLStreamReader reader, String name) {
+        for (int i = 0, count = reader.getAttributeCount(); i < count; i++) {
+            String prefix = reader.getAttributePrefix(i);
+            String localName = reader.getAttributeLocalName(i);
+            String qualifiedName = prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+            if (qualifiedName.equals(name)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // like XmlUtils.parseDoc lets not resolve external entities or DTDs
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    private static class Capture {
+        private final List<String> keys;
+        private final int depth;
+        private final StringBuilder text = new StringBuilder();
+
+        Capture(List<String> keys, int depth) {
+            this.keys = keys;
+            this.depth = depth;
+        }
+    }
+}
@@ -16,17 +16,20 @@
 package io.fabric8.utils;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPathExpressionException;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -37,13 +40,59 @@ import org.xml.sax.SAXException;
 
 /**
  * XML related utilities.
+ * <p/>
+ * Each thread reuses its own {@link DocumentBuilder} and {@link XPathBuilder} so that parsing documents
+ * and evaluating XPath expressions does not create and configure new factories each time; to read a few
+ * values out of a large document without building a DOM use {@link XmlPathExtractor}.
  */
 public class XmlUtils {
+    private static final int MAX_CACHED_PATHS = 1024;
+
+    private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>();
+    private static final ThreadLocal<XPathBuilder> xpathBuilders = new ThreadLocal<XPathBuilder>() {
+        @Override
+        protected XPathBuilder initialValue() {
+            return new XPathBuilder();
+        }
+    };
+    private static final Map<String, String[]> paths = new ConcurrentHashMap<String, String[]>();
 
     private XmlUtils() {
         // utility class
     }
 
+    /**
+     * Creates a document builder factory which does not resolve external entities or allow DTDs
+     */
+    public static DocumentBuilderFactory createDocumentBuilderFactory() throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+        factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        return factory;
+    }
+
+    /**
+     * Returns the document builder of the current thread which is reset ready to parse a document
+     */
+    public static DocumentBuilder getDocumentBuilder() throws ParserConfigurationException {
+        DocumentBuilder builder = documentBuilders.get();
+        if (builder == null) {
+            builder = createDocumentBuilderFactory().newDocumentBuilder();
+            documentBuilders.set(builder);
+        } else {
+            builder.reset();
+        }
+        return builder;
+    }
+
+    /**
+     * Returns the XPath expression compiling it only the first time the current thread uses it
+     */
+    public static XPathFacade xpath(String xpath) throws XPathExpressionException {
+        return xpathBuilders.get().xpath(xpath);
+    }
+
     public static Document parseDoc(File xmlFile)
             throws ParserConfigurationException,
             SAXException,
@@ -55,7 +104,7 @@ public class XmlUtils {
             throws ParserConfigurationException,
             SAXException,
             IOException {
-        return parseDoc(new ByteArrayInputStream(xml.getBytes()));
+        return getDocumentBuilder().parse(new InputSource(new StringReader(xml)));
     }
 
 
@@ -65,13 +114,8 @@ public class XmlUtils {
             IOException {
         try {
             BufferedInputStream in = new BufferedInputStream(is);
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            factory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            DocumentBuilder builder = factory.newDocumentBuilder();
             InputSource source = new InputSource(in);
-            return builder.parse(source);
+            return getDocumentBuilder().parse(source);
         } finally {
             is.close();
         }
@@ -87,21 +131,39 @@ public class XmlUtils {
         NullArgumentException.validateNotNull(path, "Element path");
 
         Element current = element;
-        StringTokenizer st = new StringTokenizer(path, "/", false);
-        while (st.hasMoreTokens() && current != null) {
-            final String token = st.nextToken();
-            final NodeList childs = current.getChildNodes();
-            current = null;
-            for (int i = 0; i < childs.getLength(); i++) {
-                final Node child = childs.item(i);
+        for (String token : splitPath(path)) {
+            if (current == null) {
+                break;
+            }
+            Element last = null;
+            for (Node child = current.getFirstChild(); child != null; child = child.getNextSibling()) {
                 if (child instanceof Element && child.getNodeName().equals(token)) {
-                    current = (Element) child;
+                    last = (Element) child;
                 }
             }
+            current = last;
         }
         return current;
     }
 
+    /**
+     * Returns the names in the given element path splitting each path only once
+     */
+    static String[] splitPath(String path) {
+        String[] answer = paths.get(path);
+        if (answer == null) {
+            StringTokenizer st = new StringTokenizer(path, "/", false);
+            answer = new String[st.countTokens()];
+            for (int i = 0; i < answer.length; i++) {
+                answer[i] = st.nextToken();
+            }
+            if (paths.size() < MAX_CACHED_PATHS) {
+                paths.put(path, answer);
+            }
+        }
+        return answer;
+    }
+
     public static List<Element> getElements(final Document doc, final String path) {
         NullArgumentException.validateNotNull(doc, "Document");
         return getElements(doc.getDocumentElement(), path);
@@ -153,10 +215,8 @@ public class XmlUtils {
         NullArgumentException.validateNotNull(element, "Element");
         NullArgumentException.validateNotNull("Element path", path);
 
-        StringTokenizer st = new StringTokenizer(path, "/", false);
         Element currentElement = element;
-        while (st.hasMoreTokens()) {
-            final String childName = st.nextToken();
+        for (String childName : splitPath(path)) {
             if (childName.endsWith("]")) {
                 int startPos = childName.indexOf("[");
                 int endPos = childName.indexOf("]");
@@ -18,23 +18,88 @@ package io.fabric8.utils;
 import org.slf4j.Logger;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import static io.fabric8.utils.Closeables.closeQuietly;
 
 /**
+ * Helper methods for creating and extracting ZIP files.
+ * <p/>
+ * Zip files are created by reading and deflating the files on an {@link Executor}, a pool of threads dedicated to
+ * blocking I/O by default, and appending the compressed entries to the archive in order as they complete; files
+ * which are already compressed are stored. The files being compressed at the same time are bounded in number and
+ * in bytes, and large files are streamed into the archive in order rather than read into memory. Zip files are
+ * extracted in parallel on the same pool by default, and entries which would be written outside of the target
+ * directory are rejected.
  */
 public class Zips {
 
+    /**
+     * The extensions of files which are stored rather than deflated as they are already compressed
+     */
+    public static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "zip", "jar", "war", "ear", "kar", "gz", "tgz", "bz2", "xz", "7z", "png", "jpg", "jpeg", "gif", "mp3", "mp4"));
+
+    private static final long ZIP32_LIMIT = 0xFFFFFFFFL;
+    private static final int ZIP32_MAX_ENTRIES = 0xFFFF;
+
+    /**
+     * Files larger than this are streamed into the archive by the calling thread rather than compressed in memory
+     */
+    private static final long STREAM_THRESHOLD = 4 * 1024 * 1024;
+
+    /**
+     * The maximum number of bytes of the files being compressed at the same time
+     */
+    private static final long MAX_PENDING_BYTES = 64 * 1024 * 1024;
+
     /**
      * Creates a zip fie from the given source directory and output zip file name
      */
@@ -44,16 +109,65 @@ public class Zips {
     }
 
     public static void createZipFile(Logger log, File sourceDir, File outputZipFile, FileFilter filter) throws IOException {
+        createZipFile(log, sourceDir, outputZipFile, filter, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates a zip file from the given source directory using the given {@link Deflater} compression level
+     */
+    public static void createZipFile(Logger log, File sourceDir, File outputZipFile, FileFilter filter, int level) throws IOException {
+        createZipFile(log, sourceDir, outputZipFile, filter, level, IoExecutors.getPool());
+    }
+
+    /**
+     * Creates a zip file from the given source directory compressing the files using the given executor
+     */
+    public static void createZipFile(Logger log, File sourceDir, File outputZipFile, FileFilter filter, int level, Executor executor) throws IOException {
         outputZipFile.getParentFile().mkdirs();
-        OutputStream os = new FileOutputStream(outputZipFile);
-        ZipOutputStream zos = new ZipOutputStream(os);
+        List<Path> paths = listEntries(sourceDir.toPath(), filter);
+        if (!fitsInZip32(paths)) {
+            // lets leave large archives to ZipOutputStream which supports ZIP64
+            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(outputZipFile));
+            try {
+                zos.setLevel(level);
+                zipDirectory(log, sourceDir, zos, "", filter);
+            } finally {
+                Closeables.closeQuietly(zos);
+            }
+            return;
+        }
+
+        Path root = sourceDir.toPath();
+        int window = Math.max(4, Runtime.getRuntime().availableProcessors() * 4);
+        Deque<Future<CompressedEntry>> pending = new ArrayDeque<>();
+        Deque<Long> pendingSizes = new ArrayDeque<>();
+        long pendingBytes = 0;
+        ZipWriter writer = new ZipWriter(new BufferedOutputStream(new FileOutputStream(outputZipFile), 64 * 1024));
         try {
-            //zos.setLevel(Deflater.DEFAULT_COMPRESSION);
-            //zos.setLevel(Deflater.NO_COMPRESSION);
-            String path = "";
-            zipDirectory(log, sourceDir, zos, path, filter);
+            for (Path path : paths) {
+                long size = java.nio.file.Files.isDirectory(path) ? 0 : java.nio.file.Files.size(path);
+                boolean stream = size > STREAM_THRESHOLD;
+                while (!pending.isEmpty() && (stream || pending.size() >= window || pendingBytes + size > MAX_PENDING_BYTES)) {
+                    writer.write(log, await(pending.poll()));
+                    pendingBytes -= pendingSizes.poll();
+                }
+                if (stream) {
+                    // lets stream large files once the entries before them have been written
+                    writer.write(log, entryName(root, path), path, level);
+                } else {
+                    pending.add(submit(executor, new CompressTask(root, path, level)));
+                    pendingSizes.add(size);
+                    pendingBytes += size;
+                }
+            }
+            while (!pending.isEmpty()) {
+                writer.write(log, await(pending.poll()));
+            }
         } finally {
-            Closeables.closeQuietly(zos);
+            for (Future<CompressedEntry> future : pending) {
+                future.cancel(false);
+            }
+            Closeables.closeQuietly(writer);
         }
     }
 
@@ -103,6 +217,14 @@ public class Zips {
         return filter == null || filter.accept(f);
     }
 
+    /**
+     * Returns true if the file name has the extension of an already compressed file format
+     */
+    public static boolean isCompressed(String name) {
+        String extension = Files.getFileExtension(name);
+        return extension != null && COMPRESSED_EXTENSIONS.contains(extension.toLowerCase());
+    }
+
     /**
      * Unzips the given input stream of a ZIP to the given directory
      */
@@ -111,9 +233,10 @@ public class Zips {
         try {
             ZipEntry entry = zis.getNextEntry();
             while (entry != null) {
-                if (!entry.isDirectory()) {
-                    String entryName = entry.getName();
-                    File toFile = new File(toDir, entryName);
+                File toFile = resolveEntry(toDir, entry.getName());
+                if (entry.isDirectory()) {
+                    toFile.mkdirs();
+                } else {
                     toFile.getParentFile().mkdirs();
                     OutputStream os = new FileOutputStream(toFile);
                     try {
@@ -133,6 +256,66 @@ public class Zips {
         }
     }
 
+    /**
+     * Unzips the given ZIP file to the given directory extracting the entries in parallel on a pool of threads
+     * dedicated to blocking I/O
+     */
+    public static void unzip(File zipFile, File toDir) throws IOException {
+        unzip(zipFile, toDir, IoExecutors.getPool());
+    }
+
+    /**
+     * Unzips the given ZIP file to the given directory extracting the entries using the given executor.
+     * <p/>
+     * If an entry fails to be extracted the other entries are stopped and waited for before the ZIP file is closed.
+     */
+    public static void unzip(File zipFile, File toDir, Executor executor) throws IOException {
+        final ZipFile zip = new ZipFile(zipFile);
+        final AtomicBoolean stopped = new AtomicBoolean();
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                final ZipEntry entry = entries.nextElement();
+                final File toFile = resolveEntry(toDir, entry.getName());
+                if (entry.isDirectory()) {
+                    toFile.mkdirs();
+                } else {
+                    toFile.getParentFile().mkdirs();
+                    futures.add(submit(executor, new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            if (!stopped.get()) {
+                                extract(zip, entry, toFile, stopped);
+                            }
+                            return null;
+                        }
+                    }));
+                }
+            }
+            for (Future<Void> future : futures) {
+                await(future);
+            }
+        } finally {
+            // lets stop any outstanding tasks and wait for them as they read from the zip file
+            stopped.set(true);
+            awaitQuietly(futures);
+            zip.close();
+        }
+    }
+
+    /**
+     * Returns the file the given entry should be extracted to, failing if it would be outside of the directory
+     */
+    protected static File resolveEntry(File toDir, String entryName) throws IOException {
+        Path root = toDir.toPath().toAbsolutePath().normalize();
+        Path answer = root.resolve(entryName).normalize();
+        if (!answer.startsWith(root)) {
+            throw new IOException("Zip entry " + entryName + " is outside of the target directory " + toDir);
+        }
+        return answer.toFile();
+    }
+
     static void copy(InputStream is, OutputStream os) throws IOException {
         try {
             byte[] b = new byte[4096];
@@ -146,4 +329,400 @@ public class Zips {
         }
     }
 
+    private static void extract(ZipFile zip, ZipEntry entry, File toFile, AtomicBoolean stopped) throws IOException {
+        try (InputStream in = zip.getInputStream(entry);
+             ReadableByteChannel source = Channels.newChannel(in);
+             FileChannel target = FileChannel.open(toFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long count;
+            while (!stopped.get() && (count = target.transferFrom(source, position, 1024 * 1024)) > 0) {
+                position += count;
+            }
+        }
+        if (entry.getTime() != -1) {
+            toFile.setLastModified(entry.getTime());
+        }
+    }
+
+    private static List<Path> listEntries(final Path root, final FileFilter filter) throws IOException {
+        final List<Path> answer = new ArrayList<>();
+        java.nio.file.Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.equals(root)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                if (!matches(filter, dir.toFile())) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                answer.add(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (attrs.isRegularFile() && matches(filter, file.toFile())) {
+                    answer.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return answer;
+    }
+
+    private static boolean fitsInZip32(List<Path> paths) throws IOException {
+        if (paths.size() >= ZIP32_MAX_ENTRIES) {
+            return false;
+        }
+        long total = 0;
+        for (Path path : paths) {
+            // lets allow for the headers, data descriptors and UTF-8 names
+            total += java.nio.file.Files.size(path) + 2 * (path.toString().length() * 3 + 46) + 16;
+        }
+        return total < ZIP32_LIMIT;
+    }
+
+    private static <T> Future<T> submit(Executor executor, Callable<T> callable) {
+        FutureTask<T> answer = new FutureTask<>(callable);
+        executor.execute(answer);
+        return answer;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Waits for all the futures to complete ignoring their failures
+     */
+    private static void awaitQuietly(List<? extends Future<?>> futures) {
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | CancellationException e) {
+                    break;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the name of the entry of the given path using <code>/</code> as the separator
+     */
+    private static String entryName(Path root, Path path) {
+        StringBuilder name = new StringBuilder();
+        for (Path element : root.relativize(path)) {
+            if (name.length() > 0) {
+                name.append('/');
+            }
+            name.append(element.toString());
+        }
+        return name.toString();
+    }
+
+    /**
+     * Reads and compresses a file or creates a directory entry
+     */
+    private static class CompressTask implements Callable<CompressedEntry> {
+        private final Path root;
+        private final Path path;
+        private final int level;
+
+        CompressTask(Path root, Path path, int level) {
+            this.root = root;
+            this.path = path;
+            this.level = level;
+        }
+
+        @Override
+        public CompressedEntry call() throws Exception {
+            StringBuilder name = new StringBuilder(entryName(root, path));
+            long time = java.nio.file.Files.getLastModifiedTime(path).toMillis();
+            if (java.nio.file.Files.isDirectory(path)) {
+                name.append('/');
+                return new CompressedEntry(name.toString(), ZipEntry.STORED, time, 0, 0, new byte[0], 0);
+            }
+
+            byte[] data = java.nio.file.Files.readAllBytes(path);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            if (level != Deflater.NO_COMPRESSION && !isCompressed(name.toString()) && data.length > 0) {
+                Deflater deflater = new Deflater(level, true);
+                try {
+                    deflater.setInput(data);
+                    deflater.finish();
+                    // lets grow the buffer as needed up to the size of the data as most entries compress well
+                    byte[] buffer = new byte[Math.max(64, Math.min(data.length, 16 * 1024))];
+                    int length = 0;
+                    while (!deflater.finished() && length < data.length) {
+                        if (length == buffer.length) {
+                            buffer = Arrays.copyOf(buffer, Math.max(64, Math.min(data.length, buffer.length * 2)));
+                        }
+                        length += deflater.deflate(buffer, length, buffer.length - length);
+                    }
+                    if (deflater.finished() && length < data.length) {
+                        return new CompressedEntry(name.toString(), ZipEntry.DEFLATED, time, crc.getValue(), data.length, buffer, length);
+                    }
+                } finally {
+                    deflater.end();
+                }
+            }
+            // lets store the data as it does not get any smaller
+            return new CompressedEntry(name.toString(), ZipEntry.STORED, time, crc.getValue(), data.length, data, data.length);
+        }
+    }
+
+    private static class CompressedEntry {
+        private final String name;
+        private final int method;
+        private final long time;
+        private final long crc;
+        private final long size;
+        private final byte[] data;
+        private final int length;
+
+        CompressedEntry(String name, int method, long time, long crc, long size, byte[] data, int length) {
+            this.name = name;
+            this.method = method;
+            this.time = time;
+            this.crc = crc;
+            this.size = size;
+            this.data = data;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Appends already compressed entries to a ZIP file and writes its central directory when closed
+     */
+    private static class ZipWriter implements Closeable {
+        private static final int VERSION = 20;
+        private static final int UTF8_FLAG = 0x0800;
+        private static final int DATA_DESCRIPTOR_FLAG = 0x0008;
+
+        private final CountingOutputStream out;
+        private final ByteArrayOutputStream central = new ByteArrayOutputStream();
+        private int count;
+
+        ZipWriter(OutputStream out) {
+            this.out = new CountingOutputStream(out);
+        }
+
+        void write(Logger log, CompressedEntry entry) throws IOException {
+            byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+            int dosTime = toDosTime(entry.time);
+            long offset = out.getCount();
+            writeLocalHeader(name, UTF8_FLAG, entry.method, dosTime, entry.crc, entry.length, entry.size);
+            out.write(entry.data, 0, entry.length);
+            writeCentralHeader(name, UTF8_FLAG, entry.method, dosTime, entry.crc, entry.length, entry.size, offset);
+
+            if (log != null && log.isDebugEnabled()) {
+                log.debug("zipping file " + entry.name);
+            }
+        }
+
+        /**
+         * Streams the file into the archive; deflating it using a data descriptor for its CRC and sizes, or storing
+         * it after reading it once to calculate its CRC
+         */
+        void write(Logger log, String entryName, Path path, int level) throws IOException {
+            byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+            int dosTime = toDosTime(java.nio.file.Files.getLastModifiedTime(path).toMillis());
+            long offset = out.getCount();
+            if (level != Deflater.NO_COMPRESSION && !isCompressed(entryName)) {
+                int flags = UTF8_FLAG | DATA_DESCRIPTOR_FLAG;
+                writeLocalHeader(name, flags, ZipEntry.DEFLATED, dosTime, 0, 0, 0);
+                long start = out.getCount();
+                CRC32 crc = new CRC32();
+                long size;
+                Deflater deflater = new Deflater(level, true);
+                try (InputStream in = new CheckedInputStream(java.nio.file.Files.newInputStream(path), crc)) {
+                    DeflaterOutputStream deflated = new DeflaterOutputStream(new UnclosedOutputStream(out), deflater, 64 * 1024);
+                    size = copy(in, deflated);
+                    deflated.finish();
+                } finally {
+                    deflater.end();
+                }
+                long length = out.getCount() - start;
+                writeInt(out, 0x08074b50);
+                writeInt(out, crc.getValue());
+                writeInt(out, length);
+                writeInt(out, size);
+                writeCentralHeader(name, flags, ZipEntry.DEFLATED, dosTime, crc.getValue(), length, size, offset);
+            } else {
+                CRC32 crc = new CRC32();
+                long size;
+                try (InputStream in = new CheckedInputStream(java.nio.file.Files.newInputStream(path), crc)) {
+                    size = copy(in, null);
+                }
+                writeLocalHeader(name, UTF8_FLAG, ZipEntry.STORED, dosTime, crc.getValue(), size, size);
+                long start = out.getCount();
+                java.nio.file.Files.copy(path, out);
+                if (out.getCount() - start != size) {
+                    throw new IOException("File " + path + " changed while it was being zipped");
+                }
+                writeCentralHeader(name, UTF8_FLAG, ZipEntry.STORED, dosTime, crc.getValue(), size, size, offset);
+            }
+
+            if (log != null && log.isDebugEnabled()) {
+                log.debug("zipping file " + entryName);
+            }
+        }
+
+        private void writeLocalHeader(byte[] name, int flags, int method, int dosTime, long crc, long length, long size) throws IOException {
+            writeInt(out, 0x04034b50);
+            writeShort(out, VERSION);
+            writeShort(out, flags);
+            writeShort(out, method);
+            writeInt(out, dosTime);
+            writeInt(out, crc);
+            writeInt(out, length);
+            writeInt(out, size);
+            writeShort(out, name.length);
+            writeShort(out, 0);
+            out.write(name);
+        }
+
+        private void writeCentralHeader(byte[] name, int flags, int method, int dosTime, long crc, long length, long size, long offset) throws IOException {
+            writeInt(central, 0x02014b50);
+            writeShort(central, VERSION);
+            writeShort(central, VERSION);
+            writeShort(central, flags);
+            writeShort(central, method);
+            writeInt(central, dosTime);
+            writeInt(central, crc);
+            writeInt(central, length);
+            writeInt(central, size);
+            writeShort(central, name.length);
+            writeShort(central, 0);
+            writeShort(central, 0);
+            writeShort(central, 0);
+            writeShort(central, 0);
+            writeInt(central, name.length > 0 && name[name.length - 1] == '/' ? 0x10 : 0);
+            writeInt(central, offset);
+            central.write(name);
+            count++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                long offset = out.getCount();
+                central.writeTo(out);
+                writeInt(out, 0x06054b50);
+                writeShort(out, 0);
+                writeShort(out, 0);
+                writeShort(out, count);
+                writeShort(out, count);
+                writeInt(out, central.size());
+                writeInt(out, offset);
+                writeShort(out, 0);
+            } finally {
+                out.close();
+            }
+        }
+
+        private static int toDosTime(long time) {
+            LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+            if (date.getYear() < 1980) {
+                return (1 << 21) | (1 << 16);
+            }
+            return (date.getYear() - 1980) << 25 | date.getMonthValue() << 21 | date.getDayOfMonth() << 16
+                    | date.getHour() << 11 | date.getMinute() << 5 | date.getSecond() >> 1;
+        }
+
+        private static void writeShort(OutputStream out, int value) throws IOException {
+            out.write(value & 0xFF);
+            out.write((value >>> 8) & 0xFF);
+        }
+
+        private static void writeInt(OutputStream out, long value) throws IOException {
+            writeShort(out, (int) (value & 0xFFFF));
+            writeShort(out, (int) ((value >>> 16) & 0xFFFF));
+        }
+
+        /**
+         * Copies the input to the output, or just reads the input if the output is null, returning the number of bytes
+         */
+        private static long copy(InputStream in, OutputStream out) throws IOException {
+            byte[] buffer = new byte[64 * 1024];
+            long total = 0;
+            int count;
+            while ((count = in.read(buffer)) >= 0) {
+                if (out != null) {
+                    out.write(buffer, 0, count);
+                }
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Counts the bytes written to the ZIP file for the offsets of its entries
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Lets a deflated entry be finished without closing the ZIP file
+     */
+    private static class UnclosedOutputStream extends FilterOutputStream {
+        UnclosedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
 }
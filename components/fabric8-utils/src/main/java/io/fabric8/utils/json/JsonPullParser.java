@@ -0,0 +1,660 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A pull parser reading UTF-8 encoded JSON one {@link Event} at a time from a byte buffer.
+ * <p/>
+ * Strings made only of ASCII characters are created straight from the buffer, object names are
+ * interned in a small per-parser cache as the same keys tend to repeat, and numbers are only
+ * decoded when one of the <code>get</code> methods asks for them.
+ */
+public class JsonPullParser implements Closeable {
+
+    public enum Event {
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, NAME, STRING, NUMBER, TRUE, FALSE, NULL, END
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int NAME_CACHE_SIZE = 256;
+
+    private static final int ROOT = 0;
+    private static final int ROOT_DONE = 1;
+    private static final int OBJECT_FIRST = 2;
+    private static final int OBJECT_NEXT = 3;
+    private static final int OBJECT_VALUE = 4;
+    private static final int ARRAY_FIRST = 5;
+    private static final int ARRAY_NEXT = 6;
+
+    private final InputStream in;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private long offset;
+
+    private int[] stack = new int[32];
+    private int depth;
+    private Event event;
+
+    private char[] chars = new char[128];
+    private int charCount;
+    private String string;
+    private boolean integer;
+    private Object number;
+
+    private final String[] names = new String[NAME_CACHE_SIZE];
+    private final byte[][] nameBytes = new byte[NAME_CACHE_SIZE][];
+
+    private int line = 1;
+    private long lineStart;
+
+    public JsonPullParser(byte[] data) {
+        this(data, 0, data.length);
+    }
+
+    public JsonPullParser(byte[] data, int offset, int length) {
+        this.in = null;
+        this.buffer = data;
+        this.position = offset;
+        this.limit = offset + length;
+        this.offset = -offset;
+    }
+
+    public JsonPullParser(InputStream in) {
+        this.in = in;
+        this.buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * Parses the characters of the reader which are encoded to UTF-8 as they are read
+     */
+    public JsonPullParser(Reader reader) {
+        this(new Utf8InputStream(reader));
+    }
+
+    /**
+     * Moves to the next event returning {@link Event#END} once the whole document has been read
+     */
+    public Event next() throws IOException {
+        string = null;
+        number = null;
+        int c = skipWhiteSpace();
+        switch (stack[depth]) {
+            case ROOT:
+                stack[depth] = ROOT_DONE;
+                return event = readValue(c);
+            case ROOT_DONE:
+                if (c != -1) {
+                    throw error("Unexpected character");
+                }
+                return event = Event.END;
+            case OBJECT_FIRST:
+                if (c == '}') {
+                    position++;
+                    depth--;
+                    return event = Event.END_OBJECT;
+                }
+                return event = readName(c);
+            case OBJECT_NEXT:
+                if (c == '}') {
+                    position++;
+                    depth--;
+                    return event = Event.END_OBJECT;
+                }
+                if (c != ',') {
+                    throw expected("',' or '}'");
+                }
+                position++;
+                return event = readName(skipWhiteSpace());
+            case OBJECT_VALUE:
+                stack[depth] = OBJECT_NEXT;
+                return event = readValue(c);
+            case ARRAY_FIRST:
+                if (c == ']') {
+                    position++;
+                    depth--;
+                    return event = Event.END_ARRAY;
+                }
+                stack[depth] = ARRAY_NEXT;
+                return event = readValue(c);
+            default:
+                if (c == ']') {
+                    position++;
+                    depth--;
+                    return event = Event.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw expected("',' or ']'");
+                }
+                position++;
+                return event = readValue(skipWhiteSpace());
+        }
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Skips the children of the current object or array so that the next event follows its end
+     */
+    public void skipChildren() throws IOException {
+        if (event != Event.START_OBJECT && event != Event.START_ARRAY) {
+            return;
+        }
+        int target = depth - 1;
+        while (depth > target) {
+            if (next() == Event.END) {
+                throw error("Unexpected end of input");
+            }
+        }
+    }
+
+    /**
+     * Returns the object name, the string value or the text of the number of the current event
+     */
+    public String getString() {
+        if (string == null && event == Event.NUMBER) {
+            string = new String(chars, 0, charCount);
+        }
+        return string;
+    }
+
+    /**
+     * Returns true if the current number has neither a fraction nor an exponent
+     */
+    public boolean isIntegralNumber() {
+        return event == Event.NUMBER && integer;
+    }
+
+    public long getLong() throws IOException {
+        assertNumber();
+        if (number instanceof Long) {
+            return (Long) number;
+        }
+        if (integer && charCount <= 18) {
+            long answer = 0;
+            int i = chars[0] == '-' ? 1 : 0;
+            for (; i < charCount; i++) {
+                answer = answer * 10 + (chars[i] - '0');
+            }
+            answer = chars[0] == '-' ? -answer : answer;
+            number = answer;
+            return answer;
+        }
+        return getBigDecimal().longValue();
+    }
+
+    public int getInt() throws IOException {
+        return (int) getLong();
+    }
+
+    public double getDouble() throws IOException {
+        assertNumber();
+        if (number instanceof Double) {
+            return (Double) number;
+        }
+        double answer;
+        if (integer && charCount <= 15) {
+            // integers with up to 15 digits convert to doubles exactly, apart from the sign of -0
+            answer = getLong();
+            if (answer == 0 && chars[0] == '-') {
+                answer = -0.0;
+            }
+        } else {
+            answer = Double.parseDouble(new String(chars, 0, charCount));
+        }
+        number = answer;
+        return answer;
+    }
+
+    public BigDecimal getBigDecimal() throws IOException {
+        assertNumber();
+        return new BigDecimal(chars, 0, charCount);
+    }
+
+    /**
+     * Returns the current number as a {@link Long} if it is integral and fits in one, otherwise as a {@link Double}
+     */
+    public Number getNumber() throws IOException {
+        assertNumber();
+        if (integer && charCount <= 18) {
+            return getLong();
+        }
+        return getDouble();
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the column of the next character to read counting from 1
+     */
+    public int getColumn() {
+        return (int) (offset + position - lineStart) + 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+    }
+
+    //
+    // Implementation
+    //
+
+    private Event readValue(int c) throws IOException {
+        switch (c) {
+            case '{':
+                position++;
+                push(OBJECT_FIRST);
+                return Event.START_OBJECT;
+            case '[':
+                position++;
+                push(ARRAY_FIRST);
+                return Event.START_ARRAY;
+            case '"':
+                position++;
+                readString(false);
+                return Event.STRING;
+            case 't':
+                readLiteral("true");
+                return Event.TRUE;
+            case 'f':
+                readLiteral("false");
+                return Event.FALSE;
+            case 'n':
+                readLiteral("null");
+                return Event.NULL;
+            case '-':
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                readNumber();
+                return Event.NUMBER;
+            default:
+                throw expected("value");
+        }
+    }
+
+    private Event readName(int c) throws IOException {
+        if (c != '"') {
+            throw expected("name");
+        }
+        position++;
+        readString(true);
+        if (skipWhiteSpace() != ':') {
+            throw expected("':'");
+        }
+        position++;
+        stack[depth] = OBJECT_VALUE;
+        return Event.NAME;
+    }
+
+    private void readString(boolean name) throws IOException {
+        // fast path: the whole string is ASCII without escapes and is already in the buffer
+        byte[] buf = buffer;
+        int start = position;
+        int hash = 0;
+        for (int i = start; i < limit; i++) {
+            byte b = buf[i];
+            if (b == '"') {
+                int length = i - start;
+                position = i + 1;
+                if (name) {
+                    string = internName(buf, start, length, hash);
+                } else {
+                    string = new String(buf, start, length, StandardCharsets.ISO_8859_1);
+                }
+                charCount = 0;
+                return;
+            }
+            if (b < 0x20 || b == '\\') {
+                break;
+            }
+            hash = 31 * hash + b;
+        }
+        charCount = 0;
+        while (true) {
+            int c = peek();
+            if (c == '"') {
+                position++;
+                string = new String(chars, 0, charCount);
+                return;
+            }
+            if (c == -1) {
+                throw error("Unexpected end of input");
+            }
+            if (c == '\\') {
+                position++;
+                readEscape();
+            } else if (c < 0x20) {
+                throw expected("valid string character");
+            } else if (c < 0x80) {
+                position++;
+                append((char) c);
+            } else {
+                position++;
+                readMultiByte(c);
+            }
+        }
+    }
+
+    private String internName(byte[] buf, int start, int length, int hash) {
+        int index = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        byte[] cached = nameBytes[index];
+        if (cached != null && cached.length == length && regionMatches(cached, buf, start)) {
+            return names[index];
+        }
+        String answer = new String(buf, start, length, StandardCharsets.ISO_8859_1);
+        nameBytes[index] = Arrays.copyOfRange(buf, start, start + length);
+        names[index] = answer;
+        return answer;
+    }
+
+    private static boolean regionMatches(byte[] cached, byte[] buf, int start) {
+        for (int i = 0; i < cached.length; i++) {
+            if (cached[i] != buf[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readMultiByte(int first) throws IOException {
+        int codePoint;
+        int extra;
+        if ((first & 0xE0) == 0xC0) {
+            codePoint = first & 0x1F;
+            extra = 1;
+        } else if ((first & 0xF0) == 0xE0) {
+            codePoint = first & 0x0F;
+            extra = 2;
+        } else if ((first & 0xF8) == 0xF0) {
+            codePoint = first & 0x07;
+            extra = 3;
+        } else {
+            throw error("Invalid UTF-8 byte");
+        }
+        for (int i = 0; i < extra; i++) {
+            int c = peek();
+            if (c == -1 || (c & 0xC0) != 0x80) {
+                throw error("Invalid UTF-8 byte");
+            }
+            position++;
+            codePoint = (codePoint << 6) | (c & 0x3F);
+        }
+        if (codePoint >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            append(Character.highSurrogate(codePoint));
+            append(Character.lowSurrogate(codePoint));
+        } else {
+            append((char) codePoint);
+        }
+    }
+
+    private void readEscape() throws IOException {
+        int c = peek();
+        if (c == -1) {
+            throw error("Unexpected end of input");
+        }
+        position++;
+        switch (c) {
+            case '"':
+            case '/':
+            case '\\':
+                append((char) c);
+                break;
+            case 'b':
+                append('\b');
+                break;
+            case 'f':
+                append('\f');
+                break;
+            case 'n':
+                append('\n');
+                break;
+            case 'r':
+                append('\r');
+                break;
+            case 't':
+                append('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(peek(), 16);
+                    if (digit < 0) {
+                        throw expected("hexadecimal digit");
+                    }
+                    position++;
+                    value = (value << 4) | digit;
+                }
+                append((char) value);
+                break;
+            default:
+                position--;
+                throw expected("valid escape sequence");
+        }
+    }
+
+    private void readNumber() throws IOException {
+        charCount = 0;
+        integer = true;
+        appendIf('-');
+        int first = peek();
+        if (!appendDigit()) {
+            throw expected("digit");
+        }
+        if (first != '0') {
+            while (appendDigit()) {
+            }
+        }
+        if (appendIf('.')) {
+            integer = false;
+            if (!appendDigit()) {
+                throw expected("digit");
+            }
+            while (appendDigit()) {
+            }
+        }
+        if (appendIf('e') || appendIf('E')) {
+            integer = false;
+            if (!appendIf('+')) {
+                appendIf('-');
+            }
+            if (!appendDigit()) {
+                throw expected("digit");
+            }
+            while (appendDigit()) {
+            }
+        }
+    }
+
+    private boolean appendIf(char ch) throws IOException {
+        if (peek() != ch) {
+            return false;
+        }
+        position++;
+        append(ch);
+        return true;
+    }
+
+    private boolean appendDigit() throws IOException {
+        int c = peek();
+        if (c < '0' || c > '9') {
+            return false;
+        }
+        position++;
+        append((char) c);
+        return true;
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (peek() != literal.charAt(i)) {
+                throw expected("'" + literal.charAt(i) + "'");
+            }
+            position++;
+        }
+    }
+
+    private void append(char c) {
+        if (charCount == chars.length) {
+            chars = Arrays.copyOf(chars, charCount * 2);
+        }
+        chars[charCount++] = c;
+    }
+
+    private void push(int state) {
+        if (++depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth] = state;
+    }
+
+    private void assertNumber() {
+        if (event != Event.NUMBER) {
+            throw new IllegalStateException("Current event is " + event + " not " + Event.NUMBER);
+        }
+    }
+
+    /**
+     * Skips white space returning the next byte without consuming it or -1 at the end of input
+     */
+    private int skipWhiteSpace() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c == '\n') {
+                line++;
+                lineStart = offset + position + 1;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                return c;
+            }
+            position++;
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position] & 0xFF;
+    }
+
+    private boolean fill() throws IOException {
+        if (in == null) {
+            return false;
+        }
+        offset += limit;
+        position = 0;
+        limit = 0;
+        int count = in.read(buffer);
+        if (count <= 0) {
+            return false;
+        }
+        limit = count;
+        return true;
+    }
+
+    private IOException expected(String expected) throws IOException {
+        if (peek() == -1) {
+            return error("Unexpected end of input");
+        }
+        return error("Expected " + expected);
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at " + getLine() + ":" + getColumn());
+    }
+
+    /**
+     * Encodes the characters of a reader as UTF-8
+     */
+    private static class Utf8InputStream extends InputStream {
+        private final Reader reader;
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        private boolean endOfInput;
+        private boolean finished;
+
+        Utf8InputStream(Reader reader) {
+            this.reader = reader;
+            chars.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(b, off, len);
+            while (bytes.position() == off) {
+                if (!endOfInput && (!chars.hasRemaining() || chars.remaining() == 1 && Character.isHighSurrogate(chars.get(chars.position())))) {
+                    chars.compact();
+                    endOfInput = reader.read(chars) < 0;
+                    chars.flip();
+                }
+                CoderResult result = encoder.encode(chars, bytes, endOfInput);
+                if (result.isOverflow() && bytes.position() == off) {
+                    throw new IOException("Buffer of " + len + " bytes is too small to encode a character into");
+                }
+                if (endOfInput && !chars.hasRemaining()) {
+                    encoder.flush(bytes);
+                    finished = true;
+                    break;
+                }
+            }
+            int count = bytes.position() - off;
+            return count == 0 ? -1 : count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -15,103 +15,270 @@
  */
 package io.fabric8.utils.json;
 
+import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 
-public class JsonWriter {
+/**
+ * Writes JSON to a {@link Writer} either a whole tree of {@link Map}, {@link Collection}, {@link Number},
+ * {@link String}, {@link Boolean} and null values at a time or event by event.
+ * <p/>
+ * Output is gathered in a local buffer and strings which need no escaping are copied in one go.
+ */
+public class JsonWriter implements Closeable, Flushable {
 
     public static void write(Writer writer, Object value) throws IOException {
+        JsonWriter json = new JsonWriter(writer);
+        json.value(value);
+        json.flush();
+    }
+
+    /**
+     * Writes the value as UTF-8 without closing the stream
+     */
+    public static void write(OutputStream out, Object value) throws IOException {
+        write(new OutputStreamWriter(out, StandardCharsets.UTF_8), value);
+    }
+
+    private static final int BUFFER_SIZE = 4096;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private static final int EMPTY = 0;
+    private static final int NON_EMPTY = 1;
+    private static final int AFTER_NAME = 2;
+
+    private final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int count;
+    private int[] stack = new int[32];
+    private int depth;
+
+    public JsonWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        append('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        depth--;
+        append('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        append('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        append(']');
+        return this;
+    }
+
+    public JsonWriter name(String name) throws IOException {
+        if (stack[depth] == NON_EMPTY) {
+            append(',');
+        }
+        writeString(name);
+        append(':');
+        stack[depth] = AFTER_NAME;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        append(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        beforeValue();
+        append(Double.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        append(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        append(value.toString());
+        return this;
+    }
+
+    public JsonWriter nullValue() throws IOException {
+        beforeValue();
+        append("null");
+        return this;
+    }
+
+    /**
+     * Writes a tree of maps, collections and simple values
+     */
+    public JsonWriter value(Object value) throws IOException {
         if (value instanceof Map) {
-            writeObject(writer, (Map) value);
+            beginObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                name((String) entry.getKey());
+                value(entry.getValue());
+            }
+            endObject();
         } else if (value instanceof Collection) {
-            writeArray(writer, (Collection) value);
+            beginArray();
+            for (Object item : (Collection<?>) value) {
+                value(item);
+            }
+            endArray();
         } else if (value instanceof Number) {
-            writeNumber(writer, (Number) value);
+            value((Number) value);
         } else if (value instanceof String) {
-            writeString(writer, (String) value);
+            value((String) value);
         } else if (value instanceof Boolean) {
-            writeBoolean(writer, (Boolean) value);
+            value(((Boolean) value).booleanValue());
         } else if (value == null) {
-            writeNull(writer);
+            nullValue();
         } else {
             throw new IllegalArgumentException("Unsupported value: " + value);
         }
+        return this;
     }
 
-    private static void writeObject(Writer writer, Map<?, ?> value) throws IOException {
-        writer.append('{');
-        boolean first = true;
-        for (Map.Entry entry : value.entrySet()) {
-            if (!first) {
-                writer.append(',');
-            } else {
-                first = false;
-            }
-            writeString(writer, (String) entry.getKey());
-            writer.append(':');
-            write(writer, entry.getValue());
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            writer.write(buffer, 0, count);
+            count = 0;
         }
-        writer.append('}');
+        writer.flush();
     }
 
-    private static void writeString(Writer writer, String value) throws IOException {
-        writer.append('"');
-        for (int i = 0; i < value.length(); i++) {
+    @Override
+    public void close() throws IOException {
+        flush();
+        writer.close();
+    }
+
+    //
+    // Implementation
+    //
+
+    private void beforeValue() throws IOException {
+        int state = stack[depth];
+        if (state == NON_EMPTY && depth > 0) {
+            append(',');
+        }
+        stack[depth] = NON_EMPTY;
+    }
+
+    private void push() {
+        if (++depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+        }
+        stack[depth] = EMPTY;
+    }
+
+    private void writeString(String value) throws IOException {
+        append('"');
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
             char c = value.charAt(i);
-            switch (c) {
-                case '\"':
-                case '\\':
-                case '\b':
-                case '\f':
-                case '\n':
-                case '\r':
-                case '\t':
-                    writer.append('\\');
-                    writer.append(c);
-                    break;
-                default:
-                    if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
-                        String s = Integer.toHexString(c);
-                        writer.append('\\');
-                        writer.append('u');
-                        for (int j = s.length(); j < 4; j++) {
-                            writer.append('0');
-                        }
-                        writer.append(s);
-                    } else {
-                        writer.append(c);
-                    }
-                    break;
+            if (c >= ' ' && c != '"' && c != '\\' && c < '\u0080') {
+                continue;
+            }
+            String escape = escape(c);
+            if (escape != null) {
+                append(value, start, i);
+                append(escape);
+                start = i + 1;
+            } else if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+                append(value, start, i);
+                append('\\');
+                append('u');
+                append(HEX_DIGITS[c >> 12 & 0xF]);
+                append(HEX_DIGITS[c >> 8 & 0xF]);
+                append(HEX_DIGITS[c >> 4 & 0xF]);
+                append(HEX_DIGITS[c & 0xF]);
+                start = i + 1;
             }
         }
-        writer.append('"');
+        append(value, start, length);
+        append('"');
     }
 
-    private static void writeNumber(Writer writer, Number value) throws IOException {
-        writer.append(value.toString());
+    private static String escape(char c) {
+        switch (c) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\b':
+                return "\\b";
+            case '\f':
+                return "\\f";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            default:
+                return null;
+        }
     }
 
-    private static void writeBoolean(Writer writer, Boolean value) throws IOException {
-        writer.append(Boolean.toString(value));
+    private void append(char c) throws IOException {
+        if (count == buffer.length) {
+            writer.write(buffer, 0, count);
+            count = 0;
+        }
+        buffer[count++] = c;
     }
 
-    private static void writeArray(Writer writer, Collection<?> value) throws IOException {
-        writer.append('[');
-        boolean first = true;
-        for (Object obj : value) {
-            if (!first) {
-                writer.append(',');
-            } else {
-                first = false;
-            }
-            write(writer, obj);
-        }
-        writer.append(']');
+    private void append(String text) throws IOException {
+        append(text, 0, text.length());
     }
 
-    private static void writeNull(Writer writer) throws IOException {
-        writer.append("null");
+    private void append(String text, int start, int end) throws IOException {
+        while (start < end) {
+            if (count == buffer.length) {
+                writer.write(buffer, 0, count);
+                count = 0;
+            }
+            int length = Math.min(end - start, buffer.length - count);
+            text.getChars(start, start + length, buffer, count);
+            count += length;
+            start += length;
+        }
     }
 }
@@ -16,8 +16,15 @@
 package io.fabric8.utils;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -45,4 +52,56 @@ public class ChecksumUtilsTest {
 
     }
     
+    @Test
+    public void checksumFileTest() throws IOException {
+        File file = File.createTempFile("checksum", ".bin");
+        try {
+            // lets use a file large enough to be memory mapped
+            byte[] data = new byte[3 * 1024 * 1024 + 17];
+            new Random(1).nextBytes(data);
+            Files.writeToFile(file, data);
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            Assert.assertEquals(crc.getValue(), ChecksumUtils.checksumFile(file));
+            Assert.assertEquals(ChecksumUtils.checksum(new ByteArrayInputStream(data)), ChecksumUtils.checksumFile(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void checksumCacheTest() throws IOException {
+        File dir = java.nio.file.Files.createTempDirectory("checksums").toFile();
+        try {
+            File a = new File(dir, "a.txt");
+            File b = new File(dir, "sub/b.txt");
+            Files.writeToFile(a, "a".getBytes("UTF-8"));
+            Files.writeToFile(b, "b".getBytes("UTF-8"));
+            // lets make the files old enough to be trusted by the cache
+            long old = System.currentTimeMillis() - 60000;
+            a.setLastModified(old);
+            b.setLastModified(old);
+
+            ChecksumCache cache = ChecksumCache.load(dir);
+            List<File> files = Arrays.asList(a, b);
+            Map<File, Long> checksums = cache.checksums(files);
+            Assert.assertEquals(2, cache.getHashedCount());
+            Assert.assertEquals(Collections.emptyList(), cache.findChanged(files));
+            Assert.assertEquals(2, cache.getHashedCount());
+            cache.save();
+            Assert.assertTrue(new File(dir, ChecksumCache.CACHE_FILE).isFile());
+
+            ChecksumCache reloaded = ChecksumCache.load(dir);
+            Assert.assertEquals(checksums, reloaded.checksums(files));
+            Assert.assertEquals(0, reloaded.getHashedCount());
+            Assert.assertEquals(Collections.emptyList(), reloaded.findChanged(files));
+
+            Files.writeToFile(b, "changed".getBytes("UTF-8"));
+            Assert.assertEquals(Collections.singletonList(b), reloaded.findChanged(files));
+            Assert.assertEquals(1, reloaded.getHashedCount());
+        } finally {
+            Files.recursiveDelete(dir);
+        }
+    }
+
 }
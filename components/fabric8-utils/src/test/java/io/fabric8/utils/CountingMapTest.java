@@ -0,0 +1,127 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CountingMapTest {
+
+    @Test
+    public void testCounts() throws Exception {
+        CountingMap map = new CountingMap();
+        map.incrementAll(Arrays.asList("a", "b", "a"));
+        Assert.assertEquals(2, map.count("a"));
+        Assert.assertEquals(1, map.count("b"));
+        Assert.assertEquals(3, map.total());
+
+        Assert.assertEquals(0, map.decrement("b"));
+        Assert.assertFalse(map.keySet().contains("b"));
+        Assert.assertEquals(0, map.decrement("missing"));
+
+        map.setCount("c", 5);
+        Assert.assertEquals(7, map.total());
+        map.setCount("c", 0);
+        Assert.assertEquals(2, map.total());
+        // setting a count of zero removes the key and the key set is a copy
+        Set<String> keys = map.keySet();
+        Assert.assertEquals(Collections.singleton("a"), keys);
+        map.setCount("d", 1);
+        Assert.assertEquals(Collections.singleton("a"), keys);
+        map.setCount("d", 0);
+
+        Map<String, Integer> snapshot = map.snapshot();
+        map.increment("a");
+        Assert.assertEquals(Collections.singletonMap("a", 2), snapshot);
+        Assert.assertEquals(3, map.count("a"));
+    }
+
+    @Test
+    public void testConcurrentUpdates() throws Exception {
+        final CountingMap map = new CountingMap();
+        final int threads = 8;
+        final int iterations = 20000;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                final String key = "key" + (t % 2);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            start.await();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        for (int i = 0; i < iterations; i++) {
+                            map.increment(key);
+                            map.increment("shared");
+                            map.decrement("shared");
+                        }
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+        }
+        Assert.assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Assert.assertEquals(threads / 2 * iterations, map.count("key0"));
+        Assert.assertEquals(threads / 2 * iterations, map.count("key1"));
+        Assert.assertEquals(0, map.count("shared"));
+        Assert.assertEquals(threads * iterations, map.total());
+    }
+
+    @Test
+    public void testSnapshotsAreConsistent() throws Exception {
+        final CountingMap map = new CountingMap();
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    // lets keep "x" equal to "y" or one more at all times
+                    map.increment("x");
+                    map.increment("y");
+                }
+            }
+        };
+        writer.start();
+        try {
+            for (int i = 0; i < 10000; i++) {
+                Map<String, Integer> snapshot = map.snapshot();
+                int x = snapshot.containsKey("x") ? snapshot.get("x") : 0;
+                int y = snapshot.containsKey("y") ? snapshot.get("y") : 0;
+                Assert.assertTrue(snapshot.toString(), x == y || x == y + 1);
+            }
+        } finally {
+            done.set(true);
+            writer.join();
+        }
+    }
+}
@@ -18,9 +18,15 @@ package io.fabric8.utils;
 
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -50,4 +56,80 @@ public class FilesTest {
         
     }
     
+    @Test
+    public void copyAndFindTest() throws IOException {
+        File dir = java.nio.file.Files.createTempDirectory("files").toFile();
+        try {
+            File source = new File(dir, "source");
+            Files.writeToFile(new File(source, "a.json"), "{}".getBytes("UTF-8"));
+            Files.writeToFile(new File(source, "sub/b.json"), "[]".getBytes("UTF-8"));
+            Files.writeToFile(new File(source, "sub/c.txt"), "c".getBytes("UTF-8"));
+            Files.writeToFile(new File(source, "target/d.json"), "d".getBytes("UTF-8"));
+
+            File copy = new File(dir, "copy");
+            Files.copy(source, copy);
+            Assert.assertEquals("[]", new String(Files.readBytes(new File(copy, "sub/b.json")), "UTF-8"));
+            File linked = new File(dir, "linked");
+            Files.copy(source, linked, true);
+            Assert.assertEquals("c", new String(Files.readBytes(new File(linked, "sub/c.txt")), "UTF-8"));
+
+            Set<File> listed = Files.recursiveList(copy, new FilenameFilter() {
+                @Override
+                public boolean accept(File dir, String name) {
+                    return !name.equals("target");
+                }
+            });
+            Assert.assertEquals(new HashSet<>(Arrays.asList(copy, new File(copy, "a.json"), new File(copy, "sub"),
+                    new File(copy, "sub/b.json"), new File(copy, "sub/c.txt"))), listed);
+
+            Assert.assertEquals(new HashSet<>(Arrays.asList(new File(copy, "sub/b.json"), new File(copy, "target/d.json"))),
+                    Files.findRecursive(copy, "*/*.json"));
+            Filter<File> jsonFiles = new Filter<File>() {
+                @Override
+                public boolean matches(File file) {
+                    return file.getName().endsWith(".json");
+                }
+            };
+            Set<File> found = Files.findRecursive(copy, jsonFiles);
+            Assert.assertEquals(3, found.size());
+            Assert.assertEquals(found, Files.findRecursiveParallel(copy, jsonFiles));
+        } finally {
+            Files.recursiveDelete(dir);
+        }
+    }
+
+    @Test
+    public void findParallelSkipsSymbolicLinkLoopsTest() throws IOException {
+        File dir = java.nio.file.Files.createTempDirectory("files").toFile();
+        try {
+            Files.writeToFile(new File(dir, "sub/a.json"), "{}".getBytes("UTF-8"));
+            File other = new File(dir, "other");
+            Files.writeToFile(new File(other, "b.json"), "{}".getBytes("UTF-8"));
+            try {
+                java.nio.file.Files.createSymbolicLink(new File(dir, "sub/loop").toPath(), dir.toPath());
+                java.nio.file.Files.createSymbolicLink(new File(dir, "sub/other").toPath(), other.toPath());
+            } catch (UnsupportedOperationException | IOException e) {
+                // lets skip the test on file systems without symbolic links
+                return;
+            }
+            Filter<File> jsonFiles = new Filter<File>() {
+                @Override
+                public boolean matches(File file) {
+                    return file.getName().endsWith(".json");
+                }
+            };
+            Assert.assertEquals(new HashSet<>(Arrays.asList(new File(dir, "sub/a.json"), new File(other, "b.json"),
+                    new File(dir, "sub/other/b.json"))), Files.findRecursiveParallel(dir, jsonFiles));
+        } finally {
+            new File(dir, "sub/loop").delete();
+            new File(dir, "sub/other").delete();
+            Files.recursiveDelete(dir);
+        }
+    }
+
+    @Test(expected = FileNotFoundException.class)
+    public void readBytesOfMissingFileTest() throws IOException {
+        Files.readBytes(new File("does-not-exist-" + System.nanoTime()));
+    }
+
 }
@@ -0,0 +1,111 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IOHelpersTest {
+
+    @Test
+    public void testReadBytesWithWrongSizeHints() throws Exception {
+        byte[] data = randomBytes(100000);
+        for (long hint : new long[]{0, 10, data.length, data.length + 5000, -1}) {
+            Assert.assertArrayEquals("hint " + hint, data, IOHelpers.readBytes(new ByteArrayInputStream(data), hint));
+        }
+        // a stream which returns a little at a time
+        InputStream slow = new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 13));
+            }
+        };
+        Assert.assertArrayEquals(data, Files.readBytes(slow));
+    }
+
+    @Test
+    public void testTransfer() throws Exception {
+        byte[] data = randomBytes(300000);
+        File dir = new File("target/iohelpers-test");
+        dir.mkdirs();
+        File source = new File(dir, "source.bin");
+        File target = new File(dir, "target.bin");
+        IOHelpers.writeTo(source, new ByteArrayInputStream(data));
+        Assert.assertArrayEquals(data, Files.readBytes(source));
+
+        // file to file is copied by the channels
+        IOHelpers.copy(new FileInputStream(source), new FileOutputStream(target));
+        Assert.assertArrayEquals(data, Files.readBytes(target));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Assert.assertEquals(data.length, IOHelpers.transfer(new FileInputStream(source), out));
+        Assert.assertArrayEquals(data, out.toByteArray());
+
+        out.reset();
+        Assert.assertEquals(data.length, IOHelpers.transfer(Channels.newChannel(new ByteArrayInputStream(data)), Channels.newChannel(out)));
+        Assert.assertArrayEquals(data, out.toByteArray());
+
+        try (FileOutputStream fileOut = new FileOutputStream(target)) {
+            Assert.assertEquals(data.length, IOHelpers.transfer(Channels.newChannel(new ByteArrayInputStream(data)), fileOut.getChannel()));
+        }
+        Assert.assertArrayEquals(data, Files.readBytes(target));
+    }
+
+    @Test
+    public void testNestedCopiesDoNotShareBuffers() throws Exception {
+        final byte[] data = randomBytes(50000);
+        // an input stream which copies another stream on the same thread while it is being read
+        InputStream nested = new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                try {
+                    ByteArrayOutputStream inner = new ByteArrayOutputStream();
+                    IOHelpers.copy(new ByteArrayInputStream(new byte[70000]), inner);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.read(b, off, len);
+            }
+        };
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        IOHelpers.copy(nested, out);
+        Assert.assertArrayEquals(data, out.toByteArray());
+
+        StringWriter writer = new StringWriter();
+        IOHelpers.copy(new StringReader("hello world"), writer);
+        Assert.assertEquals("hello world", writer.toString());
+        Assert.assertEquals("hello", IOHelpers.readFully(new ByteArrayInputStream("hello".getBytes())));
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] answer = new byte[size];
+        new Random(size).nextBytes(answer);
+        Assert.assertFalse(Arrays.equals(answer, new byte[size]));
+        return answer;
+    }
+}
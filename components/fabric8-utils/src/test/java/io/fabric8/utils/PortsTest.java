@@ -15,6 +15,11 @@
  */
 package io.fabric8.utils;
 
+import java.net.ServerSocket;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -60,4 +65,58 @@ public class PortsTest {
     public void testExtractSshUrl()  {
         Assert.assertEquals(2181, Ports.extractPort("istation:2181"));
     }
+
+    @Test
+    public void testFindUsedPorts() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            int port = socket.getLocalPort();
+            Assert.assertTrue(Ports.findUsedPorts(Math.max(1, port - 100), Math.min(Ports.MAX_PORT_NUMBER, port + 100)).contains(port));
+        }
+    }
+
+    @Test
+    public void testReserveAndAllocatePorts() throws Exception {
+        List<PortReservation> reservations = Ports.reservePorts(5, 20000, 30000);
+        Set<Integer> ports = new HashSet<Integer>();
+        for (PortReservation reservation : reservations) {
+            Assert.assertTrue(reservation.isHeld());
+            Assert.assertFalse(Ports.isPortFree(reservation.getPort()));
+            ports.add(reservation.getPort());
+        }
+        Assert.assertEquals(5, ports.size());
+
+        // allocated ports are handed off but never allocated again until released
+        for (int port : Ports.allocatePorts(100, 20000, 30000)) {
+            Assert.assertTrue("Port " + port + " allocated twice", ports.add(port));
+        }
+
+        PortReservation reservation = reservations.get(0);
+        int port = reservation.handOff();
+        Assert.assertFalse(reservation.isHeld());
+        Assert.assertTrue(Ports.isReserved(port));
+        try (ServerSocket socket = new ServerSocket(port)) {
+            Assert.assertEquals(port, socket.getLocalPort());
+        }
+        Ports.releasePort(port);
+        Assert.assertFalse(Ports.isReserved(port));
+
+        for (int p : ports) {
+            Ports.releasePort(p);
+        }
+        for (PortReservation r : reservations) {
+            r.close();
+        }
+    }
+
+    @Test
+    public void testAvailablePortFinderOnlyReservesWhenAsked() throws Exception {
+        int port = AvailablePortFinder.getNextAvailable();
+        Assert.assertFalse(Ports.isReserved(port));
+
+        PortReservation reservation = AvailablePortFinder.reserveNextAvailable();
+        Assert.assertTrue(reservation.getPort() > port);
+        Assert.assertTrue(reservation.isHeld());
+        Assert.assertTrue(Ports.isReserved(reservation.getPort()));
+        Ports.releasePort(reservation.handOff());
+    }
 }
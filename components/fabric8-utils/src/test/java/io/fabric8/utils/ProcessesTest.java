@@ -0,0 +1,74 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessesTest {
+    private static final long MISSING_PID = 999999999L;
+
+    @Test
+    public void testCurrentProcessIsAlive() throws Exception {
+        long pid = currentPid();
+        assertTrue(Processes.isProcessAlive(pid));
+        assertTrue(Processes.getProcessIds().contains(pid));
+        assertEquals(Collections.singleton(pid), Processes.findAliveProcesses(Arrays.asList(pid, MISSING_PID)));
+    }
+
+    @Test
+    public void testOnExit() throws Exception {
+        assertEquals(MISSING_PID, Processes.onExit(MISSING_PID).get(5, TimeUnit.SECONDS).longValue());
+
+        Process process;
+        try {
+            process = new ProcessBuilder("sleep", "1").start();
+        } catch (Exception e) {
+            Assume.assumeNoException(e);
+            return;
+        }
+        Method pidMethod;
+        try {
+            pidMethod = Process.class.getMethod("pid");
+        } catch (NoSuchMethodException e) {
+            process.destroy();
+            Assume.assumeNoException(e);
+            return;
+        }
+        long pid = (Long) pidMethod.invoke(process);
+        CompletableFuture<Long> exit = Processes.onExit(pid);
+        assertFalse(exit.isDone());
+        assertEquals(pid, exit.get(10, TimeUnit.SECONDS).longValue());
+        process.waitFor();
+        assertFalse(Processes.isProcessAlive(pid));
+    }
+
+    private static long currentPid() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        return Long.parseLong(name.substring(0, name.indexOf('@')));
+    }
+}
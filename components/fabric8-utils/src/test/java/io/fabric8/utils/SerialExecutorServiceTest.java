@@ -17,9 +17,17 @@ package io.fabric8.utils;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -45,4 +53,183 @@ public class SerialExecutorServiceTest {
         assertEquals(10000, data[0]);
     }
 
+    @Test
+    public void testOrderIsKeptAcrossBatches() throws InterruptedException {
+        SerialExecutorService executor = new SerialExecutorService("ordered");
+        executor.setDrainBatchSize(7);
+        final List<Integer> order = new ArrayList<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            final int id = i;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    order.add(id);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1000, order.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, order.get(i).intValue());
+        }
+        assertTrue("drains " + executor.getDrainCount(), executor.getDrainCount() >= 1000 / 7);
+        assertEquals(1001, executor.getSubmittedCount());
+    }
+
+    @Test
+    public void testSubmittersWaitWhenQueueIsFull() throws Exception {
+        SerialExecutorService executor = new SerialExecutorService("bounded");
+        executor.setMaxQueueSize(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+
+        final AtomicBoolean submitted = new AtomicBoolean();
+        Thread submitter = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 2; i++) {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                        }
+                    });
+                }
+                submitted.set(true);
+            }
+        };
+        submitter.start();
+        submitter.join(200);
+        assertFalse(submitted.get());
+        assertTrue(executor.getQueueSize() <= 2);
+
+        release.countDown();
+        submitter.join(5000);
+        assertTrue(submitted.get());
+        // lets check before shutdown() as it queues a task of its own
+        assertEquals(2, executor.getPeakQueueSize());
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testConcurrentSubmittersDoNotOverfillTheQueue() throws Exception {
+        final SerialExecutorService executor = new SerialExecutorService("bounded");
+        executor.setMaxQueueSize(4);
+        List<Thread> submitters = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            Thread submitter = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 1000; j++) {
+                        executor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                            }
+                        });
+                    }
+                }
+            };
+            submitters.add(submitter);
+            submitter.start();
+        }
+        for (Thread submitter : submitters) {
+            submitter.join(10000);
+        }
+        assertTrue("peak " + executor.getPeakQueueSize(), executor.getPeakQueueSize() <= 4);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(8001, executor.getSubmittedCount());
+    }
+
+    @Test
+    public void testStatistics() throws Exception {
+        // lets drain the queue from the test thread
+        Executor target = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+            }
+        };
+        SerialExecutorService executor = new SerialExecutorService(target, "statistics");
+        executor.setStatisticsEnabled(true);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("expected");
+            }
+        });
+        Thread.sleep(20);
+        assertEquals(2, executor.getQueueSize());
+
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable e) {
+                failures.add(e);
+            }
+        });
+        try {
+            executor.drain();
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+
+        assertEquals(1, failures.size());
+        assertEquals(0, executor.getQueueSize());
+        assertEquals(2, executor.getSubmittedCount());
+        assertEquals(1, executor.getCompletedCount());
+        assertEquals(1, executor.getFailedCount());
+        assertTrue("max latency " + executor.getMaxLatencyMillis(), executor.getMaxLatencyMillis() >= 15);
+        assertTrue(executor.getAverageLatencyMillis() > 0);
+
+        executor.resetStatistics();
+        assertEquals(0, executor.getSubmittedCount());
+        assertEquals(0, executor.getMaxLatencyMillis(), 0.0);
+    }
+
+    @Test
+    public void testBackends() throws Exception {
+        for (String backend : new String[]{"pool", "spawn", "virtual"}) {
+            Executor target = SerialExecutorService.createExecutor(backend);
+            assertNotNull(target);
+            SerialExecutorService executor = new SerialExecutorService(target, backend);
+            final long data[] = new long[]{0};
+            for (int i = 0; i < 1000; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        data[0]++;
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(backend, executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(backend, 1000, data[0]);
+            if (target instanceof ExecutorService) {
+                ((ExecutorService) target).shutdown();
+            }
+        }
+    }
+
 }
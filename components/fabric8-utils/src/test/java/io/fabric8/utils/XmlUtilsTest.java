@@ -0,0 +1,125 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+public class XmlUtilsTest {
+
+    private static final String POM = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+            + "  <parent><groupId>io.fabric8</groupId><version>2.2.0</version></parent>\n"
+            + "  <artifactId>caf\u00e9</artifactId>\n"
+            + "  <!-- <version>ignored</version> -->\n"
+            + "  <properties><skipped><deep>x</deep></skipped></properties>\n"
+            + "  <dependencies>\n"
+            + "    <dependency scope=\"test\"><artifactId>junit</artifactId></dependency>\n"
+            + "    <dependency><artifactId><![CDATA[slf4j-]]>api</artifactId></dependency>\n"
+            + "  </dependencies>\n"
+            + "  <version>1.<!-- comment -->0</version>\n"
+            + "</project>\n";
+
+    @Test
+    public void testParseDocAndGetElement() throws Exception {
+        Document doc = XmlUtils.parseDoc(POM);
+        Assert.assertEquals("2.2.0", XmlUtils.getTextContentOfElement(doc, "parent/version"));
+        Assert.assertEquals("caf\u00e9", XmlUtils.getElement(doc, "artifactId").getTextContent());
+        // like before the last matching element is returned
+        Assert.assertEquals("slf4j-api", XmlUtils.getElement(doc, "dependencies/dependency/artifactId").getTextContent());
+        Assert.assertNull(XmlUtils.getElement(doc, "dependencies/missing/artifactId"));
+
+        Document other = XmlUtils.parseDoc(new ByteArrayInputStream("<a><b>c</b></a>".getBytes(StandardCharsets.UTF_8)));
+        Assert.assertEquals("c", XmlUtils.getTextContentOfElement(other, "b"));
+    }
+
+    @Test
+    public void testXPathIsCompiledOnce() throws Exception {
+        XPathFacade xpath = XmlUtils.xpath("/a/b");
+        Assert.assertSame(xpath, XmlUtils.xpath("/a/b"));
+        Assert.assertEquals("c", xpath.elementTextContent(XmlUtils.parseDoc("<a><b>c</b></a>")));
+    }
+
+    @Test
+    public void testXPathIsCompiledAgainWhenTheNamespaceContextChanges() throws Exception {
+        DocumentBuilderFactory factory = XmlUtils.createDocumentBuilderFactory();
+        factory.setNamespaceAware(true);
+        Document doc = factory.newDocumentBuilder().parse(stream("<a xmlns=\"urn:b\"><b>c</b></a>"));
+
+        XPathBuilder builder = new XPathBuilder();
+        builder.getXPath().setNamespaceContext(namespaceContext("urn:a"));
+        XPathFacade xpath = builder.xpath("/p:a/p:b");
+        Assert.assertNull(xpath.elementTextContent(doc));
+
+        builder.getXPath().setNamespaceContext(namespaceContext("urn:b"));
+        XPathFacade other = builder.xpath("/p:a/p:b");
+        Assert.assertNotSame(xpath, other);
+        Assert.assertEquals("c", other.elementTextContent(doc));
+    }
+
+    @Test
+    public void testPathExtractor() throws Exception {
+        XmlPathExtractor extractor = new XmlPathExtractor("parent/version", "version", "dependencies/dependency/artifactId",
+                "dependencies/dependency/@scope", "missing");
+        Map<String, List<String>> values = extractor.extract(stream(POM));
+        Assert.assertEquals(Collections.singletonList("2.2.0"), values.get("parent/version"));
+        Assert.assertEquals(Collections.singletonList("1.0"), values.get("version"));
+        Assert.assertEquals(Arrays.asList("junit", "slf4j-api"), values.get("dependencies/dependency/artifactId"));
+        Assert.assertEquals(Collections.singletonList("test"), values.get("dependencies/dependency/@scope"));
+        Assert.assertEquals(Collections.emptyList(), values.get("missing"));
+
+        Map<String, String> first = new XmlPathExtractor("artifactId", "dependencies/dependency/artifactId").extractFirst(stream(POM));
+        Assert.assertEquals("caf\u00e9", first.get("artifactId"));
+        Assert.assertEquals("junit", first.get("dependencies/dependency/artifactId"));
+    }
+
+    private static NamespaceContext namespaceContext(final String uri) {
+        return new NamespaceContext() {
+            @Override
+            public String getNamespaceURI(String prefix) {
+                return "p".equals(prefix) ? uri : XMLConstants.NULL_NS_URI;
+            }
+
+            @Override
+            public String getPrefix(String namespaceURI) {
+                return uri.equals(namespaceURI) ? "p" : null;
+            }
+
+            @Override
+            public Iterator<String> getPrefixes(String namespaceURI) {
+                return uri.equals(namespaceURI) ? Collections.singletonList("p").iterator() : Collections.<String>emptyIterator();
+            }
+        };
+    }
+
+    private static InputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ZipsTest {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ZipsTest.class);
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = java.nio.file.Files.createTempDirectory("zips").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        Files.recursiveDelete(dir);
+    }
+
+    @Test
+    public void testCreateAndUnzip() throws Exception {
+        File source = new File(dir, "source");
+        Map<String, byte[]> files = new HashMap<>();
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            text.append("line ").append(i).append("\n");
+        }
+        files.put("a.txt", text.toString().getBytes(StandardCharsets.UTF_8));
+        files.put("nested/deeper/b.txt", "b\u00e9".getBytes(StandardCharsets.UTF_8));
+        files.put("nested/empty.txt", new byte[0]);
+        byte[] random = new byte[100000];
+        new Random(1).nextBytes(random);
+        files.put("nested/random.bin", random);
+        files.put("image.png", text.toString().getBytes(StandardCharsets.UTF_8));
+        files.put("skipped/c.txt", "c".getBytes(StandardCharsets.UTF_8));
+        for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+            Files.writeToFile(new File(source, entry.getKey()), entry.getValue());
+        }
+
+        File zip = new File(dir, "out/test.zip");
+        Zips.createZipFile(LOG, source, zip, new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return !file.getName().equals("skipped");
+            }
+        }, Deflater.BEST_SPEED);
+
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("a.txt").getMethod());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("image.png").getMethod());
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("nested/random.bin").getMethod());
+            assertTrue(zipFile.getEntry("nested/deeper/").isDirectory());
+            assertEquals(null, zipFile.getEntry("skipped/c.txt"));
+        }
+
+        File streamed = new File(dir, "streamed");
+        try (FileInputStream in = new FileInputStream(zip)) {
+            Zips.unzip(in, streamed);
+        }
+        File parallel = new File(dir, "parallel");
+        Zips.unzip(zip, parallel);
+        for (File target : new File[]{streamed, parallel}) {
+            for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+                File file = new File(target, entry.getKey());
+                if (entry.getKey().startsWith("skipped")) {
+                    assertFalse(file.exists());
+                } else {
+                    assertArrayEquals(entry.getKey(), entry.getValue(), Files.readBytes(file));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLargeFilesAreStreamed() throws Exception {
+        File source = new File(dir, "source");
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; text.length() < 6 * 1024 * 1024; i++) {
+            text.append("line ").append(i).append("\n");
+        }
+        byte[] large = text.toString().getBytes(StandardCharsets.UTF_8);
+        Files.writeToFile(new File(source, "large.txt"), large);
+        Files.writeToFile(new File(source, "large.jar"), large);
+        Files.writeToFile(new File(source, "small.txt"), "small".getBytes(StandardCharsets.UTF_8));
+
+        File zip = new File(dir, "large.zip");
+        Zips.createZipFile(LOG, source, zip, null);
+        try (ZipFile zipFile = new ZipFile(zip)) {
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("large.txt").getMethod());
+            assertTrue(zipFile.getEntry("large.txt").getCompressedSize() < large.length);
+            assertEquals(ZipEntry.STORED, zipFile.getEntry("large.jar").getMethod());
+        }
+
+        File streamed = new File(dir, "streamed");
+        try (FileInputStream in = new FileInputStream(zip)) {
+            Zips.unzip(in, streamed);
+        }
+        File parallel = new File(dir, "parallel");
+        Zips.unzip(zip, parallel);
+        for (File target : new File[]{streamed, parallel}) {
+            assertArrayEquals(large, Files.readBytes(new File(target, "large.txt")));
+            assertArrayEquals(large, Files.readBytes(new File(target, "large.jar")));
+            assertArrayEquals("small".getBytes(StandardCharsets.UTF_8), Files.readBytes(new File(target, "small.txt")));
+        }
+    }
+
+    @Test
+    public void testUnzipRejectsEntriesOutsideTheDirectory() throws Exception {
+        File zip = new File(dir, "evil.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+            zos.putNextEntry(new ZipEntry("../evil.txt"));
+            zos.write("evil".getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+        File target = new File(dir, "target");
+        try {
+            Zips.unzip(zip, target);
+            fail("Should have rejected the entry");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("../evil.txt"));
+        }
+        try (FileInputStream in = new FileInputStream(zip)) {
+            Zips.unzip(in, target);
+            fail("Should have rejected the entry");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("../evil.txt"));
+        }
+        assertFalse(new File(dir, "evil.txt").exists());
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils.json;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class JsonReaderTest {
+
+    private static final String JSON = "{\"name\": \"cheese\", \"count\": 3, \"ratio\": -1.5e2, \"tags\": [\"a\", \"\\u00e9\\n\", \"\u20ac\ud83d\ude00\"],"
+            + " \"nested\": {\"on\": true, \"off\": false, \"none\": null}, \"empty\": [], \"nothing\": {}}";
+
+    @Test
+    public void testReadTree() throws Exception {
+        for (Object value : new Object[]{JsonReader.read(new StringReader(JSON)), JsonReader.read(utf8(JSON)),
+                JsonReader.read(new ByteArrayInputStream(utf8(JSON)))}) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            assertEquals("cheese", map.get("name"));
+            assertEquals(3.0, map.get("count"));
+            assertEquals(-150.0, map.get("ratio"));
+            assertEquals(Arrays.asList("a", "\u00e9\n", "\u20ac\ud83d\ude00"), map.get("tags"));
+            Map<String, Object> nested = (Map<String, Object>) map.get("nested");
+            assertEquals(Boolean.TRUE, nested.get("on"));
+            assertEquals(Boolean.FALSE, nested.get("off"));
+            assertTrue(nested.containsKey("none"));
+            assertNull(nested.get("none"));
+            assertTrue(((List<?>) map.get("empty")).isEmpty());
+            assertTrue(((Map<?, ?>) map.get("nothing")).isEmpty());
+        }
+    }
+
+    @Test
+    public void testPullEventsAndLazyNumbers() throws Exception {
+        JsonPullParser parser = new JsonPullParser(utf8("[{\"id\": 12345678901234567, \"v\": 0.25}, {\"id\": -7, \"v\": 1e3}]"));
+        assertEquals(JsonPullParser.Event.START_ARRAY, parser.next());
+        assertEquals(JsonPullParser.Event.START_OBJECT, parser.next());
+        assertEquals(JsonPullParser.Event.NAME, parser.next());
+        String firstName = parser.getString();
+        assertEquals(JsonPullParser.Event.NUMBER, parser.next());
+        assertTrue(parser.isIntegralNumber());
+        assertEquals(12345678901234567L, parser.getLong());
+        assertEquals(12345678901234567L, parser.getNumber());
+        assertEquals(JsonPullParser.Event.NAME, parser.next());
+        assertEquals(JsonPullParser.Event.NUMBER, parser.next());
+        assertEquals(0.25, parser.getDouble(), 0.0);
+        assertEquals("0.25", parser.getString());
+        assertEquals(JsonPullParser.Event.END_OBJECT, parser.next());
+
+        assertEquals(JsonPullParser.Event.START_OBJECT, parser.next());
+        assertEquals(JsonPullParser.Event.NAME, parser.next());
+        assertSame(firstName, parser.getString());
+        assertEquals(JsonPullParser.Event.NUMBER, parser.next());
+        assertEquals(-7, parser.getInt());
+        assertEquals(JsonPullParser.Event.NAME, parser.next());
+        assertEquals(JsonPullParser.Event.NUMBER, parser.next());
+        assertEquals(1000.0, parser.getNumber());
+        assertEquals(JsonPullParser.Event.END_OBJECT, parser.next());
+        assertEquals(JsonPullParser.Event.END_ARRAY, parser.next());
+        assertEquals(JsonPullParser.Event.END, parser.next());
+    }
+
+    @Test
+    public void testNegativeZero() throws Exception {
+        assertEquals(Arrays.asList(-0.0, 0.0, -0.0), JsonReader.read(utf8("[-0, 0, -0.0]")));
+    }
+
+    @Test
+    public void testSkipChildren() throws Exception {
+        JsonPullParser parser = new JsonPullParser(utf8("{\"skip\": {\"a\": [1, {\"b\": 2}]}, \"keep\": \"yes\"}"));
+        parser.next();
+        parser.next();
+        assertEquals(JsonPullParser.Event.START_OBJECT, parser.next());
+        parser.skipChildren();
+        assertEquals(JsonPullParser.Event.NAME, parser.next());
+        assertEquals("keep", parser.getString());
+        assertEquals(JsonPullParser.Event.STRING, parser.next());
+        assertEquals("yes", parser.getString());
+    }
+
+    @Test
+    public void testReadAcrossBufferBoundaries() throws Exception {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append("{\"key\": \"caf\u00e9 ").append(i).append("\", \"n\": ").append(i).append(".5}");
+        }
+        builder.append("]");
+        // lets return a few bytes at a time so that tokens are split across reads
+        InputStream in = new ByteArrayInputStream(utf8(builder.toString())) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+        List<Map<String, Object>> list = (List<Map<String, Object>>) JsonReader.read(in);
+        assertEquals(5000, list.size());
+        assertEquals("caf\u00e9 4321", list.get(4321).get("key"));
+        assertEquals(4321.5, list.get(4321).get("n"));
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        assertError("{\"a\": 1,}", "Expected name at 1:9");
+        assertError("[1 2]", "Expected ',' or ']' at 1:4");
+        assertError("{\"a\"\n 1}", "Expected ':' at 2:2");
+        assertError("[1, tru]", "Expected 'e' at 1:8");
+        assertError("{\"a\": 1} x", "Unexpected character at 1:10");
+        assertError("[\"abc", "Unexpected end of input at 1:6");
+        assertError("", "Unexpected end of input at 1:1");
+    }
+
+    @Test
+    public void testWriteRoundTrip() throws Exception {
+        Map<String, Object> map = new LinkedHashMap<String, Object>();
+        map.put("name", "line\nbreak \"quoted\" \\ tab\t\u0001 \u2028");
+        map.put("numbers", Arrays.asList(1.5, 2L, -3));
+        map.put("flag", true);
+        map.put("none", null);
+
+        StringWriter writer = new StringWriter();
+        JsonWriter.write(writer, map);
+        String json = writer.toString();
+        assertEquals("{\"name\":\"line\\nbreak \\\"quoted\\\" \\\\ tab\\t\\u0001 \\u2028\",\"numbers\":[1.5,2,-3],\"flag\":true,\"none\":null}", json);
+
+        Map<String, Object> read = (Map<String, Object>) JsonReader.read(new StringReader(json));
+        assertEquals(map.get("name"), read.get("name"));
+        assertEquals(Arrays.asList(1.5, 2.0, -3.0), read.get("numbers"));
+    }
+
+    @Test
+    public void testStreamingWriter() throws Exception {
+        StringWriter writer = new StringWriter();
+        new JsonWriter(writer).beginObject()
+                .name("a").beginArray().value(1).value("x").nullValue().endArray()
+                .name("b").beginObject().endObject()
+                .name("c").value(false)
+                .endObject().flush();
+        assertEquals("{\"a\":[1,\"x\",null],\"b\":{},\"c\":false}", writer.toString());
+    }
+
+    private static void assertError(String json, String message) {
+        try {
+            JsonReader.read(utf8(json));
+            fail("Should have failed to parse " + json);
+        } catch (IOException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
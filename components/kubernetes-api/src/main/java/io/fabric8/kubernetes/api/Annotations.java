@@ -21,6 +21,12 @@ package io.fabric8.kubernetes.api;
 public class Annotations {
     public static class Config {
         public static final String JSON_SCHEMA = "fabric8.io/json-schema";
+
+        /**
+         * The hash of the user configuration of a resource when it was last applied
+         * so that unchanged resources can be detected without comparing the whole configuration
+         */
+        public static final String CONFIG_HASH = "fabric8.io/config-hash";
     }
 
     public static class Service {
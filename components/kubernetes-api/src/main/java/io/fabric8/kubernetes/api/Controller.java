@@ -38,7 +38,7 @@ import io.fabric8.kubernetes.api.model.extensions.Deployment;
 import io.fabric8.kubernetes.api.model.extensions.Ingress;
 import io.fabric8.kubernetes.api.model.extensions.ReplicaSet;
 import io.fabric8.kubernetes.api.model.extensions.StatefulSet;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.api.support.KubernetesResourceIterator;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.dsl.MixedOperation;
@@ -64,19 +64,24 @@ import io.fabric8.utils.IOHelpers;
 import io.fabric8.utils.Objects;
 import io.fabric8.utils.Strings;
 import io.fabric8.utils.Systems;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.yaml.snakeyaml.Yaml;
 
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Predicate;
 
 import static io.fabric8.kubernetes.api.KubernetesHelper.getKind;
@@ -90,11 +95,15 @@ import static io.fabric8.kubernetes.api.KubernetesHelper.toItemList;
 
 /**
  * Applies DTOs to the current Kubernetes master
+ * <p/>
+ * A controller created without a client acquires one from {@link KubernetesClients} which is released by
+ * {@link #close()}.
  */
-public class Controller {
+public class Controller implements Closeable {
     private static final transient Logger LOG = LoggerFactory.getLogger(Controller.class);
 
     private final KubernetesClient kubernetesClient;
+    private boolean closeKubernetesClient;
 
     private boolean throwExceptionOnError = true;
     private boolean allowCreate = true;
@@ -112,15 +121,28 @@ public class Controller {
     private String namesapce = KubernetesHelper.defaultNamespace();
     private boolean requireSecretsCreatedBeforeReplicationControllers;
     private boolean rollingUpgradePreserveScale = true;
+    private boolean configHashEnabled = true;
 
     public Controller() {
-        this(new DefaultKubernetesClient());
+        this(KubernetesClients.acquire());
+        this.closeKubernetesClient = true;
     }
 
     public Controller(KubernetesClient kubernetesClient) {
         this.kubernetesClient = kubernetesClient;
     }
 
+    /**
+     * Releases the client if it was acquired by this controller; a client passed to the constructor is left open
+     */
+    @Override
+    public synchronized void close() {
+        if (closeKubernetesClient) {
+            closeKubernetesClient = false;
+            kubernetesClient.close();
+        }
+    }
+
     public String apply(File file) throws Exception {
         String ext = Files.getFileExtension(file);
 
@@ -152,62 +174,60 @@ public class Controller {
     }
 
     /**
-     * Applies the given JSON to the underlying REST APIs in a single operation without needing to explicitly parse first.
+     * Applies the given JSON to the underlying REST APIs applying each resource as soon as it is parsed.
      */
     public String applyJson(File json) throws Exception {
-        Object dto = loadJson(json);
-        apply(dto, "REST call");
-        return "";
+        try (InputStream in = new FileInputStream(json)) {
+            return applyJson(in);
+        }
     }
 
     /**
      * Applies the given YAML to the underlying REST APIs in a single operation without needing to explicitly parse first.
      */
     public String applyYaml(String yaml) throws Exception {
-        String json = convertYamlToJson(yaml);
-        Object dto = loadJson(json);
-        apply(dto, "REST call");
-        return "";
+        return applyYaml(new ByteArrayInputStream(yaml.getBytes(StandardCharsets.UTF_8)));
     }
 
     /**
-     * Applies the given YAML to the underlying REST APIs in a single operation without needing to explicitly parse first.
+     * Applies the given YAML to the underlying REST APIs applying each resource as soon as it is parsed.
      */
     public String applyYaml(File yaml) throws Exception {
-        String json = convertYamlToJson(yaml);
-        Object dto = loadJson(json);
-        apply(dto, "REST call");
-        return "";
-    }
-
-    private String convertYamlToJson(String yamlString) throws FileNotFoundException {
-        Yaml yaml = new Yaml();
-
-        Map<String, Object> map = (Map<String, Object>) yaml.load(yamlString);
-        JSONObject jsonObject = new JSONObject(map);
-
-        return jsonObject.toString();
+        try (InputStream in = new FileInputStream(yaml)) {
+            return applyYaml(in);
+        }
     }
 
-    private String convertYamlToJson(File yamlFile) throws FileNotFoundException {
-        Yaml yaml = new Yaml();
-        FileInputStream fstream = new FileInputStream(yamlFile);
-
-        Map<String, Object> map = (Map<String, Object>) yaml.load(fstream);
-        JSONObject jsonObject = new JSONObject(map);
-
-        return jsonObject.toString();
+    /**
+     * Applies the given, possibly multi document, YAML to the underlying REST APIs applying each resource
+     * as soon as it is parsed.
+     */
+    public String applyYaml(InputStream yaml) throws Exception {
+        try (KubernetesResourceIterator iterator = KubernetesHelper.iterateYamlItems(yaml)) {
+            applyItems(iterator, "REST call");
+        }
+        return "";
     }
 
     /**
-     * Applies the given JSON to the underlying REST APIs in a single operation without needing to explicitly parse first.
+     * Applies the given JSON to the underlying REST APIs applying each resource as soon as it is parsed.
      */
     public String applyJson(InputStream json) throws Exception {
-        Object dto = loadJson(json);
-        apply(dto, "REST call");
+        try (KubernetesResourceIterator iterator = KubernetesHelper.iterateJsonItems(json)) {
+            applyItems(iterator, "REST call");
+        }
         return "";
     }
 
+    /**
+     * Applies each of the resources as they are iterated
+     */
+    public void applyItems(Iterator<HasMetadata> items, String sourceName) throws Exception {
+        while (items.hasNext()) {
+            applyEntity(items.next(), sourceName);
+        }
+    }
+
     /**
      * Applies the given DTOs onto the Kubernetes master
      */
@@ -316,13 +336,14 @@ public class Controller {
                     LOG.debug("Only processing Services right now so ignoring OAuthClient: " + id);
                     return;
                 }
+                applyConfigHash(entity);
                 OAuthClient old = openShiftClient.oAuthClients().withName(id).get();
                 if (isRunning(old)) {
                     if (isIgnoreRunningOAuthClients()) {
                         LOG.info("Not updating the OAuthClient which are shared across namespaces as its already running");
                         return;
                     }
-                    if (UserConfigurationCompare.configEqual(entity, old)) {
+                    if (isConfigEqual(entity, old)) {
                         LOG.info("OAuthClient has not changed so not doing anything");
                     } else {
                         if (isRecreateMode()) {
@@ -381,9 +402,10 @@ public class Controller {
             String namespace = getNamespace();
             String id = getName(entity);
             Objects.notNull(id, "No name for " + entity + " " + sourceName);
+            applyConfigHash(entity);
             Template old = openShiftClient.templates().inNamespace(namespace).withName(id).get();
             if (isRunning(old)) {
-                if (UserConfigurationCompare.configEqual(entity, old)) {
+                if (isConfigEqual(entity, old)) {
                     LOG.info("Template has not changed so not doing anything");
                 } else {
                     boolean recreateMode = isRecreateMode();
@@ -465,9 +487,10 @@ public class Controller {
             LOG.debug("Only processing Services right now so ignoring ServiceAccount: " + id);
             return;
         }
+        applyConfigHash(serviceAccount);
         ServiceAccount old = kubernetesClient.serviceAccounts().inNamespace(namespace).withName(id).get();
         if (isRunning(old)) {
-            if (UserConfigurationCompare.configEqual(serviceAccount, old)) {
+            if (isConfigEqual(serviceAccount, old)) {
                 LOG.info("ServiceAccount has not changed so not doing anything");
             } else {
                 if (isRecreateMode()) {
@@ -518,9 +541,10 @@ public class Controller {
             LOG.debug("Only processing Services right now so ignoring PersistentVolumeClaim: " + id);
             return;
         }
+        applyConfigHash(entity);
         PersistentVolumeClaim old = kubernetesClient.persistentVolumeClaims().inNamespace(namespace).withName(id).get();
         if (isRunning(old)) {
-            if (UserConfigurationCompare.configEqual(entity, old)) {
+            if (isConfigEqual(entity, old)) {
                 LOG.info("PersistentVolumeClaim has not changed so not doing anything");
             } else {
                 if (alwaysRecreate || isRecreateMode()) {
@@ -569,11 +593,12 @@ public class Controller {
             return;
         }
 
+        applyConfigHash(secret);
         Secret old = kubernetesClient.secrets().inNamespace(namespace).withName(id).get();
         // check if the secret already exists or not
         if (isRunning(old)) {
             // if the secret already exists and is the same, then do nothing
-            if (UserConfigurationCompare.configEqual(secret, old)) {
+            if (isConfigEqual(secret, old)) {
                 LOG.info("Secret has not changed so not doing anything");
                 return;
             } else {
@@ -764,9 +789,10 @@ public class Controller {
                 namespace = getNamespace();
             }
             applyNamespace(namespace);
+            applyConfigHash(entity);
             BuildConfig old = openShiftClient.buildConfigs().inNamespace(namespace).withName(id).get();
             if (isRunning(old)) {
-                if (UserConfigurationCompare.configEqual(entity, old)) {
+                if (isConfigEqual(entity, old)) {
                     LOG.info("BuildConfig has not changed so not doing anything");
                 } else {
                     if (isRecreateMode()) {
@@ -819,9 +845,10 @@ public class Controller {
                 namespace = getNamespace();
             }
             applyNamespace(namespace);
+            applyConfigHash(entity);
             RoleBinding old = openShiftClient.roleBindings().inNamespace(namespace).withName(id).get();
             if (isRunning(old)) {
-                if (UserConfigurationCompare.configEqual(entity, old)) {
+                if (isConfigEqual(entity, old)) {
                     LOG.info("RoleBinding has not changed so not doing anything");
                 } else {
                     if (isRecreateMode()) {
@@ -874,9 +901,10 @@ public class Controller {
                 namespace = getNamespace();
             }
             applyNamespace(namespace);
+            applyConfigHash(entity);
             PolicyBinding old = openShiftClient.policyBindings().inNamespace(namespace).withName(id).get();
             if (isRunning(old)) {
-                if (UserConfigurationCompare.configEqual(entity, old)) {
+                if (isConfigEqual(entity, old)) {
                     LOG.info("PolicyBinding has not changed so not doing anything");
                 } else {
                     if (isRecreateMode()) {
@@ -1004,9 +1032,10 @@ public class Controller {
             LOG.debug("Ignoring Service: " + namespace + ":" + id);
             return;
         }
+        applyConfigHash(service);
         Service old = kubernetesClient.services().inNamespace(namespace).withName(id).get();
         if (isRunning(old)) {
-            if (UserConfigurationCompare.configEqual(service, old)) {
+            if (isConfigEqual(service, old)) {
                 LOG.info("Service has not changed so not doing anything");
             } else {
                 if (isRecreateMode()) {
@@ -1045,9 +1074,10 @@ public class Controller {
             LOG.debug("Ignoring " + kind + ": " + namespace + ":" + id);
             return;
         }
+        applyConfigHash(resource);
         T old = resources.inNamespace(namespace).withName(id).get();
         if (isRunning(old)) {
-            if (UserConfigurationCompare.configEqual(resource, old)) {
+            if (isConfigEqual(resource, old)) {
                 LOG.info(kind + " has not changed so not doing anything");
             } else {
                 if (isRecreateMode()) {
@@ -1233,9 +1263,10 @@ public class Controller {
             LOG.debug("Only processing Services right now so ignoring ReplicationController: " + namespace + ":" + id);
             return;
         }
+        applyConfigHash(replicationController);
         ReplicationController old = kubernetesClient.replicationControllers().inNamespace(namespace).withName(id).get();
         if (isRunning(old)) {
-            if (UserConfigurationCompare.configEqual(replicationController, old)) {
+            if (isConfigEqual(replicationController, old)) {
                 LOG.info("ReplicationController has not changed so not doing anything");
             } else {
                 ReplicationControllerSpec newSpec = replicationController.getSpec();
@@ -1333,9 +1364,10 @@ public class Controller {
             LOG.debug("Only processing Services right now so ignoring Pod: " + namespace + ":" + id);
             return;
         }
+        applyConfigHash(pod);
         Pod old = kubernetesClient.pods().inNamespace(namespace).withName(id).get();
         if (isRunning(old)) {
-            if (UserConfigurationCompare.configEqual(pod, old)) {
+            if (isConfigEqual(pod, old)) {
                 LOG.info("Pod has not changed so not doing anything");
             } else {
                 if (isRecreateMode()) {
@@ -1380,6 +1412,66 @@ public class Controller {
         }
     }
 
+    /**
+     * Adds the {@link Annotations.Config#CONFIG_HASH} annotation to the entity we are about to apply
+     * so that the next apply can detect whether it has changed by just comparing hashes
+     */
+    protected void applyConfigHash(HasMetadata entity) {
+        if (configHashEnabled) {
+            KubernetesHelper.getOrCreateAnnotations(entity).put(Annotations.Config.CONFIG_HASH, UserConfigurationCompare.configHash(entity));
+        }
+    }
+
+    /**
+     * Returns true if the user configuration of the entity has not changed compared to the running entity.
+     * <p/>
+     * If the running entity was applied with a {@link Annotations.Config#CONFIG_HASH} annotation then only the hashes
+     * are compared; otherwise we fall back to comparing the whole configuration via {@link UserConfigurationCompare}
+     */
+    protected boolean isConfigEqual(HasMetadata entity, HasMetadata old) {
+        if (configHashEnabled) {
+            String oldHash = getConfigHash(old);
+            if (oldHash != null) {
+                String hash = getConfigHash(entity);
+                if (hash == null) {
+                    hash = UserConfigurationCompare.configHash(entity);
+                }
+                return oldHash.equals(hash);
+            }
+        }
+        return UserConfigurationCompare.configEqual(entity, old);
+    }
+
+    private static String getConfigHash(HasMetadata entity) {
+        ObjectMeta metadata = entity.getMetadata();
+        if (metadata != null) {
+            Map<String, String> annotations = metadata.getAnnotations();
+            if (annotations != null) {
+                return annotations.get(Annotations.Config.CONFIG_HASH);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Waits for the given pods, replication controllers and deployments to become ready using watches rather than
+     * polling. Resources of other kinds are considered ready straight away.
+     *
+     * @return true if all the resources became ready within the timeout
+     */
+    public boolean awaitReady(Collection<? extends HasMetadata> resources, long timeout, TimeUnit unit) throws InterruptedException {
+        try (ReadinessWatcher watcher = new ReadinessWatcher(kubernetesClient, getNamespace())) {
+            watcher.watch(resources).get(timeout, unit);
+            return true;
+        } catch (TimeoutException e) {
+            LOG.warn("Resources did not become ready within " + unit.toMillis(timeout) + " millis");
+            return false;
+        } catch (ExecutionException e) {
+            onApplyError("Failed to wait for resources to become ready. " + e, e);
+            return false;
+        }
+    }
+
     public String getNamespace() {
         return namesapce;
     }
@@ -1554,4 +1646,16 @@ public class Controller {
     public void setRollingUpgradePreserveScale(boolean rollingUpgradePreserveScale) {
         this.rollingUpgradePreserveScale = rollingUpgradePreserveScale;
     }
+
+    public boolean isConfigHashEnabled() {
+        return configHashEnabled;
+    }
+
+    /**
+     * Sets whether applied entities are annotated with a hash of their configuration which is then used
+     * to detect if they have changed on the next apply
+     */
+    public void setConfigHashEnabled(boolean configHashEnabled) {
+        this.configHashEnabled = configHashEnabled;
+    }
 }
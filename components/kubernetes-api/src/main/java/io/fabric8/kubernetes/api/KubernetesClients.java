@@ -0,0 +1,291 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.NamespacedKubernetesClient;
+import io.fabric8.kubernetes.client.utils.HttpClientUtils;
+import io.fabric8.openshift.client.DefaultOpenShiftClient;
+import io.fabric8.openshift.client.NamespacedOpenShiftClient;
+import io.fabric8.openshift.client.OpenShiftConfig;
+import io.fabric8.openshift.client.OpenShiftConfigBuilder;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provides {@link KubernetesClient} instances which share one HTTP transport (connection pool and set of threads)
+ * between all the callers using the same configuration (master URL, namespace and credentials).
+ * <p/>
+ * Each call to an acquire method returns a new client which holds a reference to the transport until
+ * {@link KubernetesClient#close()} is called on it or it is garbage collected; closing it again has no effect. The
+ * clients derived from an acquired client, such as by {@link NamespacedKubernetesClient#inNamespace(String)} or by
+ * adapting it to an OpenShift client, hold their own reference so they keep working after the client they were
+ * derived from is closed. Once a transport is no longer referenced it is closed after an idle timeout unless it is
+ * acquired again, so that static helper methods which acquire and close a client on each call still reuse it.
+ */
+public class KubernetesClients {
+    private static final transient Logger LOG = LoggerFactory.getLogger(KubernetesClients.class);
+
+    /**
+     * The system property to configure the time in milliseconds an unreferenced client is kept open
+     */
+    public static final String IDLE_TIMEOUT_PROPERTY = "fabric8.kubernetes.client.idle.timeout";
+
+    public static final long DEFAULT_IDLE_TIMEOUT = 60 * 1000L;
+
+    private static final Map<List<Object>, SharedTransport> TRANSPORTS = new HashMap<>();
+    private static final Set<TransportReference> REFERENCES = new HashSet<>();
+    private static final ReferenceQueue<Object> UNREACHABLE_CLIENTS = new ReferenceQueue<>();
+    private static ScheduledExecutorService executor;
+    private static long idleTimeout = Long.getLong(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT);
+
+    /**
+     * Returns a client using the shared transport for the default configuration from the environment, system
+     * properties and kube config file
+     */
+    public static KubernetesClient acquire() {
+        return acquire(new ConfigBuilder().build());
+    }
+
+    /**
+     * Returns a client using the shared transport for the given configuration
+     */
+    public static synchronized KubernetesClient acquire(Config config) {
+        List<Object> key = createKey(config);
+        SharedTransport transport = TRANSPORTS.get(key);
+        if (transport == null) {
+            transport = new SharedTransport(key, HttpClientUtils.createHttpClient(config), config);
+            TRANSPORTS.put(key, transport);
+            LOG.debug("Created shared KubernetesClient transport for " + config.getMasterUrl());
+        }
+        return new SharedKubernetesClient(transport, config);
+    }
+
+    /**
+     * Returns the number of shared transports currently open
+     */
+    public static synchronized int size() {
+        return TRANSPORTS.size();
+    }
+
+    public static synchronized long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Sets the time in milliseconds an unreferenced client is kept open; zero or less closes it straight away
+     */
+    public static synchronized void setIdleTimeout(long idleTimeout) {
+        KubernetesClients.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Adds a reference to the transport for the given client which is released when the client is closed or
+     * garbage collected
+     */
+    protected static synchronized TransportReference retain(SharedTransport transport, Object client) {
+        releaseUnreachableClients();
+        transport.references++;
+        TransportReference reference = new TransportReference(client, transport);
+        REFERENCES.add(reference);
+        return reference;
+    }
+
+    protected static synchronized void release(TransportReference reference) {
+        if (!REFERENCES.remove(reference)) {
+            return;
+        }
+        reference.clear();
+        final SharedTransport transport = reference.transport;
+        if (--transport.references == 0) {
+            if (idleTimeout <= 0) {
+                closeIfIdle(transport);
+            } else {
+                getExecutor().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        closeIfIdle(transport);
+                    }
+                }, idleTimeout, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Releases the references of the clients which were garbage collected without being closed
+     */
+    protected static synchronized void releaseUnreachableClients() {
+        Reference<?> reference;
+        while ((reference = UNREACHABLE_CLIENTS.poll()) != null) {
+            release((TransportReference) reference);
+        }
+    }
+
+    protected static synchronized void closeIfIdle(SharedTransport transport) {
+        releaseUnreachableClients();
+        if (transport.references == 0 && TRANSPORTS.get(transport.key) == transport) {
+            TRANSPORTS.remove(transport.key);
+            LOG.debug("Closing idle shared KubernetesClient transport for " + transport.client.getMasterUrl());
+            transport.client.close();
+        }
+    }
+
+    /**
+     * Returns the values of the configuration which identify the cluster and user of a client
+     */
+    protected static List<Object> createKey(Config config) {
+        return Arrays.<Object>asList(config.getMasterUrl(), config.getNamespace(), config.getApiVersion(),
+                config.getUsername(), config.getPassword(), config.getOauthToken(),
+                config.getCaCertFile(), config.getCaCertData(), config.isTrustCerts(),
+                config.getClientCertFile(), config.getClientCertData(),
+                config.getClientKeyFile(), config.getClientKeyData(),
+                config.getHttpProxy(), config.getHttpsProxy());
+    }
+
+    private static synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "KubernetesClients");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * The HTTP transport shared by the clients of a configuration along with a client which owns it
+     */
+    protected static class SharedTransport {
+        private final List<Object> key;
+        private final OkHttpClient httpClient;
+        private final DefaultKubernetesClient client;
+        private int references;
+
+        public SharedTransport(List<Object> key, OkHttpClient httpClient, Config config) {
+            this.key = key;
+            this.httpClient = httpClient;
+            this.client = new DefaultKubernetesClient(httpClient, config);
+        }
+    }
+
+    /**
+     * The reference of a client to a shared transport which is released when the client is closed or, if it is
+     * not closed, when it becomes unreachable
+     */
+    protected static class TransportReference extends PhantomReference<Object> {
+        private final SharedTransport transport;
+
+        public TransportReference(Object client, SharedTransport transport) {
+            super(client, UNREACHABLE_CLIENTS);
+            this.transport = transport;
+        }
+    }
+
+    /**
+     * A client whose {@link #close()} method releases its reference to the shared transport rather than closing it.
+     * The DSL methods of the base class raise unchecked warnings as they implement generic methods of the interface.
+     */
+    @SuppressWarnings("unchecked")
+    protected static class SharedKubernetesClient extends DefaultKubernetesClient {
+        private final SharedTransport transport;
+        private final TransportReference reference;
+
+        public SharedKubernetesClient(SharedTransport transport, Config config) {
+            super(transport.httpClient, config);
+            this.transport = transport;
+            this.reference = retain(transport, this);
+        }
+
+        @Override
+        public NamespacedKubernetesClient inNamespace(String namespace) {
+            Config config = new ConfigBuilder(getConfiguration()).withNamespace(namespace).build();
+            return new SharedKubernetesClient(transport, config);
+        }
+
+        @Override
+        public NamespacedKubernetesClient inAnyNamespace() {
+            return inNamespace(null);
+        }
+
+        @Override
+        public <C> C adapt(Class<C> type) {
+            C answer = super.adapt(type);
+            if (answer instanceof DefaultOpenShiftClient) {
+                OpenShiftConfig config = OpenShiftConfig.wrap(((DefaultOpenShiftClient) answer).getConfiguration());
+                return type.cast(new SharedOpenShiftClient(transport, config));
+            }
+            return answer;
+        }
+
+        @Override
+        public void close() {
+            release(reference);
+        }
+    }
+
+    /**
+     * An OpenShift client whose {@link #close()} method releases its reference to the shared transport
+     */
+    @SuppressWarnings("unchecked")
+    protected static class SharedOpenShiftClient extends DefaultOpenShiftClient {
+        private final SharedTransport transport;
+        private final TransportReference reference;
+
+        public SharedOpenShiftClient(SharedTransport transport, OpenShiftConfig config) {
+            super(transport.httpClient, config);
+            this.transport = transport;
+            this.reference = retain(transport, this);
+        }
+
+        @Override
+        public NamespacedOpenShiftClient inNamespace(String namespace) {
+            OpenShiftConfig config = new OpenShiftConfigBuilder(OpenShiftConfig.wrap(getConfiguration())).withNamespace(namespace).build();
+            return new SharedOpenShiftClient(transport, config);
+        }
+
+        @Override
+        public NamespacedOpenShiftClient inAnyNamespace() {
+            return inNamespace(null);
+        }
+
+        @Override
+        public void close() {
+            release(reference);
+        }
+    }
+}
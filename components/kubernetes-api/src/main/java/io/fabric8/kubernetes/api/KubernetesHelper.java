@@ -19,10 +19,10 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.fabric8.kubernetes.api.extensions.KubernetesListMerger;
 import io.fabric8.kubernetes.api.extensions.Templates;
 import io.fabric8.kubernetes.api.model.*;
 import io.fabric8.kubernetes.api.model.extensions.HTTPIngressPath;
@@ -33,6 +33,11 @@ import io.fabric8.kubernetes.api.model.extensions.IngressList;
 import io.fabric8.kubernetes.api.model.extensions.IngressRule;
 import io.fabric8.kubernetes.api.model.extensions.IngressSpec;
 import io.fabric8.kubernetes.api.model.extensions.IngressTLS;
+import io.fabric8.kubernetes.api.support.DnsResolver;
+import io.fabric8.kubernetes.api.support.KubernetesCodec;
+import io.fabric8.kubernetes.api.support.KubernetesResourceIterator;
+import io.fabric8.kubernetes.api.support.LabelIndex;
+import io.fabric8.kubernetes.api.support.SslProbe;
 import io.fabric8.kubernetes.client.Config;
 import io.fabric8.kubernetes.client.ConfigBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
@@ -58,7 +63,6 @@ import io.fabric8.utils.Objects;
 import io.fabric8.utils.Strings;
 import io.fabric8.utils.Systems;
 import io.fabric8.utils.URLUtils;
-import io.fabric8.utils.ssl.TrustEverythingSSLTrustManager;
 import okhttp3.Credentials;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
@@ -67,38 +71,24 @@ import okhttp3.Response;
 import okhttp3.logging.HttpLoggingInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xbill.DNS.ARecord;
-import org.xbill.DNS.Lookup;
-import org.xbill.DNS.Record;
-import org.xbill.DNS.SRVRecord;
-import org.xbill.DNS.TextParseException;
-import org.xbill.DNS.Type;
 
 import javax.net.ssl.HostnameVerifier;
-import javax.net.ssl.SSLException;
-import javax.net.ssl.SSLHandshakeException;
-import javax.net.ssl.SSLKeyException;
-import javax.net.ssl.SSLPeerUnverifiedException;
-import javax.net.ssl.SSLProtocolException;
 import javax.net.ssl.SSLSession;
-import javax.net.ssl.SSLSocketFactory;
 import javax.tools.FileObject;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
 import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.net.URL;
 import java.net.UnknownHostException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -111,6 +101,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import static io.fabric8.kubernetes.client.utils.Utils.isNotNullOrEmpty;
 import static io.fabric8.utils.Lists.notNullList;
@@ -128,7 +119,8 @@ public final class KubernetesHelper {
     public static final String DEFAULT_NAMESPACE = "default";
 
     private static final transient Logger LOG = LoggerFactory.getLogger(KubernetesHelper.class);
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final ObjectMapper OBJECT_MAPPER = KubernetesCodec.getJsonMapper();
+    private static final YAMLFactory YAML_FACTORY = new YAMLFactory();
 
     public static final int INTORSTRING_KIND_INT = 0;
     public static final int INTORSTRING_KIND_STRING = 1;
@@ -410,21 +402,11 @@ public final class KubernetesHelper {
     }
 
     public static String toJson(Object dto) throws JsonProcessingException {
-        if (dto == null) {
-            return "null";
-        }
-        Class<?> clazz = dto.getClass();
-        return OBJECT_MAPPER.writerFor(clazz).writeValueAsString(dto);
+        return KubernetesCodec.toJson(dto);
     }
 
     public static String toPrettyJson(Object dto) throws JsonProcessingException {
-        if (dto == null) {
-            return "null";
-        }
-        Class<?> clazz = dto.getClass();
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.enable(SerializationFeature.INDENT_OUTPUT);
-        return objectMapper.writerFor(clazz).writeValueAsString(dto);
+        return KubernetesCodec.toPrettyJson(dto);
     }
 
     /**
@@ -462,11 +444,45 @@ public final class KubernetesHelper {
      */
     public static Object loadJson(byte[] json) throws IOException {
         if (json != null && json.length > 0) {
-            return OBJECT_MAPPER.readerFor(KubernetesResource.class).readValue(json);
+            return KubernetesCodec.readJson(json);
         }
         return null;
     }
 
+    /**
+     * Returns an iterator over the resources in the given JSON stream which parses each resource as it is iterated;
+     * lists and arrays of resources are returned item by item. The iterator should be closed after use.
+     */
+    public static KubernetesResourceIterator iterateJsonItems(InputStream in) throws IOException {
+        return new KubernetesResourceIterator(OBJECT_MAPPER.getFactory().createParser(in), OBJECT_MAPPER);
+    }
+
+    /**
+     * Returns an iterator over the resources in the given, possibly multi document, YAML stream which parses each
+     * resource as it is iterated; lists of resources are returned item by item. The iterator should be closed after use.
+     */
+    public static KubernetesResourceIterator iterateYamlItems(InputStream in) throws IOException {
+        return new KubernetesResourceIterator(YAML_FACTORY.createParser(in), OBJECT_MAPPER);
+    }
+
+    /**
+     * Parses the resources in the given JSON stream one at a time passing each one to the consumer
+     */
+    public static void loadJsonItems(InputStream in, Consumer<HasMetadata> consumer) throws IOException {
+        try (KubernetesResourceIterator iterator = iterateJsonItems(in)) {
+            iterator.forEachRemaining(consumer);
+        }
+    }
+
+    /**
+     * Parses the resources in the given, possibly multi document, YAML stream one at a time passing each one to the consumer
+     */
+    public static void loadYamlItems(InputStream in, Consumer<HasMetadata> consumer) throws IOException {
+        try (KubernetesResourceIterator iterator = iterateYamlItems(in)) {
+            iterator.forEachRemaining(consumer);
+        }
+    }
+
     /**
      * Loads the YAML file for the given DTO class
      */
@@ -509,25 +525,30 @@ public final class KubernetesHelper {
      * Loads the YAML file for the given DTO class
      */
     public static <T> T loadYaml(byte[] data, Class<T> clazz) throws IOException {
-        ObjectMapper mapper = createYamlObjectMapper();
-        return mapper.readValue(data, clazz);
+        return KubernetesCodec.readYaml(data, clazz);
     }
 
     public static void saveYaml(Object data, File file) throws IOException {
-        ObjectMapper mapper = createYamlObjectMapper();
-        mapper.writeValue(file, data);
+        try (OutputStream out = new FileOutputStream(file)) {
+            KubernetesCodec.writeYaml(data, out);
+        }
     }
 
     public static void saveYaml(Object data, FileObject fileObject) throws IOException{
-        ObjectMapper mapper = createYamlObjectMapper();
         try (Writer writer = fileObject.openWriter()) {
-            mapper.writeValue(writer, data);
+            KubernetesCodec.writeYaml(data, writer);
         }
     }
 
+    /**
+     * Writes the data as YAML to the given stream without closing it
+     */
+    public static void saveYaml(Object data, OutputStream out) throws IOException {
+        KubernetesCodec.writeYaml(data, out);
+    }
+
     public static String toYaml(Object data) throws IOException {
-        ObjectMapper mapper = createYamlObjectMapper();
-        return mapper.writeValueAsString(data);
+        return KubernetesCodec.toYaml(data);
     }
 
     public static ObjectMapper createYamlObjectMapper() {
@@ -1172,91 +1193,50 @@ public final class KubernetesHelper {
      */
     public static Object combineJson(Object... objects) throws IOException {
         KubernetesList list = findOrCreateList(objects);
-        List<HasMetadata> items = list.getItems();
-        if (items == null) {
-            items = new ArrayList<>();
-            list.setItems(items);
-        }
+        KubernetesListMerger merger = new KubernetesListMerger().add(list);
         for (Object object : objects) {
             if (object != list) {
-                addObjectsToItemArray(items, object);
+                merger.add(object);
             }
         }
-        KubernetesList fullList = new KubernetesList();
-        fullList.setItems(items);
-        moveServicesToFrontOfArray(items);
-        removeDuplicates(items);
-        Object answer = Templates.combineTemplates(fullList);
-        items = toItemList(answer);
-        removeDuplicates(items);
-        return answer;
+        return merger.build();
     }
 
     /**
-     * Lets move all Service resources before any other to avoid ordering issues creating things
+     * Lets move all Service resources before any other to avoid ordering issues creating things;
+     * the order of the services and of the other resources is otherwise preserved
      */
     public static void moveServicesToFrontOfArray(List<HasMetadata> list) {
-        int size = list.size();
-        int lastNonService = -1;
-        for (int i = 0; i < size; i++) {
-            HasMetadata item = list.get(i);
+        List<HasMetadata> others = new ArrayList<>();
+        int services = 0;
+        for (HasMetadata item : list) {
             if (item instanceof Service) {
-                if (lastNonService >= 0) {
-                    HasMetadata nonService = list.get(lastNonService);
-                    list.set(i, nonService);
-                    list.set(lastNonService, item);
-                    lastNonService++;
-                }
-            } else if (lastNonService < 0) {
-                lastNonService = i;
+                list.set(services++, item);
+            } else {
+                others.add(item);
             }
         }
+        for (HasMetadata item : others) {
+            list.set(services++, item);
+        }
     }
 
     /**
      * Remove any duplicate resources using the kind and id
      */
     protected static void removeDuplicates(List<HasMetadata> itemArray) {
-        int size = itemArray.size();
-        int lastNonService = -1;
         Set<String> keys = new HashSet<>();
-        for (int i = 0; i < size; i++) {
-            HasMetadata item = itemArray.get(i);
-            if (item == null) {
-                itemArray.remove(i);
-                i--;
-                size--;
-            } else {
+        int size = 0;
+        for (HasMetadata item : itemArray) {
+            if (item != null) {
                 String id = getObjectId(item);
-                String kind = item.getClass().getSimpleName();
-                if (Strings.isNotBlank(id)) {
-                    String key = kind + ":" + id;
-                    if (!keys.add(key)) {
-                        // lets remove this one
-                        itemArray.remove(i);
-                        i--;
-                        size--;
-                    }
+                if (Strings.isNullOrBlank(id) || keys.add(item.getClass().getSimpleName() + ":" + id)) {
+                    itemArray.set(size++, item);
                 }
-
             }
         }
-    }
-
-    @SuppressWarnings("unchecked")
-    protected static void addObjectsToItemArray(List destinationList, Object object) throws IOException {
-        if (object instanceof KubernetesList) {
-            KubernetesList kubernetesList = (KubernetesList) object;
-            List<HasMetadata> items = kubernetesList.getItems();
-            if (items != null) {
-                destinationList.addAll(items);
-            }
-        } else if (object instanceof Collection) {
-            Collection collection = (Collection) object;
-            destinationList.addAll(collection);
-        } else {
-            destinationList.add(object);
-        }
+        // lets remove the tail in one go rather than shifting the list for each duplicate
+        itemArray.subList(size, itemArray.size()).clear();
     }
 
     protected static KubernetesList findOrCreateList(Object[] objects) {
@@ -1277,6 +1257,14 @@ public final class KubernetesHelper {
      * Returns the URL to access the service; using the service clusterIP and port
      */
     public static String getServiceURL(Service service) {
+        return getServiceURL(service, null);
+    }
+
+    /**
+     * Returns the URL to access the service; using the given probe results indexed by <code>host:port</code> to
+     * decide whether the service uses SSL, or probing it if they are null
+     */
+    private static String getServiceURL(Service service, Map<String, SslProbe.Result> probeResults) {
         if (service != null) {
             String answer = getOrCreateAnnotations(service).get(Annotations.Service.EXPOSE_URL);
             if (Strings.isNotBlank(answer)) {
@@ -1290,8 +1278,15 @@ public final class KubernetesHelper {
                     if (port != null && port > 0) {
                         portalIP += ":" + port;
                     }
+                    boolean ssl;
+                    if (probeResults != null) {
+                        SslProbe.Result result = probeResults.get(portalIP);
+                        ssl = result != null && result.isSsl();
+                    } else {
+                        ssl = KubernetesHelper.isServiceSsl(spec.getClusterIP(), port, Utils.getSystemPropertyOrEnvVar(io.fabric8.kubernetes.client.Config.KUBERNETES_TRUST_CERT_SYSTEM_PROPERTY, false));
+                    }
                     String protocol = "http://";
-                    if (KubernetesHelper.isServiceSsl(spec.getClusterIP(), port, Utils.getSystemPropertyOrEnvVar(io.fabric8.kubernetes.client.Config.KUBERNETES_TRUST_CERT_SYSTEM_PROPERTY, false))) {
+                    if (ssl) {
                         protocol = "https://";
                     }
                     return protocol + portalIP;
@@ -1301,6 +1296,33 @@ public final class KubernetesHelper {
         return null;
     }
 
+    /**
+     * Returns the URLs to access the services indexed by <code>namespace/name</code>; probing whether the services
+     * use SSL concurrently rather than one at a time
+     */
+    public static Map<String, String> getServiceURLs(Iterable<Service> services) {
+        boolean trustAllCerts = Utils.getSystemPropertyOrEnvVar(io.fabric8.kubernetes.client.Config.KUBERNETES_TRUST_CERT_SYSTEM_PROPERTY, false);
+        List<String> endpoints = new ArrayList<>();
+        for (Service service : services) {
+            ServiceSpec spec = service.getSpec();
+            if (spec != null && spec.getClusterIP() != null && spec.getPorts() != null && !spec.getPorts().isEmpty()
+                    && Strings.isNullOrBlank(getOrCreateAnnotations(service).get(Annotations.Service.EXPOSE_URL))) {
+                Integer port = spec.getPorts().iterator().next().getPort();
+                if (port != null && port > 0) {
+                    endpoints.add(spec.getClusterIP() + ":" + port);
+                }
+            }
+        }
+        // lets use the results directly as inconclusive ones are not cached and would be probed again one at a time
+        Map<String, SslProbe.Result> probeResults = SslProbe.getInstance().probeAll(endpoints, trustAllCerts);
+
+        Map<String, String> answer = new LinkedHashMap<>();
+        for (Service service : services) {
+            answer.put(getQualifiedName(service), getServiceURL(service, probeResults));
+        }
+        return answer;
+    }
+
     /**
      * Returns the URL to access the service; using the environment variables, routes
      * or service clusterIP address
@@ -1761,6 +1783,19 @@ public final class KubernetesHelper {
         return Collections.EMPTY_LIST;
     }
 
+    /**
+     * Returns the pods for the given replication controller using the label index of the pods which
+     * is much faster than filtering all the pods when resolving many replication controllers
+     */
+    public static List<Pod> getPodsForReplicationController(ReplicationController replicationController, LabelIndex<Pod> podIndex) {
+        ReplicationControllerSpec replicationControllerSpec = replicationController.getSpec();
+        if (replicationControllerSpec == null) {
+            LOG.warn("Cannot instantiate replication controller: " + getName(replicationController) + " due to missing ReplicationController.Spec!");
+            return Collections.emptyList();
+        }
+        return podIndex.select(replicationControllerSpec.getSelector());
+    }
+
     /**
      * Returns the pods for the given service
      */
@@ -1770,6 +1805,27 @@ public final class KubernetesHelper {
         return Filters.filter(pods, podFilter);
     }
 
+    /**
+     * Returns the pods for the given service using the label index of the pods which
+     * is much faster than filtering all the pods when resolving many services
+     */
+    public static List<Pod> getPodsForService(Service service, LabelIndex<Pod> podIndex) {
+        return podIndex.select(getSelector(service));
+    }
+
+    /**
+     * Returns the pods for each of the given services indexed by service name; the pods are indexed by label
+     * once so that each service selector is resolved by intersecting the pods with each selector label
+     */
+    public static Map<String, List<Pod>> getPodsForServices(Iterable<Service> services, Iterable<Pod> pods) {
+        LabelIndex<Pod> podIndex = new LabelIndex<>(pods);
+        Map<String, List<Pod>> answer = new LinkedHashMap<>();
+        for (Service service : services) {
+            answer.put(getName(service), getPodsForService(service, podIndex));
+        }
+        return answer;
+    }
+
     /**
      * Looks up the service endpoints in DNS.
      * <p/>
@@ -1780,37 +1836,17 @@ public final class KubernetesHelper {
      * See https://github.com/GoogleCloudPlatform/kubernetes/blob/master/cluster/addons/dns/README.md
      */
     public static List<String> lookupServiceEndpointsInDns(String serviceName) throws IllegalArgumentException, UnknownHostException {
-        try {
-            Lookup l = new Lookup(serviceName, Type.SRV);
-            Record[] records = l.run();
-            if (l.getResult() == Lookup.SUCCESSFUL) {
-
-                SRVRecord[] srvRecords = Arrays.copyOf(records, records.length, SRVRecord[].class);
-                Arrays.sort(srvRecords, new Comparator<SRVRecord>() {
-                    @Override
-                    public int compare(SRVRecord a, SRVRecord b) {
-                        int ret = Integer.compare(b.getPriority(), a.getPriority());
-                        if (ret == 0) {
-                            ret = Integer.compare(b.getWeight(), a.getWeight());
-                        }
-                        return ret;
-                    }
-                });
+        return DnsResolver.getInstance().lookupServiceEndpoints(serviceName);
+    }
 
-                List<String> endpointAddresses = new ArrayList<>(srvRecords.length);
-                for (SRVRecord srvRecord : srvRecords) {
-                    endpointAddresses.add(srvRecord.getTarget().toString(true).concat(":").concat(String.valueOf(srvRecord.getPort())));
-                }
-                return endpointAddresses;
-            } else {
-                LOG.warn("Lookup {} result: {}", serviceName, l.getErrorString());
-            }
-        } catch (TextParseException e) {
-            LOG.error("Unparseable service name: {}", serviceName, e);
-        } catch (ClassCastException e) {
-            LOG.error("Invalid response from DNS server - should have been A records", e);
-        }
-        return Collections.EMPTY_LIST;
+    /**
+     * Selects one of the service endpoints registered as SRV records in DNS using the priority and weight of the
+     * records as described in RFC 2782 so that callers spread their requests across the endpoints.
+     *
+     * @return the endpoint in the format "host:port" or null if there are no endpoints
+     */
+    public static String selectServiceEndpointInDns(String serviceName) {
+        return DnsResolver.getInstance().selectServiceEndpoint(serviceName);
     }
 
     /**
@@ -1821,71 +1857,15 @@ public final class KubernetesHelper {
      * See https://github.com/GoogleCloudPlatform/kubernetes/blob/master/docs/services.md#headless-services
      */
     public static Set<String> lookupServiceInDns(String serviceName) throws IllegalArgumentException, UnknownHostException {
-        try {
-            Lookup l = new Lookup(serviceName);
-            Record[] records = l.run();
-            if (l.getResult() == Lookup.SUCCESSFUL) {
-                Set<String> endpointAddresses = new HashSet<>(records.length);
-                for (int i = 0; i < records.length; i++) {
-                    ARecord aRecord = (ARecord) records[i];
-                    endpointAddresses.add(aRecord.getAddress().getHostAddress());
-                }
-                return endpointAddresses;
-            } else {
-                LOG.warn("Lookup {} result: {}", serviceName, l.getErrorString());
-            }
-        } catch (TextParseException e) {
-            LOG.error("Unparseable service name: {}", serviceName, e);
-        } catch (ClassCastException e) {
-            LOG.error("Invalid response from DNS server - should have been A records", e);
-        }
-        return Collections.EMPTY_SET;
+        return DnsResolver.getInstance().lookupServiceAddresses(serviceName);
     }
 
+    /**
+     * Returns true if the service on the given host and port talks SSL; the result is cached for a while
+     * by {@link SslProbe}
+     */
     public static boolean isServiceSsl(String host, int port, boolean trustAllCerts) {
-        try {
-            LOG.info("Checking if a service is SSL on " + host + ":" + port);
-            SSLSocketFactory sslsocketfactory;
-            if (trustAllCerts) {
-                sslsocketfactory = TrustEverythingSSLTrustManager.getTrustingSSLSocketFactory();
-            } else {
-                sslsocketfactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
-            }
-
-            Socket socket = sslsocketfactory.createSocket();
-
-            // Connect, with an explicit timeout value
-            socket.connect(new InetSocketAddress(host, port), 1 * 1000);
-            try {
-
-                InputStream in = socket.getInputStream();
-                OutputStream out = socket.getOutputStream();
-
-                // Write a test byte to get a reaction :)
-                out.write(1);
-
-                while (in.available() > 0) {
-                    System.out.print(in.read());
-                }
-                return true;
-            } finally {
-                LOG.info("Checked if a service is SSL on " + host + ":" + port);
-                socket.close();
-            }
-        } catch (SSLHandshakeException e) {
-            LOG.error("SSL handshake failed - this probably means that you need to trust the kubernetes root SSL certificate or set the environment variable " + Utils.convertSystemPropertyNameToEnvVar(io.fabric8.kubernetes.client.Config.KUBERNETES_TRUST_CERT_SYSTEM_PROPERTY), e);
-        } catch (SSLProtocolException e) {
-            LOG.error("SSL protocol error", e);
-        } catch (SSLKeyException e) {
-            LOG.error("Bad SSL key", e);
-        } catch (SSLPeerUnverifiedException e) {
-            LOG.error("Could not verify server", e);
-        } catch (SSLException e) {
-            LOG.debug("Address does not appear to be SSL-enabled - falling back to http", e);
-        } catch (IOException e) {
-            LOG.debug("Failed to validate service", e);
-        }
-        return false;
+        return SslProbe.getInstance().probe(host, port, trustAllCerts).isSsl();
     }
 
     /**
@@ -2246,16 +2226,12 @@ public final class KubernetesHelper {
     // this method is a workaround until we default to NON_EMPTY on the kubernetes model
     // see: https://github.com/fabric8io/kubernetes-model/issues/154
     public static void saveYamlNotEmpty(HasMetadata entity, File outFile) throws IOException {
-        String yaml = toYaml(entity);
-        ObjectMapper objectMapper = createYamlObjectMapper();
-
-        // TODO we must convert to YAML, parse as JsonNode
-        // then remove empty nodes then write to YAML
-        // again which is a hack around this issue:
+        // TODO we must convert to a JsonNode then remove empty nodes
+        // then write to YAML which is a hack around this issue:
         // https://github.com/fabric8io/kubernetes-model/issues/154
-        JsonNode jsonNode = objectMapper.readTree(yaml);
+        JsonNode jsonNode = KubernetesCodec.toYamlTree(entity);
         removeNullOrEmptyValues(jsonNode);
-        objectMapper.writeValue(outFile, jsonNode);
+        saveYaml(jsonNode, outFile);
     }
 
     private static void removeNullOrEmptyValues(JsonNode jsonNode) {
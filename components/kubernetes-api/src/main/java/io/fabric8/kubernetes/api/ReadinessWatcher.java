@@ -0,0 +1,308 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.ReplicationControllerSpec;
+import io.fabric8.kubernetes.api.model.ReplicationControllerStatus;
+import io.fabric8.kubernetes.api.model.extensions.Deployment;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentSpec;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentStatus;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.utils.Strings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getKind;
+import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
+
+/**
+ * Watches pods, replication controllers and deployments so that callers can wait for them to become ready
+ * without polling.
+ * <p/>
+ * A single watch is opened for each kind and namespace of the resources being waited on and each resource has
+ * a future which is completed as soon as a watch event (or the initial listing) shows that it is ready.
+ * Resources of any other kind are considered ready straight away.
+ * <p/>
+ * If a watch is closed by the server it is opened again and the resources listed so that no change is missed;
+ * if that fails the futures of the resources of that kind and namespace are completed exceptionally.
+ */
+public class ReadinessWatcher implements Closeable {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ReadinessWatcher.class);
+
+    private final KubernetesClient kubernetesClient;
+    private final String defaultNamespace;
+    private final Map<String, CompletableFuture<HasMetadata>> futures = new ConcurrentHashMap<>();
+    private final Set<String> watchedKindNamespaces = new LinkedHashSet<>();
+    private final Map<Watcher<?>, Watch> watches = new LinkedHashMap<>();
+    private boolean closed;
+
+    public ReadinessWatcher(KubernetesClient kubernetesClient, String defaultNamespace) {
+        this.kubernetesClient = kubernetesClient;
+        this.defaultNamespace = defaultNamespace;
+    }
+
+    /**
+     * Returns true if the given resource is ready; pods must have the ready condition, replication controllers
+     * and deployments must have observed their latest generation and have all their desired replicas ready.
+     * Resources of other kinds are always ready.
+     */
+    public static boolean isReady(HasMetadata resource) {
+        if (resource instanceof Pod) {
+            return KubernetesHelper.isPodReady((Pod) resource);
+        } else if (resource instanceof ReplicationController) {
+            ReplicationController replicationController = (ReplicationController) resource;
+            ReplicationControllerSpec spec = replicationController.getSpec();
+            ReplicationControllerStatus status = replicationController.getStatus();
+            int desired = spec != null && spec.getReplicas() != null ? spec.getReplicas() : 1;
+            if (desired == 0) {
+                return true;
+            }
+            return status != null && isLatestGeneration(resource, status.getObservedGeneration()) &&
+                    intValue(status.getReadyReplicas()) >= desired;
+        } else if (resource instanceof Deployment) {
+            Deployment deployment = (Deployment) resource;
+            DeploymentSpec spec = deployment.getSpec();
+            DeploymentStatus status = deployment.getStatus();
+            int desired = spec != null && spec.getReplicas() != null ? spec.getReplicas() : 1;
+            if (desired == 0) {
+                return true;
+            }
+            return status != null && isLatestGeneration(resource, status.getObservedGeneration()) &&
+                    intValue(status.getUpdatedReplicas()) >= desired &&
+                    intValue(status.getAvailableReplicas()) >= desired;
+        }
+        return true;
+    }
+
+    /**
+     * Registers the given resources to be watched until they are ready, opening any watches required.
+     *
+     * @return a future which completes when all the resources are ready
+     */
+    public synchronized CompletableFuture<Void> watch(Collection<? extends HasMetadata> resources) {
+        List<CompletableFuture<HasMetadata>> answer = new ArrayList<>();
+        Map<String, HasMetadata> newWatches = new LinkedHashMap<>();
+        List<HasMetadata> alreadyWatched = new ArrayList<>();
+        for (HasMetadata resource : resources) {
+            if (!isWatchedKind(resource)) {
+                answer.add(CompletableFuture.completedFuture(resource));
+                continue;
+            }
+            String namespace = getNamespace(resource);
+            String key = createKey(getKind(resource), namespace, getName(resource));
+            CompletableFuture<HasMetadata> future = futures.get(key);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                futures.put(key, future);
+            }
+            answer.add(future);
+
+            String kindNamespace = getKind(resource) + "/" + namespace;
+            if (watchedKindNamespaces.contains(kindNamespace)) {
+                alreadyWatched.add(resource);
+            } else if (!newWatches.containsKey(kindNamespace)) {
+                newWatches.put(kindNamespace, resource);
+            }
+        }
+        // the futures are all registered before we open watches so that the initial listing can complete them
+        for (Map.Entry<String, HasMetadata> entry : newWatches.entrySet()) {
+            watchedKindNamespaces.add(entry.getKey());
+            HasMetadata resource = entry.getValue();
+            openWatch(resource, getNamespace(resource));
+        }
+        // we may have already missed the events of resources of watched kinds so lets check their current state
+        for (HasMetadata resource : alreadyWatched) {
+            HasMetadata current = loadResource(resource, getNamespace(resource));
+            if (current != null) {
+                onResource(current);
+            }
+        }
+        return CompletableFuture.allOf(answer.toArray(new CompletableFuture<?>[answer.size()]));
+    }
+
+    /**
+     * Registers the given resource to be watched until it is ready, opening a watch for its kind and namespace
+     * if one is not already open.
+     *
+     * @return a future which completes when the resource is ready
+     */
+    public CompletableFuture<Void> watch(HasMetadata resource) {
+        return watch(Collections.singletonList(resource));
+    }
+
+    /**
+     * Closes all the watches, any futures not yet completed are cancelled
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (Watch watch : new ArrayList<>(watches.values())) {
+            try {
+                watch.close();
+            } catch (Exception e) {
+                LOG.warn("Failed to close watch " + watch + ". " + e, e);
+            }
+        }
+        watches.clear();
+        watchedKindNamespaces.clear();
+        for (CompletableFuture<HasMetadata> future : futures.values()) {
+            future.cancel(false);
+        }
+        futures.clear();
+    }
+
+    protected void openWatch(HasMetadata resource, String namespace) {
+        // lets watch first then list so that we cannot miss any change in between
+        if (resource instanceof Pod) {
+            ReadyEventWatcher<Pod> watcher = new ReadyEventWatcher<>(resource, namespace);
+            watches.put(watcher, kubernetesClient.pods().inNamespace(namespace).watch(watcher));
+            onResources(kubernetesClient.pods().inNamespace(namespace).list().getItems());
+        } else if (resource instanceof ReplicationController) {
+            ReadyEventWatcher<ReplicationController> watcher = new ReadyEventWatcher<>(resource, namespace);
+            watches.put(watcher, kubernetesClient.replicationControllers().inNamespace(namespace).watch(watcher));
+            onResources(kubernetesClient.replicationControllers().inNamespace(namespace).list().getItems());
+        } else if (resource instanceof Deployment) {
+            ReadyEventWatcher<Deployment> watcher = new ReadyEventWatcher<>(resource, namespace);
+            watches.put(watcher, kubernetesClient.extensions().deployments().inNamespace(namespace).watch(watcher));
+            onResources(kubernetesClient.extensions().deployments().inNamespace(namespace).list().getItems());
+        }
+    }
+
+    /**
+     * Opens the watch again after the server closed it, listing the resources in case we missed their events;
+     * if the watch cannot be opened the pending futures of the kind and namespace fail
+     */
+    protected synchronized void onWatchClosed(Watcher<?> watcher, HasMetadata resource, String namespace, KubernetesClientException cause) {
+        watches.remove(watcher);
+        if (closed) {
+            return;
+        }
+        String kindNamespace = getKind(resource) + "/" + namespace;
+        LOG.warn("Readiness watch of " + kindNamespace + " closed: " + cause + ". Watching again");
+        try {
+            openWatch(resource, namespace);
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to watch " + kindNamespace + " again. " + e, e);
+            watchedKindNamespaces.remove(kindNamespace);
+            String prefix = kindNamespace + "/";
+            for (Map.Entry<String, CompletableFuture<HasMetadata>> entry : futures.entrySet()) {
+                if (entry.getKey().startsWith(prefix)) {
+                    entry.getValue().completeExceptionally(e);
+                    futures.remove(entry.getKey());
+                }
+            }
+        }
+    }
+
+    protected HasMetadata loadResource(HasMetadata resource, String namespace) {
+        String name = getName(resource);
+        if (resource instanceof Pod) {
+            return kubernetesClient.pods().inNamespace(namespace).withName(name).get();
+        } else if (resource instanceof ReplicationController) {
+            return kubernetesClient.replicationControllers().inNamespace(namespace).withName(name).get();
+        } else if (resource instanceof Deployment) {
+            return kubernetesClient.extensions().deployments().inNamespace(namespace).withName(name).get();
+        }
+        return null;
+    }
+
+    protected void onResources(List<? extends HasMetadata> resources) {
+        if (resources != null) {
+            for (HasMetadata resource : resources) {
+                onResource(resource);
+            }
+        }
+    }
+
+    protected void onResource(HasMetadata resource) {
+        String key = createKey(getKind(resource), getNamespace(resource), getName(resource));
+        CompletableFuture<HasMetadata> future = futures.get(key);
+        if (future != null && !future.isDone() && isReady(resource)) {
+            LOG.debug(key + " is ready");
+            future.complete(resource);
+        }
+    }
+
+    protected String getNamespace(HasMetadata resource) {
+        String answer = KubernetesHelper.getNamespace(resource);
+        if (Strings.isNullOrBlank(answer)) {
+            answer = defaultNamespace;
+        }
+        return answer;
+    }
+
+    protected static boolean isWatchedKind(HasMetadata resource) {
+        return resource instanceof Pod || resource instanceof ReplicationController || resource instanceof Deployment;
+    }
+
+    private static boolean isLatestGeneration(HasMetadata resource, Long observedGeneration) {
+        ObjectMeta metadata = resource.getMetadata();
+        Long generation = metadata != null ? metadata.getGeneration() : null;
+        return generation == null || (observedGeneration != null && observedGeneration >= generation);
+    }
+
+    private static int intValue(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    private static String createKey(String kind, String namespace, String name) {
+        return kind + "/" + namespace + "/" + name;
+    }
+
+    private class ReadyEventWatcher<T extends HasMetadata> implements Watcher<T> {
+        private final HasMetadata resource;
+        private final String namespace;
+
+        ReadyEventWatcher(HasMetadata resource, String namespace) {
+            this.resource = resource;
+            this.namespace = namespace;
+        }
+
+        @Override
+        public void eventReceived(Action action, T resource) {
+            if (action.equals(Action.ADDED) || action.equals(Action.MODIFIED)) {
+                onResource(resource);
+            }
+        }
+
+        @Override
+        public void onClose(KubernetesClientException e) {
+            // a null exception means we closed the watch ourselves
+            if (e != null) {
+                onWatchClosed(this, resource, namespace, e);
+            }
+        }
+    }
+}
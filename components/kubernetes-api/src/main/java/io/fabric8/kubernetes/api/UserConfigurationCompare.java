@@ -15,18 +15,27 @@
  */
 package io.fabric8.kubernetes.api;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.ObjectMeta;
 import io.fabric8.utils.Objects;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.validation.constraints.NotNull;
+import java.io.IOException;
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 
 /**
@@ -37,6 +46,27 @@ public class UserConfigurationCompare {
 
     protected static final Set<String> ignoredProperties = new HashSet<>(Collections.singletonList("status"));
 
+    /**
+     * Annotations which are added by the tooling itself so are not part of the user configuration
+     */
+    protected static final Set<String> ignoredAnnotations = new HashSet<>(Collections.singletonList(Annotations.Config.CONFIG_HASH));
+
+    private static final String NAME_PROPERTY = "name";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {
+    };
+
+    /**
+     * The compiled property accessors of each DTO class, introspected only once per class
+     */
+    private static final ClassValue<PropertyAccessors> propertyAccessors = new ClassValue<PropertyAccessors>() {
+        @Override
+        protected PropertyAccessors computeValue(Class<?> type) {
+            return PropertyAccessors.create(type);
+        }
+    };
 
     /**
      * This method detects if the user has changed the configuration of an entity.
@@ -73,7 +103,90 @@ public class UserConfigurationCompare {
         }
     }
 
+    /**
+     * Returns a hash of the <b>user</b> configuration of the given entity.
+     * <p/>
+     * Like {@link #configEqual(Object, Object)} this ignores the status and any runtime metadata
+     * so that two entities with the same user configuration have the same hash.
+     *
+     * @return the hex encoded hash of the configuration
+     */
+    public static String configHash(HasMetadata entity) {
+        Map<String, Object> map = OBJECT_MAPPER.convertValue(entity, MAP_TYPE);
+        for (String ignoredProperty : ignoredProperties) {
+            map.remove(ignoredProperty);
+        }
+        ObjectMeta metadata = entity.getMetadata();
+        if (metadata != null) {
+            Map<String, Object> userMetadata = new HashMap<>();
+            userMetadata.put("name", metadata.getName());
+            userMetadata.put("namespace", metadata.getNamespace());
+            userMetadata.put("labels", metadata.getLabels());
+            userMetadata.put("annotations", userAnnotations(metadata.getAnnotations()));
+            map.put("metadata", userMetadata);
+        }
+        try {
+            byte[] bytes = OBJECT_MAPPER.writeValueAsBytes(canonicalize(map));
+            byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(bytes);
+            return toHex(digest);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to marshal " + entity + ". " + e, e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No " + HASH_ALGORITHM + " algorithm available. " + e, e);
+        }
+    }
+
+    /**
+     * Converts all the maps to sorted maps so that the serialized form does not depend on the order of properties
+     */
+    static Object canonicalize(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> answer = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                answer.put(String.valueOf(entry.getKey()), canonicalize(entry.getValue()));
+            }
+            return answer;
+        } else if (value instanceof Collection) {
+            List<Object> answer = new ArrayList<>();
+            for (Object item : (Collection<?>) value) {
+                answer.add(canonicalize(item));
+            }
+            return answer;
+        }
+        return value;
+    }
+
+    static Map<String, String> userAnnotations(Map<String, String> annotations) {
+        if (annotations == null) {
+            return null;
+        }
+        Map<String, String> answer = new HashMap<>(annotations);
+        answer.keySet().removeAll(ignoredAnnotations);
+        if (answer.isEmpty() && !annotations.isEmpty()) {
+            // only had tooling annotations so lets treat it the same as having no annotations
+            return null;
+        }
+        return answer;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] answer = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            answer[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            answer[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(answer);
+    }
+
     static <L,R> boolean collectionsEqual(Collection<L> left, Collection<R> right) {
+        PropertyAccessor nameAccessor = findCommonNameAccessor(left, right);
+        if (nameAccessor != null) {
+            Map<Object, List<R>> rightByName = indexByName(right, nameAccessor);
+            Map<Object, List<L>> leftByName = indexByName(left, nameAccessor);
+            if (leftByName != null && rightByName != null) {
+                return subCollection(left, rightByName, nameAccessor) && subCollection(right, leftByName, nameAccessor);
+            }
+        }
         return subCollection(left, right) && subCollection(right, left);
     }
 
@@ -96,6 +209,69 @@ public class UserConfigurationCompare {
         return true;
     }
 
+    /**
+     * Checks every item on the left has an equal item on the right; only the right items with the same name
+     * are candidates as items with different names can never be equal
+     */
+    static <L, R> boolean subCollection(Collection<L> left, Map<Object, List<R>> rightByName, PropertyAccessor nameAccessor) {
+        for (L candidate : left) {
+            List<R> sameName = rightByName.get(nameAccessor.getValue(candidate));
+            if (sameName == null || !itemExists(candidate, sameName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the accessor of the <code>name</code> property if all the items of both collections are
+     * Kubernetes DTOs of the same class which has such a property (such as containers, ports or env vars)
+     * or null if the items cannot be matched by name
+     */
+    static PropertyAccessor findCommonNameAccessor(Collection<?> left, Collection<?> right) {
+        if (left.isEmpty() || right.isEmpty()) {
+            return null;
+        }
+        Class<?> itemClass = null;
+        for (Collection<?> collection : Arrays.asList(left, right)) {
+            for (Object item : collection) {
+                if (item == null) {
+                    return null;
+                } else if (itemClass == null) {
+                    itemClass = item.getClass();
+                } else if (!itemClass.equals(item.getClass())) {
+                    return null;
+                }
+            }
+        }
+        if (itemClass.getPackage() == null || !itemClass.getPackage().getName().startsWith("io.fabric8")) {
+            return null;
+        }
+        return propertyAccessors.get(itemClass).getAccessor(NAME_PROPERTY);
+    }
+
+    /**
+     * Indexes the given items by their name or returns null if a name could not be read
+     */
+    static <T> Map<Object, List<T>> indexByName(Collection<T> items, PropertyAccessor nameAccessor) {
+        Map<Object, List<T>> answer = new HashMap<>();
+        for (T item : items) {
+            Object name;
+            try {
+                name = nameAccessor.getValue(item);
+            } catch (RuntimeException e) {
+                return null;
+            }
+            List<T> list = answer.get(name);
+            if (list == null) {
+                list = new ArrayList<>(1);
+                answer.put(name, list);
+            }
+            list.add(item);
+        }
+        return answer;
+    }
+
     static Class getCommonDenominator(Class left, Class right) {
         if (left.equals(right)) {
             return left;
@@ -115,28 +291,16 @@ public class UserConfigurationCompare {
      * This method will ignore properties {@link #ignoredProperties} such as status or timestamp properties
      */
     protected static boolean configEqualKubernetesDTO(@NotNull Object entity1, @NotNull Object entity2, @NotNull Class<?> clazz) {
-        // lets iterate through the objects making sure we've not
-        BeanInfo beanInfo = null;
-        try {
-            beanInfo = Introspector.getBeanInfo(clazz);
-        } catch (IntrospectionException e) {
-            LOG.warn("Failed to get beanInfo for " + clazz.getName() + ". " + e, e);
+        PropertyAccessors accessors = propertyAccessors.get(clazz);
+        if (accessors.isInvalid()) {
             return false;
         }
         try {
-            PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-            for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-                String name = propertyDescriptor.getName();
-                if (ignoredProperties.contains(name)) {
-                    continue;
-                }
-                Method readMethod = propertyDescriptor.getReadMethod();
-                if (readMethod != null) {
-                    Object value1 = invokeMethod(entity1, readMethod);
-                    Object value2 = invokeMethod(entity2, readMethod);
-                    if (!configEqual(value1, value2)) {
-                        return false;
-                    }
+            for (PropertyAccessor accessor : accessors.getComparedAccessors()) {
+                Object value1 = accessor.getValue(entity1);
+                Object value2 = accessor.getValue(entity2);
+                if (!configEqual(value1, value2)) {
+                    return false;
                 }
             }
             return true;
@@ -164,7 +328,7 @@ public class UserConfigurationCompare {
         return Objects.equal(entity1.getName(), entity2.getName()) &&
                 Objects.equal(entity1.getNamespace(), entity2.getNamespace()) &&
                 configEqualMap(entity1.getLabels(), entity2.getLabels()) &&
-                configEqualMap(entity1.getAnnotations(), entity2.getAnnotations());
+                configEqualMap(userAnnotations(entity1.getAnnotations()), userAnnotations(entity2.getAnnotations()));
     }
 
     protected static <T> T castTo(Class<T> clazz, Object entity) {
@@ -226,4 +390,90 @@ public class UserConfigurationCompare {
         return (coll == null) ? 0 : coll.size();
     }
 
+    /**
+     * The property accessors of a DTO class created once via introspection
+     */
+    static class PropertyAccessors {
+        private final List<PropertyAccessor> comparedAccessors;
+        private final Map<String, PropertyAccessor> accessorsByName;
+        private final boolean invalid;
+
+        PropertyAccessors(List<PropertyAccessor> comparedAccessors, Map<String, PropertyAccessor> accessorsByName, boolean invalid) {
+            this.comparedAccessors = comparedAccessors;
+            this.accessorsByName = accessorsByName;
+            this.invalid = invalid;
+        }
+
+        static PropertyAccessors create(Class<?> clazz) {
+            BeanInfo beanInfo;
+            try {
+                beanInfo = Introspector.getBeanInfo(clazz);
+            } catch (IntrospectionException e) {
+                LOG.warn("Failed to get beanInfo for " + clazz.getName() + ". " + e, e);
+                return new PropertyAccessors(Collections.<PropertyAccessor>emptyList(), Collections.<String, PropertyAccessor>emptyMap(), true);
+            }
+            List<PropertyAccessor> compared = new ArrayList<>();
+            Map<String, PropertyAccessor> byName = new HashMap<>();
+            for (PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
+                Method readMethod = propertyDescriptor.getReadMethod();
+                if (readMethod != null) {
+                    String name = propertyDescriptor.getName();
+                    PropertyAccessor accessor = new PropertyAccessor(readMethod);
+                    byName.put(name, accessor);
+                    if (!ignoredProperties.contains(name)) {
+                        compared.add(accessor);
+                    }
+                }
+            }
+            return new PropertyAccessors(compared, byName, false);
+        }
+
+        public List<PropertyAccessor> getComparedAccessors() {
+            return comparedAccessors;
+        }
+
+        public PropertyAccessor getAccessor(String name) {
+            return accessorsByName.get(name);
+        }
+
+        public boolean isInvalid() {
+            return invalid;
+        }
+    }
+
+    /**
+     * Reads a property using a {@link MethodHandle} resolved once, falling back to reflection
+     * if the read method is not accessible via a method handle
+     */
+    static class PropertyAccessor {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+        private final Method readMethod;
+        private final MethodHandle handle;
+
+        PropertyAccessor(Method readMethod) {
+            this.readMethod = readMethod;
+            MethodHandle methodHandle = null;
+            try {
+                methodHandle = MethodHandles.publicLookup().unreflect(readMethod).asType(GETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                LOG.debug("Could not create method handle for " + readMethod + " so using reflection. " + e);
+            }
+            this.handle = methodHandle;
+        }
+
+        public Object getValue(Object entity) {
+            try {
+                if (handle != null) {
+                    return handle.invokeExact(entity);
+                }
+                return invokeMethod(entity, readMethod);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to invoke method " + readMethod + " on " + entity + ". " + e, e);
+            }
+        }
+    }
+
 }
@@ -16,29 +16,46 @@
 package io.fabric8.kubernetes.api.builds;
 
 
+import io.fabric8.kubernetes.api.informers.SharedInformer;
+import io.fabric8.kubernetes.api.informers.SharedInformers;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watcher;
 import io.fabric8.openshift.api.model.Build;
 import io.fabric8.openshift.api.model.BuildList;
+import io.fabric8.openshift.api.model.BuildStatus;
 import io.fabric8.openshift.client.OpenShiftClient;
 import io.fabric8.utils.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Collections;
+import java.io.Closeable;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 
-public class BuildWatcher {
+/**
+ * Notifies a {@link BuildListener} once for each build which finishes in a namespace.
+ * <p/>
+ * Use {@link #start()} to process the events of a shared watch of the builds which resumes from the last
+ * resource version if it is closed; or {@link #schedule(long)} to poll the builds.
+ * <p/>
+ * The UIDs of the finished builds are kept while the builds exist so that a finished build which is modified
+ * again, or replayed when the watch lists the builds again, is not notified twice. Resource versions are not
+ * used to skip builds as the builds of a list are not in resource version order.
+ */
+public class BuildWatcher implements Closeable {
     private static final transient Logger LOG = LoggerFactory.getLogger(BuildWatcher.class);
 
     private final OpenShiftClient client;
     private final BuildListener buildListener;
     private final String namespace;
     private final String fabric8ConsoleLink;
-    private boolean loading = true;
-    private Set<String> seenBuildIds = Collections.<String>synchronizedSet(new HashSet<String>());
+    private final Set<String> finishedBuildIds = new HashSet<>();
+    private final Watcher<Build> buildEventWatcher = new BuildEventWatcher();
+    private volatile boolean loading = true;
+    private SharedInformer<Build> informer;
 
     public BuildWatcher(OpenShiftClient client, BuildListener buildListener, String namespace, String fabric8ConsoleLink) {
         this.client = client;
@@ -47,7 +64,36 @@ public class BuildWatcher {
         this.fabric8ConsoleLink = fabric8ConsoleLink;
     }
 
+    /**
+     * Starts watching the builds; the builds which have already finished are notified with the loading flag set
+     */
+    public synchronized void start() {
+        if (informer == null) {
+            informer = SharedInformers.builds(client, namespace, null);
+            loading = true;
+            try {
+                informer.addListener(buildEventWatcher);
+            } finally {
+                loading = false;
+            }
+        }
+    }
+
+    /**
+     * Stops watching the builds
+     */
+    @Override
+    public synchronized void close() {
+        if (informer != null) {
+            informer.removeListener(buildEventWatcher);
+            informer.close();
+            informer = null;
+        }
+    }
 
+    /**
+     * Polls the builds using a new timer
+     */
     public TimerTask schedule(long delay) {
         Timer timer = new Timer();
         return schedule(timer, delay);
@@ -57,7 +103,11 @@ public class BuildWatcher {
         TimerTask task = new TimerTask() {
             @Override
             public void run() {
-                poll();
+                try {
+                    poll();
+                } catch (Exception e) {
+                    LOG.warn("Failed to poll builds in namespace " + namespace + ". " + e, e);
+                }
             }
         };
         timer.schedule(task, delay, delay);
@@ -70,10 +120,16 @@ public class BuildWatcher {
         if (buildList != null) {
             List<Build> items = buildList.getItems();
             if (items != null) {
+                Set<String> uids = new HashSet<>();
                 for (Build build : items) {
+                    uids.add(Builds.getUid(build));
                     buildPolled(build);
                     foundBuild = true;
                 }
+                // lets forget the builds which have been deleted
+                synchronized (finishedBuildIds) {
+                    finishedBuildIds.retainAll(uids);
+                }
             }
         }
         if (foundBuild) {
@@ -82,14 +138,15 @@ public class BuildWatcher {
     }
 
     protected void buildPolled(Build build) {
-        String status = build.getStatus().getPhase();
+        BuildStatus buildStatus = build.getStatus();
+        String status = buildStatus != null ? buildStatus.getPhase() : null;
         if (status != null) {
             if (Builds.isFinished(status)) {
                 String uid = Builds.getUid(build);
                 if (Strings.isNullOrBlank(uid)) {
                     LOG.warn("Ignoring bad build which has no UID: " + build);
                 } else {
-                    if (seenBuildIds.add(uid)) {
+                    if (markFinished(uid)) {
                         String name = Builds.getName(build);
                         String buildLink = Builds.createConsoleBuildLink(this.fabric8ConsoleLink, name);
                         BuildFinishedEvent event = new BuildFinishedEvent(uid, build, loading, buildLink);
@@ -100,6 +157,21 @@ public class BuildWatcher {
         }
     }
 
+    /**
+     * Returns true if the finished build should be notified as it was not already known to be finished
+     */
+    protected boolean markFinished(String uid) {
+        synchronized (finishedBuildIds) {
+            return finishedBuildIds.add(uid);
+        }
+    }
+
+    protected void buildDeleted(Build build) {
+        synchronized (finishedBuildIds) {
+            finishedBuildIds.remove(Builds.getUid(build));
+        }
+    }
+
     /**
      * Waits until this watcher is finished (which by default is forever)
      */
@@ -115,4 +187,19 @@ public class BuildWatcher {
             }
         }
     }
+
+    private class BuildEventWatcher implements Watcher<Build> {
+        @Override
+        public void eventReceived(Action action, Build build) {
+            if (action.equals(Action.DELETED)) {
+                buildDeleted(build);
+            } else if (!action.equals(Action.ERROR)) {
+                buildPolled(build);
+            }
+        }
+
+        @Override
+        public void onClose(KubernetesClientException e) {
+        }
+    }
 }
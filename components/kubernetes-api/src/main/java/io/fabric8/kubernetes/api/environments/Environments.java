@@ -16,9 +16,10 @@
  */
 package io.fabric8.kubernetes.api.environments;
 
+import io.fabric8.kubernetes.api.KubernetesClients;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.ConfigMap;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.api.support.ConfigMapCache;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.utils.Strings;
 import org.slf4j.Logger;
@@ -52,13 +53,13 @@ public class Environments {
 
 
     public static Environments load() {
-        try (KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
+        try (KubernetesClient kubernetesClient = KubernetesClients.acquire()) {
             String namespace = findSpaceNamespace(kubernetesClient);
             return load(kubernetesClient, namespace);
         }
     }
     public static Environments load(String namespace) {
-        try (KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
+        try (KubernetesClient kubernetesClient = KubernetesClients.acquire()) {
             return load(kubernetesClient, namespace);
         }
     }
@@ -66,12 +67,12 @@ public class Environments {
     public static Environments load(KubernetesClient kubernetesClient, String namespace) {
         namespace = getDefaultNamespace(kubernetesClient, namespace);
         LOG.debug("Loading environments from namespace: " + namespace);
-        ConfigMap configMap = kubernetesClient.configMaps().inNamespace(namespace).withName(ENVIRONMENTS_CONFIGMAP_NAME).get();
+        ConfigMap configMap = ConfigMapCache.getInstance().get(kubernetesClient, namespace, ENVIRONMENTS_CONFIGMAP_NAME);
         if (configMap == null) {
             String spaceNamespace = findSpaceNamespace(kubernetesClient, namespace);
             if (Strings.isNotBlank(spaceNamespace) && !spaceNamespace.equals(namespace)) {
                 namespace = spaceNamespace;
-                configMap = kubernetesClient.configMaps().inNamespace(spaceNamespace).withName("fabric8-environments").get();
+                configMap = ConfigMapCache.getInstance().get(kubernetesClient, spaceNamespace, ENVIRONMENTS_CONFIGMAP_NAME);
             }
         }
         return load(configMap, namespace);
@@ -93,7 +94,7 @@ public class Environments {
      */
     public static String findSpaceNamespace(KubernetesClient kubernetesClient, String namespace) {
         try {
-            ConfigMap configMap = kubernetesClient.configMaps().inNamespace(namespace).withName(SPACE_LINK_CONFIGMAP_NAME).get();
+            ConfigMap configMap = ConfigMapCache.getInstance().get(kubernetesClient, namespace, SPACE_LINK_CONFIGMAP_NAME);
             if (configMap != null) {
                 Map<String, String> data = configMap.getData();
                 if (data != null) {
@@ -120,7 +121,7 @@ public class Environments {
      * Returns the namespace for the given environment name
      */
     public static String namespaceForEnvironment(String environmentKey) {
-        try (KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
+        try (KubernetesClient kubernetesClient = KubernetesClients.acquire()) {
             String namespace = KubernetesHelper.getNamespace(kubernetesClient);
             return namespaceForEnvironment(kubernetesClient, environmentKey, namespace);
         }
@@ -130,7 +131,7 @@ public class Environments {
      * Returns the namespace for the given environment name if its defined or null if one cannot be found
      */
     public static String namespaceForEnvironment(String environmentKey, String namespace) {
-        try (KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
+        try (KubernetesClient kubernetesClient = KubernetesClients.acquire()) {
             return namespaceForEnvironment(kubernetesClient, environmentKey, namespace);
         }
     }
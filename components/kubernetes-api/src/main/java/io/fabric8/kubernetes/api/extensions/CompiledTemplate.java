@@ -0,0 +1,257 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.extensions;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The objects of a template parsed once into a JSON tree with the location of every <code>${PARAMETER}</code>
+ * expression found in a field value or name, so that the template can be processed many times with different
+ * parameter values by only substituting those slots rather than searching and replacing in the whole JSON text.
+ */
+public class CompiledTemplate {
+    private static final String EXPRESSION_START = "${";
+    private static final String EXPRESSION_END = "}";
+
+    /**
+     * The number of times we expand expressions inside parameter values
+     */
+    private static final int MAX_VALUE_EXPANSIONS = 5;
+
+    private final JsonNode tree;
+    private final List<Slot> valueSlots;
+    private final List<Slot> nameSlots;
+
+    protected CompiledTemplate(JsonNode tree, List<Slot> valueSlots, List<Slot> nameSlots) {
+        this.tree = tree;
+        this.valueSlots = valueSlots;
+        this.nameSlots = nameSlots;
+    }
+
+    /**
+     * Compiles the given JSON tree of a <code>List</code> containing the template objects
+     */
+    public static CompiledTemplate compile(JsonNode tree) {
+        List<Slot> valueSlots = new ArrayList<>();
+        List<Slot> nameSlots = new ArrayList<>();
+        findSlots(tree, new ArrayList<>(), valueSlots, nameSlots);
+        // lets rename the deepest fields first so that the paths of the other field names remain valid
+        Collections.reverse(nameSlots);
+        return new CompiledTemplate(tree, valueSlots, nameSlots);
+    }
+
+    /**
+     * Returns the number of parameter expressions found in the template
+     */
+    public int getSlotCount() {
+        return valueSlots.size() + nameSlots.size();
+    }
+
+    /**
+     * Processes the template replacing the parameter expressions with the given parameter values.
+     * Expressions for parameters which have no value are left as they are.
+     */
+    public KubernetesList process(ObjectMapper objectMapper, Map<String, String> parameterValues) throws IOException {
+        Map<String, String> values = expandValues(parameterValues);
+        JsonNode answer = tree.deepCopy();
+        for (Slot slot : valueSlots) {
+            JsonNode parent = slot.getParent(answer);
+            String text = slot.substitute(values);
+            if (parent instanceof ObjectNode) {
+                ((ObjectNode) parent).put((String) slot.getStep(), text);
+            } else if (parent instanceof ArrayNode) {
+                ((ArrayNode) parent).set((Integer) slot.getStep(), objectMapper.getNodeFactory().textNode(text));
+            }
+        }
+        for (Slot slot : nameSlots) {
+            JsonNode parent = slot.getParent(answer);
+            if (parent instanceof ObjectNode) {
+                ObjectNode objectNode = (ObjectNode) parent;
+                JsonNode value = objectNode.remove((String) slot.getStep());
+                objectNode.set(slot.substitute(values), value);
+            }
+        }
+        return objectMapper.treeToValue(answer, KubernetesList.class);
+    }
+
+    /**
+     * Lets expand any expressions inside the parameter values themselves
+     */
+    protected static Map<String, String> expandValues(Map<String, String> parameterValues) {
+        Map<String, String> answer = new HashMap<>(parameterValues);
+        for (int i = 0; i < MAX_VALUE_EXPANSIONS; i++) {
+            boolean changed = false;
+            for (Map.Entry<String, String> entry : answer.entrySet()) {
+                String value = entry.getValue();
+                if (value != null && value.contains(EXPRESSION_START)) {
+                    String expanded = substitute(parseSegments(value), answer);
+                    if (!expanded.equals(value)) {
+                        entry.setValue(expanded);
+                        changed = true;
+                    }
+                }
+            }
+            if (!changed) {
+                break;
+            }
+        }
+        return answer;
+    }
+
+    protected static void findSlots(JsonNode node, List<Object> path, List<Slot> valueSlots, List<Slot> nameSlots) {
+        if (node instanceof ObjectNode) {
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                String name = field.getKey();
+                JsonNode value = field.getValue();
+                if (name.contains(EXPRESSION_START)) {
+                    nameSlots.add(new Slot(path, name, parseSegments(name)));
+                }
+                if (value.isTextual()) {
+                    addValueSlot(path, name, value.textValue(), valueSlots);
+                } else if (value.isContainerNode()) {
+                    path.add(name);
+                    findSlots(value, path, valueSlots, nameSlots);
+                    path.remove(path.size() - 1);
+                }
+            }
+        } else if (node instanceof ArrayNode) {
+            for (int i = 0, size = node.size(); i < size; i++) {
+                JsonNode value = node.get(i);
+                if (value.isTextual()) {
+                    addValueSlot(path, i, value.textValue(), valueSlots);
+                } else if (value.isContainerNode()) {
+                    path.add(i);
+                    findSlots(value, path, valueSlots, nameSlots);
+                    path.remove(path.size() - 1);
+                }
+            }
+        }
+    }
+
+    private static void addValueSlot(List<Object> path, Object step, String text, List<Slot> valueSlots) {
+        if (text.contains(EXPRESSION_START)) {
+            List<Object> segments = parseSegments(text);
+            if (segments.size() > 1 || segments.get(0) instanceof Expression) {
+                valueSlots.add(new Slot(path, step, segments));
+            }
+        }
+    }
+
+    /**
+     * Splits the text into literal strings and {@link Expression} segments
+     */
+    protected static List<Object> parseSegments(String text) {
+        List<Object> answer = new ArrayList<>();
+        int idx = 0;
+        while (idx < text.length()) {
+            int start = text.indexOf(EXPRESSION_START, idx);
+            int end = start >= 0 ? text.indexOf(EXPRESSION_END, start + EXPRESSION_START.length()) : -1;
+            if (start < 0 || end < 0) {
+                answer.add(text.substring(idx));
+                break;
+            }
+            if (start > idx) {
+                answer.add(text.substring(idx, start));
+            }
+            answer.add(new Expression(text.substring(start + EXPRESSION_START.length(), end)));
+            idx = end + EXPRESSION_END.length();
+        }
+        return answer;
+    }
+
+    protected static String substitute(List<Object> segments, Map<String, String> values) {
+        StringBuilder builder = new StringBuilder();
+        for (Object segment : segments) {
+            if (segment instanceof Expression) {
+                String name = ((Expression) segment).getName();
+                String value = values.get(name);
+                if (value != null) {
+                    builder.append(value);
+                } else {
+                    builder.append(EXPRESSION_START).append(name).append(EXPRESSION_END);
+                }
+            } else {
+                builder.append(segment);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A reference to a parameter inside some text
+     */
+    protected static class Expression {
+        private final String name;
+
+        public Expression(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * The location of a text value or field name containing parameter expressions; the path is made of field names
+     * and array indices from the root of the tree to the parent node and the step is the field name or index within it
+     */
+    protected static class Slot {
+        private final Object[] path;
+        private final Object step;
+        private final List<Object> segments;
+
+        public Slot(List<Object> path, Object step, List<Object> segments) {
+            this.path = path.toArray();
+            this.step = step;
+            this.segments = segments;
+        }
+
+        public Object getStep() {
+            return step;
+        }
+
+        public JsonNode getParent(JsonNode root) {
+            JsonNode node = root;
+            for (Object element : path) {
+                if (element instanceof Integer) {
+                    node = node.get((Integer) element);
+                } else {
+                    node = node.get((String) element);
+                }
+            }
+            return node;
+        }
+
+        public String substitute(Map<String, String> values) {
+            return CompiledTemplate.substitute(segments, values);
+        }
+    }
+}
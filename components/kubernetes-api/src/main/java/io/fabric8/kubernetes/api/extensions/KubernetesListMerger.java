@@ -0,0 +1,135 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.extensions;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.openshift.api.model.Parameter;
+import io.fabric8.openshift.api.model.Template;
+import io.fabric8.utils.Strings;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the resources from many sources into a single {@link KubernetesList} or, if any of the sources contain
+ * templates, into the first {@link Template} combining the parameters of the other templates.
+ * <p/>
+ * Resources are indexed by kind, namespace and name as they are added so that duplicates are dropped as they
+ * arrive, the first one added wins. Services are kept in front of the other resources to avoid ordering issues when
+ * creating them; otherwise the order in which resources are added is preserved.
+ */
+public class KubernetesListMerger {
+    private final Map<String, HasMetadata> services = new LinkedHashMap<>();
+    private final Map<String, HasMetadata> resources = new LinkedHashMap<>();
+    private KubernetesList list;
+    private Template template;
+    private Map<String, Parameter> parameterIndex;
+    private int unnamedCount;
+
+    /**
+     * Adds the given resource, list, template or collection of them
+     *
+     * @throws IllegalArgumentException if the object is not a resource, list, template, array or iterable
+     */
+    public KubernetesListMerger add(Object object) {
+        if (object instanceof KubernetesList) {
+            KubernetesList kubernetesList = (KubernetesList) object;
+            if (list == null) {
+                list = kubernetesList;
+            }
+            addAll(kubernetesList.getItems());
+        } else if (object instanceof Template) {
+            addTemplate((Template) object);
+        } else if (object instanceof HasMetadata) {
+            addResource((HasMetadata) object);
+        } else if (object instanceof Iterable) {
+            addAll((Iterable<?>) object);
+        } else if (object instanceof Object[]) {
+            for (Object item : (Object[]) object) {
+                add(item);
+            }
+        } else if (object != null) {
+            throw new IllegalArgumentException("Cannot merge " + object.getClass().getName() + " into a KubernetesList: " + object);
+        }
+        return this;
+    }
+
+    public KubernetesListMerger addAll(Iterable<?> objects) {
+        if (objects != null) {
+            for (Object object : objects) {
+                add(object);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns the resources added so far with the services first
+     */
+    public List<HasMetadata> getItems() {
+        List<HasMetadata> answer = new ArrayList<>(services.size() + resources.size());
+        answer.addAll(services.values());
+        answer.addAll(resources.values());
+        return answer;
+    }
+
+    /**
+     * Returns the first template with all the resources as its objects if any templates were added, otherwise the
+     * first list added (or a new list if there was none) with all the resources as its items
+     */
+    public Object build() {
+        List<HasMetadata> items = getItems();
+        if (template != null) {
+            template.setObjects(items);
+            return template;
+        }
+        KubernetesList answer = list != null ? list : new KubernetesList();
+        answer.setItems(items);
+        return answer;
+    }
+
+    protected void addTemplate(Template other) {
+        List<HasMetadata> objects = other.getObjects();
+        if (template == null) {
+            template = other;
+            parameterIndex = Templates.indexParameters(template);
+        } else if (other != template) {
+            Templates.combineParameters(parameterIndex, template.getParameters(), other.getParameters());
+            Templates.combineAnnotations(template, other);
+        }
+        addAll(objects);
+    }
+
+    protected void addResource(HasMetadata item) {
+        String name = KubernetesHelper.getName(item);
+        String key;
+        if (Strings.isNullOrBlank(name)) {
+            // lets keep all the resources without a name
+            key = "#" + unnamedCount++;
+        } else {
+            key = item.getClass().getSimpleName() + "/" + KubernetesHelper.getNamespace(item) + "/" + name;
+        }
+        Map<String, HasMetadata> map = item instanceof Service ? services : resources;
+        if (!map.containsKey(key)) {
+            map.put(key, item);
+        }
+    }
+}
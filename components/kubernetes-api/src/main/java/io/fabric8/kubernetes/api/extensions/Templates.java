@@ -16,6 +16,7 @@
 package io.fabric8.kubernetes.api.extensions;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.KubernetesList;
@@ -26,8 +27,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,6 +47,17 @@ public class Templates {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     private static final transient Logger LOG = LoggerFactory.getLogger(Templates.class);
+    private static final int MAX_COMPILED_TEMPLATES = 64;
+
+    /**
+     * The most recently used compiled templates indexed by the hash of their content
+     */
+    private static final Map<String, CompiledTemplate> COMPILED_TEMPLATES = Collections.synchronizedMap(new LinkedHashMap<String, CompiledTemplate>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledTemplate> eldest) {
+            return size() > MAX_COMPILED_TEMPLATES;
+        }
+    });
 
     /**
      * Allows a list of resources to be combined into a single Template if one or more templates are contained inside the list
@@ -51,40 +68,31 @@ public class Templates {
     }
 
     public static Object combineTemplates(KubernetesList kubernetesList, Template firstTemplate) {
-        List<HasMetadata> items = kubernetesList.getItems();
-        for (HasMetadata item : items) {
-            if (item instanceof Template) {
-                Template template = (Template) item;
-                if (firstTemplate == null) {
-                    firstTemplate = template;
-                } else {
-                    firstTemplate = combineTemplates(firstTemplate, template);
-                }
-            }
-        }
-        if (firstTemplate != null) {
-            for (HasMetadata object : items) {
-                if (!(object instanceof Template)) {
-                    addTemplateObject(firstTemplate, object);
-                }
-            }
-        }
-        return firstTemplate != null ? firstTemplate : kubernetesList;
+        Template template = mergeTemplates(firstTemplate, kubernetesList.getItems());
+        return template != null ? template : kubernetesList;
     }
 
     public static Template combineTemplates(Template firstTemplate, Template template) {
+        combineTemplates(firstTemplate, template, indexParameters(firstTemplate));
+        return firstTemplate;
+    }
+
+    /**
+     * Adds the objects, parameters and annotations of the template to the first template using the given index of
+     * the parameters of the first template by name, which is updated with any new parameters
+     */
+    protected static void combineTemplates(Template firstTemplate, Template template, Map<String, Parameter> parameterIndex) {
         List<HasMetadata> objects = template.getObjects();
         if (objects != null) {
             for (HasMetadata object : objects) {
                 addTemplateObject(firstTemplate, object);
             }
         }
-        List<Parameter> parameters = firstTemplate.getParameters();
-        if (parameters == null) {
-            parameters = new ArrayList<>();
-            firstTemplate.setParameters(parameters);
-        }
-        combineParameters(parameters, template.getParameters());
+        combineParameters(parameterIndex, firstTemplate.getParameters(), template.getParameters());
+        combineAnnotations(firstTemplate, template);
+    }
+
+    protected static void combineAnnotations(Template firstTemplate, Template template) {
         String name = KubernetesHelper.getName(template);
         if (Strings.isNotBlank(name)) {
             // lets merge all the fabric8 annotations using the template id qualifier as a postfix
@@ -99,20 +107,28 @@ public class Templates {
                 }
             }
         }
-        return firstTemplate;
     }
 
     protected static void combineParameters(List<Parameter> parameters, List<Parameter> otherParameters) {
+        Map<String, Parameter> map = new HashMap<>();
+        for (Parameter parameter : parameters) {
+            map.put(parameter.getName(), parameter);
+        }
+        combineParameters(map, parameters, otherParameters);
+    }
+
+    /**
+     * Adds the other parameters to the parameters using the given index of the parameters by name so that many
+     * templates can be combined without indexing the parameters again each time
+     */
+    protected static void combineParameters(Map<String, Parameter> parameterIndex, List<Parameter> parameters, List<Parameter> otherParameters) {
         if (otherParameters != null && otherParameters.size() > 0) {
-            Map<String, Parameter> map = new HashMap<>();
-            for (Parameter parameter : parameters) {
-                map.put(parameter.getName(), parameter);
-            }
             for (Parameter otherParameter : otherParameters) {
                 String name = otherParameter.getName();
-                Parameter original = map.get(name);
+                Parameter original = parameterIndex.get(name);
                 if (original == null) {
                     parameters.add(otherParameter);
+                    parameterIndex.put(name, otherParameter);
                 } else {
                     if (Strings.isNotBlank(original.getValue())) {
                         original.setValue(otherParameter.getValue());
@@ -122,8 +138,27 @@ public class Templates {
         }
     }
 
+    /**
+     * Returns the parameters of the template indexed by name creating the list of parameters if need be
+     */
+    protected static Map<String, Parameter> indexParameters(Template template) {
+        List<Parameter> parameters = template.getParameters();
+        if (parameters == null) {
+            parameters = new ArrayList<>();
+            template.setParameters(parameters);
+        }
+        Map<String, Parameter> answer = new HashMap<>();
+        for (Parameter parameter : parameters) {
+            answer.put(parameter.getName(), parameter);
+        }
+        return answer;
+    }
+
     public static void addTemplateObject(Template template, HasMetadata object) {
         List<HasMetadata> objects = template.getObjects();
+        if (objects == null) {
+            objects = new ArrayList<>();
+        }
         objects.add(object);
         template.setObjects(objects);
     }
@@ -133,29 +168,38 @@ public class Templates {
      * If we have any templates inside the items then lets unpack them and combine any parameters
      */
     public static Object combineTemplates(KubernetesList kubernetesList, List<HasMetadata> items) {
-        Template template = null;
+        Template template = mergeTemplates(null, items);
+        return template != null ? template : kubernetesList;
+    }
+
+    /**
+     * Combines the templates in the items into the first template then moves the other items into it, returning
+     * null if there are no templates
+     */
+    protected static Template mergeTemplates(Template firstTemplate, List<HasMetadata> items) {
+        Map<String, Parameter> parameterIndex = null;
         for (HasMetadata item : items) {
-            if (item instanceof Template) {
-                Template aTemplate = (Template) item;
-                if (template == null) {
-                    template = aTemplate;
+            if (item instanceof Template && item != firstTemplate) {
+                Template template = (Template) item;
+                if (firstTemplate == null) {
+                    firstTemplate = template;
                 } else {
-                    template = combineTemplates(template, aTemplate);
+                    if (parameterIndex == null) {
+                        parameterIndex = indexParameters(firstTemplate);
+                    }
+                    combineTemplates(firstTemplate, template, parameterIndex);
                 }
             }
         }
-        if (template != null) {
+        if (firstTemplate != null) {
             // lets move all the content into the template
             for (HasMetadata item : items) {
                 if (!(item instanceof Template)) {
-                    addTemplateObject(template, item);
+                    addTemplateObject(firstTemplate, item);
                 }
             }
-            List<HasMetadata> objects = template.getObjects();
-            return template;
-        } else {
-            return kubernetesList;
         }
+        return firstTemplate;
     }
 
     /**
@@ -183,6 +227,41 @@ public class Templates {
         }
     }
 
+    /**
+     * Returns the compiled form of the objects of the given template as {@link #compileTemplate(List)}
+     */
+    public static CompiledTemplate compileTemplate(Template template) throws IOException {
+        return compileTemplate(template.getObjects());
+    }
+
+    /**
+     * Returns the compiled form of the given template objects. The objects are serialized each time and reuse a
+     * previously compiled template if they have the same content
+     */
+    public static CompiledTemplate compileTemplate(List<HasMetadata> objects) throws IOException {
+        byte[] json = OBJECT_MAPPER.writeValueAsBytes(objects);
+        String key = contentHash(json);
+        CompiledTemplate answer = COMPILED_TEMPLATES.get(key);
+        if (answer == null) {
+            ObjectNode list = OBJECT_MAPPER.createObjectNode();
+            list.put("kind", "List");
+            list.put("apiVersion", KubernetesHelper.defaultApiVersion);
+            list.set("items", OBJECT_MAPPER.readTree(json));
+            answer = CompiledTemplate.compile(list);
+            COMPILED_TEMPLATES.put(key, answer);
+        }
+        return answer;
+    }
+
+    private static String contentHash(byte[] json) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(json);
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No SHA-256 algorithm available. " + e, e);
+        }
+    }
+
     /**
      * Lets locally process the templates so that we can process templates on any kubernetes environment
      */
@@ -196,31 +275,22 @@ public class Templates {
         }
         List<Parameter> parameters = entity != null ? entity.getParameters() : null;
         if (parameters != null && !parameters.isEmpty()) {
-            String json = "{\"kind\": \"List\", \"apiVersion\": \"" +
-                    KubernetesHelper.defaultApiVersion + "\",\n" +
-                    "  \"items\": " +
-                    KubernetesHelper.toJson(objects) +
-                    " }";
-
-            // lets make a few passes in case there's expressions in values
-            for (int i = 0; i < 5; i++) {
-                for (Parameter parameter : parameters) {
-                    String name = parameter.getName();
-                    String regex = "${" + name + "}";
-                    String value = parameter.getValue();
-
-                    // TODO generate random strings for passwords etc!
-                    if (Strings.isNullOrBlank(value)) {
-                        if (failOnMissingParameterValue) {
-                            throw new IllegalArgumentException("No value available for parameter name: " + name);
-                        } else {
-                            value = "";
-                        }
+            Map<String, String> values = new HashMap<>();
+            for (Parameter parameter : parameters) {
+                String name = parameter.getName();
+                String value = parameter.getValue();
+
+                // TODO generate random strings for passwords etc!
+                if (Strings.isNullOrBlank(value)) {
+                    if (failOnMissingParameterValue) {
+                        throw new IllegalArgumentException("No value available for parameter name: " + name);
+                    } else {
+                        value = "";
                     }
-                    json = Strings.replaceAllWithoutRegex(json, regex, value);
                 }
+                values.put(name, value);
             }
-            return  OBJECT_MAPPER.readerFor(KubernetesList.class).readValue(json);
+            return compileTemplate(entity).process(OBJECT_MAPPER, values);
         } else {
             KubernetesList answer = new KubernetesList();
             answer.setItems(objects);
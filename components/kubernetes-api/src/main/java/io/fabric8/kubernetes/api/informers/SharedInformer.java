@@ -0,0 +1,395 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.informers;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.api.model.ListMeta;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps an in memory store of the resources of one kind, namespace and selector up to date using a single
+ * list and watch which is shared by all the listeners in the JVM.
+ * <p/>
+ * Listeners are plain {@link Watcher} instances; when added they receive an <code>ADDED</code> event for each
+ * resource in the store and then every change. If the watch is closed by the server it is resumed from the last
+ * resource version seen; only if that version is gone (HTTP 410) are the resources listed again, the differences
+ * sent to the listeners as events and the watch resumed from the resource version of the new list.
+ * <p/>
+ * Instances are created and reference counted by {@link SharedInformers}; each call to one of its acquire
+ * methods should be matched by a call to {@link #close()}.
+ */
+public class SharedInformer<T extends HasMetadata> implements Closeable {
+    private static final transient Logger LOG = LoggerFactory.getLogger(SharedInformer.class);
+
+    private static final long MAX_RESYNC_DELAY_MS = 30000;
+    private static final int HTTP_GONE = 410;
+
+    private final String key;
+    private final Class<T> kind;
+    private final ListerWatcher<T> listerWatcher;
+    private final ScheduledExecutorService executor;
+    private final Object lock = new Object();
+    private final Map<String, T> store = new LinkedHashMap<>();
+    private final List<Watcher<T>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger references = new AtomicInteger();
+    private final AtomicLong listCount = new AtomicLong();
+    private final AtomicLong watchCount = new AtomicLong();
+    private final AtomicLong eventCount = new AtomicLong();
+    private final AtomicLong errorCount = new AtomicLong();
+    private final CompletableFuture<Void> started = new CompletableFuture<>();
+    private volatile String resourceVersion;
+    private volatile boolean closed;
+    private InformerWatcher currentWatcher;
+    private Watch watch;
+    private long resyncDelay;
+
+    public SharedInformer(String key, Class<T> kind, ListerWatcher<T> listerWatcher, ScheduledExecutorService executor) {
+        this.key = key;
+        this.kind = kind;
+        this.listerWatcher = listerWatcher;
+        this.executor = executor;
+    }
+
+    @Override
+    public String toString() {
+        return "SharedInformer{" + key + "}";
+    }
+
+    /**
+     * Lists the current resources then starts watching them
+     */
+    public void start() {
+        try {
+            synchronized (lock) {
+                resync();
+                openWatch();
+            }
+            started.complete(null);
+        } catch (RuntimeException e) {
+            started.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for the informer to be started by another thread rethrowing the failure if it could not start
+     */
+    void awaitStarted() {
+        try {
+            started.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+        }
+    }
+
+    public Class<T> getKind() {
+        return kind;
+    }
+
+    /**
+     * Releases this reference to the informer; the watch is closed when the last reference is released
+     */
+    @Override
+    public void close() {
+        SharedInformers.release(this);
+    }
+
+    /**
+     * Returns the resources currently in the store
+     */
+    public List<T> list() {
+        synchronized (lock) {
+            return new ArrayList<>(store.values());
+        }
+    }
+
+    /**
+     * Returns the resource in the store with the given namespace and name or null if there is none
+     */
+    public T get(String namespace, String name) {
+        synchronized (lock) {
+            return store.get(createKey(namespace, name));
+        }
+    }
+
+    /**
+     * Adds a listener which is sent an <code>ADDED</code> event for each resource currently in the store
+     * followed by all subsequent changes
+     */
+    public void addListener(Watcher<T> listener) {
+        synchronized (lock) {
+            listeners.add(listener);
+            for (T resource : store.values()) {
+                notifyListener(listener, Watcher.Action.ADDED, resource);
+            }
+        }
+    }
+
+    public void removeListener(Watcher<T> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the metrics of this informer
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> answer = new LinkedHashMap<>();
+        answer.put("references", references.get());
+        answer.put("listeners", listeners.size());
+        synchronized (lock) {
+            answer.put("resources", store.size());
+        }
+        answer.put("resourceVersion", resourceVersion);
+        answer.put("lists", listCount.get());
+        answer.put("watches", watchCount.get());
+        answer.put("events", eventCount.get());
+        answer.put("errors", errorCount.get());
+        return answer;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getResourceVersion() {
+        return resourceVersion;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    int retain() {
+        return references.incrementAndGet();
+    }
+
+    int release() {
+        return references.decrementAndGet();
+    }
+
+    /**
+     * Closes the watch and notifies any remaining listeners
+     */
+    void stop() {
+        synchronized (lock) {
+            closed = true;
+            currentWatcher = null;
+            closeWatch();
+            store.clear();
+        }
+        for (Watcher<T> listener : listeners) {
+            try {
+                listener.onClose(null);
+            } catch (Exception e) {
+                LOG.warn("Failed to close listener " + listener + " of " + this + ". " + e, e);
+            }
+        }
+        listeners.clear();
+    }
+
+    /**
+     * Lists the resources and sends the differences with the store to the listeners
+     */
+    protected void resync() {
+        KubernetesResourceList<T> list = listerWatcher.list();
+        listCount.incrementAndGet();
+        Map<String, T> current = new LinkedHashMap<>();
+        if (list != null && list.getItems() != null) {
+            for (T resource : list.getItems()) {
+                current.put(createKey(kind.cast(resource)), resource);
+            }
+        }
+        List<T> deleted = new ArrayList<>();
+        for (Map.Entry<String, T> entry : store.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                deleted.add(entry.getValue());
+            }
+        }
+        for (T resource : deleted) {
+            store.remove(createKey(resource));
+            fireEvent(Watcher.Action.DELETED, resource);
+        }
+        for (Map.Entry<String, T> entry : current.entrySet()) {
+            T resource = entry.getValue();
+            T old = store.put(entry.getKey(), resource);
+            if (old == null) {
+                fireEvent(Watcher.Action.ADDED, resource);
+            } else if (!Objects.equals(getResourceVersion(old), getResourceVersion(resource))) {
+                fireEvent(Watcher.Action.MODIFIED, resource);
+            }
+        }
+        ListMeta metadata = list != null ? list.getMetadata() : null;
+        resourceVersion = metadata != null ? metadata.getResourceVersion() : null;
+    }
+
+    protected void openWatch() {
+        closeWatch();
+        InformerWatcher watcher = new InformerWatcher();
+        currentWatcher = watcher;
+        watch = listerWatcher.watch(resourceVersion, watcher);
+        watchCount.incrementAndGet();
+        resyncDelay = 0;
+    }
+
+    protected void closeWatch() {
+        if (watch != null) {
+            try {
+                watch.close();
+            } catch (Exception e) {
+                LOG.warn("Failed to close watch of " + this + ". " + e, e);
+            }
+            watch = null;
+        }
+    }
+
+    /**
+     * Lets resume watching from the last resource version, listing the resources again first if <code>relist</code>
+     * is true or the resource version is gone; retrying with a backoff if the API server is not available
+     */
+    protected void scheduleRewatch(final boolean relist) {
+        long delay;
+        synchronized (lock) {
+            delay = resyncDelay;
+            resyncDelay = Math.min(Math.max(resyncDelay * 2, 1000), MAX_RESYNC_DELAY_MS);
+        }
+        executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    if (closed) {
+                        return;
+                    }
+                    try {
+                        if (relist) {
+                            resync();
+                        }
+                        openWatch();
+                    } catch (Exception e) {
+                        errorCount.incrementAndGet();
+                        LOG.warn("Failed to " + (relist ? "resync " : "watch ") + SharedInformer.this + ". " + e, e);
+                        scheduleRewatch(relist || isGone(e));
+                    }
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns true if the exception says the resource version we watched from is too old
+     */
+    protected static boolean isGone(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof KubernetesClientException && ((KubernetesClientException) cause).getCode() == HTTP_GONE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void fireEvent(Watcher.Action action, T resource) {
+        eventCount.incrementAndGet();
+        for (Watcher<T> listener : listeners) {
+            notifyListener(listener, action, resource);
+        }
+    }
+
+    protected void notifyListener(Watcher<T> listener, Watcher.Action action, T resource) {
+        try {
+            listener.eventReceived(action, resource);
+        } catch (Exception e) {
+            LOG.warn("Listener " + listener + " of " + this + " failed to process " + action + " event. " + e, e);
+        }
+    }
+
+    protected static String createKey(HasMetadata resource) {
+        return createKey(KubernetesHelper.getNamespace(resource), KubernetesHelper.getName(resource));
+    }
+
+    protected static String createKey(String namespace, String name) {
+        return namespace + "/" + name;
+    }
+
+    private static String getResourceVersion(HasMetadata resource) {
+        ObjectMeta metadata = resource.getMetadata();
+        return metadata != null ? metadata.getResourceVersion() : null;
+    }
+
+    private class InformerWatcher implements Watcher<T> {
+        @Override
+        public void eventReceived(Action action, T resource) {
+            synchronized (lock) {
+                if (closed || currentWatcher != this) {
+                    return;
+                }
+                if (action.equals(Action.ERROR)) {
+                    errorCount.incrementAndGet();
+                } else if (resource != null) {
+                    String version = getResourceVersion(resource);
+                    if (version != null) {
+                        resourceVersion = version;
+                    }
+                    if (action.equals(Action.DELETED)) {
+                        store.remove(createKey(resource));
+                    } else {
+                        store.put(createKey(resource), resource);
+                    }
+                }
+                fireEvent(action, resource);
+            }
+        }
+
+        @Override
+        public void onClose(KubernetesClientException e) {
+            synchronized (lock) {
+                if (closed || currentWatcher != this) {
+                    return;
+                }
+                currentWatcher = null;
+                watch = null;
+            }
+            boolean gone = isGone(e);
+            if (e != null) {
+                errorCount.incrementAndGet();
+                LOG.warn("Watch of " + SharedInformer.this + " closed, " + (gone ? "resyncing: " : "watching again: ") + e);
+            } else {
+                LOG.debug("Watch of " + SharedInformer.this + " closed, watching again");
+            }
+            scheduleRewatch(gone);
+        }
+    }
+}
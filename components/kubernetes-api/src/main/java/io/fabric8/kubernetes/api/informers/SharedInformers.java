@@ -0,0 +1,280 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.informers;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.FilterWatchListDeletable;
+import io.fabric8.kubernetes.client.dsl.WatchListDeletable;
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.client.OpenShiftClient;
+import io.fabric8.utils.Strings;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A registry of the {@link SharedInformer} instances in the JVM so that all the consumers of the same kind,
+ * namespace and selector on the same client share a single list and watch.
+ * <p/>
+ * Each acquire method increments the reference count of the informer and must be matched by a call to
+ * {@link SharedInformer#close()}; the watch is closed once the last reference has been released.
+ */
+public class SharedInformers {
+    private static final Map<Key, SharedInformer<?>> INFORMERS = new LinkedHashMap<>();
+    private static ScheduledExecutorService executor;
+
+    /**
+     * Returns the shared informer of the pods in the given namespace matching the given labels
+     */
+    public static SharedInformer<Pod> pods(final KubernetesClient client, String namespace, final Map<String, String> labels) {
+        final String ns = getNamespace(client, namespace);
+        return acquire(client, Pod.class, ns, selectorText(labels), new ListerWatcherSupport<Pod>() {
+            @Override
+            protected WatchListDeletable<Pod, ?, ?, Watch, Watcher<Pod>> operation() {
+                return withLabels(client.pods().inNamespace(ns), labels);
+            }
+        });
+    }
+
+    /**
+     * Returns the shared informer of the services in the given namespace matching the given labels
+     */
+    public static SharedInformer<Service> services(final KubernetesClient client, String namespace, final Map<String, String> labels) {
+        final String ns = getNamespace(client, namespace);
+        return acquire(client, Service.class, ns, selectorText(labels), new ListerWatcherSupport<Service>() {
+            @Override
+            protected WatchListDeletable<Service, ?, ?, Watch, Watcher<Service>> operation() {
+                return withLabels(client.services().inNamespace(ns), labels);
+            }
+        });
+    }
+
+    /**
+     * Returns the shared informer of the config maps in the given namespace matching the given labels
+     */
+    public static SharedInformer<ConfigMap> configMaps(final KubernetesClient client, String namespace, final Map<String, String> labels) {
+        final String ns = getNamespace(client, namespace);
+        return acquire(client, ConfigMap.class, ns, selectorText(labels), new ListerWatcherSupport<ConfigMap>() {
+            @Override
+            protected WatchListDeletable<ConfigMap, ?, ?, Watch, Watcher<ConfigMap>> operation() {
+                return withLabels(client.configMaps().inNamespace(ns), labels);
+            }
+        });
+    }
+
+    /**
+     * Returns the shared informer of the builds in the given namespace matching the given labels
+     */
+    public static SharedInformer<Build> builds(final OpenShiftClient client, String namespace, final Map<String, String> labels) {
+        final String ns = getNamespace(client, namespace);
+        return acquire(client, Build.class, ns, selectorText(labels), new ListerWatcherSupport<Build>() {
+            @Override
+            protected WatchListDeletable<Build, ?, ?, Watch, Watcher<Build>> operation() {
+                return withLabels(client.builds().inNamespace(ns), labels);
+            }
+        });
+    }
+
+    /**
+     * Returns the shared informer for the given client, kind, namespace and selector creating and starting it
+     * with the given lister watcher if there is not one already.
+     * <p/>
+     * The informer is started outside of the registry lock so that a slow API server only blocks the callers
+     * acquiring the same informer, which wait for it to be started.
+     *
+     * @param client the client used by the lister watcher; informers are only shared by the same client instance
+     * @param kind the kind of the resources
+     * @param namespace the namespace of the resources
+     * @param selector a canonical description of the selector of the resources
+     * @param listerWatcher used to list and watch the resources if the informer needs to be created
+     */
+    public static <T extends HasMetadata> SharedInformer<T> acquire(Object client, Class<T> kind, String namespace,
+                                                                    String selector, ListerWatcher<T> listerWatcher) {
+        Key key = new Key(client, kind.getSimpleName() + "/" + namespace + "?" + Strings.defaultIfEmpty(selector, ""));
+        SharedInformer<T> answer;
+        boolean created = false;
+        synchronized (SharedInformers.class) {
+            answer = castInformer(INFORMERS.get(key), kind);
+            if (answer == null) {
+                answer = new SharedInformer<>(key.getDescription(), kind, listerWatcher, getExecutor());
+                INFORMERS.put(key, answer);
+                created = true;
+            }
+            answer.retain();
+        }
+        try {
+            if (created) {
+                answer.start();
+            } else {
+                answer.awaitStarted();
+            }
+        } catch (RuntimeException e) {
+            // lets not hand out an informer which failed to start
+            synchronized (SharedInformers.class) {
+                INFORMERS.values().remove(answer);
+            }
+            release(answer);
+            throw e;
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the metrics of each informer indexed by its key
+     */
+    public static synchronized Map<String, Map<String, Object>> getMetrics() {
+        Map<String, Map<String, Object>> answer = new LinkedHashMap<>();
+        for (SharedInformer<?> informer : INFORMERS.values()) {
+            answer.put(informer.getKey(), informer.getMetrics());
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the number of informers currently in use
+     */
+    public static synchronized int size() {
+        return INFORMERS.size();
+    }
+
+    static synchronized void release(SharedInformer<?> informer) {
+        if (informer.isClosed() || informer.release() > 0) {
+            return;
+        }
+        INFORMERS.values().remove(informer);
+        informer.stop();
+    }
+
+    /**
+     * Returns a canonical form of the given label selector so that equal selectors share an informer
+     */
+    public static String selectorText(Map<String, String> labels) {
+        StringBuilder builder = new StringBuilder();
+        if (labels != null) {
+            for (Map.Entry<String, String> entry : new TreeMap<>(labels).entrySet()) {
+                if (builder.length() > 0) {
+                    builder.append(",");
+                }
+                builder.append(entry.getKey()).append("=").append(entry.getValue());
+            }
+        }
+        return builder.toString();
+    }
+
+    protected static <T, L> WatchListDeletable<T, L, Boolean, Watch, Watcher<T>> withLabels(FilterWatchListDeletable<T, L, Boolean, Watch, Watcher<T>> operation, Map<String, String> labels) {
+        if (labels != null && !labels.isEmpty()) {
+            return operation.withLabels(labels);
+        }
+        return operation;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends HasMetadata> SharedInformer<T> castInformer(SharedInformer<?> informer, Class<T> kind) {
+        if (informer != null && informer.getKind() != kind) {
+            throw new IllegalStateException("Informer " + informer + " is of kind " + informer.getKind().getName() + " not " + kind.getName());
+        }
+        // the informers of a key are all of the same kind as the kind is part of the key
+        return (SharedInformer<T>) informer;
+    }
+
+    private static String getNamespace(KubernetesClient client, String namespace) {
+        return Strings.isNullOrBlank(namespace) ? client.getNamespace() : namespace;
+    }
+
+    private static synchronized ScheduledExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "SharedInformers-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Adapts a list and watch operation of the kubernetes client to a {@link ListerWatcher}
+     */
+    protected static abstract class ListerWatcherSupport<T extends HasMetadata> implements ListerWatcher<T> {
+        protected abstract WatchListDeletable<T, ?, ?, Watch, Watcher<T>> operation();
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public KubernetesResourceList<T> list() {
+            // the generated list classes implement the raw KubernetesResourceList
+            return (KubernetesResourceList<T>) operation().list();
+        }
+
+        @Override
+        public Watch watch(String resourceVersion, Watcher<T> watcher) {
+            if (Strings.isNullOrBlank(resourceVersion)) {
+                return operation().watch(watcher);
+            }
+            return operation().withResourceVersion(resourceVersion).watch(watcher);
+        }
+    }
+
+    /**
+     * The key of an informer which compares the client by identity
+     */
+    private static class Key {
+        private final Object client;
+        private final String description;
+
+        public Key(Object client, String description) {
+            this.client = client;
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return client == key.client && description.equals(key.description);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(client) + description.hashCode();
+        }
+    }
+}
@@ -17,10 +17,11 @@
 package io.fabric8.kubernetes.api.pipelines;
 
 
+import io.fabric8.kubernetes.api.KubernetesClients;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.api.support.ConfigMapCache;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.utils.Strings;
 import org.slf4j.Logger;
@@ -32,8 +33,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 import static io.fabric8.kubernetes.api.environments.Environments.findSpaceNamespace;
 
@@ -64,6 +68,7 @@ public class PipelineConfiguration {
     private boolean disableITestsCI;
     private Boolean useDockerSocketFlag;
     private String spaceNamespace;
+    private volatile CompiledPatterns compiledPatterns;
 
 
     public PipelineConfiguration() {
@@ -94,7 +99,7 @@ public class PipelineConfiguration {
                 }
 
                 if (list != null) {
-                    cdGitHostAndOrganisationToBranchPatterns.put(keyText, list);
+                    cdGitHostAndOrganisationToBranchPatterns.put(keyText, copyOf(list));
                 } else {
                     LOG.warn("Could not find List for " + ORGANISATION_BRANCH_PATTERNS + " key " + key + " value: " + value);
                 }
@@ -121,7 +126,7 @@ public class PipelineConfiguration {
 
     public static PipelineConfiguration createDefault() {
         PipelineConfiguration configuration = new PipelineConfiguration();
-        configuration.getCiBranchPatterns().add("PR-.*");
+        configuration.setCiBranchPatterns(Collections.singletonList("PR-.*"));
         return configuration;
     }
 
@@ -156,7 +161,7 @@ public class PipelineConfiguration {
     }
 
     public static PipelineConfiguration loadPipelineConfiguration() {
-        try (KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
+        try (KubernetesClient kubernetesClient = KubernetesClients.acquire()) {
             String namespace = findSpaceNamespace(kubernetesClient);
             return loadPipelineConfiguration(kubernetesClient, namespace);
         }
@@ -164,7 +169,7 @@ public class PipelineConfiguration {
 
 
     public static PipelineConfiguration loadPipelineConfiguration(String namespace) {
-        try (KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
+        try (KubernetesClient kubernetesClient = KubernetesClients.acquire()) {
             return loadPipelineConfiguration(kubernetesClient, namespace);
         }
     }
@@ -174,7 +179,7 @@ public class PipelineConfiguration {
      * configuration is loaded.
      */
     public static PipelineConfiguration loadPipelineConfiguration(KubernetesClient kubernetesClient, String namespace) {
-        ConfigMap configMap = kubernetesClient.configMaps().inNamespace(namespace).withName(FABRIC8_PIPELINES).get();
+        ConfigMap configMap = ConfigMapCache.getInstance().get(kubernetesClient, namespace, FABRIC8_PIPELINES);
         PipelineConfiguration configuration;
         if (configMap != null) {
             configuration = getPipelineConfiguration(configMap);
@@ -192,6 +197,7 @@ public class PipelineConfiguration {
     public static void savePipelineConfiguration(KubernetesClient kubernetesClient, String namespace, PipelineConfiguration configuration) {
         ConfigMap configMap = configuration.createConfigMap();
         kubernetesClient.configMaps().inNamespace(namespace).withName(FABRIC8_PIPELINES).createOrReplace(configMap);
+        ConfigMapCache.getInstance().invalidate(kubernetesClient, namespace, FABRIC8_PIPELINES);
     }
 
     @Override
@@ -287,16 +293,25 @@ public class PipelineConfiguration {
         return defaultValue;
     }
 
+    /**
+     * Returns an unmodifiable view of the job name to kind map; use the setters to change it
+     */
     public Map<String, PipelineKind> getJobNameToKindMap() {
-        return jobNameToKindMap;
+        return Collections.unmodifiableMap(jobNameToKindMap);
     }
 
+    /**
+     * Returns an unmodifiable view of the CI branch patterns; use {@link #setCiBranchPatterns(List)} to change them
+     */
     public List<String> getCiBranchPatterns() {
-        return ciBranchPatterns;
+        return Collections.unmodifiableList(ciBranchPatterns);
     }
 
+    /**
+     * Returns an unmodifiable view of the CD branch patterns; use {@link #setCdBranchPatterns(List)} to change them
+     */
     public List<String> getCdBranchPatterns() {
-        return cdBranchPatterns;
+        return Collections.unmodifiableList(cdBranchPatterns);
     }
 
     public Boolean getUseDockerSocketFlag() {
@@ -311,24 +326,50 @@ public class PipelineConfiguration {
         this.useDockerSocketFlag = useDockerSocket;
     }
 
+    /**
+     * Returns an unmodifiable view of the CD branch patterns of each git host and organisation; use
+     * {@link #setCDGitOrganisation(String, List)} or the setter to change them
+     */
     public Map<String, List<String>> getCdGitHostAndOrganisationToBranchPatterns() {
-        return cdGitHostAndOrganisationToBranchPatterns;
+        return Collections.unmodifiableMap(cdGitHostAndOrganisationToBranchPatterns);
     }
 
+    /**
+     * Sets a copy of the given map so that later changes to it do not affect this configuration
+     */
     public void setJobNameToKindMap(Map<String, PipelineKind> jobNameToKindMap) {
-        this.jobNameToKindMap = jobNameToKindMap;
+        this.jobNameToKindMap = jobNameToKindMap != null ? new HashMap<>(jobNameToKindMap) : new HashMap<String, PipelineKind>();
+        compiledPatterns = null;
     }
 
+    /**
+     * Sets a copy of the given patterns so that later changes to them do not affect this configuration
+     */
     public void setCiBranchPatterns(List<String> ciBranchPatterns) {
-        this.ciBranchPatterns = ciBranchPatterns;
+        this.ciBranchPatterns = ciBranchPatterns != null ? new ArrayList<>(ciBranchPatterns) : new ArrayList<String>();
+        compiledPatterns = null;
     }
 
+    /**
+     * Sets a copy of the given patterns so that later changes to them do not affect this configuration
+     */
     public void setCdBranchPatterns(List<String> cdBranchPatterns) {
-        this.cdBranchPatterns = cdBranchPatterns;
+        this.cdBranchPatterns = cdBranchPatterns != null ? new ArrayList<>(cdBranchPatterns) : new ArrayList<String>();
+        compiledPatterns = null;
     }
 
+    /**
+     * Sets a copy of the given map so that later changes to it do not affect this configuration
+     */
     public void setCdGitHostAndOrganisationToBranchPatterns(Map<String, List<String>> cdGitHostAndOrganisationToBranchPatterns) {
-        this.cdGitHostAndOrganisationToBranchPatterns = cdGitHostAndOrganisationToBranchPatterns;
+        Map<String, List<String>> map = new HashMap<>();
+        if (cdGitHostAndOrganisationToBranchPatterns != null) {
+            for (Map.Entry<String, List<String>> entry : cdGitHostAndOrganisationToBranchPatterns.entrySet()) {
+                map.put(entry.getKey(), copyOf(entry.getValue()));
+            }
+        }
+        this.cdGitHostAndOrganisationToBranchPatterns = map;
+        compiledPatterns = null;
     }
 
     public boolean isDisableITestsCD() {
@@ -370,6 +411,7 @@ public class PipelineConfiguration {
         for (String name : names) {
             jobNameToKindMap.put(name, kind);
         }
+        compiledPatterns = null;
         return this;
     }
 
@@ -389,52 +431,44 @@ public class PipelineConfiguration {
         if (branchPatterns.isEmpty()) {
             throw new IllegalArgumentException("You must specify at least one branch pattern for github host and organisation: " + gitHostAndOrganisation);
         }
-        cdGitHostAndOrganisationToBranchPatterns.put(gitHostAndOrganisation, branchPatterns);
+        cdGitHostAndOrganisationToBranchPatterns.put(gitHostAndOrganisation, copyOf(branchPatterns));
+        compiledPatterns = null;
         return this;
     }
 
+    private static List<String> copyOf(List<String> list) {
+        return list != null ? Collections.unmodifiableList(new ArrayList<>(list)) : null;
+    }
+
     public Pipeline getPipeline(JobEnvironment jobEnvironment) {
         String jobName = jobEnvironment.getJobName();
-        PipelineKind kind = jobNameToKindMap.get(jobName);
-        if (kind != null) {
-            return new Pipeline(kind, jobName);
-        }
-
-
-        // lets figure out the defaults instead
         String branchName = jobEnvironment.getBranchName();
-        kind = PipelineKind.Developer;
-        if (Strings.isNullOrBlank(branchName)) {
-            LOG.warn("No BranchName from the environment so cannot detect CI / PR jobs!");
-        } else {
-            String gitUrl = jobEnvironment.getGitUrl();
-            if (Strings.isNotBlank(gitUrl)) {
-                String hostOrganisation = getGitHostOrganisationString(gitUrl);
-                if (Strings.isNotBlank(hostOrganisation)) {
-                    List<String> branchPatterns = cdGitHostAndOrganisationToBranchPatterns.get(hostOrganisation);
-                    if (branchPatterns != null && matchesPattern(branchName, branchPatterns)) {
-                        return new Pipeline(PipelineKind.CD, jobName);
-                    }
-                }
-            }
-
-            // lets use the default branch patterns
-            if (matchesPattern(branchName, ciBranchPatterns)) {
-                kind = PipelineKind.CI;
-            } else if (matchesPattern(branchName, cdBranchPatterns)) {
-                kind = PipelineKind.CD;
-            }
+        String gitUrl = jobEnvironment.getGitUrl();
+        PipelineKind explicitKind = jobNameToKindMap.get(jobName);
+        if (explicitKind != null) {
+            // lets not compile the patterns for jobs which are mapped explicitly
+            return new Pipeline(explicitKind, jobName);
+        }
+        CompiledPatterns patterns = getCompiledPatterns();
+        String key = branchName + "\n" + gitUrl;
+        PipelineKind kind = patterns.getCachedKind(key);
+        if (kind == null) {
+            kind = patterns.findPipelineKind(branchName, gitUrl);
+            patterns.cacheKind(key, kind);
         }
         return new Pipeline(kind, jobName);
     }
 
-    protected boolean matchesPattern(String text, List<String> listOfPatterns) {
-        for (String pattern : listOfPatterns) {
-            if (text.matches(pattern)) {
-                return true;
-            }
+    /**
+     * Returns the compiled branch patterns, compiling them again if they were discarded by a setter
+     */
+    protected CompiledPatterns getCompiledPatterns() {
+        CompiledPatterns answer = compiledPatterns;
+        if (answer == null) {
+            answer = new CompiledPatterns(ciBranchPatterns, cdBranchPatterns, cdGitHostAndOrganisationToBranchPatterns);
+            compiledPatterns = answer;
         }
-        return false;
+        return answer;
     }
 
     public void setSpaceNamespace(String spaceNamespace) {
@@ -455,4 +489,121 @@ public class PipelineConfiguration {
     public void setData(Map<String, String> data) {
         this.data = data;
     }
+
+    /**
+     * The branch patterns of a configuration compiled into a single regular expression for each list of patterns
+     * along with a cache of the pipeline kinds found for each job name, branch and git URL.
+     * <p/>
+     * The configuration discards its compiled patterns whenever they are changed by a setter.
+     */
+    protected static class CompiledPatterns {
+        private static final int MAX_CACHED_KINDS = 1000;
+        private static final Pattern BACK_REFERENCE = Pattern.compile("\\\\(?:[1-9]|k<)");
+
+        private final BranchMatcher ciMatcher;
+        private final BranchMatcher cdMatcher;
+        private final Map<String, BranchMatcher> organisationMatchers = new HashMap<>();
+        private final Map<String, PipelineKind> kindCache = new LinkedHashMap<String, PipelineKind>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PipelineKind> eldest) {
+                return size() > MAX_CACHED_KINDS;
+            }
+        };
+
+        public CompiledPatterns(List<String> ciBranchPatterns, List<String> cdBranchPatterns,
+                                Map<String, List<String>> cdGitHostAndOrganisationToBranchPatterns) {
+            for (Map.Entry<String, List<String>> entry : cdGitHostAndOrganisationToBranchPatterns.entrySet()) {
+                if (entry.getValue() != null) {
+                    organisationMatchers.put(entry.getKey(), new BranchMatcher(entry.getValue()));
+                }
+            }
+            this.ciMatcher = new BranchMatcher(ciBranchPatterns);
+            this.cdMatcher = new BranchMatcher(cdBranchPatterns);
+        }
+
+        public PipelineKind getCachedKind(String key) {
+            synchronized (kindCache) {
+                return kindCache.get(key);
+            }
+        }
+
+        public void cacheKind(String key, PipelineKind kind) {
+            synchronized (kindCache) {
+                kindCache.put(key, kind);
+            }
+        }
+
+        /**
+         * Returns the kind of a job which is not mapped explicitly from its branch and git URL
+         */
+        public PipelineKind findPipelineKind(String branchName, String gitUrl) {
+            if (Strings.isNullOrBlank(branchName)) {
+                LOG.warn("No BranchName from the environment so cannot detect CI / PR jobs!");
+                return PipelineKind.Developer;
+            }
+            if (Strings.isNotBlank(gitUrl)) {
+                String hostOrganisation = getGitHostOrganisationString(gitUrl);
+                if (Strings.isNotBlank(hostOrganisation)) {
+                    BranchMatcher matcher = organisationMatchers.get(hostOrganisation);
+                    if (matcher != null && matcher.matches(branchName)) {
+                        return PipelineKind.CD;
+                    }
+                }
+            }
+
+            // lets use the default branch patterns
+            if (ciMatcher.matches(branchName)) {
+                return PipelineKind.CI;
+            } else if (cdMatcher.matches(branchName)) {
+                return PipelineKind.CD;
+            }
+            return PipelineKind.Developer;
+        }
+
+        /**
+         * Matches text against any of a list of patterns using a single alternation; unless a pattern uses
+         * back references whose groups would change or the patterns cannot be combined (such as when they define
+         * the same named group) in which case each pattern is compiled on its own
+         */
+        protected static class BranchMatcher {
+            private final List<Pattern> patterns = new ArrayList<>();
+
+            public BranchMatcher(List<String> listOfPatterns) {
+                boolean combine = true;
+                for (String pattern : listOfPatterns) {
+                    if (BACK_REFERENCE.matcher(pattern).find()) {
+                        combine = false;
+                    }
+                }
+                if (combine && listOfPatterns.size() > 1) {
+                    StringBuilder builder = new StringBuilder();
+                    for (String pattern : listOfPatterns) {
+                        if (builder.length() > 0) {
+                            builder.append("|");
+                        }
+                        builder.append("(?:").append(pattern).append(")");
+                    }
+                    try {
+                        patterns.add(Pattern.compile(builder.toString()));
+                    } catch (PatternSyntaxException e) {
+                        // lets compile each pattern on its own instead
+                    }
+                }
+                if (patterns.isEmpty()) {
+                    for (String pattern : listOfPatterns) {
+                        patterns.add(Pattern.compile(pattern));
+                    }
+                }
+            }
+
+            public boolean matches(String text) {
+                for (Pattern pattern : patterns) {
+                    if (pattern.matcher(text).matches()) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+    }
 }
@@ -16,8 +16,8 @@
  */
 package io.fabric8.kubernetes.api.pipelines;
 
+import io.fabric8.kubernetes.api.KubernetesClients;
 import io.fabric8.kubernetes.api.KubernetesHelper;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.utils.Strings;
 import org.slf4j.Logger;
@@ -44,7 +44,7 @@ public class Pipelines {
      * so that this function can properly detect if a build should be a <code>CD</code> build or not!
      */
     public static Pipeline getPipeline(Map<String, String> jobEnvironment) throws IntrospectionException {
-        try (KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
+        try (KubernetesClient kubernetesClient = KubernetesClients.acquire()) {
             String namespace = findSpaceNamespace(kubernetesClient);
             return getPipeline(kubernetesClient, namespace, jobEnvironment);
         }
@@ -56,7 +56,7 @@ public class Pipelines {
      * so that this function can properly detect if a build should be a <code>CD</code> build or not!
      */
     public static Pipeline getPipeline(String namespace, Map<String, String> jobEnvironment) throws IntrospectionException {
-        try (KubernetesClient kubernetesClient = new DefaultKubernetesClient()) {
+        try (KubernetesClient kubernetesClient = KubernetesClients.acquire()) {
             return getPipeline(kubernetesClient, namespace, jobEnvironment);
         }
     }
@@ -18,6 +18,7 @@ package io.fabric8.kubernetes.api.spaces;
 
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.support.ConfigMapCache;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.utils.Strings;
 import org.slf4j.Logger;
@@ -45,7 +46,7 @@ public class Spaces {
     public static Spaces load(KubernetesClient kubernetesClient, String namespace) {
         namespace = getDefaultNamespace(kubernetesClient, namespace);
         LOG.debug("Loading spaces from namespace: " + namespace);
-        ConfigMap configMap = kubernetesClient.configMaps().inNamespace(namespace).withName(FABRIC8_SPACES).get();
+        ConfigMap configMap = ConfigMapCache.getInstance().get(kubernetesClient, namespace, FABRIC8_SPACES);
         return load(configMap);
     }
 
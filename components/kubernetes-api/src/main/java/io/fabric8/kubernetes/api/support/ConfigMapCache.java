@@ -0,0 +1,401 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import io.fabric8.kubernetes.api.KubernetesClients;
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A cache of the ConfigMaps looked up by name such as the fabric8 environments, spaces and pipelines configuration.
+ * <p/>
+ * Entries expire after a time to live; in addition a watch is opened on the ConfigMaps of each namespace used so that
+ * entries are invalidated as soon as they change. If the watch cannot be opened (for example due to a lack of
+ * permissions) the time to live is used on its own and the watch is tried again later. Each watch is opened by
+ * the first lookup of its namespace without blocking the lookups of other namespaces, and is closed once its
+ * namespace has not been looked up for the watch idle timeout. The watch uses a client from
+ * {@link KubernetesClients} which is held until the watch is closed so that it is not closed when idle, and
+ * each watch event bumps a version stamp so that a ConfigMap fetched before a concurrent change is not cached.
+ * <p/>
+ * Entries are keyed by the master URL and a hash of the credentials of the client so that different client
+ * instances of the same user talking to the same cluster share the cache while other users do not.
+ */
+public class ConfigMapCache {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ConfigMapCache.class);
+
+    /**
+     * The system property to configure the time to live in milliseconds of cached ConfigMaps
+     */
+    public static final String TTL_PROPERTY = "fabric8.configmap.cache.ttl";
+
+    public static final long DEFAULT_TTL = 60 * 1000L;
+
+    /**
+     * The system property to configure how long in milliseconds a namespace is watched after its last lookup
+     */
+    public static final String WATCH_IDLE_TIMEOUT_PROPERTY = "fabric8.configmap.cache.watch.idle.timeout";
+
+    public static final long DEFAULT_WATCH_IDLE_TIMEOUT = 10 * 60 * 1000L;
+
+    private static final ConfigMapCache INSTANCE = new ConfigMapCache();
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, NamespaceWatch> watches = new ConcurrentHashMap<>();
+    private volatile long ttl = Long.getLong(TTL_PROPERTY, DEFAULT_TTL);
+    private volatile long watchIdleTimeout = Long.getLong(WATCH_IDLE_TIMEOUT_PROPERTY, DEFAULT_WATCH_IDLE_TIMEOUT);
+    private volatile boolean watchEnabled = true;
+    private volatile long nextIdleCheck;
+
+    /**
+     * Returns the cache shared by the fabric8 helper classes
+     */
+    public static ConfigMapCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns a copy of the ConfigMap with the given name or null if it does not exist, using the cached value if
+     * it has not expired or been modified
+     */
+    public ConfigMap get(KubernetesClient client, String namespace, String name) {
+        String namespaceKey = createNamespaceKey(client, namespace);
+        if (ttl <= 0) {
+            return client.configMaps().inNamespace(namespace).withName(name).get();
+        }
+        long now = System.currentTimeMillis();
+        closeIdleWatches(now);
+        if (watchEnabled) {
+            watchNamespace(client, namespace, namespaceKey);
+        }
+        String key = namespaceKey + "/" + name;
+        Entry entry = entries.get(key);
+        if (entry == null || entry.getExpires() < now) {
+            NamespaceWatch namespaceWatch = watches.get(namespaceKey);
+            long version = namespaceWatch != null ? namespaceWatch.getVersion() : 0;
+            ConfigMap configMap = client.configMaps().inNamespace(namespace).withName(name).get();
+            entry = new Entry(configMap, now + ttl);
+            if (namespaceWatch != null) {
+                namespaceWatch.putIfUnchanged(key, entry, version);
+            } else {
+                entries.put(key, entry);
+            }
+        }
+        return copy(entry.getConfigMap());
+    }
+
+    /**
+     * Removes the given ConfigMap from the cache such as after it has been updated
+     */
+    public void invalidate(KubernetesClient client, String namespace, String name) {
+        entries.remove(createNamespaceKey(client, namespace) + "/" + name);
+    }
+
+    /**
+     * Removes all the entries and closes the watches
+     */
+    public void clear() {
+        for (String namespaceKey : new ArrayList<>(watches.keySet())) {
+            NamespaceWatch namespaceWatch = watches.remove(namespaceKey);
+            if (namespaceWatch != null) {
+                namespaceWatch.close();
+            }
+        }
+        entries.clear();
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Sets the time to live in milliseconds of cached ConfigMaps; zero or less disables caching
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getWatchIdleTimeout() {
+        return watchIdleTimeout;
+    }
+
+    /**
+     * Sets how long in milliseconds the ConfigMaps of a namespace are watched after it was last looked up
+     */
+    public void setWatchIdleTimeout(long watchIdleTimeout) {
+        this.watchIdleTimeout = watchIdleTimeout;
+    }
+
+    public boolean isWatchEnabled() {
+        return watchEnabled;
+    }
+
+    /**
+     * Sets whether a watch should be used to invalidate modified ConfigMaps before their time to live expires
+     */
+    public void setWatchEnabled(boolean watchEnabled) {
+        this.watchEnabled = watchEnabled;
+    }
+
+    /**
+     * Opens the watch of the namespace unless it is open or is being opened by another thread, which is not waited for
+     */
+    protected void watchNamespace(KubernetesClient client, String namespace, String namespaceKey) {
+        long now = System.currentTimeMillis();
+        NamespaceWatch namespaceWatch = watches.get(namespaceKey);
+        if (namespaceWatch == null) {
+            namespaceWatch = new NamespaceWatch(namespaceKey);
+            NamespaceWatch existing = watches.putIfAbsent(namespaceKey, namespaceWatch);
+            if (existing != null) {
+                namespaceWatch = existing;
+            }
+        }
+        namespaceWatch.touch(now);
+        if (!namespaceWatch.startOpening(now)) {
+            return;
+        }
+        // lets discard any entries which may have changed while we were not watching
+        removeEntries(namespaceKey);
+        KubernetesClient watchClient = KubernetesClients.acquire(client.getConfiguration());
+        try {
+            namespaceWatch.open(watchClient, watchClient.configMaps().inNamespace(namespace).watch(namespaceWatch));
+        } catch (Exception e) {
+            LOG.debug("Could not watch ConfigMaps in namespace " + namespace + " so relying on the time to live. " + e, e);
+            watchClient.close();
+            namespaceWatch.retryAfter(now + ttl);
+        }
+    }
+
+    /**
+     * Closes the watches of the namespaces which have not been looked up for the watch idle timeout, releasing
+     * their clients; the check is done at most once every tenth of the timeout
+     */
+    protected void closeIdleWatches(long now) {
+        long timeout = watchIdleTimeout;
+        if (now < nextIdleCheck || watches.isEmpty()) {
+            return;
+        }
+        nextIdleCheck = now + Math.max(1, timeout / 10);
+        for (Map.Entry<String, NamespaceWatch> entry : watches.entrySet()) {
+            NamespaceWatch namespaceWatch = entry.getValue();
+            if (namespaceWatch.getLastUsed() + timeout <= now && watches.remove(entry.getKey(), namespaceWatch)) {
+                namespaceWatch.close();
+                removeEntries(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the number of namespaces being watched
+     */
+    public int getWatchCount() {
+        return watches.size();
+    }
+
+    protected void removeEntries(String namespaceKey) {
+        String prefix = namespaceKey + "/";
+        for (String key : entries.keySet()) {
+            if (key.startsWith(prefix)) {
+                entries.remove(key);
+            }
+        }
+    }
+
+    protected static String createNamespaceKey(KubernetesClient client, String namespace) {
+        return client.getMasterUrl() + "/" + createIdentity(client.getConfiguration()) + "/" + namespace;
+    }
+
+    /**
+     * Returns a hash of the credentials of the configuration so that the cache key does not contain secrets
+     */
+    protected static String createIdentity(Config config) {
+        String credentials = Arrays.asList(config.getUsername(), config.getPassword(), config.getOauthToken(),
+                config.getClientCertFile(), config.getClientCertData(),
+                config.getClientKeyFile(), config.getClientKeyData()).toString();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(credentials.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("No SHA-256 algorithm available. " + e, e);
+        }
+    }
+
+    private static ConfigMap copy(ConfigMap configMap) {
+        return configMap != null ? new ConfigMapBuilder(configMap).build() : null;
+    }
+
+    private static class Entry {
+        private final ConfigMap configMap;
+        private final long expires;
+
+        public Entry(ConfigMap configMap, long expires) {
+            this.configMap = configMap;
+            this.expires = expires;
+        }
+
+        public ConfigMap getConfigMap() {
+            return configMap;
+        }
+
+        public long getExpires() {
+            return expires;
+        }
+    }
+
+    private class NamespaceWatch implements Watcher<ConfigMap> {
+        private final String namespaceKey;
+        private KubernetesClient client;
+        private Watch watch;
+        private boolean opening;
+        private boolean closed;
+        private long retryTime;
+        private volatile long lastUsed;
+        private long version;
+
+        public NamespaceWatch(String namespaceKey) {
+            this.namespaceKey = namespaceKey;
+        }
+
+        public long getLastUsed() {
+            return lastUsed;
+        }
+
+        public void touch(long now) {
+            lastUsed = now;
+        }
+
+        /**
+         * Returns true if the caller should open the watch as it is not open, being opened or waiting to be retried
+         */
+        public synchronized boolean startOpening(long now) {
+            if (closed || opening || watch != null || retryTime > now) {
+                return false;
+            }
+            opening = true;
+            return true;
+        }
+
+        public synchronized long getVersion() {
+            return version;
+        }
+
+        /**
+         * Caches the entry unless a watch event has been received since the given version was read
+         */
+        public synchronized void putIfUnchanged(String key, Entry entry, long expectedVersion) {
+            if (version == expectedVersion) {
+                entries.put(key, entry);
+            }
+        }
+
+        /**
+         * Holds the opened watch and its client unless this watch was closed while it was being opened
+         */
+        public void open(KubernetesClient client, Watch watch) {
+            synchronized (this) {
+                opening = false;
+                if (!closed) {
+                    this.client = client;
+                    this.watch = watch;
+                    return;
+                }
+            }
+            closeQuietly(watch);
+            client.close();
+        }
+
+        public void retryAfter(long retryTime) {
+            Watch current;
+            synchronized (this) {
+                opening = false;
+                current = watch;
+                watch = null;
+                this.retryTime = retryTime;
+            }
+            closeQuietly(current);
+            releaseClient();
+        }
+
+        public void close() {
+            Watch current;
+            synchronized (this) {
+                closed = true;
+                current = watch;
+                watch = null;
+            }
+            closeQuietly(current);
+            releaseClient();
+        }
+
+        protected void releaseClient() {
+            KubernetesClient current;
+            synchronized (this) {
+                current = client;
+                client = null;
+            }
+            if (current != null) {
+                current.close();
+            }
+        }
+
+        private void closeQuietly(Watch current) {
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (Exception e) {
+                    LOG.debug("Failed to close ConfigMap watch for " + namespaceKey + ". " + e, e);
+                }
+            }
+        }
+
+        @Override
+        public void eventReceived(Action action, ConfigMap configMap) {
+            String name = KubernetesHelper.getName(configMap);
+            synchronized (this) {
+                version++;
+                if (name != null) {
+                    entries.remove(namespaceKey + "/" + name);
+                }
+            }
+        }
+
+        @Override
+        public void onClose(KubernetesClientException e) {
+            synchronized (this) {
+                version++;
+            }
+            // we may miss changes until the watch is opened again on the next lookup
+            retryAfter(0);
+            removeEntries(namespaceKey);
+        }
+    }
+}
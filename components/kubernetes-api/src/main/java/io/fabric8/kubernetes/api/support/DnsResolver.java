@@ -0,0 +1,434 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolves the SRV and A records of services in DNS caching the results for the TTL of the records.
+ * <p/>
+ * Failed lookups are cached for a shorter negative TTL and entries which are used near the end of their TTL are
+ * refreshed in the background so that callers on a request path rarely wait for a DNS query. If a lookup of records
+ * which were found before fails for any reason the previous records keep being used, and the lookup is retried after
+ * the negative TTL, until they are older than their TTL plus the maximum stale time.
+ * <p/>
+ * Concurrent lookups of a name which is not cached wait for a single DNS query and the number of cached names is
+ * bounded, evicting expired entries first and never the entry which was just added.
+ */
+public class DnsResolver {
+    private static final transient Logger LOG = LoggerFactory.getLogger(DnsResolver.class);
+
+    public static final long DEFAULT_MIN_TTL = 1000L;
+    public static final long DEFAULT_MAX_TTL = 5 * 60 * 1000L;
+    public static final long DEFAULT_NEGATIVE_TTL = 10 * 1000L;
+    public static final long DEFAULT_MAX_STALE = 5 * 60 * 1000L;
+    public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+    /**
+     * The fraction of the TTL after which an entry is refreshed in the background when it is used
+     */
+    private static final double REFRESH_FRACTION = 0.75;
+
+    private static final DnsResolver INSTANCE = new DnsResolver();
+
+    private static final Comparator<SRVRecord> SRV_RECORD_COMPARATOR = new Comparator<SRVRecord>() {
+        @Override
+        public int compare(SRVRecord a, SRVRecord b) {
+            int ret = Integer.compare(b.getPriority(), a.getPriority());
+            if (ret == 0) {
+                ret = Integer.compare(b.getWeight(), a.getWeight());
+            }
+            return ret;
+        }
+    };
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> lookups = new ConcurrentHashMap<>();
+    private final Executor executor;
+    private volatile long minTtl = DEFAULT_MIN_TTL;
+    private volatile long maxTtl = DEFAULT_MAX_TTL;
+    private volatile long negativeTtl = DEFAULT_NEGATIVE_TTL;
+    private volatile long maxStale = DEFAULT_MAX_STALE;
+    private volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    public DnsResolver() {
+        this(Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "DnsResolver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    public DnsResolver(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the resolver shared by {@link io.fabric8.kubernetes.api.KubernetesHelper}
+     */
+    public static DnsResolver getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the endpoints of the SRV records of the service in the format <code>host:port</code> in the same order
+     * as {@link io.fabric8.kubernetes.api.KubernetesHelper#lookupServiceEndpointsInDns(String)}
+     */
+    public List<String> lookupServiceEndpoints(String serviceName) {
+        return new ArrayList<>(resolve(serviceName, Type.SRV).getEndpoints());
+    }
+
+    /**
+     * Returns the addresses of the A records of the service
+     */
+    public Set<String> lookupServiceAddresses(String serviceName) {
+        return new LinkedHashSet<>(resolve(serviceName, Type.A).getEndpoints());
+    }
+
+    /**
+     * Selects one of the endpoints of the SRV records of the service as described in RFC 2782; picking from the
+     * records with the lowest priority at random in proportion to their weights.
+     *
+     * @return the endpoint in the format <code>host:port</code> or null if the service has no SRV records
+     */
+    public String selectServiceEndpoint(String serviceName) {
+        Entry entry = resolve(serviceName, Type.SRV);
+        List<SRVRecord> records = entry.getSrvRecords();
+        if (records.isEmpty()) {
+            return null;
+        }
+        int minPriority = Integer.MAX_VALUE;
+        for (SRVRecord record : records) {
+            minPriority = Math.min(minPriority, record.getPriority());
+        }
+        List<SRVRecord> candidates = new ArrayList<>();
+        int totalWeight = 0;
+        for (SRVRecord record : records) {
+            if (record.getPriority() == minPriority) {
+                candidates.add(record);
+                totalWeight += record.getWeight();
+            }
+        }
+        SRVRecord selected = null;
+        if (totalWeight == 0) {
+            selected = candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+        } else {
+            int value = ThreadLocalRandom.current().nextInt(totalWeight);
+            for (SRVRecord record : candidates) {
+                value -= record.getWeight();
+                if (value < 0) {
+                    selected = record;
+                    break;
+                }
+            }
+        }
+        return toEndpoint(selected);
+    }
+
+    /**
+     * Removes all the cached records
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Returns the number of cached names
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    public long getMinTtl() {
+        return minTtl;
+    }
+
+    /**
+     * Sets the minimum time in milliseconds records are cached for even if their TTL is lower
+     */
+    public void setMinTtl(long minTtl) {
+        this.minTtl = minTtl;
+    }
+
+    public long getMaxTtl() {
+        return maxTtl;
+    }
+
+    /**
+     * Sets the maximum time in milliseconds records are cached for even if their TTL is higher
+     */
+    public void setMaxTtl(long maxTtl) {
+        this.maxTtl = maxTtl;
+    }
+
+    public long getNegativeTtl() {
+        return negativeTtl;
+    }
+
+    /**
+     * Sets the time in milliseconds failed lookups are cached for
+     */
+    public void setNegativeTtl(long negativeTtl) {
+        this.negativeTtl = negativeTtl;
+    }
+
+    public long getMaxStale() {
+        return maxStale;
+    }
+
+    /**
+     * Sets the time in milliseconds after their TTL that records are still used for if they cannot be looked up again
+     */
+    public void setMaxStale(long maxStale) {
+        this.maxStale = maxStale;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Sets the maximum number of names cached
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    protected Entry resolve(final String name, final int type) {
+        final String key = Type.string(type) + ":" + name;
+        Entry entry = cache.get(key);
+        long now = System.currentTimeMillis();
+        if (entry == null || now >= entry.getExpires()) {
+            entry = loadOnce(key, name, type, entry);
+        } else if (entry.startRefresh(now)) {
+            final Entry previous = entry;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        put(key, load(name, type, previous));
+                    } catch (RuntimeException e) {
+                        LOG.warn("Failed to refresh the records of {}", name, e);
+                        previous.refreshFailed(System.currentTimeMillis() + negativeTtl);
+                    }
+                }
+            });
+        }
+        return entry;
+    }
+
+    /**
+     * Loads the entry unless another thread is already loading it in which case its result is returned
+     */
+    protected Entry loadOnce(String key, String name, int type, Entry previous) {
+        CompletableFuture<Entry> future = new CompletableFuture<>();
+        CompletableFuture<Entry> current = lookups.putIfAbsent(key, future);
+        if (current != null) {
+            try {
+                return current.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+            }
+        }
+        try {
+            Entry entry = load(name, type, previous);
+            put(key, entry);
+            future.complete(entry);
+            return entry;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            lookups.remove(key, future);
+        }
+    }
+
+    protected void put(String key, Entry entry) {
+        cache.put(key, entry);
+        if (cache.size() > maxEntries) {
+            long now = System.currentTimeMillis();
+            Iterator<Map.Entry<String, Entry>> iter = cache.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<String, Entry> next = iter.next();
+                if (now >= next.getValue().getStaleUntil() && !next.getKey().equals(key)) {
+                    iter.remove();
+                }
+            }
+            iter = cache.entrySet().iterator();
+            while (cache.size() > maxEntries && iter.hasNext()) {
+                if (!iter.next().getKey().equals(key)) {
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up the records returning the previous records if the lookup failed and they are not too stale
+     */
+    protected Entry load(String name, int type, Entry previous) {
+        long now = System.currentTimeMillis();
+        int result;
+        List<Record> records = new ArrayList<>();
+        try {
+            result = lookup(name, type, records);
+        } catch (TextParseException e) {
+            LOG.error("Unparseable service name: {}", name, e);
+            result = Lookup.UNRECOVERABLE;
+        }
+        if (result != Lookup.SUCCESSFUL && previous != null && now < previous.getStaleUntil()) {
+            LOG.debug("Using the previous records of {} as the lookup failed", name);
+            if (now < previous.getExpires()) {
+                previous.refreshFailed(now + negativeTtl);
+                return previous;
+            }
+            long expires = Math.min(now + negativeTtl, previous.getStaleUntil());
+            return new Entry(previous.getSrvRecords(), previous.getEndpoints(), expires, expires, previous.getStaleUntil());
+        }
+        if (result != Lookup.SUCCESSFUL) {
+            return new Entry(Collections.<SRVRecord>emptyList(), Collections.<String>emptyList(), now + negativeTtl, now + negativeTtl, now + negativeTtl);
+        }
+        List<SRVRecord> srvRecords = new ArrayList<>();
+        List<String> endpoints = new ArrayList<>();
+        long ttl = Long.MAX_VALUE;
+        for (Record record : records) {
+            ttl = Math.min(ttl, record.getTTL() * 1000L);
+            if (record instanceof SRVRecord) {
+                srvRecords.add((SRVRecord) record);
+            } else if (record instanceof ARecord) {
+                String address = ((ARecord) record).getAddress().getHostAddress();
+                if (!endpoints.contains(address)) {
+                    endpoints.add(address);
+                }
+            } else {
+                LOG.warn("Ignoring unexpected DNS record for {}: {}", name, record);
+            }
+        }
+        if (!srvRecords.isEmpty()) {
+            Collections.sort(srvRecords, SRV_RECORD_COMPARATOR);
+            for (SRVRecord srvRecord : srvRecords) {
+                endpoints.add(toEndpoint(srvRecord));
+            }
+        }
+        ttl = Math.max(minTtl, Math.min(maxTtl, ttl));
+        return new Entry(srvRecords, endpoints, now + ttl, now + (long) (ttl * REFRESH_FRACTION), now + ttl + maxStale);
+    }
+
+    /**
+     * Queries DNS adding the answers to the given list
+     *
+     * @return the result code of the {@link Lookup}
+     */
+    protected int lookup(String name, int type, List<Record> answers) throws TextParseException {
+        Lookup lookup = new Lookup(name, type);
+        Record[] records = lookup.run();
+        int result = lookup.getResult();
+        if (result == Lookup.SUCCESSFUL && records != null) {
+            Collections.addAll(answers, records);
+        } else {
+            LOG.warn("Lookup {} result: {}", name, lookup.getErrorString());
+        }
+        return result;
+    }
+
+    private static String toEndpoint(SRVRecord record) {
+        return record.getTarget().toString(true) + ":" + record.getPort();
+    }
+
+    protected static class Entry {
+        private final List<SRVRecord> srvRecords;
+        private final List<String> endpoints;
+        private final long expires;
+        private final long refreshAt;
+        private final long staleUntil;
+        private final AtomicLong nextRefresh;
+
+        public Entry(List<SRVRecord> srvRecords, List<String> endpoints, long expires, long refreshAt, long staleUntil) {
+            this.srvRecords = Collections.unmodifiableList(srvRecords);
+            this.endpoints = Collections.unmodifiableList(endpoints);
+            this.expires = expires;
+            this.refreshAt = refreshAt;
+            this.staleUntil = staleUntil;
+            this.nextRefresh = new AtomicLong(refreshAt);
+        }
+
+        public List<SRVRecord> getSrvRecords() {
+            return srvRecords;
+        }
+
+        public List<String> getEndpoints() {
+            return endpoints;
+        }
+
+        public long getExpires() {
+            return expires;
+        }
+
+        public long getRefreshAt() {
+            return refreshAt;
+        }
+
+        /**
+         * Returns the time until which the records may be used if they cannot be looked up again
+         */
+        public long getStaleUntil() {
+            return staleUntil;
+        }
+
+        /**
+         * Returns true if the entry is due to be refreshed and no other thread is refreshing it
+         */
+        public boolean startRefresh(long now) {
+            long time = nextRefresh.get();
+            return now >= time && nextRefresh.compareAndSet(time, Long.MAX_VALUE);
+        }
+
+        /**
+         * Allows the entry to be refreshed again after the given time
+         */
+        public void refreshFailed(long retryAt) {
+            nextRefresh.set(retryAt);
+        }
+    }
+}
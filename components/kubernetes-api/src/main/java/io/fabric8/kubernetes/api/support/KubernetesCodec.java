@@ -0,0 +1,251 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reads and writes kubernetes resources as JSON or YAML reusing a pair of pre-configured mappers and caching the
+ * {@link ObjectReader} and {@link ObjectWriter} of each type, which are immutable and thread safe.
+ * <p/>
+ * Resources read without a specific type have their <code>kind</code> looked up first using a streaming parser
+ * so they can be bound straight to the DTO class from {@link KindToClassMapping} rather than going through a
+ * generic tree; kinds which are not mapped fall back to the polymorphic {@link KubernetesResource} deserializer.
+ */
+public class KubernetesCodec {
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+    private static final ObjectMapper YAML_MAPPER = new ObjectMapper(new YAMLFactory())
+            .setSerializationInclusion(JsonInclude.Include.NON_EMPTY);
+
+    private static final Map<String, Class<? extends HasMetadata>> KIND_CLASSES = createKindClasses();
+
+    private static final Map<Class<?>, ObjectReader> JSON_READERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectReader> YAML_READERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> JSON_WRITERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> PRETTY_JSON_WRITERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> YAML_WRITERS = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the shared JSON mapper; it must not be reconfigured
+     */
+    public static ObjectMapper getJsonMapper() {
+        return JSON_MAPPER;
+    }
+
+    /**
+     * Returns the shared YAML mapper which omits empty values; it must not be reconfigured
+     */
+    public static ObjectMapper getYamlMapper() {
+        return YAML_MAPPER;
+    }
+
+    public static ObjectReader jsonReaderFor(Class<?> type) {
+        ObjectReader answer = JSON_READERS.get(type);
+        if (answer == null) {
+            answer = JSON_MAPPER.readerFor(type);
+            JSON_READERS.put(type, answer);
+        }
+        return answer;
+    }
+
+    public static ObjectReader yamlReaderFor(Class<?> type) {
+        ObjectReader answer = YAML_READERS.get(type);
+        if (answer == null) {
+            answer = YAML_MAPPER.readerFor(type);
+            YAML_READERS.put(type, answer);
+        }
+        return answer;
+    }
+
+    public static ObjectWriter jsonWriterFor(Class<?> type) {
+        ObjectWriter answer = JSON_WRITERS.get(type);
+        if (answer == null) {
+            answer = JSON_MAPPER.writerFor(type);
+            JSON_WRITERS.put(type, answer);
+        }
+        return answer;
+    }
+
+    public static ObjectWriter prettyJsonWriterFor(Class<?> type) {
+        ObjectWriter answer = PRETTY_JSON_WRITERS.get(type);
+        if (answer == null) {
+            answer = JSON_MAPPER.writerFor(type).with(SerializationFeature.INDENT_OUTPUT);
+            PRETTY_JSON_WRITERS.put(type, answer);
+        }
+        return answer;
+    }
+
+    public static ObjectWriter yamlWriterFor(Class<?> type) {
+        ObjectWriter answer = YAML_WRITERS.get(type);
+        if (answer == null) {
+            answer = YAML_MAPPER.writerFor(type);
+            YAML_WRITERS.put(type, answer);
+        }
+        return answer;
+    }
+
+    /**
+     * Creates the readers and writers of all the mapped resource kinds up front so that the first resources
+     * read or written do not pay for introspecting the DTO classes
+     */
+    public static void warmUp() {
+        for (Class<? extends HasMetadata> type : KIND_CLASSES.values()) {
+            jsonReaderFor(type);
+            yamlReaderFor(type);
+            jsonWriterFor(type);
+            yamlWriterFor(type);
+        }
+    }
+
+    /**
+     * Returns the DTO class for the given kind or null if it is not a known resource kind
+     */
+    public static Class<? extends HasMetadata> getResourceClass(String kind) {
+        return kind != null ? KIND_CLASSES.get(kind) : null;
+    }
+
+    /**
+     * Reads the JSON resource binding it to the DTO class of its kind
+     */
+    public static Object readJson(byte[] json) throws IOException {
+        return jsonReaderFor(findResourceClass(JSON_MAPPER.getFactory(), json)).readValue(json);
+    }
+
+    /**
+     * Reads the JSON as the given type; resources read as {@link KubernetesResource} are bound to the DTO class
+     * of their kind
+     */
+    public static <T> T readJson(byte[] json, Class<T> type) throws IOException {
+        if (type == KubernetesResource.class) {
+            return type.cast(readJson(json));
+        }
+        return jsonReaderFor(type).readValue(json);
+    }
+
+    /**
+     * Reads the YAML as the given type; resources read as {@link KubernetesResource} are bound to the DTO class
+     * of their kind
+     */
+    public static <T> T readYaml(byte[] yaml, Class<T> type) throws IOException {
+        Class<?> readType = type;
+        if (type == KubernetesResource.class) {
+            readType = findResourceClass(YAML_MAPPER.getFactory(), yaml);
+        }
+        return yamlReaderFor(readType).readValue(yaml);
+    }
+
+    public static String toJson(Object value) throws JsonProcessingException {
+        return value == null ? "null" : jsonWriterFor(value.getClass()).writeValueAsString(value);
+    }
+
+    public static String toPrettyJson(Object value) throws JsonProcessingException {
+        return value == null ? "null" : prettyJsonWriterFor(value.getClass()).writeValueAsString(value);
+    }
+
+    public static String toYaml(Object value) throws JsonProcessingException {
+        return yamlWriterFor(typeOf(value)).writeValueAsString(value);
+    }
+
+    /**
+     * Writes the value as JSON to the stream without closing it
+     */
+    public static void writeJson(Object value, OutputStream out) throws IOException {
+        jsonWriterFor(typeOf(value)).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, value);
+    }
+
+    /**
+     * Writes the value as YAML to the stream without closing it
+     */
+    public static void writeYaml(Object value, OutputStream out) throws IOException {
+        yamlWriterFor(typeOf(value)).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, value);
+    }
+
+    /**
+     * Writes the value as YAML to the writer without closing it
+     */
+    public static void writeYaml(Object value, Writer writer) throws IOException {
+        yamlWriterFor(typeOf(value)).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(writer, value);
+    }
+
+    /**
+     * Converts the value to a tree using the YAML mapper so that empty values are omitted
+     */
+    public static JsonNode toYamlTree(Object value) {
+        return YAML_MAPPER.valueToTree(value);
+    }
+
+    /**
+     * Returns the DTO class of the kind of the given document or {@link KubernetesResource} if the kind is not
+     * mapped, reading only as far as the top level <code>kind</code> field
+     */
+    protected static Class<?> findResourceClass(JsonFactory factory, byte[] data) throws IOException {
+        if (data == null || data.length == 0) {
+            return KubernetesResource.class;
+        }
+        try (JsonParser parser = factory.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return KubernetesResource.class;
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                token = parser.nextToken();
+                if ("kind".equals(field)) {
+                    Class<?> answer = token == JsonToken.VALUE_STRING ? getResourceClass(parser.getText()) : null;
+                    return answer != null ? answer : KubernetesResource.class;
+                }
+                parser.skipChildren();
+            }
+        }
+        return KubernetesResource.class;
+    }
+
+    private static Class<?> typeOf(Object value) {
+        return value != null ? value.getClass() : Object.class;
+    }
+
+    private static Map<String, Class<? extends HasMetadata>> createKindClasses() {
+        Map<String, Class<? extends HasMetadata>> answer = new HashMap<>();
+        for (Map.Entry<String, Class<?>> entry : KindToClassMapping.getKindToClassMap().entrySet()) {
+            Class<?> type = entry.getValue();
+            if (HasMetadata.class.isAssignableFrom(type) && !type.isInterface() && !Modifier.isAbstract(type.getModifiers())) {
+                answer.put(entry.getKey(), type.asSubclass(HasMetadata.class));
+            }
+        }
+        return answer;
+    }
+}
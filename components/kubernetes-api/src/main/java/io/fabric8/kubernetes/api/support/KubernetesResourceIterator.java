@@ -0,0 +1,178 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.kubernetes.api.model.KubernetesResource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterates over the resources in a JSON or YAML stream one at a time without loading the whole stream in memory.
+ * <p/>
+ * The stream can contain many documents (such as <code>---</code> separated YAML documents or concatenated JSON
+ * objects) and each document can be a single resource, a JSON array of resources or a list kind whose
+ * <code>items</code> are returned one by one as they are parsed.
+ */
+public class KubernetesResourceIterator implements Iterator<HasMetadata>, Closeable {
+    private static final String ITEMS_FIELD = "items";
+    private static final String KIND_FIELD = "kind";
+
+    private final JsonParser parser;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader reader;
+    private final Deque<HasMetadata> pending = new ArrayDeque<>();
+
+    private boolean inDocument;
+    private boolean inItems;
+    private boolean streamedItems;
+    private ObjectNode documentFields;
+    private String documentKind;
+    private boolean finished;
+
+    public KubernetesResourceIterator(JsonParser parser, ObjectMapper objectMapper) {
+        this.parser = parser;
+        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(KubernetesResource.class);
+        if (parser.getCodec() == null) {
+            // the kubernetes deserializer needs a codec to read the resources as trees
+            parser.setCodec(objectMapper);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (pending.isEmpty() && !finished) {
+            try {
+                readNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to parse kubernetes resources: " + e, e);
+            }
+        }
+        return !pending.isEmpty();
+    }
+
+    @Override
+    public HasMetadata next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return pending.removeFirst();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        parser.close();
+    }
+
+    /**
+     * Parses tokens until at least one resource is pending or the end of the stream is reached
+     */
+    protected void readNext() throws IOException {
+        while (pending.isEmpty()) {
+            if (inItems) {
+                JsonToken token = parser.nextToken();
+                if (token == null) {
+                    finished = true;
+                    return;
+                } else if (token == JsonToken.END_ARRAY) {
+                    inItems = false;
+                } else if (token == JsonToken.START_OBJECT) {
+                    addResource(reader.readValue(parser));
+                } else {
+                    parser.skipChildren();
+                }
+            } else if (inDocument) {
+                JsonToken token = parser.nextToken();
+                if (token == null) {
+                    finished = true;
+                    return;
+                } else if (token == JsonToken.END_OBJECT) {
+                    inDocument = false;
+                    if (!streamedItems) {
+                        addResource(objectMapper.treeToValue(documentFields, KubernetesResource.class));
+                    }
+                    documentFields = null;
+                } else {
+                    String name = parser.getCurrentName();
+                    JsonToken valueToken = parser.nextToken();
+                    if (ITEMS_FIELD.equals(name) && valueToken == JsonToken.START_ARRAY && isListKind(documentKind)) {
+                        inItems = true;
+                        streamedItems = true;
+                    } else {
+                        JsonNode value = objectMapper.readTree(parser);
+                        if (!streamedItems) {
+                            documentFields.set(name, value);
+                        }
+                        if (KIND_FIELD.equals(name) && value != null) {
+                            documentKind = value.asText();
+                        }
+                    }
+                }
+            } else {
+                JsonToken token = parser.nextToken();
+                if (token == null) {
+                    finished = true;
+                    return;
+                } else if (token == JsonToken.START_OBJECT) {
+                    inDocument = true;
+                    streamedItems = false;
+                    documentKind = null;
+                    documentFields = objectMapper.createObjectNode();
+                } else if (token == JsonToken.START_ARRAY) {
+                    inItems = true;
+                }
+                // any other top level values such as empty YAML documents are ignored
+            }
+        }
+    }
+
+    /**
+     * Returns true if the kind is not known yet or is a list kind; as only list kinds have a top level
+     * <code>items</code> field
+     */
+    protected static boolean isListKind(String kind) {
+        return kind == null || kind.endsWith("List");
+    }
+
+    protected void addResource(Object resource) {
+        if (resource instanceof KubernetesList) {
+            List<HasMetadata> items = ((KubernetesList) resource).getItems();
+            if (items != null) {
+                for (HasMetadata item : items) {
+                    addResource(item);
+                }
+            }
+        } else if (resource instanceof HasMetadata) {
+            pending.addLast((HasMetadata) resource);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An inverted index of resources by their labels so that label selectors can be evaluated by intersecting
+ * the sets of resources with each <code>key=value</code> label rather than comparing the labels of every resource.
+ * <p/>
+ * The index can be created from a list of resources and kept up to date with {@link #add(HasMetadata)} and
+ * {@link #remove(HasMetadata)} such as from a watch. It is not thread safe so callers must synchronize any updates.
+ */
+public class LabelIndex<T extends HasMetadata> {
+    private static final int COMPACT_THRESHOLD = 64;
+
+    private final List<T> items = new ArrayList<>();
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final Map<String, BitSet> postings = new HashMap<>();
+    private final BitSet all = new BitSet();
+
+    public LabelIndex() {
+    }
+
+    public LabelIndex(Iterable<? extends T> resources) {
+        if (resources != null) {
+            for (T resource : resources) {
+                add(resource);
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces the resource with the same namespace and name
+     */
+    public void add(T resource) {
+        if (resource == null) {
+            return;
+        }
+        remove(resource);
+        int position = items.size();
+        items.add(resource);
+        positions.put(resourceKey(resource), position);
+        all.set(position);
+        Map<String, String> labels = getLabels(resource);
+        if (labels != null) {
+            for (Map.Entry<String, String> entry : labels.entrySet()) {
+                String key = labelKey(entry.getKey(), entry.getValue());
+                BitSet bitSet = postings.get(key);
+                if (bitSet == null) {
+                    bitSet = new BitSet();
+                    postings.put(key, bitSet);
+                }
+                bitSet.set(position);
+            }
+        }
+    }
+
+    /**
+     * Removes the resource with the same namespace and name as the given resource
+     */
+    public boolean remove(T resource) {
+        Integer position = positions.remove(resourceKey(resource));
+        if (position == null) {
+            return false;
+        }
+        T old = items.set(position, null);
+        all.clear(position);
+        Map<String, String> labels = getLabels(old);
+        if (labels != null) {
+            for (Map.Entry<String, String> entry : labels.entrySet()) {
+                String key = labelKey(entry.getKey(), entry.getValue());
+                BitSet bitSet = postings.get(key);
+                if (bitSet != null) {
+                    bitSet.clear(position);
+                    if (bitSet.isEmpty()) {
+                        postings.remove(key);
+                    }
+                }
+            }
+        }
+        if (items.size() > COMPACT_THRESHOLD && items.size() > 2 * positions.size()) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds the index without the gaps left by removed resources
+     */
+    protected void compact() {
+        List<T> remaining = new ArrayList<>(positions.size());
+        for (T item : items) {
+            if (item != null) {
+                remaining.add(item);
+            }
+        }
+        items.clear();
+        positions.clear();
+        postings.clear();
+        all.clear();
+        for (T item : remaining) {
+            add(item);
+        }
+    }
+
+    /**
+     * Returns the number of resources in the index
+     */
+    public int size() {
+        return positions.size();
+    }
+
+    /**
+     * Returns the resources which match all the labels of the selector in the order they were added.
+     * An empty or null selector matches all the resources.
+     */
+    public List<T> select(Map<String, String> selector) {
+        if (selector == null || selector.isEmpty()) {
+            return toList(all);
+        }
+        List<BitSet> bitSets = new ArrayList<>(selector.size());
+        for (Map.Entry<String, String> entry : selector.entrySet()) {
+            if (entry.getValue() == null) {
+                // a null value only matches resources without the label so we cannot use the index
+                return selectByScanning(selector);
+            }
+            BitSet bitSet = postings.get(labelKey(entry.getKey(), entry.getValue()));
+            if (bitSet == null) {
+                return Collections.emptyList();
+            }
+            bitSets.add(bitSet);
+        }
+        // lets start with the smallest set to keep the intersection small
+        BitSet smallest = bitSets.get(0);
+        for (BitSet bitSet : bitSets) {
+            if (bitSet.cardinality() < smallest.cardinality()) {
+                smallest = bitSet;
+            }
+        }
+        BitSet answer = (BitSet) smallest.clone();
+        for (BitSet bitSet : bitSets) {
+            if (bitSet != smallest) {
+                answer.and(bitSet);
+            }
+        }
+        return toList(answer);
+    }
+
+    protected List<T> selectByScanning(Map<String, String> selector) {
+        List<T> answer = new ArrayList<>();
+        for (T item : items) {
+            if (item != null) {
+                Map<String, String> labels = getLabels(item);
+                if (KubernetesHelper.filterLabels(selector, labels)) {
+                    answer.add(item);
+                }
+            }
+        }
+        return answer;
+    }
+
+    protected List<T> toList(BitSet bitSet) {
+        List<T> answer = new ArrayList<>(bitSet.cardinality());
+        for (int i = bitSet.nextSetBit(0); i >= 0; i = bitSet.nextSetBit(i + 1)) {
+            answer.add(items.get(i));
+        }
+        return answer;
+    }
+
+    private static Map<String, String> getLabels(HasMetadata resource) {
+        ObjectMeta metadata = resource != null ? resource.getMetadata() : null;
+        return metadata != null ? metadata.getLabels() : null;
+    }
+
+    private static String resourceKey(HasMetadata resource) {
+        return KubernetesHelper.getNamespace(resource) + "/" + KubernetesHelper.getName(resource);
+    }
+
+    private static String labelKey(String key, String value) {
+        return key + "=" + value;
+    }
+}
@@ -0,0 +1,361 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import io.fabric8.kubernetes.client.utils.Utils;
+import io.fabric8.utils.ssl.TrustEverythingSSLTrustManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLKeyException;
+import javax.net.ssl.SSLPeerUnverifiedException;
+import javax.net.ssl.SSLProtocolException;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Probes whether endpoints talk SSL by connecting and performing an SSL handshake.
+ * <p/>
+ * Probes run concurrently on a bounded pool of daemon threads and their results are cached per endpoint for a
+ * time to live, so that checking many services only waits as long as the slowest one and repeated checks of the
+ * same endpoint do not open a connection each time. Concurrent probes of the same endpoint share one connection.
+ * Only conclusive results are cached; if the connection is refused or times out the endpoint is probed again.
+ */
+public class SslProbe {
+    private static final transient Logger LOG = LoggerFactory.getLogger(SslProbe.class);
+
+    /**
+     * The system property to configure the time to live in milliseconds of cached probe results
+     */
+    public static final String TTL_PROPERTY = "fabric8.ssl.probe.ttl";
+
+    /**
+     * The system property to configure the maximum number of endpoints probed at the same time
+     */
+    public static final String THREADS_PROPERTY = "fabric8.ssl.probe.threads";
+
+    public static final long DEFAULT_TTL = 5 * 60 * 1000L;
+    public static final int DEFAULT_THREADS = 16;
+    public static final int DEFAULT_TIMEOUT = 1000;
+
+    private static final SslProbe INSTANCE = new SslProbe(Integer.getInteger(THREADS_PROPERTY, DEFAULT_THREADS));
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final ExecutorService executor;
+    private volatile long ttl = Long.getLong(TTL_PROPERTY, DEFAULT_TTL);
+    private volatile int timeout = DEFAULT_TIMEOUT;
+
+    public SslProbe(int threads) {
+        this(Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SslProbe-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }));
+    }
+
+    public SslProbe(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the probe shared by {@link io.fabric8.kubernetes.api.KubernetesHelper}
+     */
+    public static SslProbe getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Probes the endpoint waiting for the result
+     */
+    public Result probe(String host, int port, boolean trustAllCerts) {
+        try {
+            return probeAsync(host, port, trustAllCerts).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Result(host, port, false, -1, -1, e);
+        } catch (ExecutionException e) {
+            return new Result(host, port, false, -1, -1, e.getCause());
+        }
+    }
+
+    /**
+     * Probes the endpoint in the background returning the cached result if it has not expired
+     */
+    public CompletableFuture<Result> probeAsync(final String host, final int port, final boolean trustAllCerts) {
+        String key = host + ":" + port + (trustAllCerts ? "?trustAll" : "");
+        final long now = System.currentTimeMillis();
+        final Entry[] created = new Entry[1];
+        Entry entry = cache.compute(key, new BiFunction<String, Entry, Entry>() {
+            @Override
+            public Entry apply(String key, Entry old) {
+                if (old != null && old.isValid(now, ttl)) {
+                    return old;
+                }
+                created[0] = new Entry();
+                return created[0];
+            }
+        });
+        if (entry == created[0]) {
+            final Entry newEntry = entry;
+            CompletableFuture.supplyAsync(new Supplier<Result>() {
+                @Override
+                public Result get() {
+                    return doProbe(host, port, trustAllCerts);
+                }
+            }, executor).whenComplete(new BiConsumer<Result, Throwable>() {
+                @Override
+                public void accept(Result result, Throwable error) {
+                    newEntry.complete(result, error);
+                }
+            });
+        }
+        return entry.getFuture();
+    }
+
+    /**
+     * Probes all the given endpoints concurrently waiting for all the results
+     *
+     * @param endpoints the endpoints in the format <code>host:port</code>
+     * @return the results indexed by endpoint in the order of the given endpoints
+     */
+    public Map<String, Result> probeAll(Collection<String> endpoints, boolean trustAllCerts) {
+        List<CompletableFuture<Result>> futures = new ArrayList<>(endpoints.size());
+        for (String endpoint : endpoints) {
+            int idx = endpoint.lastIndexOf(':');
+            if (idx <= 0) {
+                throw new IllegalArgumentException("Endpoint " + endpoint + " is not in the format host:port");
+            }
+            futures.add(probeAsync(endpoint.substring(0, idx), Integer.parseInt(endpoint.substring(idx + 1)), trustAllCerts));
+        }
+        Map<String, Result> answer = new LinkedHashMap<>();
+        int i = 0;
+        for (String endpoint : endpoints) {
+            CompletableFuture<Result> future = futures.get(i++);
+            try {
+                answer.put(endpoint, future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                LOG.debug("Failed to probe " + endpoint + ". " + e, e);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Removes all the cached results
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * Sets the time to live in milliseconds of cached results; zero or less disables caching
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Sets the timeout in milliseconds to connect and to wait for the handshake
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    protected Result doProbe(String host, int port, boolean trustAllCerts) {
+        LOG.debug("Checking if a service is SSL on " + host + ":" + port);
+        long start = System.nanoTime();
+        long connectTime = -1;
+        try {
+            SSLSocketFactory sslsocketfactory;
+            if (trustAllCerts) {
+                sslsocketfactory = TrustEverythingSSLTrustManager.getTrustingSSLSocketFactory();
+            } else {
+                sslsocketfactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+            }
+            try (SSLSocket socket = (SSLSocket) sslsocketfactory.createSocket()) {
+                socket.setSoTimeout(timeout);
+                socket.connect(new InetSocketAddress(host, port), timeout);
+                connectTime = elapsedMillis(start);
+                socket.startHandshake();
+                long handshakeTime = elapsedMillis(start) - connectTime;
+                LOG.debug("Service on " + host + ":" + port + " is SSL, handshake took " + handshakeTime + "ms");
+                return new Result(host, port, true, connectTime, handshakeTime, null);
+            }
+        } catch (SSLHandshakeException e) {
+            LOG.error("SSL handshake failed - this probably means that you need to trust the kubernetes root SSL certificate or set the environment variable " + Utils.convertSystemPropertyNameToEnvVar(io.fabric8.kubernetes.client.Config.KUBERNETES_TRUST_CERT_SYSTEM_PROPERTY), e);
+            return failed(host, port, start, connectTime, e);
+        } catch (SSLProtocolException e) {
+            LOG.error("SSL protocol error", e);
+            return failed(host, port, start, connectTime, e);
+        } catch (SSLKeyException e) {
+            LOG.error("Bad SSL key", e);
+            return failed(host, port, start, connectTime, e);
+        } catch (SSLPeerUnverifiedException e) {
+            LOG.error("Could not verify server", e);
+            return failed(host, port, start, connectTime, e);
+        } catch (SSLException e) {
+            LOG.debug("Address does not appear to be SSL-enabled - falling back to http", e);
+            return failed(host, port, start, connectTime, e);
+        } catch (IOException e) {
+            LOG.debug("Failed to validate service", e);
+            return failed(host, port, start, connectTime, e);
+        }
+    }
+
+    private static Result failed(String host, int port, long start, long connectTime, Exception e) {
+        long handshakeTime = connectTime >= 0 ? elapsedMillis(start) - connectTime : -1;
+        return new Result(host, port, false, connectTime, handshakeTime, e);
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1000000L;
+    }
+
+    /**
+     * The result of probing an endpoint
+     */
+    public static class Result {
+        private final String host;
+        private final int port;
+        private final boolean ssl;
+        private final long connectTime;
+        private final long handshakeTime;
+        private final Throwable error;
+
+        public Result(String host, int port, boolean ssl, long connectTime, long handshakeTime, Throwable error) {
+            this.host = host;
+            this.port = port;
+            this.ssl = ssl;
+            this.connectTime = connectTime;
+            this.handshakeTime = handshakeTime;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{" + host + ":" + port + " ssl=" + ssl + " connectTime=" + connectTime + "ms handshakeTime=" + handshakeTime + "ms}";
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public int getPort() {
+            return port;
+        }
+
+        /**
+         * Returns true if the SSL handshake with the endpoint succeeded
+         */
+        public boolean isSsl() {
+            return ssl;
+        }
+
+        /**
+         * Returns the time in milliseconds taken to connect or -1 if the connection failed
+         */
+        public long getConnectTime() {
+            return connectTime;
+        }
+
+        /**
+         * Returns the time in milliseconds taken by the SSL handshake until it completed or failed, or -1 if it
+         * was not attempted
+         */
+        public long getHandshakeTime() {
+            return handshakeTime;
+        }
+
+        /**
+         * Returns the reason the endpoint is not considered SSL or null if it is
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * Returns true if the endpoint answered the handshake, either completing it or replying with something
+         * which is not SSL; rather than the connection being refused or timing out
+         */
+        public boolean isConclusive() {
+            return ssl || (connectTime >= 0 && error instanceof SSLException);
+        }
+    }
+
+    private static class Entry {
+        private final CompletableFuture<Result> future = new CompletableFuture<>();
+        private volatile long completed = -1;
+        private volatile boolean conclusive;
+
+        public CompletableFuture<Result> getFuture() {
+            return future;
+        }
+
+        /**
+         * Returns true if the probe is still running or completed with a conclusive result less than the time to
+         * live ago
+         */
+        public boolean isValid(long now, long ttl) {
+            long time = completed;
+            return time < 0 || (conclusive && time + ttl > now);
+        }
+
+        public void complete(Result result, Throwable error) {
+            conclusive = error == null && result != null && result.isConclusive();
+            completed = System.currentTimeMillis();
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -240,4 +240,48 @@ public class ConfigComparePodTest {
 
         assertCompareConfig(entity1, entity2, false);
     }
+
+    @Test
+    public void testPodsEqualWithReorderedNamedContainers() throws Exception {
+        Pod entity1 = new PodBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewSpec().
+                addNewContainer().withName("a").withImage("fabric8/jenkins").
+                addNewEnv().withName("foo").withValue("bar").endEnv().
+                addNewEnv().withName("abc").withValue("def").endEnv().
+                endContainer().
+                addNewContainer().withName("b").withImage("fabric8/nexus").endContainer().
+                endSpec().
+                build();
+
+        Pod entity2 = new PodBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewSpec().
+                addNewContainer().withName("b").withImage("fabric8/nexus").endContainer().
+                addNewContainer().withName("a").withImage("fabric8/jenkins").
+                addNewEnv().withName("abc").withValue("def").endEnv().
+                addNewEnv().withName("foo").withValue("bar").endEnv().
+                endContainer().
+                endSpec().
+                build();
+
+        assertCompareConfig(entity1, entity2, true);
+    }
+
+    @Test
+    public void testPodsNamedContainersNotEqual() throws Exception {
+        Pod entity1 = new PodBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewSpec().
+                addNewContainer().withName("a").withImage("fabric8/jenkins").endContainer().
+                addNewContainer().withName("b").withImage("fabric8/nexus").endContainer().
+                endSpec().
+                build();
+
+        Pod entity2 = new PodBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewSpec().
+                addNewContainer().withName("b").withImage("fabric8/jenkins").endContainer().
+                addNewContainer().withName("a").withImage("fabric8/nexus").endContainer().
+                endSpec().
+                build();
+
+        assertCompareConfig(entity1, entity2, false);
+    }
 }
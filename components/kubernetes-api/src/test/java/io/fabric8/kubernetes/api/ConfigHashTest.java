@@ -0,0 +1,139 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodStatus;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static io.fabric8.kubernetes.api.ConfigCompareServiceTest.assertCompareConfig;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ConfigHashTest {
+    private static final String NAMESPACE = "test";
+    private static final String SERVICE_PATH = "/api/v1/namespaces/" + NAMESPACE + "/services/foo";
+
+    @Rule
+    public KubernetesServer server = new KubernetesServer();
+
+    @Test
+    public void testHashIgnoresStatusAndRuntimeMetadata() throws Exception {
+        Pod entity1 = createPod("bar");
+        Pod entity2 = createPod("bar");
+        PodStatus status2 = new PodStatus();
+        status2.setHostIP("abc");
+        entity2.setStatus(status2);
+        entity2.getMetadata().setResourceVersion("1234");
+        entity2.getMetadata().setUid("some-uid");
+
+        assertEquals(UserConfigurationCompare.configHash(entity1), UserConfigurationCompare.configHash(entity2));
+    }
+
+    @Test
+    public void testHashChangesWithConfiguration() throws Exception {
+        Pod entity1 = createPod("bar");
+        Pod entity2 = createPod("notSame");
+
+        assertNotEquals(UserConfigurationCompare.configHash(entity1), UserConfigurationCompare.configHash(entity2));
+    }
+
+    @Test
+    public void testHashAnnotationIgnored() throws Exception {
+        Pod entity1 = createPod("bar");
+        Pod entity2 = createPod("bar");
+        String hash = UserConfigurationCompare.configHash(entity2);
+        KubernetesHelper.getOrCreateAnnotations(entity2).put(Annotations.Config.CONFIG_HASH, hash);
+
+        assertEquals(hash, UserConfigurationCompare.configHash(entity2));
+        assertEquals(UserConfigurationCompare.configHash(entity1), UserConfigurationCompare.configHash(entity2));
+        assertCompareConfig(entity1, entity2, true);
+    }
+
+    @Test
+    public void testMatchingHashSkipsUpdate() throws Exception {
+        Service service = createService(8080);
+        String hash = UserConfigurationCompare.configHash(service);
+        // the running service differs in a value defaulted by the server which a full comparison would see
+        Service old = createService(8080);
+        old.getSpec().setSessionAffinity("None");
+        KubernetesHelper.getOrCreateAnnotations(old).put(Annotations.Config.CONFIG_HASH, hash);
+        server.expect().withPath(SERVICE_PATH).andReturn(200, old).once();
+
+        createController().applyService(service, "test");
+
+        assertEquals("GET", server.getMockServer().takeRequest().getMethod());
+        assertNull(server.getMockServer().takeRequest(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testDifferentHashUpdates() throws Exception {
+        Service old = createService(8080);
+        KubernetesHelper.getOrCreateAnnotations(old).put(Annotations.Config.CONFIG_HASH, UserConfigurationCompare.configHash(old));
+        Service service = createService(8181);
+        server.expect().withPath(SERVICE_PATH).andReturn(200, old).always();
+        server.expect().put().withPath(SERVICE_PATH).andReturn(200, service).once();
+
+        createController().applyService(service, "test");
+
+        RecordedRequest update = null;
+        RecordedRequest request;
+        while ((request = server.getMockServer().takeRequest(100, TimeUnit.MILLISECONDS)) != null) {
+            if ("PUT".equals(request.getMethod())) {
+                update = request;
+            }
+        }
+        assertNotNull("Should have updated the service", update);
+        assertEquals(SERVICE_PATH, update.getPath());
+    }
+
+    private Controller createController() {
+        Controller controller = new Controller(server.getClient());
+        controller.setNamespace(NAMESPACE);
+        controller.setThrowExceptionOnError(true);
+        return controller;
+    }
+
+    protected static Service createService(int port) {
+        return new ServiceBuilder().withNewMetadata().withName("foo").withNamespace(NAMESPACE).endMetadata().
+                withNewSpec().addNewPort().withPort(port).endPort().endSpec().
+                build();
+    }
+
+    protected static Pod createPod(String envValue) {
+        return new PodBuilder().withNewMetadata().withName("foo").
+                addToLabels("label1", "value1").
+                addToAnnotations("podAnnotation1", "podAnnValue1").
+                endMetadata().
+                withNewSpec().
+                addNewContainer().
+                withImage("fabric8/jenkins").
+                addNewEnv().withName("foo").withValue(envValue).endEnv().
+                endContainer().
+                endSpec().
+                build();
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.client.BaseClient;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.NamespacedKubernetesClient;
+import io.fabric8.openshift.client.NamespacedOpenShiftClient;
+import io.fabric8.openshift.client.server.mock.OpenShiftServer;
+import okhttp3.OkHttpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KubernetesClientsTest {
+    @Rule
+    public OpenShiftServer server = new OpenShiftServer();
+
+    private long idleTimeout;
+
+    @Before
+    public void setUp() throws Exception {
+        idleTimeout = KubernetesClients.getIdleTimeout();
+        KubernetesClients.setIdleTimeout(0);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        KubernetesClients.setIdleTimeout(idleTimeout);
+    }
+
+    @Test
+    public void testClientsAreSharedPerConfig() throws Exception {
+        int size = KubernetesClients.size();
+        KubernetesClient client1 = KubernetesClients.acquire(createConfig("foo"));
+        KubernetesClient client2 = KubernetesClients.acquire(createConfig("foo"));
+        KubernetesClient client3 = KubernetesClients.acquire(createConfig("bar"));
+
+        assertThat(getHttpClient(client2)).isSameAs(getHttpClient(client1));
+        assertThat(getHttpClient(client3)).isNotSameAs(getHttpClient(client1));
+        assertThat(client3.getNamespace()).isEqualTo("bar");
+        assertThat(KubernetesClients.size()).isEqualTo(size + 2);
+
+        // closing a client twice only releases its own reference
+        client1.close();
+        client1.close();
+        assertThat(KubernetesClients.size()).isEqualTo(size + 2);
+        client2.close();
+        client3.close();
+        assertThat(KubernetesClients.size()).isEqualTo(size);
+
+        // once closed we get a new client
+        KubernetesClient client4 = KubernetesClients.acquire(createConfig("foo"));
+        assertThat(getHttpClient(client4)).isNotSameAs(getHttpClient(client1));
+        client4.close();
+    }
+
+    @Test
+    public void testDerivedClientsDoNotCloseTheSharedTransport() throws Exception {
+        int size = KubernetesClients.size();
+        KubernetesClient client = KubernetesClients.acquire(createConfig("foo"));
+        OkHttpClient httpClient = getHttpClient(client);
+
+        NamespacedKubernetesClient derived = ((NamespacedKubernetesClient) client).inNamespace("bar");
+        assertThat(derived.getNamespace()).isEqualTo("bar");
+        assertThat(getHttpClient(derived)).isSameAs(httpClient);
+        derived.inAnyNamespace().close();
+        derived.close();
+
+        assertThat(httpClient.dispatcher().executorService().isShutdown()).isFalse();
+        assertThat(KubernetesClients.size()).isEqualTo(size + 1);
+
+        client.close();
+        assertThat(KubernetesClients.size()).isEqualTo(size);
+        assertThat(httpClient.dispatcher().executorService().isShutdown()).isTrue();
+    }
+
+    @Test
+    public void testDerivedClientsKeepTheSharedTransportOpen() throws Exception {
+        int size = KubernetesClients.size();
+        Config config = new ConfigBuilder(createConfig("foo")).withMasterUrl(server.getOpenshiftClient().getMasterUrl().toString())
+                .withTrustCerts(true).build();
+        KubernetesClient client = KubernetesClients.acquire(config);
+        OkHttpClient httpClient = getHttpClient(client);
+        NamespacedKubernetesClient derived = ((NamespacedKubernetesClient) client).inNamespace("bar");
+        NamespacedOpenShiftClient adapted = client.adapt(NamespacedOpenShiftClient.class);
+        assertThat(getHttpClient(adapted)).isSameAs(httpClient);
+
+        // the derived clients still work once the client they came from is closed
+        client.close();
+        assertThat(KubernetesClients.size()).isEqualTo(size + 1);
+        derived.close();
+        assertThat(KubernetesClients.size()).isEqualTo(size + 1);
+        assertThat(httpClient.dispatcher().executorService().isShutdown()).isFalse();
+
+        adapted.close();
+        assertThat(KubernetesClients.size()).isEqualTo(size);
+        assertThat(httpClient.dispatcher().executorService().isShutdown()).isTrue();
+    }
+
+    protected static OkHttpClient getHttpClient(KubernetesClient client) {
+        return ((BaseClient) client).getHttpClient();
+    }
+
+    protected static Config createConfig(String namespace) {
+        return new ConfigBuilder().withMasterUrl("https://localhost:8443/").withNamespace(namespace).withOauthToken("token").build();
+    }
+}
@@ -18,9 +18,14 @@ package io.fabric8.kubernetes.api;
 import io.fabric8.kubernetes.api.model.ObjectMeta;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodList;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
 import org.junit.Test;
 
+import java.net.ServerSocket;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -68,4 +73,24 @@ public class KubernetesHelperTest {
         assertFalse(text + " should not = " + map, KubernetesHelper.filterMatchesIdOrLabels(text, id, map));
     }
 
+    @Test
+    public void testGetServiceURLsIndexesByNamespaceAndName() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Service service1 = createService("foo", "web", port);
+        Service service2 = createService("bar", "web", port);
+
+        Map<String, String> urls = KubernetesHelper.getServiceURLs(Arrays.asList(service1, service2));
+        assertEquals(2, urls.size());
+        assertEquals("http://127.0.0.1:" + port, urls.get("foo/web"));
+        assertEquals("http://127.0.0.1:" + port, urls.get("bar/web"));
+    }
+
+    protected static Service createService(String namespace, String name, int port) {
+        return new ServiceBuilder().withNewMetadata().withNamespace(namespace).withName(name).endMetadata()
+                .withNewSpec().withClusterIP("127.0.0.1").addNewPort().withPort(port).endPort().endSpec().build();
+    }
+
 }
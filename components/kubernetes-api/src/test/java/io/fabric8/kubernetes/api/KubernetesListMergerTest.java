@@ -0,0 +1,121 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.extensions.KubernetesListMerger;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.kubernetes.api.model.KubernetesListBuilder;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.ReplicationControllerBuilder;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.openshift.api.model.Parameter;
+import io.fabric8.openshift.api.model.Template;
+import io.fabric8.openshift.api.model.TemplateBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KubernetesListMergerTest {
+
+    @Test
+    public void testCombineJson() throws Exception {
+        KubernetesList list = new KubernetesListBuilder().addToItems(controller("a", null), service("s1", null)).build();
+
+        Object result = KubernetesHelper.combineJson(
+                controller("b", null), list, Arrays.asList(service("s2", null), controller("a", null)),
+                controller("a", "other"), service("s1", null));
+
+        assertThat(result).isSameAs(list);
+        assertThat(describe(list.getItems())).hasSize(5).containsOnly(
+                "Service/s1", "Service/s2", "ReplicationController/a", "ReplicationController/b", "ReplicationController/other/a");
+    }
+
+    @Test
+    public void testMergeKeepsServicesFirstInOrderAdded() throws Exception {
+        KubernetesListMerger merger = new KubernetesListMerger().
+                add(controller("b", null)).
+                add(new KubernetesListBuilder().addToItems(controller("a", null), service("s2", null)).build()).
+                addAll(Arrays.asList(service("s1", null), controller("b", null), controller("c", null)));
+
+        assertThat(describe(merger.getItems())).containsExactly(
+                "Service/s2", "Service/s1", "ReplicationController/b", "ReplicationController/a", "ReplicationController/c");
+    }
+
+    @Test
+    public void testCombineTemplates() throws Exception {
+        Template first = new TemplateBuilder().withNewMetadata().withName("first").addToAnnotations("a", "1").endMetadata().
+                addNewParameter().withName("P1").withValue("one").endParameter().
+                addNewParameter().withName("P2").endParameter().
+                addToObjects(controller("a", null)).build();
+        Template second = new TemplateBuilder().withNewMetadata().withName("second").addToAnnotations("a", "2").addToAnnotations("b", "2").endMetadata().
+                addNewParameter().withName("P1").withValue("uno").endParameter().
+                addNewParameter().withName("P2").withValue("dos").endParameter().
+                addNewParameter().withName("P3").withValue("tres").endParameter().
+                addToObjects(controller("a", null), service("s1", null)).build();
+
+        Object result = new KubernetesListMerger().add(controller("b", null)).add(first).add(second).build();
+
+        assertThat(result).isSameAs(first);
+        assertThat(describe(first.getObjects())).hasSize(3).containsOnly("Service/s1", "ReplicationController/b", "ReplicationController/a");
+        List<String> parameters = new ArrayList<>();
+        for (Parameter parameter : first.getParameters()) {
+            parameters.add(parameter.getName() + "=" + parameter.getValue());
+        }
+        assertThat(parameters).containsExactly("P1=uno", "P2=null", "P3=tres");
+        assertThat(first.getMetadata().getAnnotations()).containsEntry("a", "1").containsEntry("b", "2");
+    }
+
+    @Test
+    public void testMoveServicesToFrontIsStable() throws Exception {
+        List<HasMetadata> items = new ArrayList<>(Arrays.<HasMetadata>asList(
+                controller("a", null), controller("b", null), service("s1", null), controller("c", null), service("s2", null)));
+        KubernetesHelper.moveServicesToFrontOfArray(items);
+        assertThat(describe(items)).containsExactly(
+                "Service/s1", "Service/s2", "ReplicationController/a", "ReplicationController/b", "ReplicationController/c");
+    }
+
+    @Test
+    public void testRemoveDuplicates() throws Exception {
+        List<HasMetadata> items = new ArrayList<>(Arrays.<HasMetadata>asList(
+                controller("a", null), null, service("a", null), controller("a", null), controller(null, null), controller(null, null), service("a", null)));
+        KubernetesHelper.removeDuplicates(items);
+        assertThat(items).hasSize(4);
+        assertThat(describe(items)).containsExactly("ReplicationController/a", "Service/a", "ReplicationController/null", "ReplicationController/null");
+    }
+
+    protected static List<String> describe(List<HasMetadata> items) {
+        List<String> answer = new ArrayList<>();
+        for (HasMetadata item : items) {
+            String namespace = KubernetesHelper.getNamespace(item);
+            answer.add(item.getClass().getSimpleName() + "/" + (namespace != null ? namespace + "/" : "") + KubernetesHelper.getName(item));
+        }
+        return answer;
+    }
+
+    protected static Service service(String name, String namespace) {
+        return new ServiceBuilder().withNewMetadata().withName(name).withNamespace(namespace).endMetadata().build();
+    }
+
+    protected static ReplicationController controller(String name, String namespace) {
+        return new ReplicationControllerBuilder().withNewMetadata().withName(name).withNamespace(namespace).endMetadata().build();
+    }
+}
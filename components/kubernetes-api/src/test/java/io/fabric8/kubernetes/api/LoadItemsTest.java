@@ -0,0 +1,103 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Service;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests streaming the resources of JSON and YAML documents
+ */
+public class LoadItemsTest {
+
+    @Test
+    public void testLoadMultiDocumentYaml() throws Exception {
+        String yaml = "---\n" +
+                "apiVersion: v1\n" +
+                "kind: List\n" +
+                "items:\n" +
+                "- apiVersion: v1\n" +
+                "  kind: Service\n" +
+                "  metadata:\n" +
+                "    name: cheese\n" +
+                "- apiVersion: v1\n" +
+                "  kind: ConfigMap\n" +
+                "  metadata:\n" +
+                "    name: cheese-config\n" +
+                "---\n" +
+                "apiVersion: v1\n" +
+                "kind: Service\n" +
+                "metadata:\n" +
+                "  name: beer\n" +
+                "---\n";
+
+        List<HasMetadata> items = new ArrayList<>();
+        KubernetesHelper.loadYamlItems(toStream(yaml), items::add);
+
+        assertThat(items).hasSize(3);
+        assertItem(items.get(0), Service.class, "cheese");
+        assertItem(items.get(1), ConfigMap.class, "cheese-config");
+        assertItem(items.get(2), Service.class, "beer");
+    }
+
+    @Test
+    public void testLoadJsonListWithItemsBeforeKind() throws Exception {
+        String json = "{\"items\": [" +
+                "{\"apiVersion\": \"v1\", \"kind\": \"Service\", \"metadata\": {\"name\": \"cheese\"}}," +
+                "{\"apiVersion\": \"v1\", \"kind\": \"ConfigMap\", \"metadata\": {\"name\": \"cheese-config\"}}" +
+                "], \"apiVersion\": \"v1\", \"kind\": \"List\"}" +
+                "[{\"apiVersion\": \"v1\", \"kind\": \"Service\", \"metadata\": {\"name\": \"beer\"}}]";
+
+        List<HasMetadata> items = new ArrayList<>();
+        KubernetesHelper.loadJsonItems(toStream(json), items::add);
+
+        assertThat(items).hasSize(3);
+        assertItem(items.get(0), Service.class, "cheese");
+        assertItem(items.get(1), ConfigMap.class, "cheese-config");
+        assertItem(items.get(2), Service.class, "beer");
+    }
+
+    @Test
+    public void testLoadSingleJsonResource() throws Exception {
+        String json = "{\"apiVersion\": \"v1\", \"metadata\": {\"name\": \"cheese\"}, \"kind\": \"Service\"}";
+
+        List<HasMetadata> items = new ArrayList<>();
+        KubernetesHelper.loadJsonItems(toStream(json), items::add);
+
+        assertThat(items).hasSize(1);
+        assertItem(items.get(0), Service.class, "cheese");
+    }
+
+    protected static InputStream toStream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected static void assertItem(HasMetadata item, Class<?> expectedClass, String expectedName) {
+        assertThat(item).isInstanceOf(expectedClass);
+        assertEquals(expectedName, KubernetesHelper.getName(item));
+    }
+}
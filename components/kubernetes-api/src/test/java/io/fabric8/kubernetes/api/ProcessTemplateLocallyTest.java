@@ -16,10 +16,12 @@
 package io.fabric8.kubernetes.api;
 
 import io.fabric8.kubernetes.api.extensions.Templates;
+import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.KubernetesList;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import io.fabric8.openshift.api.model.Template;
+import io.fabric8.openshift.api.model.TemplateBuilder;
 
 import org.junit.Test;
 import org.slf4j.Logger;
@@ -57,4 +59,43 @@ public class ProcessTemplateLocallyTest {
         System.out.println("Created JSON: " + toJson(list));
     }
 
+    @Test
+    public void testProcessCompiledTemplateWithDifferentValues() throws Exception {
+        Template template = new TemplateBuilder().withNewMetadata().withName("foo").endMetadata().
+                addNewConfigMapObject().withNewMetadata().withName("${NAME}-config").addToLabels("${LABEL}", "true").endMetadata().
+                addToData("url", "http://${HOST}:${PORT}/").addToData("unknown", "${UNKNOWN}").endConfigMapObject().
+                addNewParameter().withName("NAME").withValue("cheese").endParameter().
+                addNewParameter().withName("LABEL").withValue("group").endParameter().
+                addNewParameter().withName("HOST").withValue("${NAME}.svc").endParameter().
+                addNewParameter().withName("PORT").withValue("8080").endParameter().
+                build();
+
+        ConfigMap configMap = (ConfigMap) Templates.processTemplatesLocally(template, true).getItems().get(0);
+        assertEquals("cheese-config", KubernetesHelper.getName(configMap));
+        assertEquals("true", configMap.getMetadata().getLabels().get("group"));
+        assertEquals("http://cheese.svc:8080/", configMap.getData().get("url"));
+        assertEquals("${UNKNOWN}", configMap.getData().get("unknown"));
+
+        template.getParameters().get(3).setValue("9090");
+        configMap = (ConfigMap) Templates.processTemplatesLocally(template, true).getItems().get(0);
+        assertEquals("http://cheese.svc:9090/", configMap.getData().get("url"));
+        assertEquals(4, Templates.compileTemplate(template.getObjects()).getSlotCount());
+    }
+
+    @Test
+    public void testTemplateEditedInPlaceIsCompiledAgain() throws Exception {
+        Template template = new TemplateBuilder().withNewMetadata().withName("foo").withUid("some-uid").withResourceVersion("1").endMetadata().
+                addNewConfigMapObject().withNewMetadata().withName("${NAME}-config").endMetadata().
+                addToData("url", "http://${HOST}/").endConfigMapObject().
+                addNewParameter().withName("NAME").withValue("cheese").endParameter().
+                addNewParameter().withName("HOST").withValue("example.com").endParameter().
+                build();
+        ConfigMap configMap = (ConfigMap) Templates.processTemplatesLocally(template, true).getItems().get(0);
+        assertEquals("http://example.com/", configMap.getData().get("url"));
+
+        // like SessionListener lets edit the objects of the template keeping its uid and resource version
+        ((ConfigMap) template.getObjects().get(0)).getData().put("url", "https://${HOST}/");
+        configMap = (ConfigMap) Templates.processTemplatesLocally(template, true).getItems().get(0);
+        assertEquals("https://example.com/", configMap.getData().get("url"));
+    }
 }
@@ -0,0 +1,120 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
+import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.ReplicationControllerBuilder;
+import io.fabric8.kubernetes.api.model.extensions.Deployment;
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.api.model.WatchEvent;
+import io.fabric8.kubernetes.api.model.extensions.DeploymentBuilder;
+import io.fabric8.kubernetes.client.server.mock.KubernetesServer;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReadinessWatcherTest {
+    private static final String NAMESPACE = "test";
+
+    @Rule
+    public KubernetesServer server = new KubernetesServer();
+
+    @Test
+    public void testWatchEventCompletesFuture() throws Exception {
+        server.expect().withPath("/api/v1/namespaces/" + NAMESPACE + "/pods").
+                andReturn(200, new PodListBuilder().addToItems(createPod(false)).build()).once();
+        server.expect().withPath("/api/v1/namespaces/" + NAMESPACE + "/pods?watch=true").andUpgradeToWebSocket().open().
+                waitFor(100).andEmit(new WatchEvent(createPod(true), "MODIFIED")).done().once();
+
+        try (ReadinessWatcher watcher = new ReadinessWatcher(server.getClient(), NAMESPACE)) {
+            // the listing shows the pod is not ready so only the watch can complete the future
+            watcher.watch(createPod(false)).get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testWatchClosedByServerIsOpenedAgain() throws Exception {
+        server.expect().withPath("/api/v1/namespaces/" + NAMESPACE + "/pods").
+                andReturn(200, new PodListBuilder().addToItems(createPod(false)).build()).once();
+        server.expect().withPath("/api/v1/namespaces/" + NAMESPACE + "/pods?watch=true").andUpgradeToWebSocket().open().
+                waitFor(100).andEmit(new WatchEvent(new StatusBuilder().withCode(410).withMessage("too old resource version").build(), "ERROR")).
+                done().once();
+        // the pod became ready while the watch was down so only the listing shows it
+        server.expect().withPath("/api/v1/namespaces/" + NAMESPACE + "/pods?watch=true").andUpgradeToWebSocket().open().done().once();
+        server.expect().withPath("/api/v1/namespaces/" + NAMESPACE + "/pods").
+                andReturn(200, new PodListBuilder().addToItems(createPod(true)).build()).once();
+
+        try (ReadinessWatcher watcher = new ReadinessWatcher(server.getClient(), NAMESPACE)) {
+            watcher.watch(createPod(false)).get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testPodReadiness() throws Exception {
+        assertFalse(ReadinessWatcher.isReady(new PodBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewStatus().withPhase("Pending").endStatus().build()));
+        assertFalse(ReadinessWatcher.isReady(new PodBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewStatus().withPhase("Running").addNewCondition().withType("Ready").withStatus("False").endCondition().endStatus().build()));
+        assertTrue(ReadinessWatcher.isReady(new PodBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewStatus().withPhase("Running").addNewCondition().withType("Ready").withStatus("True").endCondition().endStatus().build()));
+    }
+
+    @Test
+    public void testReplicationControllerReadiness() throws Exception {
+        assertFalse(ReadinessWatcher.isReady(createReplicationController(2L, 1L, 3)));
+        assertFalse(ReadinessWatcher.isReady(createReplicationController(2L, 2L, 2)));
+        assertTrue(ReadinessWatcher.isReady(createReplicationController(2L, 2L, 3)));
+    }
+
+    @Test
+    public void testDeploymentReadiness() throws Exception {
+        assertFalse(ReadinessWatcher.isReady(createDeployment(2, 1)));
+        assertTrue(ReadinessWatcher.isReady(createDeployment(2, 2)));
+    }
+
+    @Test
+    public void testOtherKindsAreReady() throws Exception {
+        assertTrue(ReadinessWatcher.isReady(new ConfigMapBuilder().withNewMetadata().withName("foo").endMetadata().build()));
+    }
+
+    protected static Pod createPod(boolean ready) {
+        return new PodBuilder().withNewMetadata().withName("foo").withNamespace(NAMESPACE).endMetadata().
+                withNewStatus().withPhase("Running").addNewCondition().withType("Ready").withStatus(ready ? "True" : "False").endCondition().endStatus().
+                build();
+    }
+
+    protected static ReplicationController createReplicationController(long generation, long observedGeneration, int readyReplicas) {
+        return new ReplicationControllerBuilder().withNewMetadata().withName("foo").withGeneration(generation).endMetadata().
+                withNewSpec().withReplicas(3).endSpec().
+                withNewStatus().withObservedGeneration(observedGeneration).withReadyReplicas(readyReplicas).endStatus().
+                build();
+    }
+
+    protected static Deployment createDeployment(int updatedReplicas, int availableReplicas) {
+        return new DeploymentBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewSpec().withReplicas(2).endSpec().
+                withNewStatus().withUpdatedReplicas(updatedReplicas).withAvailableReplicas(availableReplicas).endStatus().
+                build();
+    }
+}
@@ -47,8 +47,7 @@ public class WatchBuilds {
 
       BuildWatcher watcher = new BuildWatcher(client, buildListener, namespace, consoleLink);
 
-        long pollTime = 3000;
-        watcher.schedule(pollTime);
+        watcher.start();
 
         watcher.join();
     }
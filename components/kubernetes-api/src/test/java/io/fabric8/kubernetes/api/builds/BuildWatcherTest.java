@@ -0,0 +1,105 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.builds;
+
+import io.fabric8.openshift.api.model.Build;
+import io.fabric8.openshift.api.model.BuildBuilder;
+import io.fabric8.openshift.api.model.BuildListBuilder;
+import io.fabric8.openshift.client.OpenShiftClient;
+import io.fabric8.openshift.client.server.mock.OpenShiftServer;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BuildWatcherTest {
+    @Rule
+    public OpenShiftServer server = new OpenShiftServer();
+
+    private final List<String> finished = new ArrayList<>();
+    private final BuildWatcher watcher = createWatcher(null);
+
+    @Test
+    public void testFinishedBuildsNotifiedOnce() throws Exception {
+        watcher.buildPolled(createBuild("a", "Running"));
+        watcher.buildPolled(createBuild("a", "Complete"));
+        watcher.buildPolled(createBuild("a", "Complete"));
+        watcher.buildPolled(createBuild("b", "Failed"));
+        watcher.buildPolled(createBuild("c", null));
+
+        assertThat(finished).containsExactly("a", "b");
+    }
+
+    @Test
+    public void testPollingNotifiesEachFinishedBuildOnce() throws Exception {
+        server.expect().withPath("/oapi/v1/namespaces/default/builds").andReturn(200, new BuildListBuilder()
+                .withNewMetadata().withResourceVersion("10").endMetadata()
+                .withItems(createBuild("a", "Complete", "5"), createBuild("b", "Running", "6")).build()).once();
+        server.expect().withPath("/oapi/v1/namespaces/default/builds").andReturn(200, new BuildListBuilder()
+                .withNewMetadata().withResourceVersion("20").endMetadata()
+                .withItems(createBuild("a", "Complete", "15"), createBuild("b", "Complete", "12"),
+                        createBuild("c", "Complete", "9")).build()).once();
+        server.expect().withPath("/oapi/v1/namespaces/default/builds").andReturn(200, new BuildListBuilder()
+                .withNewMetadata().withResourceVersion("30").endMetadata()
+                .withItems(createBuild("b", "Complete", "12"), createBuild("d", "Failed", "25")).build()).once();
+
+        BuildWatcher pollingWatcher = createWatcher(server.getOpenshiftClient());
+        pollingWatcher.poll();
+        assertThat(finished).containsExactly("a");
+
+        // "a" was modified after it finished and "c" was never notified even though it has an older resource version
+        pollingWatcher.poll();
+        assertThat(finished).containsExactly("a", "b", "c");
+
+        pollingWatcher.poll();
+        assertThat(finished).containsExactly("a", "b", "c", "d");
+    }
+
+    @Test
+    public void testDeletedBuildsAreForgotten() throws Exception {
+        watcher.buildPolled(createBuild("a", "Complete"));
+        watcher.buildDeleted(createBuild("a", "Complete"));
+        watcher.buildPolled(createBuild("a", "Complete"));
+
+        assertThat(finished).containsExactly("a", "a");
+    }
+
+    protected BuildWatcher createWatcher(OpenShiftClient client) {
+        return new BuildWatcher(client, new BuildListener() {
+            @Override
+            public void onBuildFinished(BuildFinishedEvent event) {
+                finished.add(event.getUid());
+            }
+        }, "default", null);
+    }
+
+    protected static Build createBuild(String uid, String phase, String resourceVersion) {
+        Build build = createBuild(uid, phase);
+        build.getMetadata().setResourceVersion(resourceVersion);
+        return build;
+    }
+
+    protected static Build createBuild(String uid, String phase) {
+        BuildBuilder builder = new BuildBuilder().withNewMetadata().withName("build-" + uid).withUid(uid).endMetadata();
+        if (phase != null) {
+            builder.withNewStatus().withPhase(phase).endStatus();
+        }
+        return builder.build();
+    }
+}
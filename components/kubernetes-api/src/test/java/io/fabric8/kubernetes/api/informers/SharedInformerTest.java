@@ -0,0 +1,223 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.informers;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.PodListBuilder;
+import io.fabric8.kubernetes.api.model.StatusBuilder;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SharedInformerTest {
+
+    @Test
+    public void testSharedAndReferenceCounted() throws Exception {
+        FakeListerWatcher listerWatcher = new FakeListerWatcher();
+        listerWatcher.pods.add(createPod("a", "1"));
+        Object client = new Object();
+
+        SharedInformer<Pod> informer1 = SharedInformers.acquire(client, Pod.class, "default", "app=foo", listerWatcher);
+        SharedInformer<Pod> informer2 = SharedInformers.acquire(client, Pod.class, "default", "app=foo", listerWatcher);
+        assertThat(informer2).isSameAs(informer1);
+        assertThat(listerWatcher.listCount).isEqualTo(1);
+        assertThat(listerWatcher.watchResourceVersion).isEqualTo("10");
+        assertThat(names(informer1.list())).containsExactly("a");
+
+        informer1.close();
+        assertThat(informer2.isClosed()).isFalse();
+        informer2.close();
+        assertThat(informer2.isClosed()).isTrue();
+        assertThat(listerWatcher.closed).isTrue();
+        assertThat(SharedInformers.getMetrics()).doesNotContainKey(informer1.getKey());
+    }
+
+    @Test
+    public void testListenersReceiveEventsAndResync() throws Exception {
+        FakeListerWatcher listerWatcher = new FakeListerWatcher();
+        listerWatcher.pods.add(createPod("a", "1"));
+        listerWatcher.pods.add(createPod("b", "2"));
+
+        try (SharedInformer<Pod> informer = SharedInformers.acquire(new Object(), Pod.class, "default", "", listerWatcher)) {
+            RecordingWatcher listener = new RecordingWatcher(5);
+            informer.addListener(listener);
+            assertThat(listener.events).containsExactly("ADDED a", "ADDED b");
+
+            listerWatcher.watcher.eventReceived(Watcher.Action.MODIFIED, createPod("a", "11"));
+            assertThat(listener.events).containsExactly("ADDED a", "ADDED b", "MODIFIED a");
+            assertThat(informer.getResourceVersion()).isEqualTo("11");
+
+            // lets simulate the watch expiring while "b" is deleted and "c" is created
+            listerWatcher.pods.clear();
+            listerWatcher.pods.add(createPod("a", "11"));
+            listerWatcher.pods.add(createPod("c", "12"));
+            listerWatcher.watcher.onClose(new KubernetesClientException(new StatusBuilder().withCode(410).withMessage("too old resource version").build()));
+
+            assertThat(listener.latch.await(5, TimeUnit.SECONDS)).isTrue();
+            synchronized (listener.events) {
+                assertThat(listener.events).containsExactly("ADDED a", "ADDED b", "MODIFIED a", "DELETED b", "ADDED c");
+            }
+            assertThat(names(informer.list())).containsExactly("a", "c");
+            assertThat(listerWatcher.listCount).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testWatchClosedResumesFromLastResourceVersion() throws Exception {
+        FakeListerWatcher listerWatcher = new FakeListerWatcher();
+        listerWatcher.pods.add(createPod("a", "1"));
+
+        try (SharedInformer<Pod> informer = SharedInformers.acquire(new Object(), Pod.class, "default", "", listerWatcher)) {
+            listerWatcher.watcher.eventReceived(Watcher.Action.MODIFIED, createPod("a", "15"));
+            Watcher<Pod> oldWatcher = listerWatcher.watcher;
+            oldWatcher.onClose(new KubernetesClientException("connection reset"));
+
+            long end = System.currentTimeMillis() + 5000;
+            while (listerWatcher.watcher == oldWatcher && System.currentTimeMillis() < end) {
+                Thread.sleep(10);
+            }
+            assertThat(listerWatcher.watcher).isNotSameAs(oldWatcher);
+            assertThat(listerWatcher.watchResourceVersion).isEqualTo("15");
+            assertThat(listerWatcher.listCount).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testSlowStartDoesNotBlockOtherInformers() throws Exception {
+        final CountDownLatch listing = new CountDownLatch(1);
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final FakeListerWatcher slow = new FakeListerWatcher() {
+            @Override
+            public KubernetesResourceList<Pod> list() {
+                listing.countDown();
+                try {
+                    unblock.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.list();
+            }
+        };
+        final Object client = new Object();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<SharedInformer<Pod>> first = executor.submit(new Callable<SharedInformer<Pod>>() {
+                @Override
+                public SharedInformer<Pod> call() throws Exception {
+                    return SharedInformers.acquire(client, Pod.class, "slow", "", slow);
+                }
+            });
+            assertThat(listing.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<SharedInformer<Pod>> second = executor.submit(new Callable<SharedInformer<Pod>>() {
+                @Override
+                public SharedInformer<Pod> call() throws Exception {
+                    return SharedInformers.acquire(client, Pod.class, "slow", "", slow);
+                }
+            });
+
+            // another informer can be acquired while the slow one is starting
+            try (SharedInformer<Pod> other = SharedInformers.acquire(client, Pod.class, "fast", "", new FakeListerWatcher())) {
+                assertThat(other.isClosed()).isFalse();
+            }
+            assertThat(second.isDone()).isFalse();
+
+            unblock.countDown();
+            SharedInformer<Pod> informer = first.get(5, TimeUnit.SECONDS);
+            assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(informer);
+            assertThat(slow.listCount).isEqualTo(1);
+            informer.close();
+            informer.close();
+            assertThat(informer.isClosed()).isTrue();
+        } finally {
+            unblock.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    protected static List<String> names(List<Pod> pods) {
+        List<String> answer = new ArrayList<>();
+        for (Pod pod : pods) {
+            answer.add(KubernetesHelper.getName(pod));
+        }
+        return answer;
+    }
+
+    protected static Pod createPod(String name, String resourceVersion) {
+        return new PodBuilder().withNewMetadata().withName(name).withNamespace("default").withResourceVersion(resourceVersion).endMetadata().build();
+    }
+
+    private static class RecordingWatcher implements Watcher<Pod> {
+        private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        private final CountDownLatch latch;
+
+        public RecordingWatcher(int expectedEvents) {
+            this.latch = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public void eventReceived(Action action, Pod pod) {
+            events.add(action + " " + KubernetesHelper.getName(pod));
+            latch.countDown();
+        }
+
+        @Override
+        public void onClose(KubernetesClientException e) {
+        }
+    }
+
+    private static class FakeListerWatcher implements ListerWatcher<Pod> {
+        private final List<Pod> pods = new ArrayList<>();
+        private volatile int listCount;
+        private volatile String watchResourceVersion;
+        private volatile Watcher<Pod> watcher;
+        private volatile boolean closed;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public KubernetesResourceList<Pod> list() {
+            listCount++;
+            return (KubernetesResourceList<Pod>) new PodListBuilder().withItems(new ArrayList<>(pods)).withNewMetadata().withResourceVersion("" + (10 * listCount)).endMetadata().build();
+        }
+
+        @Override
+        public Watch watch(String resourceVersion, Watcher<Pod> watcher) {
+            this.watchResourceVersion = resourceVersion;
+            this.watcher = watcher;
+            return new Watch() {
+                @Override
+                public void close() {
+                    closed = true;
+                }
+            };
+        }
+    }
+}
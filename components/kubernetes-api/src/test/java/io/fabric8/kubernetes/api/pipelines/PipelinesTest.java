@@ -16,9 +16,15 @@
  */
 package io.fabric8.kubernetes.api.pipelines;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 /**
  */
@@ -86,4 +92,70 @@ public class PipelinesTest {
         // lets show we can opt out of CD pipelines for specific builds in an organisation if required
         assertJobName(configuration, "whatnot", "master", "https://github.com/fabric8io/whatnot.git", PipelineKind.Developer);
     }
+
+    @Test
+    public void testConfigurationChangesAfterCachingPipelines() throws Exception {
+        PipelineConfiguration configuration = PipelineConfiguration.createDefault();
+        assertJobName(configuration, "foo", "release-1", PipelineKind.Developer);
+        assertJobName(configuration, "foo", "PR-1", PipelineKind.CI);
+
+        // lets change the patterns and check the cached pipelines are not used
+        List<String> cdBranchPatterns = new ArrayList<>(Arrays.asList("release-.*", "master"));
+        configuration.setCdBranchPatterns(cdBranchPatterns);
+        assertJobName(configuration, "foo", "release-1", PipelineKind.CD);
+        assertJobName(configuration, "foo", "master", PipelineKind.CD);
+        assertJobName(configuration, "foo", "master-2", PipelineKind.Developer);
+
+        configuration.setJobNamesCI("foo");
+        assertJobName(configuration, "foo", "release-1", PipelineKind.CI);
+
+        // the configuration keeps a copy of the patterns and only returns unmodifiable views
+        cdBranchPatterns.add("other");
+        assertJobName(configuration, "bar", "other", PipelineKind.Developer);
+        try {
+            configuration.getCdBranchPatterns().add("other");
+            fail("Should not be able to modify the patterns");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testInvalidPatternsDoNotAffectJobsMappedExplicitly() throws Exception {
+        PipelineConfiguration configuration = new PipelineConfiguration();
+        configuration.setCiBranchPatterns(Arrays.asList("PR-(.*"));
+        configuration.setJobNamesCD("foo");
+
+        assertJobName(configuration, "foo", "PR-1", PipelineKind.CD);
+        try {
+            assertJobName(configuration, "bar", "PR-1", PipelineKind.CI);
+            fail("Should have failed to compile the invalid pattern");
+        } catch (PatternSyntaxException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPatternsWithBackReferences() throws Exception {
+        PipelineConfiguration configuration = new PipelineConfiguration();
+        configuration.setCiBranchPatterns(Arrays.asList("(a+)-\\1", "PR-.*"));
+
+        assertJobName(configuration, "foo", "aa-aa", PipelineKind.CI);
+        assertJobName(configuration, "foo", "PR-2", PipelineKind.CI);
+        assertJobName(configuration, "foo", "aa-a", PipelineKind.Developer);
+    }
+
+    @Test
+    public void testPatternsWhichCannotBeCombined() throws Exception {
+        PipelineConfiguration configuration = new PipelineConfiguration();
+        configuration.setCiBranchPatterns(Arrays.asList("(?<id>b+)-\\k<id>", "(?<id>PR)-.*"));
+
+        assertJobName(configuration, "foo", "bb-bb", PipelineKind.CI);
+        assertJobName(configuration, "foo", "PR-2", PipelineKind.CI);
+        assertJobName(configuration, "foo", "bb-b", PipelineKind.Developer);
+
+        configuration.setCiBranchPatterns(new ArrayList<>(Arrays.asList("release-.*")));
+        assertJobName(configuration, "foo", "PR-2", PipelineKind.Developer);
+        assertJobName(configuration, "foo", "release-2", PipelineKind.CI);
+    }
 }
@@ -0,0 +1,113 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.ConfigMapBuilder;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.ConfigBuilder;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.openshift.client.server.mock.OpenShiftServer;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ConfigMapCacheTest {
+    private static final String NAMESPACE = "myproject";
+    private static final String NAME = "fabric8-environments";
+
+    @Rule
+    public OpenShiftServer server = new OpenShiftServer();
+
+    private final ConfigMapCache cache = new ConfigMapCache();
+
+    @After
+    public void tearDown() throws Exception {
+        cache.clear();
+    }
+
+    @Test
+    public void testConfigMapIsCached() throws Exception {
+        expectConfigMap("1");
+        KubernetesClient client = server.getKubernetesClient();
+
+        ConfigMap configMap = cache.get(client, NAMESPACE, NAME);
+        assertThat(configMap.getData()).containsEntry("version", "1");
+
+        // the mock only returns the ConfigMap once so this must come from the cache
+        configMap.getData().put("version", "changed");
+        assertThat(cache.get(client, NAMESPACE, NAME).getData()).containsEntry("version", "1");
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        expectConfigMap("1");
+        expectConfigMap("2");
+        KubernetesClient client = server.getKubernetesClient();
+
+        assertThat(cache.get(client, NAMESPACE, NAME).getData()).containsEntry("version", "1");
+        cache.invalidate(client, NAMESPACE, NAME);
+        assertThat(cache.get(client, NAMESPACE, NAME).getData()).containsEntry("version", "2");
+    }
+
+    @Test
+    public void testCachingDisabled() throws Exception {
+        expectConfigMap("1");
+        KubernetesClient client = server.getKubernetesClient();
+        cache.setTtl(0);
+
+        assertThat(cache.get(client, NAMESPACE, NAME)).isNotNull();
+        assertThat(cache.get(client, NAMESPACE, NAME)).isNull();
+    }
+
+    @Test
+    public void testClientsWithDifferentCredentialsDoNotShareEntries() throws Exception {
+        expectConfigMap("1");
+        expectConfigMap("2");
+        KubernetesClient client = server.getKubernetesClient();
+        Config otherConfig = new ConfigBuilder(client.getConfiguration()).withOauthToken("other-token").build();
+
+        try (KubernetesClient otherClient = new DefaultKubernetesClient(otherConfig)) {
+            assertThat(cache.get(client, NAMESPACE, NAME).getData()).containsEntry("version", "1");
+            assertThat(cache.get(otherClient, NAMESPACE, NAME).getData()).containsEntry("version", "2");
+            assertThat(cache.get(client, NAMESPACE, NAME).getData()).containsEntry("version", "1");
+        }
+    }
+
+    @Test
+    public void testIdleWatchesAreClosed() throws Exception {
+        expectConfigMap("1");
+        KubernetesClient client = server.getKubernetesClient();
+        cache.setWatchIdleTimeout(1);
+
+        assertThat(cache.get(client, NAMESPACE, NAME)).isNotNull();
+        assertThat(cache.getWatchCount()).isEqualTo(1);
+
+        Thread.sleep(10);
+        cache.setWatchEnabled(false);
+        cache.get(client, "other", NAME);
+        assertThat(cache.getWatchCount()).isEqualTo(0);
+    }
+
+    protected void expectConfigMap(String version) {
+        ConfigMap configMap = new ConfigMapBuilder().withNewMetadata().withName(NAME).withNamespace(NAMESPACE).endMetadata().
+                addToData("version", version).build();
+        server.expect().withPath("/api/v1/namespaces/" + NAMESPACE + "/configmaps/" + NAME).andReturn(200, configMap).once();
+    }
+}
@@ -0,0 +1,255 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import org.junit.Test;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.SRVRecord;
+import org.xbill.DNS.TextParseException;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DnsResolverTest {
+    private static final String SERVICE = "_http._tcp.web.default.svc.cluster.local.";
+
+    @Test
+    public void testCachesRecords() throws Exception {
+        StubResolver resolver = new StubResolver();
+        resolver.answer(Lookup.SUCCESSFUL, srv(60, 10, 5, "a"), srv(60, 0, 5, "b"), srv(60, 0, 50, "c"));
+
+        List<String> expected = Arrays.asList("a.web:8080", "c.web:8080", "b.web:8080");
+        assertThat(resolver.lookupServiceEndpoints(SERVICE)).isEqualTo(expected);
+        assertThat(resolver.lookupServiceEndpoints(SERVICE)).isEqualTo(expected);
+        assertThat(resolver.lookups).isEqualTo(1);
+
+        resolver.lookupServiceEndpoints(SERVICE).clear();
+        assertThat(resolver.lookupServiceEndpoints(SERVICE)).isEqualTo(expected);
+    }
+
+    @Test
+    public void testCachesFailedLookups() throws Exception {
+        StubResolver resolver = new StubResolver();
+        resolver.answer(Lookup.HOST_NOT_FOUND);
+
+        assertThat(resolver.lookupServiceAddresses("missing.default.svc.cluster.local.")).isEmpty();
+        assertThat(resolver.lookupServiceAddresses("missing.default.svc.cluster.local.")).isEmpty();
+        assertThat(resolver.selectServiceEndpoint("missing.default.svc.cluster.local.")).isNull();
+        assertThat(resolver.lookups).isEqualTo(2);
+
+        resolver.setNegativeTtl(0);
+        resolver.clear();
+        resolver.lookupServiceAddresses("missing.default.svc.cluster.local.");
+        resolver.lookupServiceAddresses("missing.default.svc.cluster.local.");
+        assertThat(resolver.lookups).isEqualTo(4);
+    }
+
+    @Test
+    public void testRefreshesBeforeExpiry() throws Exception {
+        StubResolver resolver = new StubResolver();
+        resolver.setMinTtl(0);
+        resolver.answer(Lookup.SUCCESSFUL, a(1, "10.0.0.1"));
+        assertThat(resolver.lookupServiceAddresses(SERVICE)).containsExactly("10.0.0.1");
+
+        Thread.sleep(800);
+        resolver.answer(Lookup.SUCCESSFUL, a(1, "10.0.0.2"));
+        // the current records are returned while they are refreshed
+        assertThat(resolver.lookupServiceAddresses(SERVICE)).containsExactly("10.0.0.1");
+        assertThat(resolver.lookupServiceAddresses(SERVICE)).containsExactly("10.0.0.2");
+        assertThat(resolver.lookups).isEqualTo(2);
+    }
+
+    @Test
+    public void testKeepsRecordsIfRefreshFailsTemporarily() throws Exception {
+        StubResolver resolver = new StubResolver();
+        resolver.setMinTtl(0);
+        resolver.setNegativeTtl(50);
+        resolver.answer(Lookup.SUCCESSFUL, a(1, "10.0.0.1"));
+        resolver.lookupServiceAddresses(SERVICE);
+
+        Thread.sleep(800);
+        resolver.answer(Lookup.TRY_AGAIN);
+        assertThat(resolver.lookupServiceAddresses(SERVICE)).containsExactly("10.0.0.1");
+        // the failed refresh is not retried until the negative TTL has passed
+        assertThat(resolver.lookupServiceAddresses(SERVICE)).containsExactly("10.0.0.1");
+        assertThat(resolver.lookups).isEqualTo(2);
+
+        Thread.sleep(100);
+        assertThat(resolver.lookupServiceAddresses(SERVICE)).containsExactly("10.0.0.1");
+        assertThat(resolver.lookups).isEqualTo(3);
+    }
+
+    @Test
+    public void testServesStaleRecordsUntilHardExpiry() throws Exception {
+        StubResolver resolver = new StubResolver();
+        resolver.setMinTtl(0);
+        resolver.setMaxStale(500);
+        resolver.answer(Lookup.SUCCESSFUL, a(1, "10.0.0.1"));
+        resolver.lookupServiceAddresses(SERVICE);
+
+        Thread.sleep(1100);
+        resolver.answer(Lookup.HOST_NOT_FOUND);
+        assertThat(resolver.lookupServiceAddresses(SERVICE)).containsExactly("10.0.0.1");
+        // the stale records are not looked up again until the negative TTL or the hard expiry
+        assertThat(resolver.lookupServiceAddresses(SERVICE)).containsExactly("10.0.0.1");
+        assertThat(resolver.lookups).isEqualTo(2);
+
+        Thread.sleep(500);
+        assertThat(resolver.lookupServiceAddresses(SERVICE)).isEmpty();
+        assertThat(resolver.lookups).isEqualTo(3);
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneLookup() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger lookups = new AtomicInteger();
+        final DnsResolver resolver = new DnsResolver() {
+            @Override
+            protected int lookup(String name, int type, List<Record> answers) throws TextParseException {
+                lookups.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                    answers.add(a(60, "10.0.0.1"));
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                return Lookup.SUCCESSFUL;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Set<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(new Callable<Set<String>>() {
+                    @Override
+                    public Set<String> call() throws Exception {
+                        return resolver.lookupServiceAddresses(SERVICE);
+                    }
+                }));
+            }
+            assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<Set<String>> future : futures) {
+                assertThat(future.get(10, TimeUnit.SECONDS)).containsExactly("10.0.0.1");
+            }
+            assertThat(lookups.get()).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCacheIsBounded() throws Exception {
+        StubResolver resolver = new StubResolver();
+        resolver.setMaxEntries(2);
+        resolver.answer(Lookup.SUCCESSFUL, a(60, "10.0.0.1"));
+        resolver.lookupServiceAddresses("a." + SERVICE);
+        resolver.lookupServiceAddresses("b." + SERVICE);
+        resolver.lookupServiceAddresses("c." + SERVICE);
+
+        assertThat(resolver.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testCacheKeepsTheEntryJustAdded() throws Exception {
+        StubResolver resolver = new StubResolver();
+        resolver.setMaxEntries(1);
+        resolver.answer(Lookup.SUCCESSFUL, a(60, "10.0.0.1"));
+        for (String name : Arrays.asList("a", "b", "c", "d")) {
+            resolver.lookupServiceAddresses(name + "." + SERVICE);
+            resolver.lookupServiceAddresses(name + "." + SERVICE);
+        }
+
+        assertThat(resolver.size()).isEqualTo(1);
+        assertThat(resolver.lookups).isEqualTo(4);
+    }
+
+    @Test
+    public void testSelectsByPriorityAndWeight() throws Exception {
+        StubResolver resolver = new StubResolver();
+        resolver.answer(Lookup.SUCCESSFUL, srv(60, 0, 1, "a"), srv(60, 0, 3, "b"), srv(60, 1, 100, "c"));
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 4000; i++) {
+            String endpoint = resolver.selectServiceEndpoint(SERVICE);
+            Integer count = counts.get(endpoint);
+            counts.put(endpoint, count == null ? 1 : count + 1);
+        }
+        assertThat(counts).doesNotContainKey("c.web:8080");
+        assertThat(counts.get("a.web:8080")).isBetween(700, 1300);
+        assertThat(counts.get("b.web:8080")).isBetween(2700, 3300);
+    }
+
+    protected static SRVRecord srv(long ttl, int priority, int weight, String target) throws TextParseException {
+        return new SRVRecord(Name.fromString(SERVICE), DClass.IN, ttl, priority, weight, 8080, Name.fromString(target + ".web."));
+    }
+
+    protected static ARecord a(long ttl, String address) throws Exception {
+        return new ARecord(Name.fromString(SERVICE), DClass.IN, ttl, InetAddress.getByName(address));
+    }
+
+    /**
+     * Answers lookups with the given records and refreshes in the calling thread
+     */
+    private static class StubResolver extends DnsResolver {
+        private int result;
+        private List<Record> records = new ArrayList<>();
+        private int lookups;
+
+        public StubResolver() {
+            super(new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    command.run();
+                }
+            });
+        }
+
+        public void answer(int result, Record... records) {
+            this.result = result;
+            this.records = Arrays.asList(records);
+        }
+
+        @Override
+        protected int lookup(String name, int type, List<Record> answers) throws TextParseException {
+            lookups++;
+            answers.addAll(records);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.kubernetes.api.model.KubernetesResource;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.Service;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class KubernetesCodecTest {
+
+    @Test
+    public void testReadJsonBindsToKindClass() throws Exception {
+        Object pod = KubernetesCodec.readJson(bytes("{\"metadata\": {\"name\": \"cheese\", \"labels\": {\"a\": \"b\"}}, \"spec\": {}, \"kind\": \"Pod\", \"apiVersion\": \"v1\"}"));
+        assertThat(pod).isInstanceOf(Pod.class);
+        assertThat(KubernetesHelper.getName((Pod) pod)).isEqualTo("cheese");
+        assertThat(((Pod) pod).getMetadata().getLabels()).containsEntry("a", "b");
+
+        Object configMap = KubernetesCodec.readJson(bytes("{\"kind\": \"ConfigMap\", \"apiVersion\": \"v1\", \"metadata\": {\"name\": \"cheese\"}, \"data\": {\"a\": \"b\"}}"));
+        assertThat(configMap).isInstanceOf(ConfigMap.class);
+        assertThat(((ConfigMap) configMap).getData()).containsEntry("a", "b");
+
+        Object list = KubernetesCodec.readJson(bytes("{\"kind\": \"List\", \"apiVersion\": \"v1\", \"items\": [{\"kind\": \"Service\", \"apiVersion\": \"v1\", \"metadata\": {\"name\": \"web\"}}]}"));
+        assertThat(list).isInstanceOf(KubernetesList.class);
+        assertThat(((KubernetesList) list).getItems()).hasSize(1);
+        assertThat(((KubernetesList) list).getItems().get(0)).isInstanceOf(Service.class);
+    }
+
+    @Test
+    public void testReadYamlBindsToKindClass() throws Exception {
+        Object service = KubernetesCodec.readYaml(bytes("apiVersion: v1\nkind: Service\nmetadata:\n  name: web\nspec:\n  ports:\n  - port: 80\n"), KubernetesResource.class);
+        assertThat(service).isInstanceOf(Service.class);
+        assertThat(((Service) service).getSpec().getPorts().get(0).getPort()).isEqualTo(80);
+    }
+
+    @Test
+    public void testReadersAndWritersAreCached() throws Exception {
+        assertThat(KubernetesCodec.jsonReaderFor(Pod.class)).isSameAs(KubernetesCodec.jsonReaderFor(Pod.class));
+        assertThat(KubernetesCodec.yamlWriterFor(Pod.class)).isSameAs(KubernetesCodec.yamlWriterFor(Pod.class));
+        assertThat(KubernetesCodec.getResourceClass("ReplicationController")).isNotNull();
+        assertThat(KubernetesCodec.getResourceClass("ObjectMeta")).isNull();
+    }
+
+    @Test
+    public void testWriteToStream() throws Exception {
+        Pod pod = new PodBuilder().withNewMetadata().withName("cheese").endMetadata().build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        KubernetesCodec.writeJson(pod, out);
+        out.write('\n');
+        KubernetesCodec.writeYaml(pod, out);
+
+        String text = out.toString("UTF-8");
+        assertThat(text).startsWith(KubernetesHelper.toJson(pod) + "\n");
+        assertThat(text).endsWith(KubernetesHelper.toYaml(pod));
+    }
+
+    @Test
+    public void testSaveYamlNotEmpty() throws Exception {
+        Pod pod = new PodBuilder().withNewMetadata().withName("cheese").endMetadata().withNewSpec().endSpec().build();
+        File file = File.createTempFile("pod", ".yml");
+        file.deleteOnExit();
+        KubernetesHelper.saveYamlNotEmpty(pod, file);
+
+        Pod loaded = KubernetesHelper.loadYaml(file, Pod.class);
+        assertThat(KubernetesHelper.getName(loaded)).isEqualTo("cheese");
+        assertThat(new String(Files.readAllBytes(file.toPath()), "UTF-8")).doesNotContain("spec");
+    }
+
+    private static byte[] bytes(String text) throws Exception {
+        return text.getBytes("UTF-8");
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LabelIndexTest {
+    private final Pod web1 = createPod("web-1", "app", "web", "tier", "frontend");
+    private final Pod web2 = createPod("web-2", "app", "web", "tier", "backend");
+    private final Pod db = createPod("db", "app", "db", "tier", "backend");
+    private final Pod unlabelled = new PodBuilder().withNewMetadata().withName("unlabelled").endMetadata().build();
+
+    @Test
+    public void testSelectMatchesFilter() throws Exception {
+        List<Pod> pods = Arrays.asList(web1, web2, db, unlabelled);
+        LabelIndex<Pod> index = new LabelIndex<>(pods);
+
+        assertSelect(index, pods, Collections.singletonMap("app", "web"), "web-1", "web-2");
+        assertSelect(index, pods, selector("app", "web", "tier", "backend"), "web-2");
+        assertSelect(index, pods, Collections.singletonMap("tier", "backend"), "web-2", "db");
+        assertSelect(index, pods, Collections.singletonMap("app", "cheese"));
+        assertSelect(index, pods, Collections.<String, String>emptyMap(), "web-1", "web-2", "db", "unlabelled");
+    }
+
+    @Test
+    public void testUpdates() throws Exception {
+        LabelIndex<Pod> index = new LabelIndex<>(Arrays.asList(web1, web2, db));
+        index.remove(web1);
+        index.add(createPod("db", "app", "web", "tier", "backend"));
+
+        assertThat(names(index.select(Collections.singletonMap("app", "web")))).containsExactly("web-2", "db");
+        assertThat(index.select(Collections.singletonMap("app", "db"))).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void testPodsForServices() throws Exception {
+        Service service = new ServiceBuilder().withNewMetadata().withName("web").endMetadata().
+                withNewSpec().addToSelector("app", "web").endSpec().build();
+
+        Map<String, List<Pod>> answer = KubernetesHelper.getPodsForServices(Collections.singletonList(service), Arrays.asList(web1, web2, db));
+        assertThat(names(answer.get("web"))).containsExactly("web-1", "web-2");
+    }
+
+    protected static void assertSelect(LabelIndex<Pod> index, List<Pod> pods, Map<String, String> selector, String... expectedNames) {
+        List<Pod> expected = new ArrayList<>();
+        for (Pod pod : pods) {
+            if (selector.isEmpty() || KubernetesHelper.createPodFilter(selector).matches(pod)) {
+                expected.add(pod);
+            }
+        }
+        assertThat(names(index.select(selector))).describedAs("selector " + selector).containsExactly(expectedNames).isEqualTo(names(expected));
+    }
+
+    protected static List<String> names(List<Pod> pods) {
+        List<String> answer = new ArrayList<>();
+        for (Pod pod : pods) {
+            answer.add(KubernetesHelper.getName(pod));
+        }
+        return answer;
+    }
+
+    protected static Map<String, String> selector(String... keyValues) {
+        Map<String, String> answer = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            answer.put(keyValues[i], keyValues[i + 1]);
+        }
+        return answer;
+    }
+
+    protected static Pod createPod(String name, String... labels) {
+        return new PodBuilder().withNewMetadata().withName(name).withLabels(selector(labels)).endMetadata().build();
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.support;
+
+import okhttp3.internal.tls.SslClient;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SslProbeTest {
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final SslProbe probe = new SslProbe(4);
+
+    @After
+    public void tearDown() throws Exception {
+        for (HttpServer server : servers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testPlainServiceIsNotSslAndCached() throws Exception {
+        HttpServer server = startServer();
+
+        SslProbe.Result result = probe.probe("localhost", server.getPort(), false);
+        assertThat(result.isSsl()).isFalse();
+        assertThat(result.getConnectTime()).isGreaterThanOrEqualTo(0);
+        assertThat(result.getHandshakeTime()).isGreaterThanOrEqualTo(0);
+        assertThat(result.getError()).isNotNull();
+
+        assertThat(probe.probe("localhost", server.getPort(), false)).isSameAs(result);
+        assertThat(server.getConnections()).isEqualTo(1);
+
+        probe.setTtl(0);
+        probe.probe("localhost", server.getPort(), false);
+        probe.probe("localhost", server.getPort(), false);
+        assertThat(server.getConnections()).isEqualTo(3);
+    }
+
+    @Test
+    public void testClosedPortIsNotSsl() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        SslProbe.Result result = probe.probe("localhost", port, true);
+        assertThat(result.isSsl()).isFalse();
+        assertThat(result.getConnectTime()).isEqualTo(-1);
+        assertThat(result.isConclusive()).isFalse();
+
+        // a refused connection is not cached so the port is probed again
+        assertThat(probe.probe("localhost", port, true)).isNotSameAs(result);
+    }
+
+    @Test
+    public void testSslServiceIsSslAndCached() throws Exception {
+        SslClient sslClient = SslClient.localhost();
+        try (ServerSocket serverSocket = sslClient.sslContext.getServerSocketFactory().createServerSocket(0)) {
+            final ServerSocket server = serverSocket;
+            final AtomicInteger connections = new AtomicInteger();
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (!server.isClosed()) {
+                        try (SSLSocket socket = (SSLSocket) server.accept()) {
+                            connections.incrementAndGet();
+                            socket.startHandshake();
+                        } catch (IOException e) {
+                            // closed
+                        }
+                    }
+                }
+            });
+            thread.setDaemon(true);
+            thread.start();
+
+            SslProbe.Result result = probe.probe("localhost", server.getLocalPort(), true);
+            assertThat(result.isSsl()).isTrue();
+            assertThat(result.getError()).isNull();
+            assertThat(result.getHandshakeTime()).isGreaterThanOrEqualTo(0);
+            assertThat(probe.probe("localhost", server.getLocalPort(), true)).isSameAs(result);
+            assertThat(connections.get()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void testProbeAll() throws Exception {
+        List<String> endpoints = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            endpoints.add("localhost:" + startServer().getPort());
+        }
+        Map<String, SslProbe.Result> results = probe.probeAll(endpoints, false);
+        assertThat(results.keySet()).containsExactlyElementsOf(endpoints);
+        for (SslProbe.Result result : results.values()) {
+            assertThat(result.isSsl()).isFalse();
+        }
+    }
+
+    protected HttpServer startServer() throws IOException {
+        HttpServer server = new HttpServer();
+        servers.add(server);
+        server.start();
+        return server;
+    }
+
+    /**
+     * Replies to every connection with a plain HTTP response
+     */
+    private static class HttpServer extends Thread {
+        private final ServerSocket serverSocket;
+        private final AtomicInteger connections = new AtomicInteger();
+
+        public HttpServer() throws IOException {
+            serverSocket = new ServerSocket(0);
+            setDaemon(true);
+        }
+
+        public int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        public int getConnections() {
+            return connections.get();
+        }
+
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+
+        @Override
+        public void run() {
+            while (!serverSocket.isClosed()) {
+                try (Socket socket = serverSocket.accept()) {
+                    connections.incrementAndGet();
+                    OutputStream out = socket.getOutputStream();
+                    out.write("HTTP/1.1 400 Bad Request\r\nContent-Length: 0\r\n\r\n".getBytes("UTF-8"));
+                    out.flush();
+                } catch (IOException e) {
+                    // closed
+                }
+            }
+        }
+    }
+}
@@ -16,12 +16,13 @@
  */
 package io.fabric8.kubernetes.assertions;
 
+import io.fabric8.kubernetes.api.informers.SharedInformer;
+import io.fabric8.kubernetes.api.informers.SharedInformers;
 import io.fabric8.kubernetes.api.model.Pod;
 import io.fabric8.kubernetes.api.model.PodList;
 import io.fabric8.kubernetes.api.model.LabelSelectorRequirement;
 import io.fabric8.kubernetes.assertions.support.PodWatcher;
 import io.fabric8.kubernetes.client.KubernetesClient;
-import io.fabric8.kubernetes.client.Watch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -81,12 +82,16 @@ public class PodSelectionAssert extends AbstractPodSelectionAssert {
             return this;
         }
 
+        // the shared informer sends the current pods to the watcher before any changes
         try (PodWatcher podWatcher = new PodWatcher(this, notReadyTimeoutMS, readyPeriodMS);
-             Watch watch = client.pods().withLabels(matchLabels).watch(podWatcher);
+             SharedInformer<Pod> informer = SharedInformers.pods(client, null, matchLabels);
         ) {
-            podWatcher.loadCurrentPods();
-            podWatcher.waitForPodReady();
-
+            informer.addListener(podWatcher);
+            try {
+                podWatcher.waitForPodReady();
+            } finally {
+                informer.removeListener(podWatcher);
+            }
         }
         return this;
     }
@@ -15,9 +15,9 @@
  */
 package io.fabric8.kubernetes.jolokia;
 
+import io.fabric8.kubernetes.api.KubernetesClients;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.*;
-import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.kubernetes.client.internal.SSLUtils;
 import io.fabric8.kubernetes.client.utils.URLUtils;
@@ -32,6 +32,7 @@ import org.jolokia.client.J4pClientBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
@@ -44,11 +45,15 @@ import static io.fabric8.utils.Objects.assertNotNull;
 
 /**
  * Provides simple access to jolokia clients for a cluster
+ * <p/>
+ * When created without a kubernetes client one is acquired from {@link KubernetesClients} which is released by
+ * {@link #close()}.
  */
-public class JolokiaClients {
+public class JolokiaClients implements Closeable {
     private static final transient Logger LOG = LoggerFactory.getLogger(JolokiaClients.class);
 
     private final KubernetesClient kubernetes;
+    private boolean closeKubernetes;
 
     private String user = Systems.getEnvVarOrSystemProperty("JOLOKIA_USER", "JOLOKIA_USER", "admin");
 
@@ -71,7 +76,8 @@ public class JolokiaClients {
     private AuthenticationMode authenticationMode;
 
     public JolokiaClients() {
-        this(new DefaultKubernetesClient());
+        this(KubernetesClients.acquire());
+        this.closeKubernetes = true;
     }
 
     public JolokiaClients(KubernetesClient kubernetes) {
@@ -82,6 +88,17 @@ public class JolokiaClients {
         }
     }
 
+    /**
+     * Releases the kubernetes client if it was acquired by this object; a client passed to the constructor is left open
+     */
+    @Override
+    public synchronized void close() {
+        if (closeKubernetes) {
+            closeKubernetes = false;
+            kubernetes.close();
+        }
+    }
+
     public KubernetesClient getKubernetes() {
         return kubernetes;
     }
@@ -45,9 +45,13 @@ public class Example {
             selector = args[0];
         }
         Example example = new Example();
-        example.findReplicationControllers(selector);
+        try {
+            example.findReplicationControllers(selector);
 
-        example.findPods(selector);
+            example.findPods(selector);
+        } finally {
+            example.clients.close();
+        }
     }
 
     public void findPods(String selector) {